@@ -2,6 +2,7 @@ plugins {
   java
   jacoco
   id("org.jetbrains.dokka") version "1.9.10"
+  id("me.champeau.jmh") version "0.7.2"
   application
 }
 
@@ -37,13 +38,95 @@ tasks.named<JavaExec>("run") {
   dependsOn(tasks.compileJava)
   standardInput = System.`in`
   args = project.findProperty("args")?.toString()?.split(" ") ?: emptyList()
+  project.findProperty("kernel")?.let { systemProperty("petrinet.kernel", it) }
+  project.findProperty("executor")?.let { systemProperty("petrinet.executor", it) }
+  project.findProperty("offices")?.let { systemProperty("agency.offices", it) }
+}
+
+tasks.register<JavaExec>("monteCarlo") {
+  group = "application"
+  description = "Runs many virtual-time simulations per policy in parallel and prints statistics."
+  classpath = sourceSets["main"].runtimeClasspath
+  mainClass.set("simulation.MonteCarloRunner")
+}
+
+tasks.register<JavaExec>("loadTest") {
+  group = "application"
+  description = "Feeds customers to the net at a fixed or Poisson rate and prints sojourn times."
+  classpath = sourceSets["main"].runtimeClasspath
+  mainClass.set("simulation.LoadGenerator")
+}
+
+tasks.register<JavaExec>("replayTrace") {
+  group = "verification"
+  description = "Replays a transition trace and verifies enabledness and place invariants."
+  classpath = sourceSets["main"].runtimeClasspath
+  mainClass.set("analysis.TraceReplayer")
+}
+
+tasks.register<JavaExec>("queryHistory") {
+  group = "verification"
+  description = "Queries an indexed firing history by transition and time range, or for a marking."
+  classpath = sourceSets["main"].runtimeClasspath
+  mainClass.set("analysis.FiringHistory")
+}
+
+tasks.register<JavaExec>("distributedRun") {
+  group = "application"
+  description = "Runs a net split across node processes and verifies the merged trace."
+  classpath = sourceSets["main"].runtimeClasspath
+  mainClass.set("distributed.Coordinator")
+}
+
+jmh {
+  resultFormat.set("JSON")
+  project.findProperty("benchmark")?.let { includes.add(it.toString()) }
+  project.findProperty("profiler")?.let { profilers.add(it.toString()) }
+  jvmArgsAppend.add("--add-modules=jdk.incubator.vector")
+}
+
+// The vector firing kernel uses the incubating Vector API
+tasks.withType<JavaExec>().configureEach {
+  jvmArgs("--add-modules", "jdk.incubator.vector")
 }
 
 tasks.test {
-  useJUnitPlatform()
+  useJUnitPlatform {
+    excludeTags("stress")
+  }
+  jvmArgs("--add-modules", "jdk.incubator.vector")
   finalizedBy(tasks.jacocoTestReport)
 }
 
+tasks.register<Test>("stressTest") {
+  group = "verification"
+  description = "Runs the monitors under contention with every policy, checking every firing."
+  testClassesDirs = sourceSets["test"].output.classesDirs
+  classpath = sourceSets["test"].runtimeClasspath
+  useJUnitPlatform {
+    includeTags("stress")
+  }
+  jvmArgs("--add-modules", "jdk.incubator.vector")
+  System.getProperty("stress.invariants")?.let { systemProperty("stress.invariants", it) }
+  System.getProperty("stress.timeoutSeconds")?.let { systemProperty("stress.timeoutSeconds", it) }
+  testLogging.showStandardStreams = true
+}
+
+// About 1.5 million firings per configuration; expect it to take well over an hour
+tasks.register<Test>("soakTest") {
+  group = "verification"
+  description = "Runs the stress tests for millions of firings per configuration."
+  testClassesDirs = sourceSets["test"].output.classesDirs
+  classpath = sourceSets["test"].runtimeClasspath
+  useJUnitPlatform {
+    includeTags("stress")
+  }
+  jvmArgs("--add-modules", "jdk.incubator.vector")
+  systemProperty("stress.invariants", System.getProperty("stress.invariants") ?: "200000")
+  systemProperty("stress.timeoutSeconds", System.getProperty("stress.timeoutSeconds") ?: "3600")
+  testLogging.showStandardStreams = true
+}
+
 tasks.jacocoTestReport {
   dependsOn(tasks.test)
   reports {
@@ -67,6 +150,7 @@ tasks.compileJava {
   options.encoding = "UTF-8"
   options.compilerArgs.add("-Xlint:unchecked")
   options.compilerArgs.add("-Xlint:deprecation")
+  options.compilerArgs.addAll(listOf("--add-modules", "jdk.incubator.vector"))
 }
 
 tasks.compileTestJava {
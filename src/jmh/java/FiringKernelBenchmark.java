@@ -0,0 +1,88 @@
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import petrinet.FiringKernel;
+import petrinet.NetDefinition;
+import petrinet.NetGenerator;
+
+/**
+ * Compares the firing kernels on the agency net and on larger copies of it built by {@link
+ * NetGenerator#replicatedAgency(int)}, where the offices share the payment desk, so a net of n
+ * offices has 14n + 1 places. Each operation fires one transition of a full invariant cycle in one
+ * of the offices, taking them in turn, and recomputes the enabled transitions of the whole net,
+ * like {@code PetriNet} does on a firing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FiringKernelBenchmark {
+  // T0 T1 T2 T5 T6 T9 T10 T11: one customer through the longest invariant
+  private static final int[] CYCLE = {0, 1, 2, 5, 6, 9, 10, 11};
+
+  /** Number of transitions of each office. */
+  private static final int OFFICE_TRANSITIONS = 12;
+
+  @Param({"interpreted", "sparse", "generated", "vector"})
+  public String kernelName;
+
+  @Param({"1", "16", "64"})
+  public int offices;
+
+  private FiringKernel kernel;
+  private int[] sequence;
+  private int[] initialMarking;
+  private int[] marking;
+  private boolean[] enabled;
+  private int position;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    NetDefinition definition = NetGenerator.replicatedAgency(offices);
+    kernel =
+        FiringKernel.create(
+            kernelName, definition.getIncidenceMatrixOut(), definition.getIncidenceMatrixIn());
+    if (!kernel.getName().equals(kernelName)) {
+      throw new IllegalStateException("Kernel " + kernelName + " is not available");
+    }
+    // Each cycle returns its office and the shared desk to where they started
+    sequence = new int[offices * CYCLE.length];
+    for (int office = 0; office < offices; office++) {
+      for (int i = 0; i < CYCLE.length; i++) {
+        sequence[office * CYCLE.length + i] = office * OFFICE_TRANSITIONS + CYCLE[i];
+      }
+    }
+    initialMarking = definition.getInitialMarking();
+    marking = initialMarking.clone();
+    enabled = new boolean[definition.getTransitionsLength()];
+  }
+
+  @Benchmark
+  public boolean[] fireAndUpdateEnabled() {
+    if (position == sequence.length) {
+      position = 0;
+      System.arraycopy(initialMarking, 0, marking, 0, marking.length);
+    }
+    kernel.fire(sequence[position++], marking);
+    kernel.computeEnabled(marking, enabled);
+    return enabled;
+  }
+
+  @Benchmark
+  public boolean isEnabled() {
+    position = (position + 1) % sequence.length;
+    return kernel.isEnabled(sequence[position], marking);
+  }
+}
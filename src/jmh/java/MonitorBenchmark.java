@@ -0,0 +1,85 @@
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import monitor.Monitor;
+import monitor.MonitorInterface;
+import monitor.RingBufferMonitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import petrinet.PetriNet;
+import petrinet.PetriNetConf;
+import petrinet.Segments;
+import petrinet.Transition;
+import policy.FCFSPolicy;
+import utils.Logger;
+
+/**
+ * Compares the semaphore monitor with the ring buffer monitor under contention. Each operation
+ * runs the agency net without alphas until it completes {@link #INVARIANTS} invariants, with every
+ * segment of the net run by one or more threads, and measures the time it takes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MonitorBenchmark {
+  private static final int INVARIANTS = 2000;
+
+  @Param({"mutex", "ringbuffer"})
+  public String monitorName;
+
+  @Param({"1", "4"})
+  public int threadsPerSegment;
+
+  private PetriNetConf conf;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Logger.getLogger().setEnabled(false);
+    conf = new PetriNetConf();
+  }
+
+  @Benchmark
+  public int runToTarget() throws InterruptedException {
+    PetriNet petriNet =
+        new PetriNet(
+            conf.getTransitions(),
+            conf.getPlaces(),
+            conf.getIncidenceMatrixOut(),
+            conf.getIncidenceMatrixIn(),
+            conf.getPlacesInvariants(),
+            conf.getInitialMarking(),
+            INVARIANTS,
+            new long[conf.getTransitions().size()]);
+    MonitorInterface monitor =
+        monitorName.equals("mutex")
+            ? Monitor.newMonitor(petriNet, new FCFSPolicy())
+            : new RingBufferMonitor(petriNet, new FCFSPolicy());
+
+    int segments = conf.getNumberOfSequences();
+    Thread[] threads = new Thread[segments * threadsPerSegment];
+    for (int i = 0; i < threads.length; i++) {
+      List<Transition> sequence = conf.getTransitionSequence(i % segments);
+      threads[i] = new Thread(new Segments(sequence, monitor, petriNet));
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    if (monitor instanceof RingBufferMonitor ringBufferMonitor) {
+      ringBufferMonitor.close();
+    }
+    return petriNet.getInvariantsCount();
+  }
+}
@@ -0,0 +1,92 @@
+import java.util.concurrent.TimeUnit;
+import monitor.Monitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import petrinet.NetDefinition;
+import petrinet.NetGenerator;
+import petrinet.PetriNet;
+import petrinet.Segments;
+import policy.FCFSPolicy;
+import utils.Logger;
+
+/**
+ * Measures how the cost of the net grows with its size, using the synthetic nets of {@link
+ * NetGenerator}. Every family is built with about {@link #size} transitions. {@code fire} measures
+ * a single firing of the first enabled transition, with no contention; {@code runToTarget} runs
+ * the net through the mutex monitor with one thread per segment until it completes {@link
+ * #INVARIANTS} invariants, so it also measures lock contention. Run with {@code -prof gc} to see
+ * the memory allocated per firing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NetScalingBenchmark {
+  private static final int INVARIANTS = 100;
+
+  @Param({"agency", "pipeline", "conflict", "random"})
+  public String family;
+
+  @Param({"12", "60", "240"})
+  public int size;
+
+  private NetDefinition definition;
+  private PetriNet petriNet;
+  private int position;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Logger.getLogger().setEnabled(false);
+    NetDefinition generated =
+        switch (family) {
+          case "agency" -> NetGenerator.replicatedAgency(Math.max(1, size / 12));
+          case "pipeline" -> NetGenerator.pipeline(size, Math.max(1, size / 4));
+          case "conflict" -> NetGenerator.wideConflict(size / 2, Math.max(1, size / 8));
+          case "random" -> NetGenerator.random(size / 2, size, 0.1, 42);
+          default -> throw new IllegalArgumentException("Unknown family " + family);
+        };
+    definition = generated.withoutAlphas();
+    petriNet = definition.createPetriNet();
+  }
+
+  @Benchmark
+  public boolean fire() {
+    boolean[] enabled = petriNet.getEnabledTransitionsInBits();
+    for (int k = 0; k < enabled.length; k++) {
+      int t = (position + k) % enabled.length;
+      if (enabled[t]) {
+        position = t + 1;
+        return petriNet.tryFireTransition(t);
+      }
+    }
+    return false;
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public int runToTarget() throws InterruptedException {
+    PetriNet runNet = definition.withTargetInvariants(INVARIANTS).createPetriNet();
+    Monitor monitor = Monitor.newMonitor(runNet, new FCFSPolicy());
+    Thread[] threads = new Thread[definition.getNumberOfSequences()];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(new Segments(definition.getTransitionSequence(i), monitor, runNet));
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    return runNet.getInvariantsCount();
+  }
+}
@@ -0,0 +1,77 @@
+import java.util.concurrent.TimeUnit;
+import monitor.Monitor;
+import monitor.MonitorInterface;
+import monitor.PartitionedMonitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import petrinet.NetComposition;
+import petrinet.NetDefinition;
+import petrinet.PetriNet;
+import petrinet.PetriNetConf;
+import petrinet.Segments;
+import policy.BalancedPolicy;
+import policy.OfficePolicy;
+import utils.Logger;
+
+/**
+ * Runs a chain of agency offices sharing the payment desk, without alphas, until every office
+ * completes its 186 invariants. Compares the single mutex, which serializes every office, with the
+ * partitioned monitor, where offices only contend on the desk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OfficeChainBenchmark {
+  /** Tokens of the shared payment desk. */
+  private static final int DESKS = 10;
+
+  @Param({"mutex", "partitioned"})
+  public String monitorName;
+
+  @Param({"1", "10", "50"})
+  public int offices;
+
+  private NetDefinition definition;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Logger.getLogger().setEnabled(false);
+    NetDefinition agency = NetDefinition.of(new PetriNetConf());
+    NetComposition composition = new NetComposition(agency, offices, 10);
+    composition.setSharedTokens(10, DESKS);
+    definition = composition.createDefinition().withoutAlphas();
+  }
+
+  @Benchmark
+  public int runToTarget() throws InterruptedException {
+    PetriNet petriNet = definition.createPetriNet();
+    OfficePolicy policy = new OfficePolicy(offices, 12, office -> new BalancedPolicy());
+    MonitorInterface monitor =
+        monitorName.equals("mutex")
+            ? Monitor.newMonitor(petriNet, policy)
+            : new PartitionedMonitor(petriNet, policy);
+
+    Thread[] threads = new Thread[definition.getNumberOfSequences()];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(new Segments(definition.getTransitionSequence(i), monitor, petriNet));
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    return petriNet.getInvariantsCount();
+  }
+}
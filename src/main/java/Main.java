@@ -1,12 +1,35 @@
+import analysis.FiringHistoryWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 import java.util.Scanner;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import monitor.LockFreeMonitor;
 import monitor.Monitor;
+import monitor.MonitorInterface;
+import monitor.PartitionedMonitor;
+import monitor.RingBufferMonitor;
+import monitor.Watchdog;
+import petrinet.Checkpoint;
+import petrinet.EventDrivenExecutor;
+import petrinet.NetComposition;
+import petrinet.NetDefinition;
 import petrinet.PetriNet;
 import petrinet.PetriNetConf;
 import petrinet.Segments;
+import petrinet.Transition;
 import policy.BalancedPolicy;
 import policy.FCFSPolicy;
+import policy.OfficePolicy;
 import policy.Policy;
 import policy.PrioritizedPolicy;
 import utils.Logger;
@@ -19,10 +42,13 @@ public class Main {
   /** Logger instance for logging application events. */
   private static final Logger logger = Logger.getLogger();
 
+  /** Default time between checkpoints, in milliseconds. */
+  private static final long DEFAULT_CHECKPOINT_INTERVAL = 1000;
+
   /**
    * Main method to start the Petri Net simulation.
    *
-   * @param args Command-line arguments for policy selection.
+   * @param args Command-line arguments for policy selection and, optionally, monitor selection.
    */
   public static void main(String[] args) {
     // Register shutdown hook for logger
@@ -41,38 +67,30 @@ public class Main {
     logger.info("Application starting...");
 
     try {
-      Policy policy;
-      if (args.length == 1) {
-        // If command-line argument is provided, use it
-        policy = selectPolicy(args[0]);
-      } else {
-        // If no argument is provided, ask for input through console
-        policy = getPolicyFromConsole();
-      }
+      // If no argument is provided, ask for input through console
+      String policyArg = args.length >= 1 ? args[0] : getPolicyFromConsole();
 
-      PetriNetConf rdPConf = new PetriNetConf();
+      // One agency office, or several sharing some places if -Dagency.offices is given
+      int offices = Math.max(1, Integer.getInteger("agency.offices", 1));
+      NetDefinition definition = createDefinition(offices);
+      int transitionsPerOffice = definition.getTransitionsLength() / offices;
+      Policy policy =
+          offices > 1
+              ? new OfficePolicy(offices, transitionsPerOffice, office -> selectPolicy(policyArg))
+              : selectPolicy(policyArg);
 
-      PetriNet petriNet =
-          new PetriNet(
-              rdPConf.getTransitions(),
-              rdPConf.getPlaces(),
-              rdPConf.getIncidenceMatrixOut(),
-              rdPConf.getIncidenceMatrixIn(),
-              rdPConf.getPlacesInvariants(),
-              rdPConf.getInitialMarking(),
-              rdPConf.getTargetInvariants(),
-              rdPConf.getTimeTransitions());
+      PetriNet petriNet = definition.createPetriNet();
 
       // Initialize monitor with the chosen policy
-      Monitor monitor = Monitor.getMonitor(petriNet, policy);
+      MonitorInterface monitor = selectMonitor(args.length >= 2 ? args[1] : "", petriNet, policy);
 
       // Initialize threads array
-      Thread[] threads = new Thread[rdPConf.getNumberOfSequences()];
+      Thread[] threads = new Thread[definition.getNumberOfSequences()];
 
       // Create a CountDownLatch to wait for all threads to finish
       // The number of threads is equal to the number of sequences
       // in the configuration
-      int numThreads = rdPConf.getNumberOfSequences();
+      int numThreads = definition.getNumberOfSequences();
       CountDownLatch latch = new CountDownLatch(numThreads);
 
       // Create and start threads
@@ -82,18 +100,84 @@ public class Main {
               new Thread(
                   () -> {
                     try {
-                      new Segments(rdPConf.getTransitionSequence(i), monitor, petriNet).run();
+                      new Segments(definition.getTransitionSequence(i), monitor, petriNet).run();
                     } finally {
                       latch.countDown(); // Each thread signals when it finishes
                     }
                   }));
 
+      // Resume from the last checkpoint and keep saving new ones, if requested
+      String checkpointFile = System.getProperty("checkpoint.file");
+      ScheduledExecutorService checkpointScheduler = null;
+      if (checkpointFile != null) {
+        if (monitor instanceof Monitor mutexMonitor) {
+          long interval = Long.getLong("checkpoint.interval", DEFAULT_CHECKPOINT_INTERVAL);
+          checkpointScheduler =
+              startCheckpointing(mutexMonitor, Path.of(checkpointFile), interval);
+        } else {
+          logger.error("Checkpoints are only supported by the mutex monitor");
+        }
+      }
+
+      // Log the markings as deltas from the current, possibly restored, marking
+      petriNet.openMarkingTimeline();
+
+      // Record an indexed firing history, if requested
+      String historyFile = System.getProperty("history.file");
+      FiringHistoryWriter history =
+          historyFile != null ? FiringHistoryWriter.record(petriNet, Path.of(historyFile)) : null;
+
+      // Report runs that stop firing, if requested
+      Watchdog watchdog = null;
+      Long watchdogWindow = Long.getLong("watchdog.window");
+      if (watchdogWindow != null) {
+        Watchdog.Action action =
+            Watchdog.Action.valueOf(
+                System.getProperty("watchdog.action", "report").toUpperCase(Locale.ROOT));
+        watchdog =
+            new Watchdog(
+                petriNet,
+                monitor,
+                policy,
+                watchdogWindow,
+                action,
+                () -> {
+                  logger.error("Aborting the stalled run");
+                  System.exit(1);
+                });
+        watchdog.start();
+      }
+
       logger.info("Starting Petri net execution...");
       logger.info("Initial marking: {" + petriNet.getStringMarking() + "}");
-      Arrays.stream(threads).forEach(Thread::start);
+      if (useEventDrivenExecutor(monitor)) {
+        // Run the sequences as tasks on a pool instead of one thread each
+        List<List<Transition>> sequences =
+            IntStream.range(0, numThreads).mapToObj(definition::getTransitionSequence).toList();
+        logger.info("Waiting for all sequences to finish...");
+        new EventDrivenExecutor((Monitor) monitor, petriNet, sequences).start().join();
+      } else {
+        Arrays.stream(threads).forEach(Thread::start);
+
+        logger.info("Waiting for all threads to finish...");
+        latch.await();
+      }
+
+      if (watchdog != null) {
+        watchdog.stop();
+      }
+
+      // The run is complete, so there is nothing left to resume
+      if (checkpointScheduler != null) {
+        checkpointScheduler.shutdownNow();
+        checkpointScheduler.awaitTermination(1, TimeUnit.SECONDS);
+        Files.deleteIfExists(Path.of(checkpointFile));
+      }
 
-      logger.info("Waiting for all threads to finish...");
-      latch.await();
+      if (history != null) {
+        history.awaitCompletion();
+        logger.info("Firing history written to " + historyFile);
+      }
 
       logger.info("Petri net execution completed successfully");
 
@@ -103,28 +187,135 @@ public class Main {
     }
   }
 
+  /**
+   * Resumes the run from the checkpoint file if it exists, and schedules a daemon task that
+   * periodically replaces it with a new checkpoint. Each checkpoint is written to a temporary file
+   * and moved over the previous one, so a crash never leaves a partial checkpoint behind.
+   *
+   * @param monitor Monitor to take the checkpoints from.
+   * @param checkpointPath Path of the checkpoint file.
+   * @param interval Time between checkpoints, in milliseconds.
+   * @return The scheduler writing the checkpoints.
+   * @throws Exception if the existing checkpoint cannot be read or restored.
+   */
+  private static ScheduledExecutorService startCheckpointing(
+      Monitor monitor, Path checkpointPath, long interval) throws Exception {
+    if (Files.exists(checkpointPath)) {
+      try (InputStream in = Files.newInputStream(checkpointPath)) {
+        monitor.restore(Checkpoint.readFrom(in));
+      }
+      logger.info("Resumed from checkpoint " + checkpointPath);
+    }
+
+    Path temporaryPath = checkpointPath.resolveSibling(checkpointPath.getFileName() + ".tmp");
+    ScheduledExecutorService scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "checkpoint");
+              thread.setDaemon(true);
+              return thread;
+            });
+    scheduler.scheduleAtFixedRate(
+        () -> {
+          try {
+            Checkpoint checkpoint = monitor.checkpoint();
+            try (OutputStream out = Files.newOutputStream(temporaryPath)) {
+              checkpoint.writeTo(out);
+            }
+            Files.move(
+                temporaryPath,
+                checkpointPath,
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } catch (Exception e) {
+            logger.error("Error writing checkpoint: " + e.getMessage());
+          }
+        },
+        interval,
+        interval,
+        TimeUnit.MILLISECONDS);
+    return scheduler;
+  }
+
+  /**
+   * Checks whether the event-driven executor was requested with {@code
+   * -Dpetrinet.executor=events}. It needs the asynchronous requests of the mutex monitor, so the
+   * other monitors fall back to one thread per sequence.
+   *
+   * @param monitor The selected monitor.
+   * @return true if the sequences must run on the event-driven executor, false otherwise.
+   */
+  private static boolean useEventDrivenExecutor(MonitorInterface monitor) {
+    String executor = System.getProperty("petrinet.executor", "threads");
+    if (!executor.equals("events")) {
+      return false;
+    }
+    if (!(monitor instanceof Monitor)) {
+      logger.error("The event-driven executor needs the mutex monitor, using threads");
+      return false;
+    }
+    logger.info("Selected: Event-Driven Executor");
+    return true;
+  }
+
   /**
    * Prompts the user to select a policy from the console.
    *
-   * @return The selected Policy instance.
+   * @return The selected policy, as accepted by {@link #selectPolicy(String)}.
    */
-  private static Policy getPolicyFromConsole() {
+  private static String getPolicyFromConsole() {
     Scanner scanner = new Scanner(System.in);
     while (true) {
       printUsage();
       System.out.print("Enter your choice (1, 2 or 3): ");
 
       try {
-        String input = scanner.nextLine();
-        Policy policy = selectPolicy(input);
-        scanner.close();
-        return policy;
+        String input = scanner.nextLine().trim();
+        if (List.of("1", "2", "3").contains(input)) {
+          scanner.close();
+          return input;
+        }
+        logger.error("Invalid policy selection: " + input);
       } catch (Exception e) {
         logger.error("Error reading policy selection: " + e.getMessage());
       }
     }
   }
 
+  /**
+   * Builds the net to run: the agency net, or with {@code -Dagency.offices=K} K agency offices that
+   * share the places listed in {@code -Dagency.shared} (the payment desk, P10, by default). {@code
+   * -Dagency.sharedTokens} sets the tokens of every shared place, for example the size of a common
+   * pool of agents.
+   *
+   * @param offices Number of offices.
+   * @return The definition of the net.
+   */
+  private static NetDefinition createDefinition(int offices) {
+    NetDefinition agency = NetDefinition.of(new PetriNetConf());
+    if (offices <= 1) {
+      return agency;
+    }
+    int[] sharedPlaces =
+        Arrays.stream(System.getProperty("agency.shared", "10").split(","))
+            .map(String::trim)
+            .filter(place -> !place.isEmpty())
+            .mapToInt(Integer::parseInt)
+            .toArray();
+    NetComposition composition = new NetComposition(agency, offices, sharedPlaces);
+    Integer sharedTokens = Integer.getInteger("agency.sharedTokens");
+    if (sharedTokens != null) {
+      for (int place : sharedPlaces) {
+        composition.setSharedTokens(place, sharedTokens);
+      }
+    }
+    logger.info(
+        "Selected: " + offices + " offices sharing places " + Arrays.toString(sharedPlaces));
+    return composition.createDefinition();
+  }
+
   /** Prints the available policies to the console. */
   private static void printUsage() {
     System.out.println("\nAvailable policies:");
@@ -133,6 +324,39 @@ public class Main {
     System.out.println("3: FCFS Policy (First-Come-First-Served)");
   }
 
+  /**
+   * Selects the monitor implementation based on the provided argument. The single-mutex monitor is
+   * used when no argument is given.
+   *
+   * @param monitorArg The argument representing the monitor choice.
+   * @param petriNet The Petri net the monitor controls.
+   * @param policy The policy used by the monitor.
+   * @return The selected MonitorInterface instance.
+   */
+  private static MonitorInterface selectMonitor(
+      String monitorArg, PetriNet petriNet, Policy policy) {
+    return switch (monitorArg) {
+      case "", "mutex" -> Monitor.getMonitor(petriNet, policy);
+      case "partitioned" -> {
+        logger.info("Selected: Partitioned Monitor");
+        yield new PartitionedMonitor(petriNet, policy);
+      }
+      case "lockfree" -> {
+        logger.info("Selected: Lock-Free Monitor");
+        yield new LockFreeMonitor(petriNet, policy);
+      }
+      case "ringbuffer" -> {
+        logger.info("Selected: Ring Buffer Monitor");
+        yield new RingBufferMonitor(petriNet, policy);
+      }
+      default -> {
+        logger.error("Invalid monitor selection: " + monitorArg);
+        System.exit(1);
+        yield null; // This line won't be reached
+      }
+    };
+  }
+
   /**
    * Selects a policy based on the provided argument.
    *
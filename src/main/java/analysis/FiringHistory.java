@@ -0,0 +1,395 @@
+package analysis;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a firing history written by {@link FiringHistoryWriter}. Only the header and the index are
+ * loaded; records are read from the file when a query needs them, so questions like "every firing
+ * of T10 between minutes 30 and 40" or "the marking at time t" cost a few reads instead of a pass
+ * over the whole history.
+ *
+ * <p>The marking at any point is the initial marking plus the marking change of each transition
+ * times its firing count (M = M0 + C * counts), so it is computed from the nearest time index entry
+ * and at most one interval of records. Timestamps are assumed not to decrease along the history.
+ */
+public class FiringHistory implements Closeable {
+  /** Records read at a time when scanning. */
+  private static final int SCAN_RECORDS = 1 << 14;
+
+  private final FileChannel channel;
+  private final int[] initialMarking;
+  private final int indexInterval;
+
+  /** Places whose marking changes with each transition, and by how much. */
+  private final int[][] changedPlaces;
+
+  private final int[][] changeDeltas;
+  private final long recordsOffset;
+  private final int records;
+
+  /** Timestamp of every indexInterval-th record and the firings of each transition before it. */
+  private final long[] indexTimestamps;
+
+  private final int[][] indexCounts;
+
+  /** Records of each transition, in order. */
+  private final int[][] postings;
+
+  private final boolean indexRebuilt;
+
+  private FiringHistory(FileChannel channel) throws IOException {
+    this.channel = channel;
+    DataInputStream in = openStream(0);
+    if (in.readInt() != FiringHistoryWriter.MAGIC) {
+      throw new IOException("Not a firing history");
+    }
+    byte version = in.readByte();
+    if (version != FiringHistoryWriter.VERSION) {
+      throw new IOException("Unsupported firing history version: " + version);
+    }
+    int placesLength = in.readInt();
+    int transitionsLength = in.readInt();
+    this.indexInterval = in.readInt();
+    long offset = 4 + 1 + 4 + 4 + 4;
+    this.initialMarking = new int[placesLength];
+    for (int p = 0; p < placesLength; p++) {
+      initialMarking[p] = in.readInt();
+    }
+    offset += 4L * placesLength;
+    this.changedPlaces = new int[transitionsLength][];
+    this.changeDeltas = new int[transitionsLength][];
+    for (int t = 0; t < transitionsLength; t++) {
+      int changes = in.readInt();
+      changedPlaces[t] = new int[changes];
+      changeDeltas[t] = new int[changes];
+      for (int i = 0; i < changes; i++) {
+        changedPlaces[t][i] = in.readInt();
+        changeDeltas[t][i] = in.readInt();
+      }
+      offset += 4 + 8L * changes;
+    }
+    this.recordsOffset = offset;
+
+    long indexOffset = readIndexOffset();
+    if (indexOffset >= 0) {
+      this.records = (int) ((indexOffset - recordsOffset) / FiringHistoryWriter.RECORD_SIZE);
+      in = openStream(indexOffset);
+      int indexLength = in.readInt();
+      this.indexTimestamps = new long[indexLength];
+      this.indexCounts = new int[indexLength][transitionsLength];
+      for (int i = 0; i < indexLength; i++) {
+        indexTimestamps[i] = in.readLong();
+        for (int t = 0; t < transitionsLength; t++) {
+          indexCounts[i][t] = in.readInt();
+        }
+      }
+      this.postings = new int[transitionsLength][];
+      for (int t = 0; t < transitionsLength; t++) {
+        postings[t] = new int[in.readInt()];
+        for (int i = 0; i < postings[t].length; i++) {
+          postings[t][i] = in.readInt();
+        }
+      }
+      this.indexRebuilt = false;
+    } else {
+      // The run did not finish: index the complete records that made it to the file
+      this.records = (int) ((channel.size() - recordsOffset) / FiringHistoryWriter.RECORD_SIZE);
+      int indexLength = (records + indexInterval - 1) / indexInterval;
+      this.indexTimestamps = new long[indexLength];
+      this.indexCounts = new int[indexLength][];
+      int[] counts = new int[transitionsLength];
+      int[] transitions = new int[records];
+      for (int first = 0; first < records; first += SCAN_RECORDS) {
+        ByteBuffer buffer = readRecords(first, Math.min(SCAN_RECORDS, records - first));
+        for (int record = first; buffer.hasRemaining(); record++) {
+          long timestamp = buffer.getLong();
+          int transition = buffer.getInt();
+          if (record % indexInterval == 0) {
+            indexTimestamps[record / indexInterval] = timestamp;
+            indexCounts[record / indexInterval] = counts.clone();
+          }
+          transitions[record] = transition;
+          counts[transition]++;
+        }
+      }
+      this.postings = new int[transitionsLength][];
+      for (int t = 0; t < transitionsLength; t++) {
+        postings[t] = new int[counts[t]];
+      }
+      int[] filled = new int[transitionsLength];
+      for (int record = 0; record < records; record++) {
+        postings[transitions[record]][filled[transitions[record]]++] = record;
+      }
+      this.indexRebuilt = true;
+    }
+  }
+
+  /**
+   * Opens a firing history. A history without index, from a run that did not finish, is indexed
+   * by scanning its records.
+   *
+   * @param path File written by a {@link FiringHistoryWriter}.
+   * @return The opened history, to be closed by the caller.
+   * @throws IOException if the file cannot be read or is not a firing history.
+   */
+  public static FiringHistory open(Path path) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      return new FiringHistory(channel);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Finds the first record with a timestamp not before the given time.
+   *
+   * @param time Time in milliseconds, in the clock of the recorded net.
+   * @return Number of the record, or the number of records if every firing is earlier.
+   * @throws IOException if the records cannot be read.
+   */
+  public int firstRecordAt(long time) throws IOException {
+    // Last index entry before the time; the record is in its block or starts the next one
+    int low = 0;
+    int high = indexTimestamps.length - 1;
+    int block = -1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (indexTimestamps[middle] < time) {
+        block = middle;
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    if (block < 0) {
+      return 0;
+    }
+    int first = block * indexInterval;
+    int end = Math.min(records, first + indexInterval);
+    ByteBuffer buffer = readRecords(first, end - first);
+    for (int record = first; record < end; record++) {
+      if (buffer.getLong() >= time) {
+        return record;
+      }
+      buffer.getInt();
+    }
+    return end;
+  }
+
+  /**
+   * Finds the firings of a transition in a time range.
+   *
+   * @param transition Index of the transition.
+   * @param from Start of the range, inclusive, in milliseconds.
+   * @param to End of the range, exclusive, in milliseconds.
+   * @return Numbers of the records of the firings, in order.
+   * @throws IOException if the records cannot be read.
+   */
+  public int[] findFirings(int transition, long from, long to) throws IOException {
+    int first = firstRecordAt(from);
+    int end = firstRecordAt(to);
+    int[] firings = postings[transition];
+    int start = Arrays.binarySearch(firings, first);
+    int stop = Arrays.binarySearch(firings, end);
+    return Arrays.copyOfRange(
+        firings, start >= 0 ? start : -start - 1, Math.max(0, stop >= 0 ? stop : -stop - 1));
+  }
+
+  /**
+   * Computes the marking after every firing up to a time.
+   *
+   * @param time Time in milliseconds; firings at this time are included.
+   * @return The marking after those firings.
+   * @throws IOException if the records cannot be read.
+   */
+  public int[] markingAt(long time) throws IOException {
+    return markingAfter(time == Long.MAX_VALUE ? records : firstRecordAt(time + 1));
+  }
+
+  /**
+   * Computes the marking after a number of firings, from the nearest time index entry.
+   *
+   * @param firings Number of firings from the start of the history.
+   * @return The marking after those firings.
+   * @throws IOException if the records cannot be read.
+   * @throws IllegalArgumentException if there are not that many records.
+   */
+  public int[] markingAfter(int firings) throws IOException {
+    if (firings < 0 || firings > records) {
+      throw new IllegalArgumentException("Invalid number of firings: " + firings);
+    }
+    int[] marking = initialMarking.clone();
+    int block = Math.min(firings / indexInterval, indexTimestamps.length - 1);
+    if (block < 0) {
+      return marking;
+    }
+    int[] counts = indexCounts[block];
+    for (int t = 0; t < counts.length; t++) {
+      for (int i = 0; i < changedPlaces[t].length; i++) {
+        marking[changedPlaces[t][i]] += counts[t] * changeDeltas[t][i];
+      }
+    }
+    int first = block * indexInterval;
+    ByteBuffer buffer = readRecords(first, firings - first);
+    while (buffer.hasRemaining()) {
+      buffer.getLong();
+      int transition = buffer.getInt();
+      for (int i = 0; i < changedPlaces[transition].length; i++) {
+        marking[changedPlaces[transition][i]] += changeDeltas[transition][i];
+      }
+    }
+    return marking;
+  }
+
+  /**
+   * Reads the timestamp of a record.
+   *
+   * @param record Number of the record.
+   * @return Time of the firing in milliseconds.
+   * @throws IOException if the record cannot be read.
+   */
+  public long getTimestamp(int record) throws IOException {
+    return readRecords(record, 1).getLong();
+  }
+
+  /**
+   * Reads the transition of a record.
+   *
+   * @param record Number of the record.
+   * @return Index of the fired transition.
+   * @throws IOException if the record cannot be read.
+   */
+  public int getTransition(int record) throws IOException {
+    return readRecords(record, 1).getInt(Long.BYTES);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Reads consecutive records from the file.
+   *
+   * @param first Number of the first record.
+   * @param count Number of records.
+   * @return Buffer with the records, ready to be read.
+   * @throws IOException if the records cannot be read.
+   */
+  private ByteBuffer readRecords(int first, int count) throws IOException {
+    if (first < 0 || count < 0 || first + count > records) {
+      throw new IllegalArgumentException("Invalid records: " + first + " to " + (first + count));
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(count * FiringHistoryWriter.RECORD_SIZE);
+    long position = recordsOffset + (long) first * FiringHistoryWriter.RECORD_SIZE;
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException("Truncated firing history");
+      }
+    }
+    return buffer.flip();
+  }
+
+  /**
+   * Reads the offset of the index from the trailer.
+   *
+   * @return The offset, or -1 if the file has no valid trailer.
+   * @throws IOException if the file cannot be read.
+   */
+  private long readIndexOffset() throws IOException {
+    long size = channel.size();
+    if (size < recordsOffset + FiringHistoryWriter.TRAILER_SIZE) {
+      return -1;
+    }
+    ByteBuffer trailer = ByteBuffer.allocate(FiringHistoryWriter.TRAILER_SIZE);
+    while (trailer.hasRemaining()) {
+      channel.read(trailer, size - FiringHistoryWriter.TRAILER_SIZE + trailer.position());
+    }
+    long indexOffset = trailer.getLong(0);
+    boolean valid =
+        trailer.getInt(Long.BYTES) == FiringHistoryWriter.END_MAGIC
+            && indexOffset >= recordsOffset
+            && indexOffset <= size - FiringHistoryWriter.TRAILER_SIZE
+            && (indexOffset - recordsOffset) % FiringHistoryWriter.RECORD_SIZE == 0;
+    return valid ? indexOffset : -1;
+  }
+
+  private DataInputStream openStream(long position) throws IOException {
+    return new DataInputStream(
+        new BufferedInputStream(Channels.newInputStream(channel.position(position))));
+  }
+
+  /* Getters */
+
+  public int size() {
+    return records;
+  }
+
+  public int getTransitionsLength() {
+    return postings.length;
+  }
+
+  public int[] getInitialMarking() {
+    return initialMarking.clone();
+  }
+
+  public int getFiringCount(int transition) {
+    return postings[transition].length;
+  }
+
+  public boolean isIndexRebuilt() {
+    return indexRebuilt;
+  }
+
+  /**
+   * Prints a summary of a firing history, the firings of a transition in a time range, or the
+   * marking at a time. Times are seconds from the first firing.
+   *
+   * @param args Path of the history, then either "T&lt;n&gt; from to" or "marking time".
+   * @throws IOException if the history cannot be read.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: FiringHistory <file> [T<n> <from> <to> | marking <time>]");
+      System.exit(1);
+    }
+    try (FiringHistory history = open(Path.of(args[0]))) {
+      long start = history.size() > 0 ? history.getTimestamp(0) : 0;
+      if (args.length >= 4 && args[1].startsWith("T")) {
+        int transition = Integer.parseInt(args[1].substring(1));
+        long from = start + (long) (Double.parseDouble(args[2]) * 1000);
+        long to = start + (long) (Double.parseDouble(args[3]) * 1000);
+        int[] firings = history.findFirings(transition, from, to);
+        for (int record : firings) {
+          System.out.printf(
+              "#%d T%d at %.3f s%n",
+              record, transition, (history.getTimestamp(record) - start) / 1e3);
+        }
+        System.out.println(firings.length + " firings of T" + transition);
+      } else if (args.length >= 3 && args[1].equals("marking")) {
+        long time = start + (long) (Double.parseDouble(args[2]) * 1000);
+        System.out.println(Arrays.toString(history.markingAt(time)));
+      } else {
+        long end = history.size() > 0 ? history.getTimestamp(history.size() - 1) : start;
+        System.out.printf(
+            "%d firings in %.3f s%s%n",
+            history.size(), (end - start) / 1e3, history.isIndexRebuilt() ? " (no index)" : "");
+        for (int t = 0; t < history.getTransitionsLength(); t++) {
+          System.out.println("T" + t + ": " + history.getFiringCount(t));
+        }
+      }
+    }
+  }
+}
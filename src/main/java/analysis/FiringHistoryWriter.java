@@ -0,0 +1,227 @@
+package analysis;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import petrinet.FiringEvent;
+import petrinet.FiringEventPublisher;
+import petrinet.PetriNet;
+
+/**
+ * Records the firings of a net into a file that {@link FiringHistory} can query by time and
+ * transition without reading it whole. Firings are appended as fixed-size records (timestamp and
+ * transition), so the n-th firing is at a known offset. When the net finishes, an index is appended
+ * after the records: the records of each transition, and every {@code indexInterval} records the
+ * timestamp and the firing count of each transition so far.
+ *
+ * <p>The writer is a subscriber of the firing events that blocks the firing threads when it falls
+ * behind, so no firing is missing from the history. A run that never finishes leaves the records
+ * without an index, which the reader rebuilds by scanning them.
+ *
+ * <p>File layout, big-endian: header (magic, version, places, transitions, index interval, initial
+ * marking and the marking change of each transition as (place, change) pairs), records (long
+ * timestamp, int transition), index (time index entries as (long timestamp, int counts per
+ * transition), then per transition its number of records and their numbers), trailer (long offset
+ * of the index, int end magic).
+ */
+public class FiringHistoryWriter implements Flow.Subscriber<FiringEvent> {
+  public static final int DEFAULT_INDEX_INTERVAL = 1024;
+
+  static final int MAGIC = 0x504E4648; // "PNFH"
+  static final int END_MAGIC = 0x464E4950;
+  static final byte VERSION = 1;
+  static final int RECORD_SIZE = 12;
+  static final int TRAILER_SIZE = 12;
+
+  private static final int EVENT_BUFFER_SIZE = 4096;
+
+  private final DataOutputStream out;
+  private final int indexInterval;
+  private final CountDownLatch completed = new CountDownLatch(1);
+
+  /** Number of bytes written so far, to find the offset of the index. */
+  private long written;
+
+  private int records = 0;
+
+  /** Records of each transition, indexed [transition][firing]. */
+  private final int[][] postings;
+
+  private final int[] postingsLength;
+
+  /** Firings of each transition so far. */
+  private final int[] counts;
+
+  private long[] indexTimestamps = new long[16];
+  private int[][] indexCounts = new int[16][];
+  private int indexLength = 0;
+  private volatile IOException failure = null;
+
+  /**
+   * Constructor for the FiringHistoryWriter. Writes the header with the current marking of the net
+   * as the initial marking, so it must be created before the net starts firing.
+   *
+   * @param path File to write; replaced if it exists.
+   * @param petriNet Net whose firings are recorded.
+   * @param indexInterval Records between two entries of the time index.
+   * @throws IOException if the file cannot be written.
+   * @throws IllegalArgumentException if the index interval is not positive.
+   */
+  public FiringHistoryWriter(Path path, PetriNet petriNet, int indexInterval) throws IOException {
+    if (indexInterval < 1) {
+      throw new IllegalArgumentException("Invalid index interval: " + indexInterval);
+    }
+    this.indexInterval = indexInterval;
+    int transitionsLength = petriNet.getNumberOfTransitions();
+    this.postings = new int[transitionsLength][16];
+    this.postingsLength = new int[transitionsLength];
+    this.counts = new int[transitionsLength];
+    this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+
+    int[] marking = petriNet.getMarking();
+    int[][] incidenceMatrixOut = petriNet.getIncidenceMatrixOut();
+    int[][] incidenceMatrixIn = petriNet.getIncidenceMatrixIn();
+    out.writeInt(MAGIC);
+    out.writeByte(VERSION);
+    out.writeInt(marking.length);
+    out.writeInt(transitionsLength);
+    out.writeInt(indexInterval);
+    for (int tokens : marking) {
+      out.writeInt(tokens);
+    }
+    for (int t = 0; t < transitionsLength; t++) {
+      int changes = 0;
+      for (int p = 0; p < marking.length; p++) {
+        changes += incidenceMatrixOut[p][t] != incidenceMatrixIn[p][t] ? 1 : 0;
+      }
+      out.writeInt(changes);
+      for (int p = 0; p < marking.length; p++) {
+        if (incidenceMatrixOut[p][t] != incidenceMatrixIn[p][t]) {
+          out.writeInt(p);
+          out.writeInt(incidenceMatrixOut[p][t] - incidenceMatrixIn[p][t]);
+        }
+      }
+    }
+    this.written = out.size();
+  }
+
+  /**
+   * Starts recording the firings of a net into a file, with the default index interval.
+   *
+   * @param petriNet Net to record, before it starts firing.
+   * @param path File to write.
+   * @return The writer, already subscribed.
+   * @throws IOException if the file cannot be written.
+   */
+  public static FiringHistoryWriter record(PetriNet petriNet, Path path) throws IOException {
+    FiringHistoryWriter writer = new FiringHistoryWriter(path, petriNet, DEFAULT_INDEX_INTERVAL);
+    petriNet
+        .getFiringEvents()
+        .subscribe(writer, EVENT_BUFFER_SIZE, FiringEventPublisher.Backpressure.BLOCK);
+    return writer;
+  }
+
+  /**
+   * Waits until the net finished and the index is written.
+   *
+   * @throws InterruptedException if the thread is interrupted while waiting.
+   * @throws IOException if the history could not be written.
+   */
+  public void awaitCompletion() throws InterruptedException, IOException {
+    completed.await();
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  public int getRecords() {
+    return records;
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    subscription.request(Long.MAX_VALUE);
+  }
+
+  @Override
+  public void onNext(FiringEvent event) {
+    if (failure != null) {
+      return;
+    }
+    int transition = event.getTransitionIndex();
+    try {
+      if (records % indexInterval == 0) {
+        addIndexEntry(event.getTimestamp());
+      }
+      out.writeLong(event.getTimestamp());
+      out.writeInt(transition);
+    } catch (IOException e) {
+      failure = e;
+      return;
+    }
+    if (postingsLength[transition] == postings[transition].length) {
+      postings[transition] = Arrays.copyOf(postings[transition], 2 * postingsLength[transition]);
+    }
+    postings[transition][postingsLength[transition]++] = records;
+    counts[transition]++;
+    records++;
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    finish();
+  }
+
+  @Override
+  public void onComplete() {
+    finish();
+  }
+
+  /**
+   * Adds an entry to the time index for the record about to be written.
+   *
+   * @param timestamp Timestamp of the record.
+   */
+  private void addIndexEntry(long timestamp) {
+    if (indexLength == indexTimestamps.length) {
+      indexTimestamps = Arrays.copyOf(indexTimestamps, 2 * indexLength);
+      indexCounts = Arrays.copyOf(indexCounts, 2 * indexLength);
+    }
+    indexTimestamps[indexLength] = timestamp;
+    indexCounts[indexLength++] = counts.clone();
+  }
+
+  /** Appends the index and the trailer and closes the file. */
+  private void finish() {
+    try {
+      if (failure == null) {
+        long indexOffset = written + (long) records * RECORD_SIZE;
+        out.writeInt(indexLength);
+        for (int i = 0; i < indexLength; i++) {
+          out.writeLong(indexTimestamps[i]);
+          for (int count : indexCounts[i]) {
+            out.writeInt(count);
+          }
+        }
+        for (int t = 0; t < postings.length; t++) {
+          out.writeInt(postingsLength[t]);
+          for (int i = 0; i < postingsLength[t]; i++) {
+            out.writeInt(postings[t][i]);
+          }
+        }
+        out.writeLong(indexOffset);
+        out.writeInt(END_MAGIC);
+      }
+      out.close();
+    } catch (IOException e) {
+      failure = e;
+    } finally {
+      completed.countDown();
+    }
+  }
+}
@@ -0,0 +1,270 @@
+package analysis;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import utils.Logger;
+import utils.MarkingTimelineWriter;
+import utils.SegmentedLog;
+
+/**
+ * Reads a marking timeline written by a {@link MarkingTimelineWriter} and materializes the marking
+ * after any number of firings on demand. The timeline is kept encoded in memory; reading it only
+ * records where each keyframe starts, and a marking is decoded from the nearest keyframe before it.
+ * A timeline cut short by a crash is read up to its last complete record.
+ */
+public class MarkingTimeline {
+  private static final Path DEFAULT_TIMELINE_PATH =
+      Path.of("/tmp/" + Logger.MARKING_TIMELINE_NAME + Logger.MARKING_TIMELINE_SUFFIX);
+
+  private final byte[] bytes;
+  private final int placesLength;
+
+  /** Places whose marking changes with each transition, and by how much. */
+  private final int[][] changedPlaces;
+
+  private final int[][] changeDeltas;
+
+  /** Firings before each keyframe and the offset of its marking. */
+  private final long[] keyframeFirings;
+
+  private final int[] keyframeOffsets;
+  private final long firings;
+
+  /** Offset of the next value to decode. */
+  private int position;
+
+  private MarkingTimeline(byte[] bytes) throws IOException {
+    this.bytes = bytes;
+    int magic = 0;
+    for (int i = 0; i < 4 && i < bytes.length; i++) {
+      magic = (magic << 8) | (bytes[i] & 0xFF);
+    }
+    if (bytes.length < 5 || magic != MarkingTimelineWriter.MAGIC) {
+      throw new IOException("Not a marking timeline");
+    }
+    if (bytes[4] != MarkingTimelineWriter.VERSION) {
+      throw new IOException("Unsupported marking timeline version: " + bytes[4]);
+    }
+    position = 5;
+    this.placesLength = (int) readVarint();
+    int transitionsLength = (int) readVarint();
+    readVarint(); // Keyframe interval, implied by the keyframes themselves
+    this.changedPlaces = new int[transitionsLength][];
+    this.changeDeltas = new int[transitionsLength][];
+    for (int t = 0; t < transitionsLength; t++) {
+      int changes = (int) readVarint();
+      changedPlaces[t] = new int[changes];
+      changeDeltas[t] = new int[changes];
+      for (int i = 0; i < changes; i++) {
+        changedPlaces[t][i] = (int) readVarint();
+        changeDeltas[t][i] = readSignedVarint();
+      }
+    }
+
+    // Find the keyframes and count the complete firings
+    long[] foundFirings = new long[16];
+    int[] foundOffsets = new int[16];
+    int keyframes = 0;
+    long count = 0;
+    try {
+      while (position < bytes.length) {
+        int tag = (int) readVarint();
+        if (tag == MarkingTimelineWriter.KEYFRAME) {
+          long keyframeFiring = readVarint();
+          int offset = position;
+          for (int p = 0; p < placesLength; p++) {
+            readVarint();
+          }
+          if (keyframes == foundFirings.length) {
+            foundFirings = Arrays.copyOf(foundFirings, 2 * keyframes);
+            foundOffsets = Arrays.copyOf(foundOffsets, 2 * keyframes);
+          }
+          foundFirings[keyframes] = keyframeFiring;
+          foundOffsets[keyframes++] = offset;
+          count = keyframeFiring;
+        } else if (tag == MarkingTimelineWriter.INJECTION) {
+          readVarint();
+          readVarint();
+        } else if (tag - MarkingTimelineWriter.FIRST_TRANSITION < transitionsLength) {
+          count++;
+        } else {
+          throw new IOException("Invalid marking timeline record at offset " + position);
+        }
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      // Truncated last record
+    }
+    if (keyframes == 0) {
+      throw new IOException("Marking timeline without initial marking");
+    }
+    this.keyframeFirings = Arrays.copyOf(foundFirings, keyframes);
+    this.keyframeOffsets = Arrays.copyOf(foundOffsets, keyframes);
+    this.firings = count;
+  }
+
+  /**
+   * Reads a marking timeline file.
+   *
+   * @param path File written by a {@link MarkingTimelineWriter}.
+   * @return The timeline.
+   * @throws IOException if the file cannot be read or is not a marking timeline.
+   */
+  public static MarkingTimeline read(Path path) throws IOException {
+    return new MarkingTimeline(Files.readAllBytes(path));
+  }
+
+  /**
+   * Materializes the marking after a number of firings, from the last keyframe before it.
+   *
+   * @param firingCount Number of firings from the start of the timeline.
+   * @return The marking after those firings.
+   * @throws IllegalArgumentException if the timeline has fewer firings.
+   */
+  public synchronized int[] markingAfter(long firingCount) {
+    if (firingCount < 0 || firingCount > firings) {
+      throw new IllegalArgumentException("Invalid number of firings: " + firingCount);
+    }
+    // Last keyframe at or before the firing; a reset keyframe repeats the count of the previous one
+    int keyframe = 0;
+    for (int low = 0, high = keyframeFirings.length - 1; low <= high; ) {
+      int middle = (low + high) >>> 1;
+      if (keyframeFirings[middle] <= firingCount) {
+        keyframe = middle;
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    int[] marking = new int[placesLength];
+    position = keyframeOffsets[keyframe];
+    for (int p = 0; p < placesLength; p++) {
+      marking[p] = readSignedVarint();
+    }
+    for (long count = keyframeFirings[keyframe]; count < firingCount; ) {
+      if (applyRecord(marking) >= 0) {
+        count++;
+      }
+    }
+    return marking;
+  }
+
+  /**
+   * Decodes the whole timeline in order, passing each fired transition with the marking after it.
+   *
+   * @param action Receives the marking, reused between calls, and the index of the transition.
+   */
+  public synchronized void forEachFiring(ObjIntConsumer<int[]> action) {
+    int[] marking = new int[placesLength];
+    position = keyframeOffsets[0];
+    for (int p = 0; p < placesLength; p++) {
+      marking[p] = readSignedVarint();
+    }
+    for (long count = 0; count < firings; ) {
+      int transition = applyRecord(marking);
+      if (transition >= 0) {
+        count++;
+        action.accept(marking, transition);
+      }
+    }
+  }
+
+  /**
+   * Decodes the next record and applies it to a marking.
+   *
+   * @param marking Marking before the record, updated in place.
+   * @return Index of the fired transition, or -1 if the record is a keyframe or an injection.
+   */
+  private int applyRecord(int[] marking) {
+    int tag = (int) readVarint();
+    if (tag == MarkingTimelineWriter.KEYFRAME) {
+      readVarint();
+      for (int p = 0; p < placesLength; p++) {
+        marking[p] = readSignedVarint();
+      }
+      return -1;
+    }
+    if (tag == MarkingTimelineWriter.INJECTION) {
+      int place = (int) readVarint();
+      marking[place] += readSignedVarint();
+      return -1;
+    }
+    int transition = tag - MarkingTimelineWriter.FIRST_TRANSITION;
+    for (int i = 0; i < changedPlaces[transition].length; i++) {
+      marking[changedPlaces[transition][i]] += changeDeltas[transition][i];
+    }
+    return transition;
+  }
+
+  private long readVarint() {
+    long value = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = bytes[position++];
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+  }
+
+  private int readSignedVarint() {
+    int value = (int) readVarint();
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /* Getters */
+
+  public long getFirings() {
+    return firings;
+  }
+
+  public int getPlacesLength() {
+    return placesLength;
+  }
+
+  public int getKeyframes() {
+    return keyframeFirings.length;
+  }
+
+  /**
+   * Prints every firing of a marking timeline with the marking after it, in the format of the text
+   * log, or only the marking after a number of firings.
+   *
+   * @param args Optional path of the timeline (by default the one in /tmp, or the last run of a
+   *     directory of segmented logs, or the one given with -Dlog.runId) and number of firings.
+   * @throws IOException if the timeline cannot be read.
+   */
+  public static void main(String[] args) throws IOException {
+    Path path = args.length >= 1 ? Path.of(args[0]) : DEFAULT_TIMELINE_PATH;
+    if (Files.isDirectory(path)) {
+      List<String> runs = SegmentedLog.listRuns(path, Logger.TRANSITIONS_LOG_NAME);
+      if (runs.isEmpty()) {
+        throw new IOException("No logged runs in " + path);
+      }
+      String runId = System.getProperty("log.runId", runs.get(runs.size() - 1));
+      path = Logger.getMarkingTimelinePath(path, runId);
+    }
+    MarkingTimeline timeline = read(path);
+
+    if (args.length >= 2) {
+      System.out.println(format(timeline.markingAfter(Long.parseLong(args[1]))));
+      return;
+    }
+    PrintStream out = new PrintStream(new BufferedOutputStream(System.out), false);
+    timeline.forEachFiring(
+        (marking, transition) ->
+            out.printf("Transition fired: {T%d} Marking: {%s}%n", transition, format(marking)));
+    out.flush();
+  }
+
+  private static String format(int[] marking) {
+    return IntStream.of(marking).mapToObj(String::valueOf).collect(Collectors.joining(", "));
+  }
+}
@@ -0,0 +1,70 @@
+package analysis;
+
+/** Outcome of replaying a transition trace against a Petri net. */
+public class ReplayResult {
+  private final boolean valid;
+  private final int firings;
+  private final int failedIndex;
+  private final String reason;
+
+  /**
+   * Constructor for the ReplayResult.
+   *
+   * @param valid true if every firing was enabled and every place invariant held.
+   * @param firings Number of firings replayed successfully.
+   * @param failedIndex Index of the first invalid firing, or -1 if the trace is valid.
+   * @param reason Description of the failure, or null if the trace is valid.
+   */
+  public ReplayResult(boolean valid, int firings, int failedIndex, String reason) {
+    this.valid = valid;
+    this.firings = firings;
+    this.failedIndex = failedIndex;
+    this.reason = reason;
+  }
+
+  /**
+   * Creates the result of a trace that replayed completely.
+   *
+   * @param firings Number of firings in the trace.
+   * @return A valid result.
+   */
+  public static ReplayResult valid(int firings) {
+    return new ReplayResult(true, firings, -1, null);
+  }
+
+  /**
+   * Creates the result of a trace that failed at the given firing.
+   *
+   * @param failedIndex Index of the invalid firing.
+   * @param reason Description of the failure.
+   * @return An invalid result.
+   */
+  public static ReplayResult invalid(int failedIndex, String reason) {
+    return new ReplayResult(false, failedIndex, failedIndex, reason);
+  }
+
+  @Override
+  public String toString() {
+    return valid
+        ? "Valid trace with " + firings + " firings"
+        : "Invalid firing at index " + failedIndex + ": " + reason;
+  }
+
+  /* Getters */
+
+  public boolean isValid() {
+    return valid;
+  }
+
+  public int getFirings() {
+    return firings;
+  }
+
+  public int getFailedIndex() {
+    return failedIndex;
+  }
+
+  public String getReason() {
+    return reason;
+  }
+}
@@ -0,0 +1,428 @@
+package analysis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import petrinet.PetriNet;
+import petrinet.PetriNetConf;
+import utils.Logger;
+import utils.SegmentedLog;
+
+/**
+ * Replays a transition trace against the structure of a Petri net, with no monitor, threads or
+ * timing. Every firing is checked to be enabled and every place invariant to hold, in a tight loop
+ * over a sparse copy of the incidence matrices.
+ *
+ * <p>The marking after any prefix of a trace only depends on how many times each transition fired
+ * in it (M = M0 + C * counts), so markings at arbitrary indices, and at chunk boundaries for
+ * parallel verification, are obtained by counting instead of replaying.
+ */
+public class TraceReplayer {
+  private static final String DEFAULT_TRACE_PATH = "/tmp/transitionsSequence.txt";
+
+  private final int[] initialMarking;
+  private final int placesLength;
+  private final int transitionsLength;
+  private final int[][] inputPlaces;
+  private final int[][] inputWeights;
+
+  /** Places whose marking changes with each transition, and by how much. */
+  private final int[][] changedPlaces;
+
+  private final int[][] changeDeltas;
+
+  /** Place invariants (weights only) and their expected sums. */
+  private final int[][] invariantWeights;
+
+  private final int[] invariantSums;
+
+  /** Change of each invariant's weighted sum when each transition fires. */
+  private final int[][] invariantDeltas;
+
+  /**
+   * Builds a replayer from a Petri net in its initial state. The net itself is not modified.
+   *
+   * @param petriNet Fresh Petri net whose marking is the initial marking of the traces.
+   */
+  public TraceReplayer(PetriNet petriNet) {
+    int[][] incidenceMatrixIn = petriNet.getIncidenceMatrixIn();
+    int[][] incidenceMatrixOut = petriNet.getIncidenceMatrixOut();
+    this.initialMarking = petriNet.getMarking().clone();
+    this.placesLength = petriNet.getPlacesLength();
+    this.transitionsLength = petriNet.getNumberOfTransitions();
+
+    this.inputPlaces = new int[transitionsLength][];
+    this.inputWeights = new int[transitionsLength][];
+    this.changedPlaces = new int[transitionsLength][];
+    this.changeDeltas = new int[transitionsLength][];
+    for (int t = 0; t < transitionsLength; t++) {
+      int transition = t;
+      inputPlaces[t] =
+          IntStream.range(0, placesLength)
+              .filter(p -> incidenceMatrixIn[p][transition] > 0)
+              .toArray();
+      inputWeights[t] =
+          Arrays.stream(inputPlaces[t]).map(p -> incidenceMatrixIn[p][transition]).toArray();
+      changedPlaces[t] =
+          IntStream.range(0, placesLength)
+              .filter(p -> incidenceMatrixOut[p][transition] != incidenceMatrixIn[p][transition])
+              .toArray();
+      changeDeltas[t] =
+          Arrays.stream(changedPlaces[t])
+              .map(p -> incidenceMatrixOut[p][transition] - incidenceMatrixIn[p][transition])
+              .toArray();
+    }
+
+    int[][] placesInvariants = petriNet.getPlacesInvariants();
+    this.invariantWeights = new int[placesInvariants.length][];
+    this.invariantSums = new int[placesInvariants.length];
+    this.invariantDeltas = new int[transitionsLength][placesInvariants.length];
+    for (int row = 0; row < placesInvariants.length; row++) {
+      invariantWeights[row] = Arrays.copyOf(placesInvariants[row], placesLength);
+      invariantSums[row] = placesInvariants[row][placesLength];
+      for (int t = 0; t < transitionsLength; t++) {
+        for (int i = 0; i < changedPlaces[t].length; i++) {
+          int place = changedPlaces[t][i];
+          invariantDeltas[t][row] += invariantWeights[row][place] * changeDeltas[t][i];
+        }
+      }
+    }
+  }
+
+  /**
+   * Replays a whole trace from the initial marking.
+   *
+   * @param trace Indices of the fired transitions, in order.
+   * @return The result of the replay.
+   */
+  public ReplayResult verify(int[] trace) {
+    return verify(trace, 0, trace.length, initialMarking);
+  }
+
+  /**
+   * Replays a range of a trace starting from the given marking.
+   *
+   * @param trace Indices of the fired transitions, in order.
+   * @param from Index of the first firing to replay.
+   * @param to Index after the last firing to replay.
+   * @param startMarking Marking before the firing at {@code from}. Not modified.
+   * @return The result of the replay, with indices relative to the whole trace.
+   */
+  public ReplayResult verify(int[] trace, int from, int to, int[] startMarking) {
+    int[] marking = startMarking.clone();
+    int[] sums = computeInvariantSums(marking);
+    for (int row = 0; row < sums.length; row++) {
+      if (sums[row] != invariantSums[row]) {
+        return ReplayResult.invalid(from, "place invariant " + row + " does not hold");
+      }
+    }
+
+    for (int i = from; i < to; i++) {
+      int t = trace[i];
+      if (t < 0 || t >= transitionsLength) {
+        return ReplayResult.invalid(i, "invalid transition index " + t);
+      }
+
+      int[] places = inputPlaces[t];
+      int[] weights = inputWeights[t];
+      for (int j = 0; j < places.length; j++) {
+        if (marking[places[j]] < weights[j]) {
+          return ReplayResult.invalid(i, "T" + t + " is not enabled");
+        }
+      }
+
+      int[] changed = changedPlaces[t];
+      int[] deltas = changeDeltas[t];
+      for (int j = 0; j < changed.length; j++) {
+        marking[changed[j]] += deltas[j];
+      }
+
+      int[] rowDeltas = invariantDeltas[t];
+      for (int row = 0; row < sums.length; row++) {
+        sums[row] += rowDeltas[row];
+        if (sums[row] != invariantSums[row]) {
+          return ReplayResult.invalid(i, "place invariant " + row + " fails after T" + t);
+        }
+      }
+    }
+    return ReplayResult.valid(to - from);
+  }
+
+  /**
+   * Verifies a trace in parallel chunks. The marking at each chunk boundary is computed from the
+   * transition counts of the preceding chunks, which are themselves counted in parallel.
+   *
+   * @param trace Indices of the fired transitions, in order.
+   * @param chunks Number of chunks to split the trace into.
+   * @return The result of the replay; if several chunks fail, the earliest failure is reported.
+   */
+  public ReplayResult verifyParallel(int[] trace, int chunks) {
+    int chunkCount = Math.max(1, Math.min(chunks, trace.length));
+    int[] bounds = new int[chunkCount + 1];
+    for (int c = 0; c <= chunkCount; c++) {
+      bounds[c] = (int) ((long) trace.length * c / chunkCount);
+    }
+
+    // Count the firings of each chunk in parallel
+    int[][] counts =
+        IntStream.range(0, chunkCount)
+            .parallel()
+            .mapToObj(c -> countFirings(trace, bounds[c], bounds[c + 1]))
+            .toArray(int[][]::new);
+
+    // Accumulate them into the marking at each chunk boundary. A negative marking means some
+    // firing in that chunk was not enabled, so later chunks need not be verified
+    int[][] startMarkings = new int[chunkCount][];
+    int[] marking = initialMarking.clone();
+    int chunksToVerify = chunkCount;
+    for (int c = 0; c < chunkCount; c++) {
+      startMarkings[c] = marking.clone();
+      applyCounts(marking, counts[c]);
+      if (!isNonNegative(marking)) {
+        chunksToVerify = c + 1;
+        break;
+      }
+    }
+
+    return IntStream.range(0, chunksToVerify)
+        .parallel()
+        .mapToObj(c -> verify(trace, bounds[c], bounds[c + 1], startMarkings[c]))
+        .filter(result -> !result.isValid())
+        .findFirst()
+        .orElse(ReplayResult.valid(trace.length));
+  }
+
+  /**
+   * Reconstructs the marking after the first {@code index} firings of a trace.
+   *
+   * @param trace Indices of the fired transitions, in order.
+   * @param index Number of firings to apply, between 0 and the trace length.
+   * @return The marking reached.
+   */
+  public int[] markingAt(int[] trace, int index) {
+    if (index < 0 || index > trace.length) {
+      throw new IllegalArgumentException("Invalid firing index: " + index);
+    }
+    int[] marking = initialMarking.clone();
+    applyCounts(marking, countFirings(trace, 0, index));
+    return marking;
+  }
+
+  /**
+   * Counts how many times each transition fires in a range of a trace.
+   *
+   * @param trace Indices of the fired transitions, in order.
+   * @param from Index of the first firing to count.
+   * @param to Index after the last firing to count.
+   * @return Number of firings of each transition.
+   */
+  private int[] countFirings(int[] trace, int from, int to) {
+    int[] counts = new int[transitionsLength];
+    for (int i = from; i < to; i++) {
+      int t = trace[i];
+      if (t >= 0 && t < transitionsLength) {
+        counts[t]++;
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * Adds the effect of the given number of firings of each transition to a marking.
+   *
+   * @param marking Marking to update in place.
+   * @param counts Number of firings of each transition.
+   */
+  private void applyCounts(int[] marking, int[] counts) {
+    for (int t = 0; t < transitionsLength; t++) {
+      for (int j = 0; j < changedPlaces[t].length; j++) {
+        marking[changedPlaces[t][j]] += counts[t] * changeDeltas[t][j];
+      }
+    }
+  }
+
+  /**
+   * Computes the weighted sum of every place invariant for a marking.
+   *
+   * @param marking Marking to evaluate.
+   * @return Weighted sum of each invariant.
+   */
+  private int[] computeInvariantSums(int[] marking) {
+    int[] sums = new int[invariantWeights.length];
+    for (int row = 0; row < invariantWeights.length; row++) {
+      for (int p = 0; p < placesLength; p++) {
+        sums[row] += invariantWeights[row][p] * marking[p];
+      }
+    }
+    return sums;
+  }
+
+  /**
+   * Checks that no place has negative tokens.
+   *
+   * @param marking Marking to check.
+   * @return true if every place has zero or more tokens.
+   */
+  private static boolean isNonNegative(int[] marking) {
+    for (int tokens : marking) {
+      if (tokens < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Parses a text trace as written by the logger, e.g. {@code "T0T1T2T5"}. Whitespace and other
+   * separators between transitions are ignored.
+   *
+   * @param in Stream with the text trace.
+   * @return Indices of the fired transitions, in order.
+   * @throws IOException if reading fails.
+   */
+  public static int[] readTextTrace(InputStream in) throws IOException {
+    byte[] content = in.readAllBytes();
+    int[] trace = new int[16];
+    int length = 0;
+    int i = 0;
+    while (i < content.length) {
+      if (content[i] != 'T') {
+        i++;
+        continue;
+      }
+      i++;
+      int value = 0;
+      int digits = 0;
+      while (i < content.length && content[i] >= '0' && content[i] <= '9') {
+        value = value * 10 + (content[i] - '0');
+        digits++;
+        i++;
+      }
+      if (digits == 0) {
+        throw new IOException("Transition without index at byte " + (i - 1));
+      }
+      if (length == trace.length) {
+        trace = Arrays.copyOf(trace, length * 2);
+      }
+      trace[length++] = value;
+    }
+    return Arrays.copyOf(trace, length);
+  }
+
+  /**
+   * Reads a binary trace: one unsigned LEB128 varint per firing, until the end of the stream.
+   *
+   * @param in Stream with the binary trace.
+   * @return Indices of the fired transitions, in order.
+   * @throws IOException if reading fails or the last varint is truncated.
+   */
+  public static int[] readBinaryTrace(InputStream in) throws IOException {
+    InputStream buffered = new BufferedInputStream(in);
+    int[] trace = new int[16];
+    int length = 0;
+    int b;
+    while ((b = buffered.read()) != -1) {
+      int value = b & 0x7F;
+      int shift = 7;
+      while ((b & 0x80) != 0) {
+        b = buffered.read();
+        if (b == -1) {
+          throw new EOFException("Truncated varint in binary trace");
+        }
+        value |= (b & 0x7F) << shift;
+        shift += 7;
+      }
+      if (length == trace.length) {
+        trace = Arrays.copyOf(trace, length * 2);
+      }
+      trace[length++] = value;
+    }
+    return Arrays.copyOf(trace, length);
+  }
+
+  /**
+   * Writes a binary trace readable by {@link #readBinaryTrace(InputStream)}.
+   *
+   * @param trace Indices of the fired transitions, in order.
+   * @param out Stream to write to. Flushed but not closed.
+   * @throws IOException if writing fails.
+   */
+  public static void writeBinaryTrace(int[] trace, OutputStream out) throws IOException {
+    OutputStream buffered = new BufferedOutputStream(out);
+    for (int t : trace) {
+      int value = t;
+      while ((value & ~0x7F) != 0) {
+        buffered.write((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      buffered.write(value);
+    }
+    buffered.flush();
+  }
+
+  /**
+   * Replays a trace file against the agency net and prints the result and replay speed.
+   *
+   * @param args Optional path of the trace (text, binary if it ends in ".bin", or a directory of
+   *     segmented logs) and number of parallel chunks.
+   * @throws IOException if the trace cannot be read.
+   */
+  public static void main(String[] args) throws IOException {
+    Path path = Path.of(args.length >= 1 ? args[0] : DEFAULT_TRACE_PATH);
+    int chunks = args.length >= 2 ? Integer.parseInt(args[1]) : 1;
+
+    int[] trace;
+    if (Files.isDirectory(path)) {
+      // Segmented logs: replay the last run, or the one given with -Dlog.runId
+      List<String> runs = SegmentedLog.listRuns(path, Logger.TRANSITIONS_LOG_NAME);
+      if (runs.isEmpty()) {
+        throw new IOException("No logged runs in " + path);
+      }
+      String runId = System.getProperty("log.runId", runs.get(runs.size() - 1));
+      try (InputStream in = SegmentedLog.openRun(path, Logger.TRANSITIONS_LOG_NAME, runId)) {
+        trace = readTextTrace(in);
+      }
+    } else {
+      try (InputStream in = Files.newInputStream(path)) {
+        trace = path.toString().endsWith(".bin") ? readBinaryTrace(in) : readTextTrace(in);
+      }
+    }
+
+    PetriNetConf conf = new PetriNetConf();
+    PetriNet petriNet =
+        new PetriNet(
+            conf.getTransitions(),
+            conf.getPlaces(),
+            conf.getIncidenceMatrixOut(),
+            conf.getIncidenceMatrixIn(),
+            conf.getPlacesInvariants(),
+            conf.getInitialMarking(),
+            conf.getTargetInvariants(),
+            conf.getTimeTransitions());
+    TraceReplayer replayer = new TraceReplayer(petriNet);
+
+    long start = System.nanoTime();
+    ReplayResult result =
+        chunks > 1 ? replayer.verifyParallel(trace, chunks) : replayer.verify(trace);
+    long elapsed = Math.max(1, System.nanoTime() - start);
+
+    System.out.println(result);
+    System.out.printf(
+        "Replayed %d firings in %.3f ms (%.1f M firings/s)%n",
+        trace.length, elapsed / 1e6, trace.length * 1e3 / elapsed);
+    if (!result.isValid()) {
+      System.out.println(
+          "Marking before the failure: "
+              + Arrays.toString(replayer.markingAt(trace, result.getFailedIndex())));
+      System.exit(1);
+    }
+  }
+}
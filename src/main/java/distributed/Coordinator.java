@@ -0,0 +1,515 @@
+package distributed;
+
+import analysis.ReplayResult;
+import analysis.TraceReplayer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import petrinet.NetComposition;
+import petrinet.NetDefinition;
+import petrinet.NetGenerator;
+import petrinet.PetriNetConf;
+import utils.Logger;
+
+/**
+ * Runs a net split by a {@link NetPartition} on one {@link NetNode} per partition, connected to
+ * this coordinator over loopback sockets. The coordinator is a single thread on a {@link Selector}:
+ * it sends each node the net, starts them together, forwards the tokens of boundary places to the
+ * node that owns them, adds up the completions each node reports and tells every node to stop once
+ * they reach the target. Each node then sends its trace, and the traces are merged by their
+ * Lamport timestamps into one firing sequence of the whole net.
+ *
+ * <p>Nodes only talk to the coordinator, so a token crosses two connections on its way; in exchange
+ * each node keeps a single connection and the coordinator regroups tokens from every node into one
+ * frame per destination.
+ */
+public class Coordinator {
+  private static final String HOST = "127.0.0.1";
+  private static final long SELECT_TIMEOUT_MS = 100;
+
+  /** How nodes are started. */
+  public enum Launcher {
+    /** Each node in its own JVM, started from the classpath of this one. */
+    PROCESSES,
+    /** Each node on a thread of this JVM, still connected through sockets. */
+    THREADS
+  }
+
+  private final NetPartition partition;
+  private final int targetInvariants;
+  private final byte[] netBytes;
+  private long timeoutMillis = TimeUnit.MINUTES.toMillis(5);
+
+  private final List<Connection> connections = new ArrayList<>();
+  private Connection[] nodes;
+  private int[] nodeCompletions;
+  private long[][] traceTimestamps;
+  private int[][] traceTransitions;
+  private int readyNodes;
+  private int tracedNodes;
+  private long startNanos;
+  private long elapsedNanos;
+  private boolean stopping;
+  private long tokenFrames;
+  private long tokenRecords;
+
+  /**
+   * Constructor for the Coordinator.
+   *
+   * @param partition Partition of the net to run.
+   * @param targetInvariants Invariants of the whole net after which the nodes are stopped.
+   * @throws IllegalArgumentException if the target is not positive.
+   */
+  public Coordinator(NetPartition partition, int targetInvariants) {
+    if (targetInvariants < 1) {
+      throw new IllegalArgumentException("Invalid invariants target: " + targetInvariants);
+    }
+    this.partition = partition;
+    this.targetInvariants = targetInvariants;
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try {
+      partition.getNet().writeTo(bytes);
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot serialize the net", e);
+    }
+    this.netBytes = bytes.toByteArray();
+  }
+
+  /**
+   * Sets how long a run may take before it is abandoned.
+   *
+   * @param timeoutMillis Timeout in milliseconds.
+   */
+  public void setTimeout(long timeoutMillis) {
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * Starts the nodes and runs the net until the target is reached.
+   *
+   * @param launcher How to start the nodes.
+   * @return The merged trace and the statistics of the run.
+   * @throws IOException if a node fails, breaks the protocol or the run times out.
+   * @throws InterruptedException if the thread is interrupted while waiting for the nodes.
+   */
+  public DistributedResult run(Launcher launcher) throws IOException, InterruptedException {
+    int partitions = partition.getPartitions();
+    nodes = new Connection[partitions];
+    nodeCompletions = new int[partitions];
+    traceTimestamps = new long[partitions][];
+    traceTransitions = new int[partitions][];
+    readyNodes = 0;
+    tracedNodes = 0;
+    stopping = false;
+    tokenFrames = 0;
+    tokenRecords = 0;
+
+    List<Process> processes = new ArrayList<>();
+    List<Thread> threads = new ArrayList<>();
+    List<Throwable> failures = new ArrayList<>();
+    try (Selector selector = Selector.open();
+        ServerSocketChannel server = ServerSocketChannel.open()) {
+      server.bind(new InetSocketAddress(InetAddress.getByName(HOST), 0));
+      server.configureBlocking(false);
+      server.register(selector, SelectionKey.OP_ACCEPT);
+      int port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+
+      for (int i = 0; i < partitions; i++) {
+        if (launcher == Launcher.PROCESSES) {
+          processes.add(startProcess(port, i));
+        } else {
+          threads.add(startThread(port, i, failures));
+        }
+      }
+
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+      while (tracedNodes < partitions) {
+        selector.select(SELECT_TIMEOUT_MS);
+        for (SelectionKey key : selector.selectedKeys()) {
+          if (key.isAcceptable()) {
+            accept(server, selector);
+          } else {
+            Connection connection = (Connection) key.attachment();
+            if (key.isReadable()) {
+              connection.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+              connection.flush();
+            }
+          }
+        }
+        selector.selectedKeys().clear();
+        checkNodes(processes, failures);
+        if (System.nanoTime() > deadline) {
+          throw new IOException("Distributed run timed out after " + timeoutMillis + " ms");
+        }
+      }
+    } finally {
+      for (Connection connection : connections) {
+        connection.channel.close();
+      }
+      connections.clear();
+      for (Process process : processes) {
+        if (!process.waitFor(5, TimeUnit.SECONDS)) {
+          process.destroyForcibly();
+        }
+      }
+      for (Thread thread : threads) {
+        thread.join(TimeUnit.SECONDS.toMillis(5));
+      }
+    }
+
+    int completions = 0;
+    for (int count : nodeCompletions) {
+      completions += count;
+    }
+    return new DistributedResult(
+        partitions, mergeTraces(), completions, elapsedNanos, tokenFrames, tokenRecords);
+  }
+
+  /**
+   * Handles a whole frame received from a node.
+   *
+   * @param connection Connection of the node.
+   * @param frame Frame, positioned at the type byte.
+   * @throws IOException if the frame breaks the protocol.
+   */
+  private void handle(Connection connection, ByteBuffer frame) throws IOException {
+    byte type = frame.get();
+    switch (type) {
+      case Protocol.HELLO -> {
+        int index = frame.getInt();
+        if (index < 0 || index >= nodes.length || nodes[index] != null) {
+          throw new IOException("Unexpected node " + index);
+        }
+        connection.partition = index;
+        nodes[index] = connection;
+        connection.send(setupFrame());
+      }
+      case Protocol.READY -> {
+        if (++readyNodes == nodes.length) {
+          startNanos = System.nanoTime();
+          broadcast(Protocol.START);
+        }
+      }
+      case Protocol.TOKENS -> forwardTokens(frame);
+      case Protocol.PROGRESS -> {
+        nodeCompletions[connection.partition] = frame.getInt();
+        int completions = 0;
+        for (int count : nodeCompletions) {
+          completions += count;
+        }
+        if (!stopping && completions >= targetInvariants) {
+          stopping = true;
+          elapsedNanos = System.nanoTime() - startNanos;
+          broadcast(Protocol.STOP);
+        }
+      }
+      case Protocol.TRACE -> {
+        int records = frame.getInt();
+        long[] timestamps = new long[records];
+        int[] transitions = new int[records];
+        for (int i = 0; i < records; i++) {
+          timestamps[i] = frame.getLong();
+          transitions[i] = frame.getInt();
+        }
+        traceTimestamps[connection.partition] = timestamps;
+        traceTransitions[connection.partition] = transitions;
+        tracedNodes++;
+      }
+      default -> throw new IOException("Unexpected frame type: " + type);
+    }
+  }
+
+  /**
+   * Regroups the token records of a frame by the node that owns each place and forwards them, one
+   * frame per node. Tokens sent after the stop are dropped, since no node fires any more.
+   *
+   * @param frame Token frame, positioned at the record count.
+   */
+  private void forwardTokens(ByteBuffer frame) {
+    if (stopping) {
+      return;
+    }
+    int records = frame.getInt();
+    ByteBuffer[] batches = new ByteBuffer[nodes.length];
+    int[] counts = new int[nodes.length];
+    int recordsStart = frame.position();
+    for (int i = 0; i < records; i++) {
+      int place = frame.getInt(recordsStart + i * Protocol.TOKEN_RECORD);
+      counts[partition.getPartitionOfPlace(place)]++;
+    }
+    for (int node = 0; node < nodes.length; node++) {
+      if (counts[node] > 0) {
+        batches[node] =
+            Protocol.newFrame(Protocol.TOKENS, 4 + counts[node] * Protocol.TOKEN_RECORD)
+                .putInt(counts[node]);
+      }
+    }
+    for (int i = 0; i < records; i++) {
+      int place = frame.getInt();
+      batches[partition.getPartitionOfPlace(place)]
+          .putInt(place)
+          .putInt(frame.getInt())
+          .putLong(frame.getLong());
+    }
+    for (int node = 0; node < nodes.length; node++) {
+      if (batches[node] != null) {
+        nodes[node].send(batches[node].flip());
+        tokenFrames++;
+      }
+    }
+    tokenRecords += records;
+  }
+
+  /**
+   * Builds the setup frame: the serialized net and the partition of each transition.
+   *
+   * @return The frame, ready to be written.
+   */
+  private ByteBuffer setupFrame() {
+    int[] assignment = partition.getPartitionOfTransitions();
+    ByteBuffer frame =
+        Protocol.newFrame(Protocol.SETUP, 8 + netBytes.length + 4 * assignment.length);
+    frame.putInt(netBytes.length).put(netBytes).putInt(assignment.length);
+    for (int node : assignment) {
+      frame.putInt(node);
+    }
+    return frame.flip();
+  }
+
+  private void broadcast(byte type) {
+    for (Connection node : nodes) {
+      node.send(Protocol.newFrame(type, 0).flip());
+    }
+  }
+
+  /**
+   * Merges the traces of the nodes by timestamp. Firings with the same timestamp happened on
+   * different nodes without depending on each other, so they are taken in node order.
+   *
+   * @return Transitions of the net, in an order consistent with every token exchange.
+   */
+  private int[] mergeTraces() {
+    int length = 0;
+    for (int[] transitions : traceTransitions) {
+      length += transitions.length;
+    }
+    int[] merged = new int[length];
+    int[] positions = new int[traceTransitions.length];
+    for (int i = 0; i < length; i++) {
+      int next = -1;
+      for (int node = 0; node < traceTransitions.length; node++) {
+        if (positions[node] < traceTransitions[node].length
+            && (next < 0
+                || traceTimestamps[node][positions[node]]
+                    < traceTimestamps[next][positions[next]])) {
+          next = node;
+        }
+      }
+      merged[i] = traceTransitions[next][positions[next]++];
+    }
+    return merged;
+  }
+
+  private void accept(ServerSocketChannel server, Selector selector) throws IOException {
+    SocketChannel channel = server.accept();
+    if (channel == null) {
+      return;
+    }
+    channel.configureBlocking(false);
+    channel.socket().setTcpNoDelay(true);
+    Connection connection = new Connection(channel);
+    connections.add(connection);
+    connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+  }
+
+  /**
+   * Fails the run if a node died before sending its trace.
+   *
+   * @param processes Node processes, if any.
+   * @param failures Failures of node threads, if any.
+   * @throws IOException if a node failed.
+   */
+  private void checkNodes(List<Process> processes, List<Throwable> failures) throws IOException {
+    for (int i = 0; i < processes.size(); i++) {
+      Process process = processes.get(i);
+      if (!process.isAlive() && process.exitValue() != 0) {
+        throw new IOException("Node " + i + " exited with code " + process.exitValue());
+      }
+    }
+    synchronized (failures) {
+      if (!failures.isEmpty()) {
+        throw new IOException("Node failed: " + failures.get(0).getMessage(), failures.get(0));
+      }
+    }
+  }
+
+  private Process startProcess(int port, int index) throws IOException {
+    String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+    return new ProcessBuilder(
+            java,
+            "-cp",
+            System.getProperty("java.class.path"),
+            NetNode.class.getName(),
+            HOST,
+            String.valueOf(port),
+            String.valueOf(index))
+        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+        .redirectError(ProcessBuilder.Redirect.INHERIT)
+        .start();
+  }
+
+  private Thread startThread(int port, int index, List<Throwable> failures) {
+    Thread thread =
+        new Thread(
+            () -> {
+              try {
+                new NetNode(HOST, port, index).run();
+              } catch (Exception e) {
+                synchronized (failures) {
+                  failures.add(e);
+                }
+              }
+            },
+            "node-" + index);
+    thread.start();
+    return thread;
+  }
+
+  /** Non-blocking connection to a node, with the frames still to be read and written. */
+  private class Connection {
+    private final SocketChannel channel;
+    private final ArrayDeque<ByteBuffer> output = new ArrayDeque<>();
+    private ByteBuffer input = ByteBuffer.allocate(1 << 16);
+    private SelectionKey key;
+    private int partition = -1;
+
+    Connection(SocketChannel channel) {
+      this.channel = channel;
+    }
+
+    /**
+     * Reads what the node sent and handles every whole frame.
+     *
+     * @throws IOException if the node closed the connection early or broke the protocol.
+     */
+    void read() throws IOException {
+      if (channel.read(input) < 0) {
+        key.cancel();
+        channel.close();
+        if (partition < 0 || traceTransitions[partition] == null) {
+          throw new IOException("Node " + partition + " closed the connection");
+        }
+        return;
+      }
+      input.flip();
+      while (input.remaining() >= 4) {
+        int frameLength = input.getInt(input.position());
+        if (frameLength < 1 || frameLength > Protocol.MAX_FRAME) {
+          throw new IOException("Invalid frame length: " + frameLength);
+        }
+        if (input.remaining() < 4 + frameLength) {
+          if (input.capacity() < 4 + frameLength) {
+            input = ByteBuffer.allocate(4 + frameLength).put(input);
+            return;
+          }
+          break;
+        }
+        int frameEnd = input.position() + 4 + frameLength;
+        ByteBuffer frame = input.slice(input.position() + 4, frameLength);
+        input.position(frameEnd);
+        handle(this, frame);
+      }
+      input.compact();
+    }
+
+    /**
+     * Queues a frame and writes as much as the socket takes without blocking.
+     *
+     * @param frame Frame, ready to be written.
+     */
+    void send(ByteBuffer frame) {
+      output.add(frame);
+      try {
+        flush();
+      } catch (IOException e) {
+        // The node is gone; the coordinator notices when reading from it
+        output.clear();
+      }
+    }
+
+    /**
+     * Writes queued frames until the socket would block, and asks to be told when it can write
+     * again if frames are left.
+     *
+     * @throws IOException if the socket cannot be written.
+     */
+    void flush() throws IOException {
+      while (!output.isEmpty()) {
+        ByteBuffer frame = output.peek();
+        channel.write(frame);
+        if (frame.hasRemaining()) {
+          key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+          return;
+        }
+        output.poll();
+      }
+      key.interestOps(SelectionKey.OP_READ);
+    }
+  }
+
+  /**
+   * Runs a net on a growing number of node processes and prints the throughput of each run. The
+   * run on a single node is the single-process baseline: the whole net on one monitor, with no
+   * tokens crossing processes. Every merged trace is replayed on the whole net, checking that each
+   * firing was enabled and every place invariant held, as for the trace of a single process.
+   *
+   * @param args Family of the net ("pipeline" of the given stages, or "agency" with the given
+   *     offices), its size, the invariants target, and the numbers of nodes to try.
+   * @throws Exception if a run fails.
+   */
+  public static void main(String[] args) throws Exception {
+    String family = args.length >= 1 ? args[0] : "pipeline";
+    int size = args.length >= 2 ? Integer.parseInt(args[1]) : 240;
+    int target = args.length >= 3 ? Integer.parseInt(args[2]) : 2000;
+    int[] nodeCounts =
+        args.length >= 4
+            ? Arrays.stream(args, 3, args.length).mapToInt(Integer::parseInt).toArray()
+            : new int[] {1, 2, 4};
+
+    Logger.getLogger().setEnabled(false);
+    NetDefinition net =
+        switch (family) {
+          case "pipeline" -> NetGenerator.pipeline(size, Math.max(1, size / 2));
+          case "agency" ->
+              new NetComposition(NetDefinition.of(new PetriNetConf()), size)
+                  .createDefinition()
+                  .withoutAlphas();
+          default -> throw new IllegalArgumentException("Unknown net family: " + family);
+        };
+    System.out.printf("%s, target %d invariants%n", net.getName(), target);
+
+    for (int nodes : nodeCounts) {
+      NetPartition partition = NetPartition.contiguous(net, nodes);
+      DistributedResult result = new Coordinator(partition, target).run(Launcher.PROCESSES);
+      ReplayResult replay = new TraceReplayer(net.createPetriNet()).verify(result.getTrace());
+      System.out.println(result + ", replay: " + replay);
+      if (!replay.isValid()) {
+        System.exit(1);
+      }
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package distributed;
+
+/** Result of a distributed run of a net. */
+public class DistributedResult {
+  private final int partitions;
+  private final int[] trace;
+  private final int completions;
+  private final long elapsedNanos;
+  private final long tokenFrames;
+  private final long tokenRecords;
+
+  /**
+   * Constructor for the DistributedResult.
+   *
+   * @param partitions Number of nodes that ran the net.
+   * @param trace Firings of every node merged into one sequence, as transitions of the net.
+   * @param completions Invariants completed when the nodes were told to stop.
+   * @param elapsedNanos Time from the start of the nodes until they were told to stop.
+   * @param tokenFrames Token frames forwarded between nodes.
+   * @param tokenRecords Token records carried by those frames.
+   */
+  public DistributedResult(
+      int partitions,
+      int[] trace,
+      int completions,
+      long elapsedNanos,
+      long tokenFrames,
+      long tokenRecords) {
+    this.partitions = partitions;
+    this.trace = trace;
+    this.completions = completions;
+    this.elapsedNanos = elapsedNanos;
+    this.tokenFrames = tokenFrames;
+    this.tokenRecords = tokenRecords;
+  }
+
+  /**
+   * Returns the number of firings per second, counting every firing in the trace.
+   *
+   * @return Firings per second.
+   */
+  public double getThroughput() {
+    return trace.length * 1e9 / Math.max(1, elapsedNanos);
+  }
+
+  /**
+   * Returns the average number of token records per frame, which shows how much batching saves.
+   *
+   * @return Records per frame, or 0 if no tokens crossed partitions.
+   */
+  public double getRecordsPerFrame() {
+    return tokenFrames == 0 ? 0 : (double) tokenRecords / tokenFrames;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%d node(s): %d firings, %d invariants in %.3f s (%.0f firings/s, %.1f tokens per frame)",
+        partitions,
+        trace.length,
+        completions,
+        elapsedNanos / 1e9,
+        getThroughput(),
+        getRecordsPerFrame());
+  }
+
+  public int getPartitions() {
+    return partitions;
+  }
+
+  public int[] getTrace() {
+    return trace;
+  }
+
+  public int getCompletions() {
+    return completions;
+  }
+
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  public long getTokenFrames() {
+    return tokenFrames;
+  }
+
+  public long getTokenRecords() {
+    return tokenRecords;
+  }
+}
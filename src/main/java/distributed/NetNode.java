@@ -0,0 +1,366 @@
+package distributed;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import monitor.Monitor;
+import petrinet.FiringEvent;
+import petrinet.FiringEventPublisher;
+import petrinet.NetDefinition;
+import petrinet.PetriNet;
+import petrinet.Segments;
+import policy.FCFSPolicy;
+import utils.Logger;
+
+/**
+ * Runs one partition of a distributed net: a {@link Monitor} over its subnet, one thread per local
+ * sequence, and the exchange of boundary tokens with the coordinator.
+ *
+ * <p>Firings are observed through the firing events of the subnet, which are delivered in firing
+ * order. Each firing gets a Lamport timestamp, is added to the local trace and queues the tokens it
+ * puts in places of other partitions. Tokens received from other partitions push the clock past
+ * their timestamp before they are added to the net, so a firing that consumed them always gets a
+ * larger timestamp than the firing that produced them. Merging the traces of every node by
+ * timestamp thus gives a firing sequence of the whole net.
+ */
+public class NetNode {
+  private static final int EVENT_BUFFER_SIZE = 4096;
+
+  /** Longest time the sender waits for tokens before reporting progress again. */
+  private static final long SEND_INTERVAL_MS = 1;
+
+  private static final long JOIN_TIMEOUT_MS = 10_000;
+
+  private final String host;
+  private final int port;
+  private final int partitionIndex;
+
+  private final AtomicLong clock = new AtomicLong();
+  private final AtomicInteger completions = new AtomicInteger();
+  private final CountDownLatch eventsCompleted = new CountDownLatch(1);
+
+  /** Guards the outbox, its number of records and the stopped flag. */
+  private final Object outboxLock = new Object();
+
+  /** Token records waiting to be sent. The sender swaps it with the spare one to send it. */
+  private ByteBuffer outbox = ByteBuffer.allocate(64 * Protocol.TOKEN_RECORD);
+
+  private ByteBuffer spareOutbox = ByteBuffer.allocate(64 * Protocol.TOKEN_RECORD);
+  private int outboxRecords = 0;
+  private boolean stopped = false;
+
+  /** Local trace, written only by the event subscriber. */
+  private long[] traceTimestamps = new long[1024];
+
+  private int[] traceTransitions = new int[1024];
+  private int traceLength = 0;
+
+  private volatile Throwable failure = null;
+
+  private SocketChannel channel;
+  private NetPartition partition;
+  private NetDefinition subnet;
+  private PetriNet petriNet;
+  private Monitor monitor;
+
+  /** Transitions of the net that local transitions stand for, and which complete an invariant. */
+  private int[] globalTransitions;
+
+  private boolean[] completionTransitions;
+
+  /** Places of other partitions each local transition puts tokens in, and how many. */
+  private int[][] remotePlaces;
+
+  private int[][] remoteWeights;
+
+  /**
+   * Constructor for the NetNode.
+   *
+   * @param host Host of the coordinator.
+   * @param port Port of the coordinator.
+   * @param partitionIndex Partition this node runs.
+   */
+  public NetNode(String host, int port, int partitionIndex) {
+    this.host = host;
+    this.port = port;
+    this.partitionIndex = partitionIndex;
+  }
+
+  /**
+   * Connects to the coordinator, runs the partition until told to stop and sends back its trace.
+   *
+   * @throws IOException if the connection fails or the coordinator breaks the protocol.
+   * @throws InterruptedException if the thread is interrupted while running.
+   */
+  public void run() throws IOException, InterruptedException {
+    try (SocketChannel socket = SocketChannel.open(new InetSocketAddress(host, port))) {
+      channel = socket;
+      channel.socket().setTcpNoDelay(true);
+      ByteBuffer hello = Protocol.newFrame(Protocol.HELLO, 4).putInt(partitionIndex);
+      Protocol.write(channel, hello);
+
+      setUp(expect(Protocol.SETUP));
+      Thread[] threads = createThreads();
+      Protocol.write(channel, Protocol.newFrame(Protocol.READY, 0));
+      expect(Protocol.START);
+
+      Thread sender = new Thread(this::sendTokens, "node-" + partitionIndex + "-sender");
+      sender.start();
+      for (Thread thread : threads) {
+        thread.start();
+      }
+
+      receiveTokens();
+
+      // Stop firing, so the events end with the last firing, and flush what is left
+      monitor.finish();
+      for (Thread thread : threads) {
+        thread.join(JOIN_TIMEOUT_MS);
+      }
+      eventsCompleted.await();
+      synchronized (outboxLock) {
+        stopped = true;
+        outboxLock.notifyAll();
+      }
+      sender.join();
+      if (failure != null) {
+        throw new IOException("Firings were lost: " + failure.getMessage(), failure);
+      }
+      sendTrace();
+    }
+  }
+
+  /**
+   * Builds the subnet from the setup frame and subscribes to its firings.
+   *
+   * @param setup Setup frame, positioned at the payload.
+   * @throws IOException if the frame does not hold a valid net and partition.
+   */
+  private void setUp(ByteBuffer setup) throws IOException {
+    byte[] netBytes = new byte[setup.getInt()];
+    setup.get(netBytes);
+    NetDefinition net = NetDefinition.readFrom(new ByteArrayInputStream(netBytes));
+    int[] assignment = new int[setup.getInt()];
+    for (int t = 0; t < assignment.length; t++) {
+      assignment[t] = setup.getInt();
+    }
+    try {
+      partition = new NetPartition(net, assignment);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Invalid partition: " + e.getMessage(), e);
+    }
+
+    subnet = partition.getSubnet(partitionIndex);
+    petriNet = subnet.createPetriNet();
+    monitor = Monitor.newMonitor(petriNet, new FCFSPolicy());
+
+    int transitionsLength = subnet.getTransitionsLength();
+    globalTransitions = new int[transitionsLength];
+    remotePlaces = new int[transitionsLength][];
+    remoteWeights = new int[transitionsLength][];
+    for (int t = 0; t < transitionsLength; t++) {
+      globalTransitions[t] = partition.getTransition(partitionIndex, t);
+      remotePlaces[t] = partition.getRemotePlaces(globalTransitions[t]);
+      remoteWeights[t] = partition.getRemoteWeights(globalTransitions[t]);
+    }
+    completionTransitions = new boolean[transitionsLength];
+    for (int t : subnet.getCompletionTransitions()) {
+      completionTransitions[t] = true;
+    }
+    petriNet
+        .getFiringEvents()
+        .subscribe(
+            new FiringRecorder(), EVENT_BUFFER_SIZE, FiringEventPublisher.Backpressure.BLOCK);
+  }
+
+  /**
+   * Creates one thread per sequence of the subnet, named after the node so the nodes can be told
+   * apart when they run in the same JVM.
+   *
+   * @return The threads, not started.
+   */
+  private Thread[] createThreads() {
+    Thread[] threads = new Thread[subnet.getNumberOfSequences()];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] =
+          new Thread(
+              new Segments(subnet.getTransitionSequence(i), monitor, petriNet),
+              "node-" + partitionIndex + "-segment-" + i);
+    }
+    return threads;
+  }
+
+  /**
+   * Adds the tokens received from other partitions to the net until the coordinator says stop.
+   *
+   * @throws IOException if the coordinator breaks the protocol or closes the connection.
+   * @throws InterruptedException if the thread is interrupted while waiting for the monitor.
+   */
+  private void receiveTokens() throws IOException, InterruptedException {
+    while (true) {
+      ByteBuffer frame = Protocol.read(channel);
+      byte type = frame.get();
+      if (type == Protocol.STOP) {
+        return;
+      }
+      if (type != Protocol.TOKENS) {
+        throw new IOException("Unexpected frame type: " + type);
+      }
+      int records = frame.getInt();
+      int[] places = new int[records];
+      int[] tokens = new int[records];
+      long latest = 0;
+      for (int i = 0; i < records; i++) {
+        places[i] = partition.getLocalPlace(frame.getInt());
+        tokens[i] = frame.getInt();
+        latest = Math.max(latest, frame.getLong());
+      }
+      // The clock must pass the tokens before any firing can consume them
+      clock.accumulateAndGet(latest, Math::max);
+      monitor.addTokens(places, tokens);
+    }
+  }
+
+  /**
+   * Sends the queued tokens in batches, and the completions whenever they change, until the node
+   * stops and the queue is empty.
+   */
+  private void sendTokens() {
+    int reported = 0;
+    try {
+      while (true) {
+        ByteBuffer batch;
+        int records;
+        boolean last;
+        synchronized (outboxLock) {
+          if (outboxRecords == 0 && !stopped) {
+            outboxLock.wait(SEND_INTERVAL_MS);
+          }
+          batch = outbox;
+          records = outboxRecords;
+          last = stopped;
+          outbox = spareOutbox;
+          outboxRecords = 0;
+          spareOutbox = batch;
+        }
+        if (records > 0) {
+          ByteBuffer header =
+              Protocol.newFrame(Protocol.TOKENS, 4 + batch.position()).putInt(records);
+          Protocol.write(channel, header, batch);
+          batch.clear();
+        }
+        int done = completions.get();
+        if (done != reported) {
+          Protocol.write(channel, Protocol.newFrame(Protocol.PROGRESS, 4).putInt(done));
+          reported = done;
+        }
+        if (last && records == 0) {
+          return;
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Lost connection to the coordinator: " + e.getMessage(), e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Sends the local trace to the coordinator.
+   *
+   * @throws IOException if the channel cannot be written.
+   */
+  private void sendTrace() throws IOException {
+    ByteBuffer trace =
+        Protocol.newFrame(Protocol.TRACE, 4 + traceLength * Protocol.TRACE_RECORD)
+            .putInt(traceLength);
+    for (int i = 0; i < traceLength; i++) {
+      trace.putLong(traceTimestamps[i]).putInt(traceTransitions[i]);
+    }
+    Protocol.write(channel, trace);
+  }
+
+  /**
+   * Reads the next frame and checks its type.
+   *
+   * @param type Expected type.
+   * @return The frame, positioned at the payload.
+   * @throws IOException if the frame has another type.
+   */
+  private ByteBuffer expect(byte type) throws IOException {
+    ByteBuffer frame = Protocol.read(channel);
+    byte actual = frame.get();
+    if (actual != type) {
+      throw new IOException("Expected frame type " + type + " but got " + actual);
+    }
+    return frame;
+  }
+
+  /** Timestamps each firing, records it and queues the tokens it sends to other partitions. */
+  private class FiringRecorder implements Flow.Subscriber<FiringEvent> {
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(FiringEvent event) {
+      int localTransition = event.getTransitionIndex();
+      long timestamp = clock.incrementAndGet();
+      if (traceLength == traceTimestamps.length) {
+        traceTimestamps = Arrays.copyOf(traceTimestamps, 2 * traceLength);
+        traceTransitions = Arrays.copyOf(traceTransitions, 2 * traceLength);
+      }
+      traceTimestamps[traceLength] = timestamp;
+      traceTransitions[traceLength++] = globalTransitions[localTransition];
+      if (completionTransitions[localTransition]) {
+        completions.incrementAndGet();
+      }
+
+      int[] places = remotePlaces[localTransition];
+      if (places.length == 0) {
+        return;
+      }
+      int[] weights = remoteWeights[localTransition];
+      synchronized (outboxLock) {
+        for (int i = 0; i < places.length; i++) {
+          if (outbox.remaining() < Protocol.TOKEN_RECORD) {
+            outbox = ByteBuffer.allocate(2 * outbox.capacity()).put(outbox.flip());
+          }
+          outbox.putInt(places[i]).putInt(weights[i]).putLong(timestamp);
+          outboxRecords++;
+        }
+        outboxLock.notifyAll();
+      }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      failure = throwable;
+      eventsCompleted.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+      eventsCompleted.countDown();
+    }
+  }
+
+  /**
+   * Runs a node in its own process.
+   *
+   * @param args Host and port of the coordinator, and the partition to run.
+   * @throws Exception if the node fails.
+   */
+  public static void main(String[] args) throws Exception {
+    Logger.getLogger().setEnabled(false);
+    new NetNode(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2])).run();
+  }
+}
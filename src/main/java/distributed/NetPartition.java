@@ -0,0 +1,294 @@
+package distributed;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import petrinet.NetDefinition;
+
+/**
+ * Splits a net into subnets, one per process, by assigning each transition to a partition. Each
+ * place is owned by the partition of the transitions that consume it, so every transition only
+ * reads places of its own subnet and a firing never waits for another process. Output arcs to
+ * places of other partitions become boundary arcs: their tokens are sent to the owner of the place
+ * instead of being added locally.
+ *
+ * <p>Subnets are open nets: tokens leave and arrive through the boundary, so they have no place
+ * invariants, which are checked on the whole net by replaying the merged trace instead. Each thread
+ * sequence of the net is split into the transitions each partition runs, keeping their order.
+ * Subnets have no invariants target; the coordinator stops them once the completions of all of
+ * them reach the target of the net.
+ */
+public class NetPartition {
+  private final NetDefinition net;
+  private final int partitions;
+  private final int[] partitionOfTransition;
+  private final int[] partitionOfPlace;
+
+  /** Index of each place and transition of the net within the subnet of its partition. */
+  private final int[] localPlace;
+
+  private final int[] localTransition;
+
+  /** Places and transitions of the net in each subnet, indexed [partition][local index]. */
+  private final int[][] placesOfPartition;
+
+  private final int[][] transitionsOfPartition;
+
+  /**
+   * Places of other partitions where each transition puts tokens, and how many, indexed
+   * [transition][arc].
+   */
+  private final int[][] remotePlaces;
+
+  private final int[][] remoteWeights;
+
+  /**
+   * Constructor for the NetPartition.
+   *
+   * @param net Net to split.
+   * @param partitionOfTransition Partition of each transition of the net, from 0 on.
+   * @throws IllegalArgumentException if the assignment does not cover the transitions, leaves a
+   *     partition empty or a place is consumed by transitions of different partitions.
+   */
+  public NetPartition(NetDefinition net, int[] partitionOfTransition) {
+    int transitionsLength = net.getTransitionsLength();
+    if (partitionOfTransition.length != transitionsLength) {
+      throw new IllegalArgumentException(
+          "Partition must assign each of the " + transitionsLength + " transitions");
+    }
+    int partitionsLength = 0;
+    for (int partition : partitionOfTransition) {
+      if (partition < 0) {
+        throw new IllegalArgumentException("Invalid partition: " + partition);
+      }
+      partitionsLength = Math.max(partitionsLength, partition + 1);
+    }
+    this.net = net;
+    this.partitions = partitionsLength;
+    this.partitionOfTransition = partitionOfTransition.clone();
+
+    int[][] in = net.getIncidenceMatrixIn();
+    int[][] out = net.getIncidenceMatrixOut();
+    int placesLength = net.getPlacesLength();
+    this.partitionOfPlace = new int[placesLength];
+    for (int p = 0; p < placesLength; p++) {
+      int owner = -1;
+      int producer = -1;
+      for (int t = 0; t < transitionsLength; t++) {
+        if (in[p][t] > 0) {
+          if (owner >= 0 && owner != partitionOfTransition[t]) {
+            throw new IllegalArgumentException(
+                "Place P"
+                    + p
+                    + " is consumed by partitions "
+                    + owner
+                    + " and "
+                    + partitionOfTransition[t]);
+          }
+          owner = partitionOfTransition[t];
+        } else if (out[p][t] > 0 && producer < 0) {
+          producer = partitionOfTransition[t];
+        }
+      }
+      // Places nobody consumes stay with their first producer
+      partitionOfPlace[p] = owner >= 0 ? owner : Math.max(0, producer);
+    }
+
+    this.localPlace = new int[placesLength];
+    this.localTransition = new int[transitionsLength];
+    this.placesOfPartition = group(partitionOfPlace, localPlace);
+    this.transitionsOfPartition = group(partitionOfTransition, localTransition);
+    for (int partition = 0; partition < partitions; partition++) {
+      if (transitionsOfPartition[partition].length == 0) {
+        throw new IllegalArgumentException("Partition " + partition + " has no transitions");
+      }
+    }
+
+    this.remotePlaces = new int[transitionsLength][];
+    this.remoteWeights = new int[transitionsLength][];
+    for (int t = 0; t < transitionsLength; t++) {
+      int transition = t;
+      remotePlaces[t] =
+          IntStream.range(0, placesLength)
+              .filter(p -> out[p][transition] > 0)
+              .filter(p -> partitionOfPlace[p] != partitionOfTransition[transition])
+              .toArray();
+      remoteWeights[t] = Arrays.stream(remotePlaces[t]).map(p -> out[p][transition]).toArray();
+    }
+  }
+
+  /**
+   * Splits a net into partitions of consecutive transitions of about the same size. Composed nets
+   * number the transitions copy by copy, so splitting them into a number of partitions that
+   * divides the copies keeps each copy in a single partition.
+   *
+   * @param net Net to split.
+   * @param partitions Number of partitions.
+   * @return The partition of the net.
+   * @throws IllegalArgumentException if there are more partitions than transitions or a place is
+   *     consumed across partitions.
+   */
+  public static NetPartition contiguous(NetDefinition net, int partitions) {
+    int transitionsLength = net.getTransitionsLength();
+    if (partitions < 1 || partitions > transitionsLength) {
+      throw new IllegalArgumentException("Invalid number of partitions: " + partitions);
+    }
+    int[] assignment = new int[transitionsLength];
+    for (int t = 0; t < transitionsLength; t++) {
+      assignment[t] = (int) ((long) t * partitions / transitionsLength);
+    }
+    return new NetPartition(net, assignment);
+  }
+
+  /**
+   * Builds the subnet run by a partition: its places and transitions, with the arcs to places of
+   * other partitions removed.
+   *
+   * @param partition Index of the partition.
+   * @return The definition of the subnet, in local indexes.
+   */
+  public NetDefinition getSubnet(int partition) {
+    validatePartition(partition);
+    int[] places = placesOfPartition[partition];
+    int[] transitions = transitionsOfPartition[partition];
+    int[][] netOut = net.getIncidenceMatrixOut();
+    int[][] netIn = net.getIncidenceMatrixIn();
+    int[] netMarking = net.getInitialMarking();
+    long[] netAlphas = net.getTimeTransitions();
+
+    int[][] out = new int[places.length][transitions.length];
+    int[][] in = new int[places.length][transitions.length];
+    int[] marking = new int[places.length];
+    for (int lp = 0; lp < places.length; lp++) {
+      marking[lp] = netMarking[places[lp]];
+      for (int lt = 0; lt < transitions.length; lt++) {
+        out[lp][lt] = netOut[places[lp]][transitions[lt]];
+        in[lp][lt] = netIn[places[lp]][transitions[lt]];
+      }
+    }
+    long[] alphas = new long[transitions.length];
+    for (int lt = 0; lt < transitions.length; lt++) {
+      alphas[lt] = netAlphas[transitions[lt]];
+    }
+
+    List<int[]> sequences = new ArrayList<>();
+    for (int[] sequence : net.getSequences()) {
+      int[] local =
+          Arrays.stream(sequence)
+              .filter(t -> partitionOfTransition[t] == partition)
+              .map(t -> localTransition[t])
+              .toArray();
+      if (local.length > 0) {
+        sequences.add(local);
+      }
+    }
+    int[] completion =
+        Arrays.stream(net.getCompletionTransitions())
+            .filter(t -> partitionOfTransition[t] == partition)
+            .map(t -> localTransition[t])
+            .toArray();
+
+    return new NetDefinition(
+        net.getName() + "#" + partition,
+        out,
+        in,
+        marking,
+        new int[0][],
+        alphas,
+        sequences.toArray(int[][]::new),
+        completion,
+        Integer.MAX_VALUE);
+  }
+
+  public NetDefinition getNet() {
+    return net;
+  }
+
+  public int getPartitions() {
+    return partitions;
+  }
+
+  public int[] getPartitionOfTransitions() {
+    return partitionOfTransition.clone();
+  }
+
+  public int getPartitionOfPlace(int place) {
+    return partitionOfPlace[place];
+  }
+
+  /**
+   * Returns the index of a place of the net within the subnet of its partition.
+   *
+   * @param place Place of the net.
+   * @return Index of the place in its subnet.
+   */
+  public int getLocalPlace(int place) {
+    return localPlace[place];
+  }
+
+  /**
+   * Returns the transition of the net that a transition of a subnet stands for.
+   *
+   * @param partition Index of the partition.
+   * @param localTransition Index of the transition in the subnet.
+   * @return Index of the transition in the net.
+   */
+  public int getTransition(int partition, int localTransition) {
+    return transitionsOfPartition[partition][localTransition];
+  }
+
+  /**
+   * Returns the places of other partitions where a transition puts tokens.
+   *
+   * @param transition Transition of the net.
+   * @return Places of the net, parallel to {@link #getRemoteWeights(int)}.
+   */
+  public int[] getRemotePlaces(int transition) {
+    return remotePlaces[transition].clone();
+  }
+
+  /**
+   * Returns how many tokens a transition puts in each of its places in other partitions.
+   *
+   * @param transition Transition of the net.
+   * @return Tokens, parallel to {@link #getRemotePlaces(int)}.
+   */
+  public int[] getRemoteWeights(int transition) {
+    return remoteWeights[transition].clone();
+  }
+
+  /**
+   * Gives each element its index among the elements of the same partition, in order.
+   *
+   * @param partitionOf Partition of each element.
+   * @param localIndex Filled with the index of each element within its partition.
+   * @return Elements of each partition, indexed [partition][local index].
+   */
+  private int[][] group(int[] partitionOf, int[] localIndex) {
+    int[] sizes = new int[partitions];
+    for (int i = 0; i < partitionOf.length; i++) {
+      localIndex[i] = sizes[partitionOf[i]]++;
+    }
+    int[][] groups = new int[partitions][];
+    for (int partition = 0; partition < partitions; partition++) {
+      groups[partition] = new int[sizes[partition]];
+    }
+    for (int i = 0; i < partitionOf.length; i++) {
+      groups[partitionOf[i]][localIndex[i]] = i;
+    }
+    return groups;
+  }
+
+  /**
+   * Validates the index of a partition.
+   *
+   * @param partition Index of the partition.
+   * @throws IllegalArgumentException if the index is invalid.
+   */
+  private void validatePartition(int partition) {
+    if (partition < 0 || partition >= partitions) {
+      throw new IllegalArgumentException("Invalid partition: " + partition);
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package distributed;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Frames exchanged between the coordinator and the nodes of a distributed run. Each frame is the
+ * length of the rest of the frame, a type byte and the payload, all big-endian. Token frames carry
+ * every token a node produced since its last frame, so a busy node sends few large frames.
+ */
+final class Protocol {
+  /** Node to coordinator: the partition the node runs (int). */
+  static final byte HELLO = 1;
+
+  /** Coordinator to node: the serialized net and the partition of each transition. */
+  static final byte SETUP = 2;
+
+  /** Node to coordinator: the subnet is built and its threads are about to start. */
+  static final byte READY = 3;
+
+  /** Coordinator to node: start firing. */
+  static final byte START = 4;
+
+  /** Either way: a count and (place, tokens, Lamport timestamp) records for boundary places. */
+  static final byte TOKENS = 5;
+
+  /** Node to coordinator: invariants completed by the node so far (int). */
+  static final byte PROGRESS = 6;
+
+  /** Coordinator to node: the target is reached, stop firing and send the trace. */
+  static final byte STOP = 7;
+
+  /** Node to coordinator: a count and (Lamport timestamp, transition of the net) records. */
+  static final byte TRACE = 8;
+
+  /** Size of a token record: place, tokens and timestamp. */
+  static final int TOKEN_RECORD = 16;
+
+  /** Size of a trace record: timestamp and transition. */
+  static final int TRACE_RECORD = 12;
+
+  /** Largest frame accepted, to fail fast on a corrupt stream. */
+  static final int MAX_FRAME = 1 << 28;
+
+  private Protocol() {}
+
+  /**
+   * Allocates a frame with its header written, ready for the payload to be put.
+   *
+   * @param type Type of the frame.
+   * @param payloadLength Length of the payload in bytes.
+   * @return The frame, positioned at the start of the payload.
+   */
+  static ByteBuffer newFrame(byte type, int payloadLength) {
+    ByteBuffer frame = ByteBuffer.allocate(5 + payloadLength);
+    frame.putInt(1 + payloadLength);
+    frame.put(type);
+    return frame;
+  }
+
+  /**
+   * Writes whole frames to a blocking channel.
+   *
+   * @param channel Channel to write to.
+   * @param buffers Frame, or header and payload of a frame, filled up to their position.
+   * @throws IOException if the channel cannot be written.
+   */
+  static void write(SocketChannel channel, ByteBuffer... buffers) throws IOException {
+    long remaining = 0;
+    for (ByteBuffer buffer : buffers) {
+      buffer.flip();
+      remaining += buffer.remaining();
+    }
+    while (remaining > 0) {
+      remaining -= channel.write(buffers);
+    }
+  }
+
+  /**
+   * Reads the next frame from a blocking channel.
+   *
+   * @param channel Channel to read from.
+   * @return The frame without its length, positioned at the type byte.
+   * @throws IOException if the channel cannot be read, is closed or the frame is invalid.
+   */
+  static ByteBuffer read(SocketChannel channel) throws IOException {
+    ByteBuffer length = ByteBuffer.allocate(4);
+    readFully(channel, length);
+    int frameLength = length.flip().getInt();
+    if (frameLength < 1 || frameLength > MAX_FRAME) {
+      throw new IOException("Invalid frame length: " + frameLength);
+    }
+    ByteBuffer frame = ByteBuffer.allocate(frameLength);
+    readFully(channel, frame);
+    return frame.flip();
+  }
+
+  private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        throw new EOFException("Connection closed");
+      }
+    }
+  }
+}
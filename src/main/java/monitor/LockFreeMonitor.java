@@ -0,0 +1,305 @@
+package monitor;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+import petrinet.FiringEventPublisher;
+import petrinet.LockFreeFiringEngine;
+import petrinet.PetriNet;
+import policy.Policy;
+import utils.Logger;
+
+/**
+ * Monitor that fires transitions optimistically over a {@link LockFreeFiringEngine}. There is no
+ * mutex: an enabled transition fires with a compare-and-swap on the packed marking, and a thread
+ * only blocks in its transition queue when the transition is genuinely disabled.
+ *
+ * <p>Firings are logged right after their CAS succeeds, so two concurrent firings may appear in
+ * the transitions log in a different order than they took effect. Timers are refreshed from the
+ * marking observed after each firing, so they approximate the instant a transition got enabled.
+ */
+public class LockFreeMonitor implements MonitorInterface {
+  private static Logger logger = Logger.getLogger();
+  private final PetriNet petriNet;
+  private final Policy policy;
+  private final LockFreeFiringEngine engine;
+  private final Semaphore[] transitionsQueue;
+
+  /**
+   * Threads that announced they will wait on each transition queue and were not woken yet. A
+   * thread that finds the transition enabled again after announcing withdraws its announcement.
+   */
+  private final AtomicIntegerArray waitingCount;
+
+  /** Timestamp when each transition was observed to become enabled, or Long.MAX_VALUE. */
+  private final AtomicLongArray enabledSince;
+
+  /** Transitions with an input place that each transition touches, so its firing may enable. */
+  private final int[][] affectedByFiring;
+
+  /** Transitions with an input place among the inputs of each transition, for its rollbacks. */
+  private final int[][] affectedByRollback;
+
+  /** Entry [i][j] is true if transitions i and j share an input place. */
+  private final boolean[][] conflicts;
+
+  /**
+   * Constructor for the LockFreeMonitor.
+   *
+   * @param petriNet the PetriNet instance to control. Its marking is packed by the engine.
+   * @param policy the Policy to use when choosing which waiting transition to wake up.
+   */
+  public LockFreeMonitor(PetriNet petriNet, Policy policy) {
+    this.petriNet = petriNet;
+    this.policy = policy;
+    this.engine = new LockFreeFiringEngine(petriNet, this::afterRollback);
+
+    int numberOfTransitions = petriNet.getNumberOfTransitions();
+    this.transitionsQueue = new Semaphore[numberOfTransitions];
+    for (int i = 0; i < numberOfTransitions; i++) {
+      transitionsQueue[i] = new Semaphore(0, true);
+    }
+    this.waitingCount = new AtomicIntegerArray(numberOfTransitions);
+    this.enabledSince = new AtomicLongArray(numberOfTransitions);
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < numberOfTransitions; i++) {
+      enabledSince.set(i, engine.isEnabled(i) ? now : Long.MAX_VALUE);
+    }
+
+    int[][] incidenceMatrixIn = petriNet.getIncidenceMatrixIn();
+    int[][] incidenceMatrixOut = petriNet.getIncidenceMatrixOut();
+    this.affectedByFiring = new int[numberOfTransitions][];
+    this.affectedByRollback = new int[numberOfTransitions][];
+    this.conflicts = new boolean[numberOfTransitions][];
+    for (int t = 0; t < numberOfTransitions; t++) {
+      boolean[] inputs = new boolean[incidenceMatrixIn.length];
+      boolean[] touched = new boolean[incidenceMatrixIn.length];
+      for (int p = 0; p < inputs.length; p++) {
+        inputs[p] = incidenceMatrixIn[p][t] > 0;
+        touched[p] = inputs[p] || incidenceMatrixOut[p][t] > 0;
+      }
+      affectedByFiring[t] = getTransitionsReading(incidenceMatrixIn, touched);
+      affectedByRollback[t] = getTransitionsReading(incidenceMatrixIn, inputs);
+      conflicts[t] = new boolean[numberOfTransitions];
+      for (int u : affectedByRollback[t]) {
+        conflicts[t][u] = u != t;
+      }
+    }
+
+    logger.info("Lock-free monitor using " + engine.getWordCount() + " marking word(s)");
+  }
+
+  /**
+   * Attempts to fire a transition in the Petri Net without taking any lock. Blocks only while the
+   * transition is disabled, and sleeps while its alpha window has not elapsed.
+   *
+   * @param transitionIndex Index of the transition to fire.
+   * @return true if transition fired successfully, false otherwise.
+   */
+  @Override
+  public boolean fireTransition(int transitionIndex) {
+    try {
+      while (true) {
+        if (petriNet.petriNetHasFinished()) {
+          return true;
+        }
+
+        long waitTime = getRemainingWaitTime(transitionIndex);
+        if (waitTime > 0) {
+          logger.info("Transition " + transitionIndex + " waiting for " + waitTime + " ms");
+          Thread.sleep(waitTime);
+          continue;
+        }
+
+        if (engine.tryFire(transitionIndex)) {
+          afterFiring(transitionIndex);
+          return true;
+        }
+
+        // Announce the wait and check again, so a concurrent firing either sees the waiter or
+        // this thread sees the tokens it produced
+        waitingCount.incrementAndGet(transitionIndex);
+        if (engine.isEnabled(transitionIndex) || petriNet.petriNetHasFinished()) {
+          // Withdraw the announcement; if a firing already took it, take the permit it released
+          if (!decrementIfPositive(transitionIndex)) {
+            transitionsQueue[transitionIndex].acquire();
+          }
+          continue;
+        }
+        logger.info("Transition " + transitionIndex + " could not be executed.");
+        transitionsQueue[transitionIndex].acquire();
+        if (petriNet.petriNetHasFinished()) {
+          // Pass the release on so every thread waiting on this queue can finish
+          transitionsQueue[transitionIndex].release();
+          return true;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logger.error("Thread interrupted while firing transition: " + transitionIndex);
+    }
+    return false;
+  }
+
+  @Override
+  public FiringEventPublisher getFiringEvents() {
+    return petriNet.getFiringEvents();
+  }
+
+  @Override
+  public int[] getWaiterCounts() {
+    int[] waiterCounts = new int[transitionsQueue.length];
+    for (int i = 0; i < transitionsQueue.length; i++) {
+      waiterCounts[i] = waitingCount.get(i);
+    }
+    return waiterCounts;
+  }
+
+  /**
+   * Returns the marking held by the firing engine; the net's own copy is not updated by lock-free
+   * firings.
+   *
+   * @return A new array with the tokens of each place.
+   */
+  @Override
+  public int[] getMarking() {
+    return engine.getMarking();
+  }
+
+  @Override
+  public boolean[] getEnabledTransitions() {
+    boolean[] enabled = new boolean[transitionsQueue.length];
+    for (int i = 0; i < enabled.length; i++) {
+      enabled[i] = engine.isEnabled(i);
+    }
+    return enabled;
+  }
+
+  /**
+   * Gets the remaining wait time of a transition from the time it was observed enabled. Starting
+   * the window is a single compare-and-set, so it is safe from any thread.
+   *
+   * @param transitionIndex Index of the transition.
+   * @return Remaining wait time in milliseconds, 0 if no wait is needed.
+   */
+  @Override
+  public long getRemainingWaitTime(int transitionIndex) {
+    long alpha = petriNet.getAlpha(transitionIndex);
+    if (alpha == 0 || !engine.isEnabled(transitionIndex)) {
+      return 0;
+    }
+    enabledSince.compareAndSet(transitionIndex, Long.MAX_VALUE, System.currentTimeMillis());
+    return Math.max(0, alpha - (System.currentTimeMillis() - enabledSince.get(transitionIndex)));
+  }
+
+  /**
+   * Records a successful firing and wakes up the transitions it may have enabled.
+   *
+   * @param transitionIndex Index of the transition that fired.
+   */
+  private void afterFiring(int transitionIndex) {
+    petriNet.recordFiring(transitionIndex, engine::getMarking);
+    policy.transitionFired(transitionIndex);
+
+    if (petriNet.petriNetHasFinished()) {
+      int[] marking = engine.getMarking();
+      System.arraycopy(marking, 0, petriNet.getMarking(), 0, marking.length);
+      for (Semaphore queue : transitionsQueue) {
+        queue.release();
+      }
+      return;
+    }
+    wakeUp(affectedByFiring[transitionIndex]);
+  }
+
+  /**
+   * Wakes up the transitions that an aborted multi-word firing may have left enabled, since
+   * their threads may have found its input tokens in flight and gone to wait.
+   *
+   * @param transitionIndex Index of the transition whose input tokens were given back.
+   */
+  private void afterRollback(int transitionIndex) {
+    if (!petriNet.petriNetHasFinished()) {
+      wakeUp(affectedByRollback[transitionIndex]);
+    }
+  }
+
+  /**
+   * Refreshes the timers of the given transitions and wakes up a waiter of each one that is enabled
+   * and waiting. Among candidates in conflict, the policy chooses which one is woken; the firing of
+   * that one revisits the others, since they share an input place with it.
+   *
+   * @param transitions Transitions whose enabling may have changed.
+   */
+  private void wakeUp(int[] transitions) {
+    long now = System.currentTimeMillis();
+    boolean[] candidates = null;
+    int numberOfCandidates = 0;
+    for (int t : transitions) {
+      if (engine.isEnabled(t)) {
+        enabledSince.compareAndSet(t, Long.MAX_VALUE, now);
+        if (waitingCount.get(t) > 0) {
+          if (candidates == null) {
+            candidates = new boolean[transitionsQueue.length];
+          }
+          candidates[t] = true;
+          numberOfCandidates++;
+        }
+      } else {
+        enabledSince.set(t, Long.MAX_VALUE);
+      }
+    }
+
+    while (numberOfCandidates > 0) {
+      int nextTransition = policy.getNextTransition(candidates);
+      if (nextTransition == -1 || !candidates[nextTransition]) {
+        return;
+      }
+      if (decrementIfPositive(nextTransition)) {
+        transitionsQueue[nextTransition].release();
+      }
+      for (int t = 0; t < candidates.length; t++) {
+        if (candidates[t] && (t == nextTransition || conflicts[nextTransition][t])) {
+          candidates[t] = false;
+          numberOfCandidates--;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the transitions with an arc from any of the given places.
+   *
+   * @param incidenceMatrixIn Input incidence matrix of the Petri net.
+   * @param places Places to look for, indexed by place.
+   * @return Indices of the transitions that consume from one of the places.
+   */
+  private static int[] getTransitionsReading(int[][] incidenceMatrixIn, boolean[] places) {
+    int transitionsLength = incidenceMatrixIn.length == 0 ? 0 : incidenceMatrixIn[0].length;
+    return IntStream.range(0, transitionsLength)
+        .filter(
+            t ->
+                IntStream.range(0, places.length)
+                    .anyMatch(p -> places[p] && incidenceMatrixIn[p][t] > 0))
+        .toArray();
+  }
+
+  /**
+   * Takes one announced waiter of a transition, if there is any.
+   *
+   * @param transitionIndex Index of the transition.
+   * @return true if a waiter was taken and must be released, false otherwise.
+   */
+  private boolean decrementIfPositive(int transitionIndex) {
+    while (true) {
+      int current = waitingCount.get(transitionIndex);
+      if (current == 0) {
+        return false;
+      }
+      if (waitingCount.compareAndSet(transitionIndex, current, current - 1)) {
+        return true;
+      }
+    }
+  }
+}
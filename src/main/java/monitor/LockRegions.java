@@ -0,0 +1,152 @@
+package monitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Partitions the places of a Petri net into lock regions. Two places belong to the same region
+ * when they are input places of a common transition, so the enabledness of every transition
+ * depends on exactly one region. A transition that touches several regions (through its input or
+ * output arcs) must lock all of them, always in ascending region order to avoid deadlocks.
+ */
+public class LockRegions {
+  /** Region index of each place. */
+  private final int[] regionOfPlace;
+
+  /** Sorted, distinct regions touched by each transition (input and output places). */
+  private final int[][] regionsOfTransition;
+
+  /** Region holding the input places of each transition, or -1 if it has no input places. */
+  private final int[] inputRegionOfTransition;
+
+  /** Transitions whose input places belong to each region. */
+  private final int[][] transitionsByInputRegion;
+
+  private final int numberOfRegions;
+
+  /**
+   * Builds the lock regions from the incidence matrices of the net.
+   *
+   * @param incidenceMatrixIn Input incidence matrix (places x transitions).
+   * @param incidenceMatrixOut Output incidence matrix (places x transitions).
+   */
+  public LockRegions(int[][] incidenceMatrixIn, int[][] incidenceMatrixOut) {
+    int placesLength = incidenceMatrixIn.length;
+    int transitionsLength = incidenceMatrixIn[0].length;
+
+    // Union-find over places, merging the input places of each transition
+    int[] parent = new int[placesLength];
+    for (int p = 0; p < placesLength; p++) {
+      parent[p] = p;
+    }
+    for (int t = 0; t < transitionsLength; t++) {
+      int first = -1;
+      for (int p = 0; p < placesLength; p++) {
+        if (incidenceMatrixIn[p][t] > 0) {
+          if (first == -1) {
+            first = p;
+          } else {
+            union(parent, first, p);
+          }
+        }
+      }
+    }
+
+    // Compact the roots into consecutive region indices, ordered by their lowest place
+    this.regionOfPlace = new int[placesLength];
+    int[] regionOfRoot = new int[placesLength];
+    Arrays.fill(regionOfRoot, -1);
+    int regions = 0;
+    for (int p = 0; p < placesLength; p++) {
+      int root = find(parent, p);
+      if (regionOfRoot[root] == -1) {
+        regionOfRoot[root] = regions++;
+      }
+      regionOfPlace[p] = regionOfRoot[root];
+    }
+    this.numberOfRegions = regions;
+
+    this.regionsOfTransition = new int[transitionsLength][];
+    this.inputRegionOfTransition = new int[transitionsLength];
+    List<List<Integer>> byRegion = new ArrayList<>();
+    for (int r = 0; r < numberOfRegions; r++) {
+      byRegion.add(new ArrayList<>());
+    }
+    for (int t = 0; t < transitionsLength; t++) {
+      TreeSet<Integer> touched = new TreeSet<>();
+      inputRegionOfTransition[t] = -1;
+      for (int p = 0; p < placesLength; p++) {
+        if (incidenceMatrixIn[p][t] > 0) {
+          inputRegionOfTransition[t] = regionOfPlace[p];
+          touched.add(regionOfPlace[p]);
+        }
+        if (incidenceMatrixOut[p][t] > 0) {
+          touched.add(regionOfPlace[p]);
+        }
+      }
+      regionsOfTransition[t] = touched.stream().mapToInt(Integer::intValue).toArray();
+      if (inputRegionOfTransition[t] != -1) {
+        byRegion.get(inputRegionOfTransition[t]).add(t);
+      }
+    }
+
+    this.transitionsByInputRegion = new int[numberOfRegions][];
+    for (int r = 0; r < numberOfRegions; r++) {
+      transitionsByInputRegion[r] = byRegion.get(r).stream().mapToInt(Integer::intValue).toArray();
+    }
+  }
+
+  /**
+   * Finds the root of a place in the union-find structure, compressing the path.
+   *
+   * @param parent Parent array of the union-find structure.
+   * @param place Place to look up.
+   * @return The root place of the set containing the given place.
+   */
+  private static int find(int[] parent, int place) {
+    while (parent[place] != place) {
+      parent[place] = parent[parent[place]];
+      place = parent[place];
+    }
+    return place;
+  }
+
+  /**
+   * Merges the sets containing the two given places.
+   *
+   * @param parent Parent array of the union-find structure.
+   * @param a First place.
+   * @param b Second place.
+   */
+  private static void union(int[] parent, int a, int b) {
+    int rootA = find(parent, a);
+    int rootB = find(parent, b);
+    if (rootA != rootB) {
+      parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+    }
+  }
+
+  /* Getters */
+
+  public int getNumberOfRegions() {
+    return numberOfRegions;
+  }
+
+  public int getRegionOfPlace(int placeIndex) {
+    return regionOfPlace[placeIndex];
+  }
+
+  public int[] getRegionsOfTransition(int transitionIndex) {
+    return regionsOfTransition[transitionIndex];
+  }
+
+  public int getInputRegionOfTransition(int transitionIndex) {
+    return inputRegionOfTransition[transitionIndex];
+  }
+
+  public int[] getTransitionsByInputRegion(int regionIndex) {
+    return transitionsByInputRegion[regionIndex];
+  }
+}
@@ -1,6 +1,19 @@
 package monitor;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import petrinet.Checkpoint;
+import petrinet.FiringEventPublisher;
 import petrinet.PetriNet;
 import policy.Policy;
 import utils.Logger;
@@ -10,6 +23,9 @@ import utils.Logger;
  * to ensure only one monitor instance exists.
  */
 public class Monitor implements MonitorInterface {
+  private static final int NOT_FIRED = 0;
+  private static final int FIRED = 1;
+  private static final int FIRED_IN_STEP = 2;
   private static Monitor monitor = null;
   private static Logger logger = Logger.getLogger();
   private final PetriNet petriNet;
@@ -17,6 +33,39 @@ public class Monitor implements MonitorInterface {
   private final Semaphore[] transitionsQueue;
   private final Policy policy;
 
+  /** Pairs of distinct transitions that share at least one input place. */
+  private final boolean[][] conflicts;
+
+  /**
+   * Pending wakeups of each transition queue that hand the mutex over to the woken thread. Every
+   * permit released on a queue is preceded by an increment here or in {@link #stepFirings}, and
+   * each woken thread claims one of them, so threads waiting on the same queue cannot mistake one
+   * kind of wakeup for the other.
+   */
+  private final AtomicIntegerArray handOffs;
+
+  /** Pending wakeups of each transition queue whose firing was already done within a step. */
+  private final AtomicIntegerArray stepFirings;
+
+  /**
+   * Threads that announced they will wait on each transition queue and were not woken yet. A
+   * thread announces itself before releasing the mutex, so a firing that happens before it reaches
+   * the queue still wakes it. Guarded by the mutex.
+   */
+  private final int[] waitingCount;
+
+  /** Asynchronous firing requests of each transition, oldest first. Guarded by the mutex. */
+  private final List<ArrayDeque<FireRequest>> requests;
+
+  /** Transitions with a retry of their requests scheduled for the end of their alpha window. */
+  private final boolean[] retryScheduled;
+
+  /**
+   * Runs the retries of timed requests; created with the first one and shut down when the net
+   * finishes. Guarded by the mutex.
+   */
+  private ScheduledThreadPoolExecutor retryScheduler = null;
+
   /**
    * Private constructor to enforce Singleton pattern.
    *
@@ -31,6 +80,15 @@ public class Monitor implements MonitorInterface {
     for (int i = 0; i < petriNet.getNumberOfTransitions(); i++) {
       transitionsQueue[i] = new Semaphore(0, true);
     }
+    this.conflicts = computeConflicts(petriNet.getIncidenceMatrixIn());
+    this.handOffs = new AtomicIntegerArray(petriNet.getNumberOfTransitions());
+    this.stepFirings = new AtomicIntegerArray(petriNet.getNumberOfTransitions());
+    this.waitingCount = new int[petriNet.getNumberOfTransitions()];
+    this.requests = new ArrayList<>();
+    for (int i = 0; i < petriNet.getNumberOfTransitions(); i++) {
+      requests.add(new ArrayDeque<>());
+    }
+    this.retryScheduled = new boolean[petriNet.getNumberOfTransitions()];
   }
 
   /**
@@ -47,6 +105,18 @@ public class Monitor implements MonitorInterface {
     return monitor;
   }
 
+  /**
+   * Creates a monitor outside the singleton, for benchmarks and stress tests that need a fresh net
+   * on every run.
+   *
+   * @param petriNet the PetriNet instance to associate with the Monitor.
+   * @param policy the Policy instance to associate with the Monitor.
+   * @return A new Monitor.
+   */
+  public static Monitor newMonitor(PetriNet petriNet, Policy policy) {
+    return new Monitor(petriNet, policy);
+  }
+
   /**
    * Attempts to fire a transition in the Petri Net. Handles both immediate and timed transitions
    * with proper synchronization.
@@ -57,64 +127,665 @@ public class Monitor implements MonitorInterface {
   @Override
   public boolean fireTransition(int transitionIndex) {
     try {
-      // If the mutex is not available, waits for it in the mutex's queue
+      int result = enterAndFire(transitionIndex);
+      if (result != FIRED) {
+        // Fired within a step by another thread, which already updated the policy
+        return result == FIRED_IN_STEP;
+      }
+
+      // Update the policy
+      policy.transitionFired(transitionIndex);
+
+      // Exit the monitor with a successful transition firing
+      signalNextOrRelease(transitionIndex);
+      return true;
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logger.error("Thread interrupted while acquiring mutex: " + transitionIndex);
+    }
+    return false; // Transition could not be executed
+  }
+
+  /**
+   * Fires a transition only if it can fire right away: it must be enabled and its alpha window
+   * must have elapsed. Never waits in the transition queue; the mutex is held by others only for
+   * the duration of their firings.
+   *
+   * @param transitionIndex Index of the transition to fire.
+   * @return true if the transition fired, false otherwise.
+   */
+  public boolean tryFire(int transitionIndex) {
+    try {
       mutex.acquire();
-      boolean k = true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logger.error("Thread interrupted while acquiring mutex: " + transitionIndex);
+      return false;
+    }
+    if (!petriNet.isTransitionEnabledByTokens(transitionIndex)
+        || petriNet.getRemainingWaitTime(transitionIndex) > 0
+        || !executeTransition(transitionIndex)) {
+      mutex.release();
+      return false;
+    }
+    policy.transitionFired(transitionIndex);
+    signalNextOrRelease(transitionIndex);
+    return true;
+  }
 
-      while (k) {
-        // Handle timing constraints within the monitor
-        if (!handleTimingConstraints(transitionIndex)) {
-          mutex.release();
-          return false;
+  /**
+   * Fires a transition, waiting at most the given time for it to become enabled and for its alpha
+   * window. The calling thread does not wait in the transition queue, so when the time is up the
+   * request is withdrawn without any thread left to wake.
+   *
+   * @param transitionIndex Index of the transition to fire.
+   * @param timeout Maximum time to wait.
+   * @param unit Unit of the timeout.
+   * @return true if the transition fired, false if the time elapsed, the net finished first or the
+   *     thread was interrupted.
+   */
+  public boolean tryFire(int transitionIndex, long timeout, TimeUnit unit) {
+    FireRequest request = submitRequest(transitionIndex);
+    try {
+      return request.future.get(timeout, unit);
+    } catch (TimeoutException e) {
+      return !request.withdraw() && request.future.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return !request.withdraw() && request.future.join();
+    } catch (ExecutionException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Requests the firing of a transition without waiting for it to fire. The calling thread still
+   * enters the monitor to queue the request, so it blocks while another thread holds the mutex;
+   * callers on a shared pool such as the common pool should expect that. The returned future is
+   * completed with true by the thread that fires the transition, once it has left the monitor,
+   * so its dependent actions run outside the monitor and may fire again. Requests take part in the
+   * policy's choices like waiting threads, and are served before them only when no thread waits on
+   * the same transition. Cancelling the future withdraws the request if it has not fired yet.
+   *
+   * @param transitionIndex Index of the transition to fire.
+   * @return Future completed with true when the transition fires, false if it could not be fired
+   *     or the net finished first, or exceptionally if the thread is interrupted while entering
+   *     the monitor.
+   */
+  public CompletableFuture<Boolean> fireAsync(int transitionIndex) {
+    return submitRequest(transitionIndex).future;
+  }
+
+  @Override
+  public FiringEventPublisher getFiringEvents() {
+    return petriNet.getFiringEvents();
+  }
+
+  @Override
+  public int[] getWaiterCounts() {
+    int[] waiterCounts = new int[transitionsQueue.length];
+    for (int i = 0; i < transitionsQueue.length; i++) {
+      // Read without the mutex, so the counts are only an estimate
+      waiterCounts[i] = waitingCount[i] + requests.get(i).size();
+    }
+    return waiterCounts;
+  }
+
+  @Override
+  public int[] getMarking() {
+    return petriNet.getMarking().clone();
+  }
+
+  @Override
+  public boolean[] getEnabledTransitions() {
+    return petriNet.getEnabledTransitionsInBits();
+  }
+
+  @Override
+  public long getRemainingWaitTime(int transition) {
+    return petriNet.getRemainingWaitTime(transition);
+  }
+
+  @Override
+  public boolean wakeWaiters(long timeout) throws InterruptedException {
+    if (!mutex.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+      return false;
+    }
+    // Hands the mutex over to the chosen waiter, or releases it if none is enabled
+    signalNextOrRelease(-1);
+    return true;
+  }
+
+  /**
+   * Adds tokens to places of the net from outside, such as tokens sent by another part of a
+   * distributed net, and hands the mutex over to a waiting thread they enable, if any. The net must
+   * have no place invariants over those places, as in {@link PetriNet#addTokens(int, int)}.
+   *
+   * @param placeIndexes Places that receive tokens.
+   * @param tokens Number of tokens added to each place.
+   * @throws InterruptedException if the thread is interrupted while waiting for the mutex.
+   * @throws IllegalArgumentException if a place does not exist or its tokens are negative.
+   */
+  public void addTokens(int[] placeIndexes, int[] tokens) throws InterruptedException {
+    mutex.acquire();
+    try {
+      for (int i = 0; i < placeIndexes.length; i++) {
+        petriNet.addTokens(placeIndexes[i], tokens[i]);
+      }
+    } catch (RuntimeException e) {
+      mutex.release();
+      throw e;
+    }
+    signalNextOrRelease(-1);
+  }
+
+  /**
+   * Stops the net before its invariants target is reached and releases every waiting thread and
+   * request, as when the target is reached. Taking the mutex first ensures no firing is in
+   * progress, so the firing events end with the last firing.
+   *
+   * @throws InterruptedException if the thread is interrupted while waiting for the mutex.
+   */
+  public void finish() throws InterruptedException {
+    mutex.acquire();
+    petriNet.finish();
+    signalNextOrRelease(-1);
+  }
+
+  /**
+   * Fires a segment of transitions starting at the given position within a single monitor entry.
+   * The first transition is fired like in {@link #fireTransition(int)}, waiting if needed. The
+   * following ones are fired while still holding the mutex as long as they are enabled, their
+   * alpha window has elapsed and the policy does not prefer a waiting transition in conflict with
+   * them. The mutex is handed over or released only once, after the last firing.
+   *
+   * @param sequence Transitions of the segment, in firing order.
+   * @param from Position of the first transition to fire.
+   * @return Number of transitions fired, 0 if the first one could not be fired.
+   */
+  @Override
+  public int fireSequence(int[] sequence, int from) {
+    try {
+      int result = enterAndFire(sequence[from]);
+      if (result != FIRED) {
+        // A firing done within a step leaves this thread outside the monitor
+        return result == FIRED_IN_STEP ? 1 : 0;
+      }
+      policy.transitionFired(sequence[from]);
+
+      int fired = 1;
+      int lastFired = sequence[from];
+      while (from + fired < sequence.length && canContinueSegment(sequence[from + fired])) {
+        int nextInSegment = sequence[from + fired];
+        if (!executeTransition(nextInSegment)) {
+          break;
         }
+        policy.transitionFired(nextInSegment);
+        lastFired = nextInSegment;
+        fired++;
+      }
+
+      signalNextOrRelease(lastFired);
+      return fired;
 
-        k = executeTransition(transitionIndex);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logger.error("Thread interrupted while acquiring mutex: " + sequence[from]);
+    }
+    return 0;
+  }
+
+  /**
+   * Enters the monitor and fires a transition, waiting in its queue while it is not enabled. While
+   * waiting, the transition may be fired on behalf of this thread as part of a step, in which case
+   * the thread leaves without ever holding the mutex.
+   *
+   * @param transitionIndex Index of the transition to fire.
+   * @return {@link #FIRED} if the transition fired and the caller holds the mutex, {@link
+   *     #FIRED_IN_STEP} if it was fired within a step and the caller does not hold the mutex, or
+   *     {@link #NOT_FIRED} if the thread was interrupted while waiting for its timing constraint,
+   *     with the mutex released.
+   * @throws InterruptedException if the thread is interrupted while waiting for the mutex or in
+   *     the transition queue.
+   */
+  private int enterAndFire(int transitionIndex) throws InterruptedException {
+    // If the mutex is not available, waits for it in the mutex's queue
+    mutex.acquire();
 
-        if (k) {
-          // Update the policy
-          policy.transitionFired(transitionIndex);
+    while (true) {
+      // Handle timing constraints within the monitor
+      if (!handleTimingConstraints(transitionIndex)) {
+        mutex.release();
+        return NOT_FIRED;
+      }
 
-          boolean[] transitionsForPolicyToChooseFrom =
-              bitwiseAnd(petriNet.getEnabledTransitionsInBits(), getWaitingTransitions());
+      if (executeTransition(transitionIndex)) {
+        return FIRED;
+      }
 
-          // If the Petri net has finished, then release the waiting threads
-          if (petriNet.petriNetHasFinished()) {
-            transitionsForPolicyToChooseFrom = getWaitingTransitions();
-          }
+      logger.info("Transition " + transitionIndex + " could not be executed.");
+      // Announce the wait and release the mutex if the transition could not be executed
+      waitingCount[transitionIndex]++;
+      mutex.release();
+      transitionsQueue[transitionIndex].acquire();
+      if (claimWakeup(transitionIndex)) {
+        return FIRED_IN_STEP;
+      }
+    }
+  }
 
-          // If no waiting transitions are enabled, release the mutex and return
-          if (!containsOne(transitionsForPolicyToChooseFrom)) {
-            mutex.release();
-            return true;
-          }
+  /**
+   * Wakes up the enabled and waiting transitions, or releases the mutex if there are none. Must be
+   * called while holding the mutex. The policy chooses the transition that gets the mutex handed
+   * over, as with a single wakeup. The other enabled waiters that are not in conflict with it, nor
+   * with each other, and whose alpha window has elapsed form a step with it: they are fired right
+   * away and their threads released without the mutex, so they run concurrently. The policy only
+   * decides among waiters in conflict.
+   *
+   * <p>The policy only chooses among waiters whose alpha window has elapsed: waking a timed one
+   * earlier would only make its thread release the mutex and sleep, while a ready one stays
+   * queued. The others are left waiting, and the monitor is entered again when their windows
+   * elapse to wake them.
+   *
+   * <p>Asynchronous requests count as waiters. When the policy picks a transition that only has
+   * requests, it is fired here and the choice is repeated. The futures of the fired requests are
+   * completed after the mutex is handed over or released, and those still pending when the net
+   * finishes are completed with false.
+   *
+   * @param transitionIndex Index of the transition that fired last.
+   */
+  private void signalNextOrRelease(int transitionIndex) {
+    List<FireRequest> served = new ArrayList<>();
+    List<FireRequest> unfired = new ArrayList<>();
+    boolean[] deferred = new boolean[transitionsQueue.length];
 
-          /* Since there are transitions enabled and waiting,
-          get the next one to fire based on the current policy */
-          int nextTransition = policy.getNextTransition(transitionsForPolicyToChooseFrom);
-          if (nextTransition != -1) {
-            logger.info("Transition received from policy: " + nextTransition);
-            // Wake up the next transition in the queue
-            logger.info(
-                "Transition " + transitionIndex + " is waking up the transition " + nextTransition);
-            transitionsQueue[nextTransition].release();
+    while (true) {
+      boolean[] blocked = getWaitingTransitions();
+      boolean[] waiting = getRequestedTransitions();
+      for (int i = 0; i < waiting.length; i++) {
+        waiting[i] = (waiting[i] && !deferred[i]) || blocked[i];
+      }
+      boolean[] transitionsForPolicyToChooseFrom =
+          bitwiseAnd(petriNet.getEnabledTransitionsInBits(), waiting);
+
+      // If the Petri net has finished, then release the waiting threads and requests
+      boolean finished = petriNet.petriNetHasFinished();
+      if (finished) {
+        for (int i = 0; i < blocked.length; i++) {
+          for (FireRequest request = pollRequest(i); request != null; request = pollRequest(i)) {
+            unfired.add(request);
           }
+        }
+        transitionsForPolicyToChooseFrom = blocked;
+        stopRetries();
+      }
 
-          // Exit the monitor with a successful transition firing
-          return true;
+      /* Since there are transitions enabled and waiting,
+      get the next one to fire based on the current policy */
+      int nextTransition = -1;
+      if (finished) {
+        nextTransition =
+            containsOne(transitionsForPolicyToChooseFrom)
+                ? policy.getNextTransition(transitionsForPolicyToChooseFrom)
+                : -1;
+      } else if (containsOne(transitionsForPolicyToChooseFrom)) {
+        long[] remainingTimes = getRemainingWaitTimes(transitionsForPolicyToChooseFrom);
+        nextTransition =
+            policy.getNextTransition(transitionsForPolicyToChooseFrom, remainingTimes);
+      }
 
-        } else {
-          logger.info("Transition " + transitionIndex + " could not be executed.");
-          // Release the mutex if the transition could not be executed
-          mutex.release();
-          transitionsQueue[transitionIndex].acquire();
-          k = true;
+      // If no waiting transitions are enabled and ready, release the mutex
+      if (nextTransition == -1) {
+        mutex.release();
+        break;
+      }
+      logger.info("Transition received from policy: " + nextTransition);
+
+      if (blocked[nextTransition]) {
+        if (!finished) {
+          fireStep(nextTransition, transitionsForPolicyToChooseFrom, blocked, served);
         }
+
+        // Wake up the next transition in the queue
+        logger.info(
+            "Transition " + transitionIndex + " is waking up the transition " + nextTransition);
+        waitingCount[nextTransition]--;
+        handOffs.incrementAndGet(nextTransition);
+        transitionsQueue[nextTransition].release();
+        break;
       }
+
+      // Only requests wait on it, so fire it here
+      if (!fireRequested(nextTransition, served)) {
+        deferred[nextTransition] = true;
+      }
+    }
+
+    for (FireRequest request : served) {
+      request.future.complete(true);
+    }
+    for (FireRequest request : unfired) {
+      request.future.complete(false);
+    }
+  }
+
+  /**
+   * Fires, on behalf of their waiting threads or requests, the enabled waiters that can run in a
+   * step with the transition about to get the mutex, and releases those threads. Waiters that have
+   * no conflict left among the candidates join the step directly; the policy picks among the rest
+   * one at a time, discarding the conflicts of each pick.
+   *
+   * @param handOffTransition Transition that will get the mutex handed over.
+   * @param candidates Enabled and waiting transitions; modified by this method.
+   * @param blocked Transitions with threads waiting in their queue.
+   * @param served Requests fired so far, to complete once the mutex is released.
+   */
+  private void fireStep(
+      int handOffTransition, boolean[] candidates, boolean[] blocked, List<FireRequest> served) {
+    discardWithConflicts(candidates, handOffTransition);
+    for (int i = 0; i < candidates.length; i++) {
+      if (candidates[i] && petriNet.getRemainingWaitTime(i) > 0) {
+        candidates[i] = false; // Its thread still has to wait for the alpha window itself
+      }
+    }
+
+    while (containsOne(candidates)) {
+      int stepTransition = firstWithoutConflicts(candidates);
+      if (stepTransition == -1) {
+        stepTransition = policy.getNextTransition(candidates);
+        if (stepTransition == -1) {
+          return;
+        }
+      }
+      discardWithConflicts(candidates, stepTransition);
+
+      if (!blocked[stepTransition]) {
+        fireRequested(stepTransition, served);
+      } else if (executeTransition(stepTransition)) {
+        policy.transitionFired(stepTransition);
+        logger.info("Transition " + stepTransition + " fired in a step with " + handOffTransition);
+        waitingCount[stepTransition]--;
+        stepFirings.incrementAndGet(stepTransition);
+        transitionsQueue[stepTransition].release();
+      }
+    }
+  }
+
+  /**
+   * Enters the monitor to queue a firing request, and serves the requests and waiting threads that
+   * can proceed on the way out.
+   *
+   * @param transitionIndex Index of the transition to fire.
+   * @return The queued request.
+   */
+  private FireRequest submitRequest(int transitionIndex) {
+    FireRequest request = new FireRequest();
+    try {
+      mutex.acquire();
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
-      logger.error("Thread interrupted while acquiring mutex: " + transitionIndex);
+      request.future.completeExceptionally(e);
+      return request;
+    }
+    requests.get(transitionIndex).add(request);
+    signalNextOrRelease(transitionIndex);
+    return request;
+  }
+
+  /**
+   * Fires a transition for its oldest pending request. Must be called while holding the mutex.
+   *
+   * @param transitionIndex Index of the transition, enabled and with its alpha window elapsed.
+   * @param served Requests fired so far, to complete once the mutex is released.
+   * @return true if a request was fired, false if none was pending.
+   */
+  private boolean fireRequested(int transitionIndex, List<FireRequest> served) {
+    FireRequest request = pollRequest(transitionIndex);
+    if (request == null) {
+      return false;
+    }
+    if (!executeTransition(transitionIndex)) {
+      request.future.complete(false);
+      return false;
+    }
+    policy.transitionFired(transitionIndex);
+    logger.info("Transition " + transitionIndex + " fired for an asynchronous request");
+    served.add(request);
+    return true;
+  }
+
+  /**
+   * Removes and claims the oldest request of a transition that was not withdrawn. Must be called
+   * while holding the mutex.
+   *
+   * @param transitionIndex Index of the transition.
+   * @return The claimed request, or null if there is none left.
+   */
+  private FireRequest pollRequest(int transitionIndex) {
+    ArrayDeque<FireRequest> pending = requests.get(transitionIndex);
+    while (!pending.isEmpty()) {
+      FireRequest request = pending.poll();
+      if (request.claim()) {
+        return request;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Gets the remaining alpha window of each candidate, and schedules the monitor to be entered
+   * again when the window of the ones still waiting for it elapses. Must be called while holding
+   * the mutex.
+   *
+   * @param candidates Enabled and waiting transitions.
+   * @return Remaining time of each candidate in milliseconds, 0 for the rest.
+   */
+  private long[] getRemainingWaitTimes(boolean[] candidates) {
+    long[] remainingTimes = new long[candidates.length];
+    for (int i = 0; i < candidates.length; i++) {
+      if (candidates[i]) {
+        remainingTimes[i] = petriNet.getRemainingWaitTime(i);
+        if (remainingTimes[i] > 0) {
+          scheduleRetry(i, remainingTimes[i]);
+        }
+      }
+    }
+    return remainingTimes;
+  }
+
+  /**
+   * Schedules the waiting threads and requests of a timed transition to be served once its alpha
+   * window elapses, by entering the monitor from a daemon thread. Must be called while holding the
+   * mutex.
+   *
+   * @param transitionIndex Index of the transition.
+   * @param delay Remaining time of its alpha window, in milliseconds.
+   */
+  private void scheduleRetry(int transitionIndex, long delay) {
+    if (retryScheduled[transitionIndex]) {
+      return;
+    }
+    if (retryScheduler == null) {
+      retryScheduler =
+          new ScheduledThreadPoolExecutor(
+              1,
+              runnable -> {
+                Thread thread = new Thread(runnable, "monitor-retry");
+                thread.setDaemon(true);
+                return thread;
+              });
+      // Retries still pending when the net finishes have nothing left to serve
+      retryScheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+    retryScheduled[transitionIndex] = true;
+    retryScheduler.schedule(
+        () -> {
+          try {
+            mutex.acquire();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+          retryScheduled[transitionIndex] = false;
+          signalNextOrRelease(transitionIndex);
+        },
+        delay,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Shuts down the scheduler of the retries, if any, so that its thread ends with the net. A retry
+   * already running still enters the monitor and finds the net finished. Must be called while
+   * holding the mutex.
+   */
+  private void stopRetries() {
+    if (retryScheduler != null) {
+      retryScheduler.shutdown();
+      retryScheduler = null;
+      Arrays.fill(retryScheduled, false);
+    }
+  }
+
+  /**
+   * Claims the wakeup a thread just received from a transition queue.
+   *
+   * @param transitionIndex Index of the transition the thread waited on.
+   * @return true if the transition was fired within a step, false if the mutex was handed over.
+   */
+  private boolean claimWakeup(int transitionIndex) {
+    while (true) {
+      if (decrementIfPositive(stepFirings, transitionIndex)) {
+        return true;
+      }
+      if (decrementIfPositive(handOffs, transitionIndex)) {
+        return false;
+      }
+      Thread.onSpinWait();
+    }
+  }
+
+  /**
+   * Decrements an element of a counter array if it is positive.
+   *
+   * @param counters Counter array.
+   * @param index Index of the element.
+   * @return true if it was decremented, false if it was 0.
+   */
+  private static boolean decrementIfPositive(AtomicIntegerArray counters, int index) {
+    int value;
+    do {
+      value = counters.get(index);
+      if (value == 0) {
+        return false;
+      }
+    } while (!counters.compareAndSet(index, value, value - 1));
+    return true;
+  }
+
+  /**
+   * Removes a transition and the transitions in conflict with it from a set.
+   *
+   * @param transitions Set of transitions; modified by this method.
+   * @param transitionIndex Index of the transition.
+   */
+  private void discardWithConflicts(boolean[] transitions, int transitionIndex) {
+    transitions[transitionIndex] = false;
+    for (int i = 0; i < transitions.length; i++) {
+      transitions[i] &= !conflicts[transitionIndex][i];
+    }
+  }
+
+  /**
+   * Returns the first transition of a set that is in conflict with no other transition of it.
+   *
+   * @param transitions Set of transitions.
+   * @return Index of the transition, or -1 if every transition of the set has a conflict in it.
+   */
+  private int firstWithoutConflicts(boolean[] transitions) {
+    for (int i = 0; i < transitions.length; i++) {
+      if (!transitions[i]) {
+        continue;
+      }
+      boolean inConflict = false;
+      for (int j = 0; j < transitions.length && !inConflict; j++) {
+        inConflict = transitions[j] && conflicts[i][j];
+      }
+      if (!inConflict) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Checks if the next transition of a segment can be fired without leaving the monitor: it must
+   * be enabled, have no pending alpha window, and win the policy against any enabled and waiting
+   * transition it is in conflict with and ready to fire.
+   *
+   * @param transitionIndex Index of the next transition of the segment.
+   * @return true if it can be fired within the current monitor entry, false otherwise.
+   */
+  private boolean canContinueSegment(int transitionIndex) {
+    if (petriNet.petriNetHasFinished()
+        || !petriNet.isTransitionEnabledByTokens(transitionIndex)
+        || petriNet.getRemainingWaitTime(transitionIndex) > 0) {
+      return false;
+    }
+
+    boolean[] contenders = getWaitingTransitions();
+    boolean[] requested = getRequestedTransitions();
+    for (int i = 0; i < contenders.length; i++) {
+      contenders[i] |= requested[i];
+    }
+    contenders = bitwiseAnd(petriNet.getEnabledTransitionsInBits(), contenders);
+    boolean inConflict = false;
+    for (int i = 0; i < contenders.length; i++) {
+      contenders[i] &= conflicts[transitionIndex][i];
+      inConflict |= contenders[i];
+    }
+    if (!inConflict) {
+      return true;
+    }
+    contenders[transitionIndex] = true;
+    long[] remainingTimes = new long[contenders.length];
+    for (int i = 0; i < contenders.length; i++) {
+      remainingTimes[i] = contenders[i] ? petriNet.getRemainingWaitTime(i) : 0;
+    }
+    return policy.getNextTransition(contenders, remainingTimes) == transitionIndex;
+  }
+
+  /**
+   * Takes a checkpoint of the net and the policy from a consistent cut. The mutex is held only
+   * while a few small arrays are copied; serializing the checkpoint is left to the caller.
+   *
+   * @return A checkpoint of the current state.
+   * @throws InterruptedException if the thread is interrupted while waiting for the mutex.
+   */
+  public Checkpoint checkpoint() throws InterruptedException {
+    mutex.acquire();
+    try {
+      return petriNet.createCheckpoint(policy.getTransitionCounts());
+    } finally {
+      mutex.release();
+    }
+  }
+
+  /**
+   * Restores the net and the policy from a checkpoint. Meant to be called before the segment
+   * threads start, to resume a previous run.
+   *
+   * @param checkpoint Checkpoint to restore.
+   * @throws InterruptedException if the thread is interrupted while waiting for the mutex.
+   */
+  public void restore(Checkpoint checkpoint) throws InterruptedException {
+    mutex.acquire();
+    try {
+      petriNet.restore(checkpoint);
+      policy.restoreTransitionCounts(checkpoint.getPolicyCounts());
+    } finally {
+      mutex.release();
     }
-    return false; // Transition could not be executed
   }
 
   /**
@@ -168,18 +839,55 @@ public class Monitor implements MonitorInterface {
   }
 
   /**
-   * Returns a boolean array indicating which transitions are currently waiting in their semaphores.
+   * Computes which pairs of distinct transitions are in structural conflict, i.e. share an input
+   * place.
+   *
+   * @param incidenceMatrixIn Input incidence matrix of the Petri net.
+   * @return Matrix where entry [i][j] is true if transitions i and j share an input place.
+   */
+  private static boolean[][] computeConflicts(int[][] incidenceMatrixIn) {
+    int transitionsLength = incidenceMatrixIn[0].length;
+    boolean[][] result = new boolean[transitionsLength][transitionsLength];
+    for (int[] place : incidenceMatrixIn) {
+      for (int i = 0; i < transitionsLength; i++) {
+        for (int j = 0; j < transitionsLength; j++) {
+          if (i != j && place[i] > 0 && place[j] > 0) {
+            result[i][j] = true;
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns a boolean array indicating which transitions have threads waiting in their semaphores,
+   * or about to. Must be called while holding the mutex.
    *
    * @return true at index i if transition i is waiting; false otherwise.
    */
   private boolean[] getWaitingTransitions() {
     boolean[] waitingTransitions = new boolean[transitionsQueue.length];
     for (int i = 0; i < transitionsQueue.length; i++) {
-      waitingTransitions[i] = transitionsQueue[i].hasQueuedThreads() ? true : false;
+      waitingTransitions[i] = waitingCount[i] > 0;
     }
     return waitingTransitions;
   }
 
+  /**
+   * Returns which transitions have pending asynchronous requests. Must be called while holding the
+   * mutex.
+   *
+   * @return true at index i if transition i has at least one request; false otherwise.
+   */
+  private boolean[] getRequestedTransitions() {
+    boolean[] requestedTransitions = new boolean[transitionsQueue.length];
+    for (int i = 0; i < transitionsQueue.length; i++) {
+      requestedTransitions[i] = !requests.get(i).isEmpty();
+    }
+    return requestedTransitions;
+  }
+
   /**
    * Performs a bitwise AND operation on two boolean arrays.
    *
@@ -214,15 +922,31 @@ public class Monitor implements MonitorInterface {
     }
     return false; // No 1 found
   }
-}
 
-/** Interface for Monitor functionality. */
-interface MonitorInterface {
   /**
-   * Attempts to fire a transition in the Petri Net.
-   *
-   * @param transition Index of the transition to fire.
-   * @return true if transition fired successfully, false otherwise.
+   * Request to fire a transition. Either the monitor claims it before firing, or the caller
+   * withdraws it; whoever loses the race honours the other's outcome.
    */
-  boolean fireTransition(int transition);
+  private static final class FireRequest {
+    private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+    private final AtomicBoolean claimed = new AtomicBoolean(false);
+
+    /**
+     * Claims the request for firing.
+     *
+     * @return true if it was neither withdrawn nor cancelled, false otherwise.
+     */
+    boolean claim() {
+      return claimed.compareAndSet(false, true) && !future.isDone();
+    }
+
+    /**
+     * Withdraws the request so the monitor does not fire it.
+     *
+     * @return true if it was withdrawn, false if the monitor had already claimed it.
+     */
+    boolean withdraw() {
+      return claimed.compareAndSet(false, true);
+    }
+  }
 }
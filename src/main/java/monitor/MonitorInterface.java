@@ -0,0 +1,80 @@
+package monitor;
+
+import petrinet.FiringEventPublisher;
+
+/** Interface for Monitor functionality. */
+public interface MonitorInterface {
+  /**
+   * Attempts to fire a transition in the Petri Net.
+   *
+   * @param transition Index of the transition to fire.
+   * @return true if transition fired successfully, false otherwise.
+   */
+  boolean fireTransition(int transition);
+
+  /**
+   * Fires a segment of transitions starting at the given position. Implementations may fire a
+   * prefix of the segment in a single entry; by default only the first transition is fired.
+   *
+   * @param sequence Transitions of the segment, in firing order.
+   * @param from Position of the first transition to fire.
+   * @return Number of transitions fired, 0 if the first one could not be fired.
+   */
+  default int fireSequence(int[] sequence, int from) {
+    return fireTransition(sequence[from]) ? 1 : 0;
+  }
+
+  /**
+   * Returns the publisher of the firings of the controlled net, so observers can subscribe to
+   * firing events instead of parsing the log.
+   *
+   * @return The firing events publisher.
+   */
+  FiringEventPublisher getFiringEvents();
+
+  /**
+   * Returns how many threads are waiting in the queue of each transition. The counts are read
+   * without entering the monitor, so they are only an estimate while the net is making progress.
+   *
+   * @return Number of waiting threads per transition.
+   */
+  int[] getWaiterCounts();
+
+  /**
+   * Returns the current marking of the controlled net as the monitor sees it. Like the waiter
+   * counts, it is read without entering the monitor.
+   *
+   * @return A new array with the tokens of each place.
+   */
+  int[] getMarking();
+
+  /**
+   * Returns which transitions are enabled in the current marking, read without entering the
+   * monitor.
+   *
+   * @return A new array with one flag per transition.
+   */
+  boolean[] getEnabledTransitions();
+
+  /**
+   * Returns how long an enabled transition still has to wait for its alpha window, as tracked by
+   * the monitor. Read without entering the monitor.
+   *
+   * @param transition Index of the transition.
+   * @return Remaining wait time in milliseconds, 0 if no wait is needed.
+   */
+  long getRemainingWaitTime(int transition);
+
+  /**
+   * Wakes up the waiting thread the policy chooses among the enabled and waiting transitions, as
+   * if a firing had just finished. Used to recover from a lost wakeup; monitors that cannot do it
+   * safely return false.
+   *
+   * @param timeout Maximum time to wait to enter the monitor, in milliseconds.
+   * @return true if the monitor was entered and the wakeup was attempted, false otherwise.
+   * @throws InterruptedException if the thread is interrupted while entering the monitor.
+   */
+  default boolean wakeWaiters(long timeout) throws InterruptedException {
+    return false;
+  }
+}
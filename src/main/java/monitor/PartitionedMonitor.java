@@ -0,0 +1,303 @@
+package monitor;
+
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+import petrinet.FiringEventPublisher;
+import petrinet.PetriNet;
+import policy.Policy;
+import utils.Logger;
+
+/**
+ * Monitor that partitions the Petri net into lock regions instead of guarding it with a single
+ * mutex. A transition only locks the regions of the places it touches, so transitions in disjoint
+ * regions (such as T0 and T10) fire in parallel. Regions are always locked in ascending order.
+ *
+ * <p>Since no thread ever holds the whole net, the global place invariants are not verified on
+ * every firing; only the touched places are checked for negative tokens.
+ */
+public class PartitionedMonitor implements MonitorInterface {
+  private static Logger logger = Logger.getLogger();
+  private final PetriNet petriNet;
+  private final Policy policy;
+  private final LockRegions regions;
+  private final ReentrantLock[] regionLocks;
+  private final Semaphore[] transitionsQueue;
+
+  /**
+   * Number of threads that announced they will wait on each transition queue. Guarded by the lock
+   * of the transition's input region.
+   */
+  private final int[] waitingCount;
+
+  /**
+   * Timestamp when each transition became enabled, or Long.MAX_VALUE if it is not enabled. Guarded
+   * by the lock of the transition's input region.
+   */
+  private final long[] enabledSince;
+
+  /**
+   * Constructor for the PartitionedMonitor.
+   *
+   * @param petriNet the PetriNet instance to control.
+   * @param policy the Policy to use when choosing which waiting transition to wake up.
+   */
+  public PartitionedMonitor(PetriNet petriNet, Policy policy) {
+    this.petriNet = petriNet;
+    this.policy = policy;
+    this.regions =
+        new LockRegions(petriNet.getIncidenceMatrixIn(), petriNet.getIncidenceMatrixOut());
+
+    this.regionLocks = new ReentrantLock[regions.getNumberOfRegions()];
+    for (int i = 0; i < regionLocks.length; i++) {
+      regionLocks[i] = new ReentrantLock(true);
+    }
+
+    int numberOfTransitions = petriNet.getNumberOfTransitions();
+    this.transitionsQueue = new Semaphore[numberOfTransitions];
+    for (int i = 0; i < numberOfTransitions; i++) {
+      transitionsQueue[i] = new Semaphore(0, true);
+    }
+
+    this.waitingCount = new int[numberOfTransitions];
+    this.enabledSince = new long[numberOfTransitions];
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < numberOfTransitions; i++) {
+      enabledSince[i] = petriNet.isTransitionEnabledByMarking(i) ? now : Long.MAX_VALUE;
+    }
+
+    logger.info("Partitioned monitor using " + regions.getNumberOfRegions() + " lock regions");
+  }
+
+  /**
+   * Attempts to fire a transition in the Petri Net, locking only the regions it touches. Blocks
+   * while the transition is not enabled and sleeps outside the locks while its alpha window has
+   * not elapsed.
+   *
+   * @param transitionIndex Index of the transition to fire.
+   * @return true if transition fired successfully, false otherwise.
+   */
+  @Override
+  public boolean fireTransition(int transitionIndex) {
+    int[] lockOrder = regions.getRegionsOfTransition(transitionIndex);
+
+    try {
+      while (true) {
+        long waitTime = 0;
+
+        lockRegions(lockOrder);
+        try {
+          if (petriNet.petriNetHasFinished()) {
+            return true;
+          }
+
+          if (petriNet.isTransitionEnabledByMarking(transitionIndex)) {
+            waitTime = startRemainingWaitTime(transitionIndex);
+            if (waitTime <= 0) {
+              petriNet.tryFireTransitionLocally(transitionIndex);
+              notifyPolicy(transitionIndex);
+              updateRegionsAndWakeUp(lockOrder);
+              if (petriNet.petriNetHasFinished()) {
+                releaseAllWaiters();
+              }
+              return true;
+            }
+          } else {
+            // Announce the wait while holding the locks so no wake-up can be missed
+            waitingCount[transitionIndex]++;
+          }
+        } finally {
+          unlockRegions(lockOrder);
+        }
+
+        if (waitTime > 0) {
+          logger.info("Transition " + transitionIndex + " waiting for " + waitTime + " ms");
+          Thread.sleep(waitTime);
+        } else {
+          logger.info("Transition " + transitionIndex + " could not be executed.");
+          transitionsQueue[transitionIndex].acquire();
+          if (petriNet.petriNetHasFinished()) {
+            // Pass the release on so every thread waiting on this queue can finish
+            transitionsQueue[transitionIndex].release();
+            return true;
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logger.error("Thread interrupted while firing transition: " + transitionIndex);
+    }
+    return false;
+  }
+
+  @Override
+  public FiringEventPublisher getFiringEvents() {
+    return petriNet.getFiringEvents();
+  }
+
+  @Override
+  public int[] getWaiterCounts() {
+    int[] waiterCounts = new int[transitionsQueue.length];
+    for (int i = 0; i < transitionsQueue.length; i++) {
+      waiterCounts[i] = transitionsQueue[i].getQueueLength();
+    }
+    return waiterCounts;
+  }
+
+  @Override
+  public int[] getMarking() {
+    return petriNet.getMarking().clone();
+  }
+
+  /**
+   * Returns which transitions are enabled, checked against the marking, since local firings do not
+   * refresh the net's enabled transitions. Read without the region locks.
+   *
+   * @return A new array with one flag per transition.
+   */
+  @Override
+  public boolean[] getEnabledTransitions() {
+    boolean[] enabled = new boolean[transitionsQueue.length];
+    for (int i = 0; i < enabled.length; i++) {
+      enabled[i] = petriNet.isTransitionEnabledByMarking(i);
+    }
+    return enabled;
+  }
+
+  /**
+   * Returns the remaining wait time of a transition from the time the monitor saw it enabled. Read
+   * without the region locks, so unlike the waits taken while firing it never starts the window.
+   *
+   * @param transition Index of the transition.
+   * @return Remaining wait time in milliseconds, 0 if no wait is needed or the window has not
+   *     started.
+   */
+  @Override
+  public long getRemainingWaitTime(int transition) {
+    long alpha = petriNet.getAlpha(transition);
+    long since = enabledSince[transition];
+    if (alpha == 0 || since == Long.MAX_VALUE) {
+      return 0;
+    }
+    return Math.max(0, alpha - (System.currentTimeMillis() - since));
+  }
+
+  /**
+   * Refreshes the enabled state and timers of the transitions whose input places are in the locked
+   * regions, and wakes up one enabled and waiting transition per region chosen by the policy.
+   * Conflicting transitions always share their input region, so the policy still decides every
+   * real conflict.
+   *
+   * @param lockedRegions Regions currently held by the calling thread.
+   */
+  private void updateRegionsAndWakeUp(int[] lockedRegions) {
+    long now = System.currentTimeMillis();
+    boolean[] candidates = new boolean[transitionsQueue.length];
+
+    for (int region : lockedRegions) {
+      boolean anyCandidate = false;
+      for (int t : regions.getTransitionsByInputRegion(region)) {
+        boolean enabled = petriNet.isTransitionEnabledByMarking(t);
+        if (enabled && enabledSince[t] == Long.MAX_VALUE) {
+          enabledSince[t] = now;
+        } else if (!enabled) {
+          enabledSince[t] = Long.MAX_VALUE;
+        }
+        if (enabled && waitingCount[t] > 0) {
+          candidates[t] = true;
+          anyCandidate = true;
+        }
+      }
+
+      if (!anyCandidate) {
+        continue;
+      }
+
+      int nextTransition = choose(candidates);
+      if (nextTransition != -1) {
+        logger.info("Waking up transition " + nextTransition + " in region " + region);
+        waitingCount[nextTransition]--;
+        transitionsQueue[nextTransition].release();
+      }
+      Arrays.fill(candidates, false);
+    }
+  }
+
+  /**
+   * Asks the policy for the next transition among the candidates. A policy that is not thread safe
+   * is locked as a whole, since regions fire in parallel.
+   *
+   * @param candidates Enabled and waiting transitions.
+   * @return Index of the chosen transition, or -1 if none.
+   */
+  private int choose(boolean[] candidates) {
+    if (policy.isThreadSafe()) {
+      return policy.getNextTransition(candidates);
+    }
+    synchronized (policy) {
+      return policy.getNextTransition(candidates);
+    }
+  }
+
+  /**
+   * Tells the policy that a transition fired, locking it as a whole unless it is thread safe.
+   *
+   * @param transitionIndex Index of the transition that fired.
+   */
+  private void notifyPolicy(int transitionIndex) {
+    if (policy.isThreadSafe()) {
+      policy.transitionFired(transitionIndex);
+      return;
+    }
+    synchronized (policy) {
+      policy.transitionFired(transitionIndex);
+    }
+  }
+
+  /**
+   * Gets the remaining wait time of a transition, starting its alpha window if it has not started
+   * yet. Must be called while holding its input region.
+   *
+   * @param transitionIndex Index of the transition.
+   * @return Remaining wait time in milliseconds, 0 if no wait is needed.
+   */
+  private long startRemainingWaitTime(int transitionIndex) {
+    long alpha = petriNet.getAlpha(transitionIndex);
+    if (alpha == 0) {
+      return 0;
+    }
+    if (enabledSince[transitionIndex] == Long.MAX_VALUE) {
+      enabledSince[transitionIndex] = System.currentTimeMillis();
+    }
+    return Math.max(0, alpha - (System.currentTimeMillis() - enabledSince[transitionIndex]));
+  }
+
+  /** Releases every transition queue once the Petri net has finished. */
+  private void releaseAllWaiters() {
+    for (Semaphore queue : transitionsQueue) {
+      queue.release();
+    }
+  }
+
+  /**
+   * Locks the given regions in the order received, which must be ascending.
+   *
+   * @param lockOrder Sorted region indices to lock.
+   */
+  private void lockRegions(int[] lockOrder) {
+    for (int region : lockOrder) {
+      regionLocks[region].lock();
+    }
+  }
+
+  /**
+   * Unlocks the given regions in reverse order.
+   *
+   * @param lockOrder Sorted region indices to unlock.
+   */
+  private void unlockRegions(int[] lockOrder) {
+    for (int i = lockOrder.length - 1; i >= 0; i--) {
+      regionLocks[lockOrder[i]].unlock();
+    }
+  }
+}
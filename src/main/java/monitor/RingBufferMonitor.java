@@ -0,0 +1,361 @@
+package monitor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import petrinet.FiringEventPublisher;
+import petrinet.PetriNet;
+import policy.Policy;
+import utils.Logger;
+
+/**
+ * Monitor where a single owner thread fires every transition. Threads publish their firing
+ * requests into a preallocated ring buffer and park; the owner drains the buffer in batches, fires
+ * the requested transitions that are enabled and past their alpha window, letting the policy choose
+ * among them, and unparks the requesters. Requests that cannot fire yet stay with the owner until
+ * a later firing enables them or their timer expires. The owner has exclusive access to the net, so
+ * there is no lock around it and the marking stays in the owner's cache.
+ *
+ * <p>Producers claim slots with a single atomic increment and publish them by writing the slot's
+ * sequence number, so a slow producer only delays the slots after its own. Checkpoints are not
+ * supported.
+ */
+public class RingBufferMonitor implements MonitorInterface {
+  /** Default number of slots of the ring buffer; must be a power of two. */
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  private static Logger logger = Logger.getLogger();
+  private final PetriNet petriNet;
+  private final Policy policy;
+  private final int mask;
+  private final AtomicReferenceArray<Request> slots;
+
+  /** Sequence number published in each slot, or -1 if it was never published. */
+  private final AtomicLongArray published;
+
+  /** Next sequence number to be claimed by a producer. */
+  private final AtomicLong claimed = new AtomicLong();
+
+  /** Sequence number of the next slot the owner will read. */
+  private final AtomicLong consumed = new AtomicLong();
+
+  /** Requests held by the owner, per transition and oldest first. Only the owner touches them. */
+  private final List<ArrayDeque<Request>> pending;
+
+  /** Number of pending requests per transition, published for {@link #getWaiterCounts()}. */
+  private final AtomicIntegerArray pendingCounts;
+
+  private final Thread owner;
+  private volatile boolean ownerParked = false;
+  private volatile boolean running = true;
+
+  /** Set by the owner once it stops draining the buffer, before it completes what is left. */
+  private volatile boolean stopped = false;
+
+  /** Request of the calling thread, reused across its firings. */
+  private final ThreadLocal<Request> requestOfThread =
+      ThreadLocal.withInitial(() -> new Request(Thread.currentThread()));
+
+  /**
+   * Constructor for the RingBufferMonitor with {@link #DEFAULT_CAPACITY} slots.
+   *
+   * @param petriNet the PetriNet instance to control. Only the owner thread touches it.
+   * @param policy the Policy to use when several requested transitions can fire.
+   */
+  public RingBufferMonitor(PetriNet petriNet, Policy policy) {
+    this(petriNet, policy, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructor for the RingBufferMonitor. Starts the owner thread.
+   *
+   * @param petriNet the PetriNet instance to control. Only the owner thread touches it.
+   * @param policy the Policy to use when several requested transitions can fire.
+   * @param capacity Number of slots of the ring buffer, a power of two.
+   * @throws IllegalArgumentException if the capacity is not a positive power of two.
+   */
+  public RingBufferMonitor(PetriNet petriNet, Policy policy, int capacity) {
+    if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+    }
+    this.petriNet = petriNet;
+    this.policy = policy;
+    this.mask = capacity - 1;
+    this.slots = new AtomicReferenceArray<>(capacity);
+    this.published = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      published.set(i, -1);
+    }
+    int numberOfTransitions = petriNet.getNumberOfTransitions();
+    this.pending = new ArrayList<>();
+    for (int i = 0; i < numberOfTransitions; i++) {
+      pending.add(new ArrayDeque<>());
+    }
+    this.pendingCounts = new AtomicIntegerArray(numberOfTransitions);
+
+    this.owner = new Thread(this::runOwner, "ring-buffer-owner");
+    owner.setDaemon(true);
+    owner.start();
+  }
+
+  /**
+   * Publishes a request to fire a transition and parks until the owner fires it.
+   *
+   * @param transitionIndex Index of the transition to fire.
+   * @return true once the transition fired, or once the net has finished; false if the monitor
+   *     was closed before the transition fired.
+   */
+  @Override
+  public boolean fireTransition(int transitionIndex) {
+    if (!running) {
+      return false;
+    }
+    Request request = requestOfThread.get();
+    request.transitionIndex = transitionIndex;
+    request.done = false;
+    int slot = publish(request);
+    if (slot == -1) {
+      return false;
+    }
+    if (stopped && slots.compareAndSet(slot, request, null)) {
+      // The owner stopped before draining the slot, so nobody else will complete the request
+      return false;
+    }
+
+    boolean interrupted = false;
+    while (!request.done) {
+      LockSupport.park(this);
+      // The owner already has the request, so it cannot be withdrawn; keep waiting for it
+      interrupted |= Thread.interrupted();
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    return request.fired;
+  }
+
+  @Override
+  public FiringEventPublisher getFiringEvents() {
+    return petriNet.getFiringEvents();
+  }
+
+  @Override
+  public int[] getWaiterCounts() {
+    int[] waiterCounts = new int[pendingCounts.length()];
+    for (int i = 0; i < waiterCounts.length; i++) {
+      waiterCounts[i] = pendingCounts.get(i);
+    }
+    return waiterCounts;
+  }
+
+  @Override
+  public int[] getMarking() {
+    return petriNet.getMarking().clone();
+  }
+
+  @Override
+  public boolean[] getEnabledTransitions() {
+    return petriNet.getEnabledTransitionsInBits();
+  }
+
+  @Override
+  public long getRemainingWaitTime(int transition) {
+    return petriNet.getRemainingWaitTime(transition);
+  }
+
+  /**
+   * Stops the owner thread and waits for it to finish. Pending requests, and requests published
+   * while the monitor closes, are completed as not fired.
+   */
+  public void close() {
+    running = false;
+    LockSupport.unpark(owner);
+    boolean interrupted = false;
+    while (owner.isAlive()) {
+      try {
+        owner.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Claims a slot, waiting while the buffer is full, and publishes the request in it.
+   *
+   * @param request Request to publish.
+   * @return Slot the request was published in, or -1 if the owner stopped while the buffer was
+   *     full.
+   */
+  private int publish(Request request) {
+    long sequence = claimed.getAndIncrement();
+    while (sequence - consumed.get() > mask) {
+      if (stopped) {
+        return -1;
+      }
+      Thread.onSpinWait(); // The owner is behind by a whole buffer
+    }
+    int slot = (int) sequence & mask;
+    slots.set(slot, request);
+    published.set(slot, sequence);
+    if (ownerParked) {
+      LockSupport.unpark(owner);
+    }
+    return slot;
+  }
+
+  /**
+   * Main loop of the owner thread: drains the published requests, fires whatever can fire, and
+   * parks until a new request arrives or the earliest pending alpha window elapses.
+   */
+  private void runOwner() {
+    long next = 0;
+    while (running) {
+      int drained = 0;
+      int slot = (int) next & mask;
+      while (published.get(slot) == next) {
+        Request request = slots.getAndSet(slot, null);
+        pending.get(request.transitionIndex).add(request);
+        pendingCounts.incrementAndGet(request.transitionIndex);
+        next++;
+        drained++;
+        slot = (int) next & mask;
+      }
+      if (drained > 0) {
+        consumed.set(next);
+      }
+
+      long waitTime = fireReadyRequests();
+      if (drained == 0) {
+        ownerParked = true;
+        if (published.get((int) next & mask) != next && running) {
+          if (waitTime == Long.MAX_VALUE) {
+            LockSupport.park(this);
+          } else {
+            LockSupport.parkNanos(this, waitTime * 1_000_000);
+          }
+        }
+        ownerParked = false;
+      }
+    }
+    stopped = true;
+    completeAll(false);
+
+    // Requests published since the last drain, skipping slots still being published: producers
+    // that publish after this scan see stopped and withdraw their own request, so each request is
+    // completed exactly once. Sequences past a whole buffer were never given a slot.
+    long last = Math.min(claimed.get(), next + mask + 1);
+    for (long sequence = next; sequence < last; sequence++) {
+      int slot = (int) sequence & mask;
+      if (published.get(slot) == sequence) {
+        Request request = slots.getAndSet(slot, null);
+        if (request != null) {
+          complete(request, false);
+        }
+      }
+    }
+  }
+
+  /**
+   * Fires the pending requests that can fire, one at a time, letting the policy choose among the
+   * candidates after each firing, since it may enable or disable others.
+   *
+   * @return Time until the earliest alpha window of an enabled pending transition elapses, in
+   *     milliseconds, or {@link Long#MAX_VALUE} if there is none.
+   */
+  private long fireReadyRequests() {
+    if (petriNet.petriNetHasFinished()) {
+      completeAll(true);
+      return Long.MAX_VALUE;
+    }
+
+    while (true) {
+      boolean[] enabled = petriNet.getEnabledTransitionsInBits();
+      boolean[] candidates = new boolean[enabled.length];
+      boolean anyCandidate = false;
+      long waitTime = Long.MAX_VALUE;
+      for (int i = 0; i < enabled.length; i++) {
+        if (enabled[i] && !pending.get(i).isEmpty()) {
+          long remaining = petriNet.getRemainingWaitTime(i);
+          candidates[i] = remaining == 0;
+          anyCandidate |= candidates[i];
+          if (remaining > 0) {
+            waitTime = Math.min(waitTime, remaining);
+          }
+        }
+      }
+      if (!anyCandidate) {
+        return waitTime;
+      }
+
+      int nextTransition = policy.getNextTransition(candidates);
+      if (nextTransition == -1) {
+        return waitTime;
+      }
+      boolean fired;
+      try {
+        fired = petriNet.tryFireTransition(nextTransition);
+      } catch (Exception e) {
+        logger.error(e.getMessage());
+        fired = false;
+      }
+      if (fired) {
+        policy.transitionFired(nextTransition);
+      }
+      complete(pending.get(nextTransition).poll(), fired);
+      pendingCounts.decrementAndGet(nextTransition);
+
+      if (petriNet.petriNetHasFinished()) {
+        completeAll(true);
+        return Long.MAX_VALUE;
+      }
+    }
+  }
+
+  /**
+   * Completes every pending request, for example so the requesters can finish with the net.
+   *
+   * @param fired Result reported to the requesters.
+   */
+  private void completeAll(boolean fired) {
+    for (int i = 0; i < pending.size(); i++) {
+      Request request;
+      while ((request = pending.get(i).poll()) != null) {
+        complete(request, fired);
+        pendingCounts.decrementAndGet(i);
+      }
+    }
+  }
+
+  /**
+   * Reports the outcome of a request and unparks its thread.
+   *
+   * @param request Request to complete.
+   * @param fired Whether its transition fired.
+   */
+  private static void complete(Request request, boolean fired) {
+    request.fired = fired;
+    request.done = true;
+    LockSupport.unpark(request.thread);
+  }
+
+  /** Firing request of one thread. The thread waits on {@link #done}. */
+  private static final class Request {
+    private final Thread thread;
+    private int transitionIndex;
+    private boolean fired;
+    private volatile boolean done;
+
+    Request(Thread thread) {
+      this.thread = thread;
+    }
+  }
+}
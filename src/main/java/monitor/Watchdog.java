@@ -0,0 +1,237 @@
+package monitor;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import petrinet.PetriNet;
+import policy.Policy;
+import utils.Logger;
+
+/**
+ * Detects runs that stop making progress. A daemon thread polls the number of firings published by
+ * the net; if it does not change for a whole window while the net has not finished, the watchdog
+ * logs a compact diagnostic and applies its {@link Action}. The diagnostic is read from the monitor
+ * without entering it, since monitors that fire outside a global lock keep their own view of the
+ * marking, so the segment threads are never stopped to take it. Its fields may be inconsistent
+ * while the net is still moving, but a stalled net does not change under it.
+ *
+ * <p>The window must be longer than the largest alpha of the net, or a long timed wait is taken
+ * for a stall.
+ */
+public class Watchdog {
+  private static final Logger logger = Logger.getLogger();
+
+  /** What to do, besides logging the diagnostic, when no progress is made for a window. */
+  public enum Action {
+    /** Only log the diagnostic. */
+    REPORT,
+    /** Also wake the waiter chosen by the policy, to recover from a lost wakeup. */
+    WAKE,
+    /** Also run the abort handler, for example to exit with an error. */
+    ABORT
+  }
+
+  private final PetriNet petriNet;
+  private final MonitorInterface monitor;
+  private final Policy policy;
+  private final long window;
+  private final Action action;
+  private final Runnable abortHandler;
+  private final LongSupplier clock;
+  private ScheduledExecutorService scheduler = null;
+  private long lastFirings = -1;
+  private long lastProgress;
+  private int stalls = 0;
+
+  /**
+   * Constructor for the Watchdog.
+   *
+   * @param petriNet The Petri net to watch.
+   * @param monitor The monitor controlling the net.
+   * @param policy The policy used by the monitor.
+   * @param window Time without firings that counts as a stall, in milliseconds.
+   * @param action What to do on a stall.
+   * @param abortHandler Handler run on a stall when the action is {@link Action#ABORT}.
+   */
+  public Watchdog(
+      PetriNet petriNet,
+      MonitorInterface monitor,
+      Policy policy,
+      long window,
+      Action action,
+      Runnable abortHandler) {
+    this(petriNet, monitor, policy, window, action, abortHandler, System::currentTimeMillis);
+  }
+
+  /**
+   * Constructor for the Watchdog that reads the time from the given clock, so checks can be driven
+   * by hand.
+   *
+   * @param petriNet The Petri net to watch.
+   * @param monitor The monitor controlling the net.
+   * @param policy The policy used by the monitor.
+   * @param window Time without firings that counts as a stall, in milliseconds.
+   * @param action What to do on a stall.
+   * @param abortHandler Handler run on a stall when the action is {@link Action#ABORT}.
+   * @param clock Source of the current time in milliseconds.
+   * @throws IllegalArgumentException if the window is not positive.
+   */
+  public Watchdog(
+      PetriNet petriNet,
+      MonitorInterface monitor,
+      Policy policy,
+      long window,
+      Action action,
+      Runnable abortHandler,
+      LongSupplier clock) {
+    if (window <= 0) {
+      throw new IllegalArgumentException("Watchdog window must be positive: " + window);
+    }
+    this.petriNet = petriNet;
+    this.monitor = monitor;
+    this.policy = policy;
+    this.window = window;
+    this.action = action;
+    this.abortHandler = abortHandler;
+    this.clock = clock;
+    this.lastProgress = clock.getAsLong();
+  }
+
+  /** Starts checking for progress on a daemon thread, four times per window. */
+  public synchronized void start() {
+    if (scheduler != null) {
+      return;
+    }
+    scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "watchdog");
+              thread.setDaemon(true);
+              return thread;
+            });
+    long period = Math.max(1, window / 4);
+    scheduler.scheduleAtFixedRate(
+        () -> {
+          try {
+            check();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } catch (RuntimeException e) {
+            logger.error("Watchdog check failed: " + e.getMessage());
+          }
+        },
+        period,
+        period,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /** Stops the checks. */
+  public synchronized void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+  }
+
+  /**
+   * Checks whether the net made progress since the last check, and handles a stall if it has not
+   * for a whole window. A stall is handled once per window, so a lasting one is reported again
+   * every window.
+   *
+   * @return true if a stall was detected by this check, false otherwise.
+   * @throws InterruptedException if the thread is interrupted while waking the waiters.
+   */
+  public synchronized boolean check() throws InterruptedException {
+    long now = clock.getAsLong();
+    long firings = petriNet.getFiringEvents().getNumberOfFirings();
+    if (firings != lastFirings || petriNet.petriNetHasFinished()) {
+      lastFirings = firings;
+      lastProgress = now;
+      return false;
+    }
+    if (now - lastProgress < window) {
+      return false;
+    }
+
+    stalls++;
+    lastProgress = now;
+    logger.error("No firing in the last " + window + " ms. " + dumpState());
+    switch (action) {
+      case REPORT -> {}
+      case WAKE -> {
+        if (!monitor.wakeWaiters(window)) {
+          logger.error("Watchdog could not wake the waiters of the monitor");
+        }
+      }
+      case ABORT -> abortHandler.run();
+    }
+    return true;
+  }
+
+  /**
+   * Builds a one-line diagnostic of the net: its marking, the enabled transitions, the number of
+   * threads waiting on each transition, the pending alpha windows and the policy counters. The
+   * enabled and waiting transitions are singled out, since a stall with any of them is a lost
+   * wakeup, while a stall with no enabled transition and no pending timer is a deadlock.
+   *
+   * @return The diagnostic.
+   */
+  public String dumpState() {
+    int[] marking = monitor.getMarking();
+    boolean[] enabled = monitor.getEnabledTransitions();
+    int[] waiters = monitor.getWaiterCounts();
+
+    StringBuilder enabledList = new StringBuilder();
+    StringBuilder waiterList = new StringBuilder();
+    StringBuilder enabledAndWaiting = new StringBuilder();
+    StringBuilder timers = new StringBuilder();
+    for (int t = 0; t < enabled.length; t++) {
+      boolean waiting = t < waiters.length && waiters[t] > 0;
+      if (enabled[t]) {
+        enabledList.append(" T").append(t);
+        long remaining = monitor.getRemainingWaitTime(t);
+        if (remaining > 0) {
+          timers.append(" T").append(t).append('=').append(remaining).append("ms");
+        }
+      }
+      if (waiting) {
+        waiterList.append(" T").append(t).append('=').append(waiters[t]);
+      }
+      if (enabled[t] && waiting) {
+        enabledAndWaiting.append(" T").append(t);
+      }
+    }
+
+    String diagnosis;
+    if (enabledAndWaiting.length() > 0) {
+      diagnosis = "lost wakeup";
+    } else if (enabledList.length() == 0 && timers.length() == 0) {
+      diagnosis = "deadlock";
+    } else {
+      diagnosis = "stall";
+    }
+    return diagnosis
+        + ": firings="
+        + petriNet.getFiringEvents().getNumberOfFirings()
+        + " invariants="
+        + petriNet.getInvariantsCount()
+        + " marking="
+        + Arrays.toString(marking)
+        + " enabled=["
+        + enabledList.toString().trim()
+        + "] waiters=["
+        + waiterList.toString().trim()
+        + "] enabledAndWaiting=["
+        + enabledAndWaiting.toString().trim()
+        + "] timers=["
+        + timers.toString().trim()
+        + "] policy="
+        + policy.getTransitionCounts();
+  }
+
+  public synchronized int getStalls() {
+    return stalls;
+  }
+}
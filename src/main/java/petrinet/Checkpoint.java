@@ -0,0 +1,161 @@
+package petrinet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable snapshot of a running Petri net: marking, enabled transitions, invariants count, timers
+ * (as remaining time, so they survive a restart) and the policy's transition counts. It is taken
+ * under the monitor in a few array copies, and serialized afterwards into a compact, versioned
+ * binary format.
+ *
+ * <p>Format (big endian): magic {@code "PNCK"}, version byte, number of places, marking, number of
+ * transitions, enabled transitions as a bit set, invariants count, remaining time of each timer
+ * (-1 if not running), number of policy counts and their (transition, count) pairs.
+ */
+public class Checkpoint {
+  private static final int MAGIC = 0x504E434B; // "PNCK"
+  private static final byte VERSION = 1;
+
+  private final int[] marking;
+  private final boolean[] enabledTransitions;
+  private final int invariantsCount;
+  private final long[] remainingTimes;
+  private final Map<Integer, Integer> policyCounts;
+
+  /**
+   * Constructor for the Checkpoint. The arrays are kept as given, so callers must pass copies.
+   *
+   * @param marking Marking of the net.
+   * @param enabledTransitions Transitions enabled by the marking.
+   * @param invariantsCount Number of invariants completed so far.
+   * @param remainingTimes Remaining time of each timer in milliseconds, -1 if not running.
+   * @param policyCounts Transition counts of the policy.
+   */
+  public Checkpoint(
+      int[] marking,
+      boolean[] enabledTransitions,
+      int invariantsCount,
+      long[] remainingTimes,
+      Map<Integer, Integer> policyCounts) {
+    this.marking = marking;
+    this.enabledTransitions = enabledTransitions;
+    this.invariantsCount = invariantsCount;
+    this.remainingTimes = remainingTimes;
+    this.policyCounts = Collections.unmodifiableMap(new TreeMap<>(policyCounts));
+  }
+
+  /**
+   * Writes the checkpoint in binary form. The stream is flushed but not closed.
+   *
+   * @param out Stream to write to.
+   * @throws IOException if writing fails.
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(MAGIC);
+    data.writeByte(VERSION);
+
+    data.writeShort(marking.length);
+    for (int tokens : marking) {
+      data.writeInt(tokens);
+    }
+
+    data.writeShort(enabledTransitions.length);
+    BitSet enabledBits = new BitSet(enabledTransitions.length);
+    for (int i = 0; i < enabledTransitions.length; i++) {
+      enabledBits.set(i, enabledTransitions[i]);
+    }
+    byte[] packedBits = new byte[(enabledTransitions.length + 7) / 8];
+    byte[] setBits = enabledBits.toByteArray();
+    System.arraycopy(setBits, 0, packedBits, 0, setBits.length);
+    data.write(packedBits);
+
+    data.writeInt(invariantsCount);
+    for (long remaining : remainingTimes) {
+      data.writeLong(remaining);
+    }
+
+    data.writeShort(policyCounts.size());
+    for (Map.Entry<Integer, Integer> entry : policyCounts.entrySet()) {
+      data.writeShort(entry.getKey());
+      data.writeInt(entry.getValue());
+    }
+    data.flush();
+  }
+
+  /**
+   * Reads a checkpoint written by {@link #writeTo(OutputStream)}.
+   *
+   * @param in Stream to read from.
+   * @return The checkpoint read.
+   * @throws IOException if reading fails or the data is not a supported checkpoint.
+   */
+  public static Checkpoint readFrom(InputStream in) throws IOException {
+    DataInputStream data = new DataInputStream(in);
+    if (data.readInt() != MAGIC) {
+      throw new IOException("Not a Petri net checkpoint");
+    }
+    byte version = data.readByte();
+    if (version != VERSION) {
+      throw new IOException("Unsupported checkpoint version: " + version);
+    }
+
+    int[] marking = new int[data.readUnsignedShort()];
+    for (int i = 0; i < marking.length; i++) {
+      marking[i] = data.readInt();
+    }
+
+    boolean[] enabledTransitions = new boolean[data.readUnsignedShort()];
+    byte[] packedBits = new byte[(enabledTransitions.length + 7) / 8];
+    data.readFully(packedBits);
+    BitSet enabledBits = BitSet.valueOf(packedBits);
+    for (int i = 0; i < enabledTransitions.length; i++) {
+      enabledTransitions[i] = enabledBits.get(i);
+    }
+
+    int invariantsCount = data.readInt();
+    long[] remainingTimes = new long[enabledTransitions.length];
+    for (int i = 0; i < remainingTimes.length; i++) {
+      remainingTimes[i] = data.readLong();
+    }
+
+    Map<Integer, Integer> policyCounts = new TreeMap<>();
+    int pairs = data.readUnsignedShort();
+    for (int i = 0; i < pairs; i++) {
+      policyCounts.put((int) data.readShort(), data.readInt());
+    }
+
+    return new Checkpoint(
+        marking, enabledTransitions, invariantsCount, remainingTimes, policyCounts);
+  }
+
+  /* Getters */
+
+  public int[] getMarking() {
+    return marking.clone();
+  }
+
+  public boolean[] getEnabledTransitions() {
+    return enabledTransitions.clone();
+  }
+
+  public int getInvariantsCount() {
+    return invariantsCount;
+  }
+
+  public long[] getRemainingTimes() {
+    return remainingTimes.clone();
+  }
+
+  public Map<Integer, Integer> getPolicyCounts() {
+    return policyCounts;
+  }
+}
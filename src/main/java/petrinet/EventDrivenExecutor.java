@@ -0,0 +1,116 @@
+package petrinet;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import monitor.Monitor;
+import utils.Logger;
+
+/**
+ * Runs the transition sequences of a net without dedicating a thread to each one. Every sequence
+ * keeps a single pending {@link Monitor#fireAsync(int)} request for its next transition; the
+ * monitor fires it as soon as it is enabled and its alpha window has elapsed, and the continuation
+ * that submits the following request runs as a task on a work-stealing pool. No thread ever waits
+ * for tokens, so thousands of sequences run on as many threads as the pool has.
+ *
+ * <p>Sequences behave like {@link Segments}: they start at their first enabled transition, loop
+ * until the net reaches its invariants target and leave the choice among conflicting transitions to
+ * the monitor's policy.
+ */
+public class EventDrivenExecutor {
+  private static final Logger logger = Logger.getLogger();
+  private final Monitor monitor;
+  private final PetriNet petriNet;
+  private final List<List<Transition>> sequences;
+  private final Executor executor;
+
+  /**
+   * Constructor for the EventDrivenExecutor that runs the continuations on a pool of its own.
+   * Submitting a request enters the monitor and may block for as long as another thread holds
+   * it, so the continuations do not run on the common pool, where they would hold up unrelated
+   * tasks.
+   *
+   * @param monitor The monitor controlling the net.
+   * @param petriNet The Petri net to run.
+   * @param sequences Transition sequences to run, one per segment.
+   */
+  public EventDrivenExecutor(Monitor monitor, PetriNet petriNet, List<List<Transition>> sequences) {
+    this(monitor, petriNet, sequences, new ForkJoinPool());
+  }
+
+  /**
+   * Constructor for the EventDrivenExecutor.
+   *
+   * @param monitor The monitor controlling the net.
+   * @param petriNet The Petri net to run.
+   * @param sequences Transition sequences to run, one per segment.
+   * @param executor Executor for the continuations, usually a {@link ForkJoinPool}. Its threads
+   *     block while they enter the monitor.
+   */
+  public EventDrivenExecutor(
+      Monitor monitor, PetriNet petriNet, List<List<Transition>> sequences, Executor executor) {
+    this.monitor = monitor;
+    this.petriNet = petriNet;
+    this.sequences = sequences;
+    this.executor = executor;
+  }
+
+  /**
+   * Submits the first request of every sequence and returns without waiting.
+   *
+   * @return Future completed when every sequence has finished, or exceptionally if one of them
+   *     failed.
+   */
+  public CompletableFuture<Void> start() {
+    CompletableFuture<?>[] finished = new CompletableFuture<?>[sequences.size()];
+    for (int i = 0; i < finished.length; i++) {
+      int[] transitionIndexes =
+          sequences.get(i).stream().mapToInt(Transition::getNumber).toArray();
+      SequenceRun run = new SequenceRun(transitionIndexes);
+      run.submitNext();
+      finished[i] = run.finished;
+    }
+    return CompletableFuture.allOf(finished);
+  }
+
+  /** State of one sequence: the position of its next transition and its completion. */
+  private class SequenceRun {
+    private final int[] transitionIndexes;
+    private final CompletableFuture<Void> finished = new CompletableFuture<>();
+    private int position;
+
+    SequenceRun(int[] transitionIndexes) {
+      this.transitionIndexes = transitionIndexes;
+      this.position = Segments.getStartPosition(transitionIndexes, petriNet);
+    }
+
+    /**
+     * Requests the firing of the transition at the current position and schedules the next request
+     * for when it fires. A request that completes without firing is submitted again for the same
+     * transition, so the sequence never skips one. Only one request of a sequence is pending at a
+     * time, so the position needs no synchronization beyond the happens-before edge of the future.
+     */
+    void submitNext() {
+      if (petriNet.petriNetHasFinished()) {
+        finished.complete(null);
+        return;
+      }
+      monitor
+          .fireAsync(transitionIndexes[position])
+          .whenCompleteAsync(
+              (fired, error) -> {
+                if (error != null) {
+                  logger.error("Sequence stopped: " + error.getMessage());
+                  finished.completeExceptionally(error);
+                  return;
+                }
+                if (fired) {
+                  position = (position + 1) % transitionIndexes.length;
+                }
+                submitNext();
+              },
+              executor);
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package petrinet;
+
+/**
+ * Event emitted when a transition fires. Carries the change in tokens of every place, so an
+ * observer that knows the initial marking can follow the marking without parsing the log. When a
+ * subscriber conflates events, one event stands for several consecutive firings and its delta is
+ * their sum.
+ */
+public class FiringEvent {
+  private final long sequence;
+  private final int transitionIndex;
+  private final long timestamp;
+  private final int[] markingDelta;
+  private final int firings;
+
+  /**
+   * Constructor for the FiringEvent. The delta array is kept as given and never modified.
+   *
+   * @param sequence Position of the firing among all the firings of the net, starting at 0.
+   * @param transitionIndex Index of the transition that fired.
+   * @param timestamp Time of the firing in milliseconds, read from the net's clock.
+   * @param markingDelta Tokens added (positive) or removed (negative) from each place.
+   * @param firings Number of firings this event stands for.
+   */
+  public FiringEvent(
+      long sequence, int transitionIndex, long timestamp, int[] markingDelta, int firings) {
+    this.sequence = sequence;
+    this.transitionIndex = transitionIndex;
+    this.timestamp = timestamp;
+    this.markingDelta = markingDelta;
+    this.firings = firings;
+  }
+
+  /**
+   * Conflates this event with the one that followed it. The result keeps the sequence, transition
+   * and timestamp of the latest firing and adds up the marking deltas.
+   *
+   * @param next Event that followed this one.
+   * @return A new event standing for the firings of both.
+   */
+  public FiringEvent conflate(FiringEvent next) {
+    int[] delta = new int[markingDelta.length];
+    for (int p = 0; p < delta.length; p++) {
+      delta[p] = markingDelta[p] + next.markingDelta[p];
+    }
+    return new FiringEvent(
+        next.sequence, next.transitionIndex, next.timestamp, delta, firings + next.firings);
+  }
+
+  /**
+   * Applies the marking delta of this event to a marking.
+   *
+   * @param marking Marking to update in place.
+   */
+  public void applyTo(int[] marking) {
+    for (int p = 0; p < markingDelta.length; p++) {
+      marking[p] += markingDelta[p];
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "#" + sequence + " T" + transitionIndex + " @" + timestamp + " (" + firings + ")";
+  }
+
+  /* Getters */
+
+  public long getSequence() {
+    return sequence;
+  }
+
+  public int getTransitionIndex() {
+    return transitionIndex;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public int[] getMarkingDelta() {
+    return markingDelta.clone();
+  }
+
+  public int getFirings() {
+    return firings;
+  }
+}
@@ -0,0 +1,307 @@
+package petrinet;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Publishes the firings of a Petri net as {@link FiringEvent}s to {@link Flow.Subscriber}s. Each
+ * subscriber gets its own bounded buffer drained on an executor, so a slow observer never runs on
+ * the firing thread; what happens when its buffer is full is chosen per subscriber with {@link
+ * Backpressure}. With no subscribers, publishing a firing costs a single counter increment.
+ */
+public class FiringEventPublisher implements Flow.Publisher<FiringEvent> {
+  public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+  /** What to do with a new event when a subscriber's buffer is full. */
+  public enum Backpressure {
+    /** Discard the new event. Subscribers see a gap in the sequence numbers. */
+    DROP,
+    /** Merge the new event into the newest buffered one, keeping the marking deltas exact. */
+    CONFLATE,
+    /** Block the firing thread until there is room. Slows the net down to the subscriber. */
+    BLOCK
+  }
+
+  private final CopyOnWriteArrayList<BufferedSubscription> subscriptions =
+      new CopyOnWriteArrayList<>();
+  private final AtomicLong sequence = new AtomicLong();
+  private final Executor executor;
+  private final int[][] markingDeltas;
+  private volatile boolean closed = false;
+
+  /**
+   * Constructor for the FiringEventPublisher, delivering on the common fork-join pool.
+   *
+   * @param incidenceMatrixOut Output incidence matrix of the Petri net.
+   * @param incidenceMatrixIn Input incidence matrix of the Petri net.
+   */
+  public FiringEventPublisher(int[][] incidenceMatrixOut, int[][] incidenceMatrixIn) {
+    this(incidenceMatrixOut, incidenceMatrixIn, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Constructor for the FiringEventPublisher.
+   *
+   * @param incidenceMatrixOut Output incidence matrix of the Petri net.
+   * @param incidenceMatrixIn Input incidence matrix of the Petri net.
+   * @param executor Executor that delivers the events to the subscribers.
+   */
+  public FiringEventPublisher(
+      int[][] incidenceMatrixOut, int[][] incidenceMatrixIn, Executor executor) {
+    this.executor = executor;
+    int transitionsLength = incidenceMatrixIn.length == 0 ? 0 : incidenceMatrixIn[0].length;
+    // Deltas are computed once and shared by every event of the same transition
+    this.markingDeltas = new int[transitionsLength][incidenceMatrixIn.length];
+    for (int t = 0; t < transitionsLength; t++) {
+      for (int p = 0; p < incidenceMatrixIn.length; p++) {
+        markingDeltas[t][p] = incidenceMatrixOut[p][t] - incidenceMatrixIn[p][t];
+      }
+    }
+  }
+
+  /**
+   * Subscribes with a buffer of {@link #DEFAULT_BUFFER_SIZE} events that drops on overflow.
+   *
+   * @param subscriber Subscriber to add.
+   */
+  @Override
+  public void subscribe(Flow.Subscriber<? super FiringEvent> subscriber) {
+    subscribe(subscriber, DEFAULT_BUFFER_SIZE, Backpressure.DROP);
+  }
+
+  /**
+   * Subscribes with the given buffer size and backpressure strategy. A subscriber can only be
+   * subscribed once at a time.
+   *
+   * @param subscriber Subscriber to add.
+   * @param bufferSize Maximum number of events buffered for this subscriber.
+   * @param backpressure What to do when the buffer is full.
+   */
+  public void subscribe(
+      Flow.Subscriber<? super FiringEvent> subscriber, int bufferSize, Backpressure backpressure) {
+    if (subscriber == null || backpressure == null) {
+      throw new NullPointerException("Subscriber and backpressure must not be null");
+    }
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+    }
+
+    BufferedSubscription subscription =
+        new BufferedSubscription(subscriber, bufferSize, backpressure);
+    boolean duplicate =
+        subscriptions.stream().anyMatch(existing -> existing.subscriber == subscriber);
+    subscriber.onSubscribe(subscription);
+    if (duplicate) {
+      subscription.cancel();
+      subscriber.onError(new IllegalStateException("Subscriber already subscribed"));
+      return;
+    }
+    subscriptions.add(subscription);
+    if (closed) {
+      subscription.complete();
+    }
+  }
+
+  /**
+   * Publishes the firing of a transition to every subscriber. Called by the net right after the
+   * marking is updated. Under the mutex and ring buffer monitors only one firing happens at a time,
+   * so events are published in firing order. The partitioned and lock-free monitors fire in
+   * parallel, so concurrent firings may be published in a different order than they took effect.
+   *
+   * @param transitionIndex Index of the transition that fired.
+   * @param timestamp Time of the firing in milliseconds.
+   */
+  public void publish(int transitionIndex, long timestamp) {
+    publish(transitionIndex, () -> timestamp);
+  }
+
+  /**
+   * Publishes the firing of a transition, reading its time only if there are subscribers.
+   *
+   * @param transitionIndex Index of the transition that fired.
+   * @param clock Source of the time of the firing in milliseconds.
+   */
+  public void publish(int transitionIndex, LongSupplier clock) {
+    long eventSequence = sequence.getAndIncrement();
+    if (subscriptions.isEmpty()) {
+      return;
+    }
+    FiringEvent event =
+        new FiringEvent(
+            eventSequence, transitionIndex, clock.getAsLong(), markingDeltas[transitionIndex], 1);
+    for (BufferedSubscription subscription : subscriptions) {
+      subscription.offer(event);
+    }
+  }
+
+  /** Completes every subscriber once the buffered events are delivered. */
+  public void close() {
+    closed = true;
+    for (BufferedSubscription subscription : subscriptions) {
+      subscription.complete();
+    }
+  }
+
+  public boolean hasSubscribers() {
+    return !subscriptions.isEmpty();
+  }
+
+  public int getNumberOfSubscribers() {
+    return subscriptions.size();
+  }
+
+  /**
+   * Returns the number of firings published so far, whether or not anyone was subscribed. Cheap
+   * enough to be polled as a progress counter.
+   *
+   * @return Number of firings published.
+   */
+  public long getNumberOfFirings() {
+    return sequence.get();
+  }
+
+  /**
+   * Subscription with its own bounded buffer. The buffer and demand are guarded by the
+   * subscription's lock; delivery runs on the executor, by at most one task at a time.
+   */
+  private class BufferedSubscription implements Flow.Subscription, Runnable {
+    private final Flow.Subscriber<? super FiringEvent> subscriber;
+    private final int bufferSize;
+    private final Backpressure backpressure;
+    private final ArrayDeque<FiringEvent> buffer;
+    private final AtomicInteger pendingDrains = new AtomicInteger();
+    private long demand = 0;
+    private boolean completed = false;
+    private boolean cancelled = false;
+    private boolean terminated = false;
+
+    BufferedSubscription(
+        Flow.Subscriber<? super FiringEvent> subscriber,
+        int bufferSize,
+        Backpressure backpressure) {
+      this.subscriber = subscriber;
+      this.bufferSize = bufferSize;
+      this.backpressure = backpressure;
+      this.buffer = new ArrayDeque<>(Math.min(bufferSize, DEFAULT_BUFFER_SIZE));
+    }
+
+    /**
+     * Buffers an event, applying the backpressure strategy if the buffer is full.
+     *
+     * @param event Event to buffer.
+     */
+    void offer(FiringEvent event) {
+      synchronized (this) {
+        if (cancelled || completed) {
+          return;
+        }
+        while (buffer.size() >= bufferSize) {
+          if (backpressure == Backpressure.DROP) {
+            return;
+          }
+          if (backpressure == Backpressure.CONFLATE) {
+            buffer.addLast(buffer.pollLast().conflate(event));
+            return;
+          }
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            // Keep the interrupt for the firing thread and lose this event
+            Thread.currentThread().interrupt();
+            return;
+          }
+          if (cancelled) {
+            return;
+          }
+        }
+        buffer.addLast(event);
+      }
+      scheduleDrain();
+    }
+
+    /** Marks the subscription as completed; onComplete follows the last buffered event. */
+    void complete() {
+      synchronized (this) {
+        completed = true;
+      }
+      scheduleDrain();
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        cancel();
+        subscriber.onError(new IllegalArgumentException("Non-positive request: " + n));
+        return;
+      }
+      synchronized (this) {
+        demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+      }
+      scheduleDrain();
+    }
+
+    @Override
+    public void cancel() {
+      synchronized (this) {
+        cancelled = true;
+        buffer.clear();
+        notifyAll();
+      }
+      subscriptions.remove(this);
+    }
+
+    private void scheduleDrain() {
+      if (pendingDrains.getAndIncrement() == 0) {
+        executor.execute(this);
+      }
+    }
+
+    /** Delivers buffered events while there is demand. */
+    @Override
+    public void run() {
+      int missed = 1;
+      while (missed != 0) {
+        while (true) {
+          FiringEvent next = null;
+          boolean finish = false;
+          synchronized (this) {
+            if (cancelled || terminated) {
+              break;
+            }
+            if (demand > 0 && !buffer.isEmpty()) {
+              next = buffer.pollFirst();
+              demand--;
+              notifyAll();
+            } else if (completed && buffer.isEmpty()) {
+              terminated = true;
+              finish = true;
+            }
+          }
+
+          if (finish) {
+            subscriptions.remove(this);
+            subscriber.onComplete();
+            break;
+          }
+          if (next == null) {
+            break;
+          }
+          try {
+            subscriber.onNext(next);
+          } catch (RuntimeException e) {
+            cancel();
+            subscriber.onError(e);
+            break;
+          }
+        }
+        missed = pendingDrains.addAndGet(-missed);
+      }
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package petrinet;
+
+import utils.Logger;
+
+/**
+ * Enabledness checks and marking updates of a fixed Petri net. The net's structure never changes
+ * once {@link PetriNetConf} is loaded, so implementations may specialize themselves for it. The
+ * kernel used by {@link PetriNet} is chosen with the {@code petrinet.kernel} system property.
+ */
+public interface FiringKernel {
+  /**
+   * Checks if a transition is enabled by a marking.
+   *
+   * @param transitionIndex Index of the transition to check.
+   * @param marking Marking of the net.
+   * @return true if every input place holds enough tokens, false otherwise.
+   */
+  boolean isEnabled(int transitionIndex, int[] marking);
+
+  /**
+   * Fires a transition, updating the marking in place. Enabledness is not checked. Only the places
+   * whose marking changes are written, since monitors that lock only the regions of a transition
+   * let other threads fire in the rest of the marking at the same time.
+   *
+   * @param transitionIndex Index of the transition to fire.
+   * @param marking Marking of the net.
+   */
+  void fire(int transitionIndex, int[] marking);
+
+  /**
+   * Computes the enabledness of every transition.
+   *
+   * @param marking Marking of the net.
+   * @param enabled Array to fill, one entry per transition.
+   */
+  default void computeEnabled(int[] marking, boolean[] enabled) {
+    for (int t = 0; t < enabled.length; t++) {
+      enabled[t] = isEnabled(t, marking);
+    }
+  }
+
+  /**
+   * Returns the name of the kernel, as accepted by {@link #create(String, int[][], int[][])}.
+   *
+   * @return Name of the kernel.
+   */
+  String getName();
+
+  /** Number of places above which the default kernel is the sparse one. */
+  int SPARSE_THRESHOLD = 64;
+
+  /**
+   * Creates a kernel by name: "interpreted" walks the incidence matrices, "sparse" walks only the
+   * arcs of each transition, "generated" compiles straight-line code for the net at startup and
+   * "vector" compares several places at a time with the Vector API. The default is the interpreted
+   * kernel, or the sparse one for nets of more than {@link #SPARSE_THRESHOLD} places. Falls back to
+   * the interpreted kernel if the requested one cannot be built in this JVM. Local firings, under
+   * monitors that lock only part of the net, use the sparse kernel whatever is chosen here.
+   *
+   * @param kind Name of the kernel, or null for the default.
+   * @param incidenceMatrixOut Output incidence matrix of the Petri net.
+   * @param incidenceMatrixIn Input incidence matrix of the Petri net.
+   * @return The kernel.
+   * @throws IllegalArgumentException if the name is unknown.
+   */
+  static FiringKernel create(String kind, int[][] incidenceMatrixOut, int[][] incidenceMatrixIn) {
+    if (kind == null || kind.isEmpty()) {
+      kind = incidenceMatrixIn.length > SPARSE_THRESHOLD ? "sparse" : "interpreted";
+    }
+    if (kind.equals("interpreted")) {
+      return new InterpretedKernel(incidenceMatrixOut, incidenceMatrixIn);
+    }
+    if (kind.equals("sparse")) {
+      return new SparseKernel(incidenceMatrixOut, incidenceMatrixIn);
+    }
+    try {
+      switch (kind) {
+        case "generated":
+          return FiringKernelCompiler.compile(incidenceMatrixOut, incidenceMatrixIn);
+        case "vector":
+          return new VectorKernel(incidenceMatrixOut, incidenceMatrixIn);
+        default:
+          throw new IllegalArgumentException("Unknown firing kernel: " + kind);
+      }
+    } catch (IllegalStateException | LinkageError e) {
+      // LinkageError when the JVM was started without the jdk.incubator.vector module
+      Logger.getLogger()
+          .error("Falling back to the interpreted firing kernel: " + e.getMessage());
+      return new InterpretedKernel(incidenceMatrixOut, incidenceMatrixIn);
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package petrinet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.invoke.MethodHandles;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.util.List;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Generates a {@link FiringKernel} specialized for one net. The kernel's source has a switch with
+ * one case per transition, holding the enabledness check and marking update of that transition as
+ * straight-line code with the arc weights inlined, so the JIT can inline them at the call site. The
+ * source is compiled in memory with the system Java compiler and defined as a hidden class, which
+ * is unloaded along with the kernel.
+ */
+public class FiringKernelCompiler {
+  private static final String CLASS_NAME = "GeneratedFiringKernel";
+  private static final String DEFAULT_CASE =
+      "      default: throw new IllegalArgumentException(\"Invalid transition index: \" + t);\n"
+          + "    }\n  }\n\n";
+
+  private FiringKernelCompiler() {}
+
+  /**
+   * Generates, compiles and loads a kernel for a net.
+   *
+   * @param incidenceMatrixOut Output incidence matrix of the Petri net.
+   * @param incidenceMatrixIn Input incidence matrix of the Petri net.
+   * @return The generated kernel.
+   * @throws IllegalStateException if there is no Java compiler in this JVM or compilation fails,
+   *     for example because a very large net exceeds the size limit of a method.
+   */
+  public static FiringKernel compile(int[][] incidenceMatrixOut, int[][] incidenceMatrixIn) {
+    String source = generateSource(incidenceMatrixOut, incidenceMatrixIn);
+    byte[] bytecode = compileSource(source);
+    try {
+      MethodHandles.Lookup kernelLookup =
+          MethodHandles.lookup().defineHiddenClass(bytecode, true);
+      return (FiringKernel) kernelLookup.lookupClass().getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Could not load the generated kernel: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Generates the Java source of a kernel for a net.
+   *
+   * @param incidenceMatrixOut Output incidence matrix of the Petri net.
+   * @param incidenceMatrixIn Input incidence matrix of the Petri net.
+   * @return Source of a class named {@value #CLASS_NAME} in this package.
+   */
+  public static String generateSource(int[][] incidenceMatrixOut, int[][] incidenceMatrixIn) {
+    int placesLength = incidenceMatrixIn.length;
+    int transitionsLength = placesLength == 0 ? 0 : incidenceMatrixIn[0].length;
+    String[] enabledness = new String[transitionsLength];
+    for (int t = 0; t < transitionsLength; t++) {
+      StringBuilder condition = new StringBuilder();
+      for (int p = 0; p < placesLength; p++) {
+        if (incidenceMatrixIn[p][t] > 0) {
+          condition.append(condition.length() == 0 ? "" : " && ");
+          condition.append("m[").append(p).append("] >= ").append(incidenceMatrixIn[p][t]);
+        }
+      }
+      enabledness[t] = condition.length() == 0 ? "true" : condition.toString();
+    }
+
+    StringBuilder source = new StringBuilder();
+    source.append("package petrinet;\n\n");
+    source.append("final class ").append(CLASS_NAME).append(" implements FiringKernel {\n");
+
+    source.append("  public boolean isEnabled(int t, int[] m) {\n    switch (t) {\n");
+    for (int t = 0; t < transitionsLength; t++) {
+      source.append("      case ").append(t).append(": return ").append(enabledness[t]);
+      source.append(";\n");
+    }
+    source.append(DEFAULT_CASE);
+
+    source.append("  public void fire(int t, int[] m) {\n    switch (t) {\n");
+    for (int t = 0; t < transitionsLength; t++) {
+      source.append("      case ").append(t).append(":\n");
+      for (int p = 0; p < placesLength; p++) {
+        int delta = incidenceMatrixOut[p][t] - incidenceMatrixIn[p][t];
+        if (delta != 0) {
+          source.append("        m[").append(p).append("] += ").append(delta).append(";\n");
+        }
+      }
+      source.append("        return;\n");
+    }
+    source.append(DEFAULT_CASE);
+
+    source.append("  public void computeEnabled(int[] m, boolean[] e) {\n");
+    for (int t = 0; t < transitionsLength; t++) {
+      source.append("    e[").append(t).append("] = ").append(enabledness[t]).append(";\n");
+    }
+    source.append("  }\n\n");
+
+    source.append("  public String getName() {\n    return \"generated\";\n  }\n}\n");
+    return source.toString();
+  }
+
+  /**
+   * Compiles the source of the kernel in memory.
+   *
+   * @param source Source of the kernel class.
+   * @return Bytecode of the kernel class.
+   * @throws IllegalStateException if there is no compiler or the source does not compile.
+   */
+  private static byte[] compileSource(String source) {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    if (compiler == null) {
+      throw new IllegalStateException("No Java compiler available in this runtime");
+    }
+
+    ByteArrayOutputStream bytecode = new ByteArrayOutputStream();
+    StringWriter diagnostics = new StringWriter();
+    StandardJavaFileManager standardManager = compiler.getStandardFileManager(null, null, null);
+    JavaFileManager fileManager =
+        new ForwardingJavaFileManager<>(standardManager) {
+          @Override
+          public JavaFileObject getJavaFileForOutput(
+              JavaFileManager.Location location,
+              String className,
+              JavaFileObject.Kind kind,
+              FileObject sibling) {
+            return new SimpleJavaFileObject(toUri(className, kind), kind) {
+              @Override
+              public OutputStream openOutputStream() {
+                return bytecode;
+              }
+            };
+          }
+        };
+    JavaFileObject sourceFile =
+        new SimpleJavaFileObject(
+            toUri("petrinet." + CLASS_NAME, JavaFileObject.Kind.SOURCE),
+            JavaFileObject.Kind.SOURCE) {
+          @Override
+          public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+          }
+        };
+
+    // The kernel interface must be visible to the compiler wherever this class was loaded from
+    List<String> options = List.of("-classpath", getClassPath(), "-proc:none", "-g:none");
+    boolean compiled =
+        compiler
+            .getTask(diagnostics, fileManager, null, options, null, List.of(sourceFile))
+            .call();
+    if (!compiled || bytecode.size() == 0) {
+      throw new IllegalStateException("Generated kernel did not compile: " + diagnostics);
+    }
+    return bytecode.toByteArray();
+  }
+
+  /**
+   * Returns the class path of the JVM plus the location of this class.
+   *
+   * @return Class path for the compiler.
+   */
+  private static String getClassPath() {
+    String classPath = System.getProperty("java.class.path", "");
+    CodeSource codeSource = FiringKernelCompiler.class.getProtectionDomain().getCodeSource();
+    if (codeSource == null) {
+      return classPath;
+    }
+    try {
+      String ownLocation = new File(codeSource.getLocation().toURI()).getPath();
+      return classPath.isEmpty() ? ownLocation : classPath + File.pathSeparator + ownLocation;
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      return classPath;
+    }
+  }
+
+  /**
+   * Builds the URI of an in-memory file object.
+   *
+   * @param className Binary name of the class.
+   * @param kind Kind of file.
+   * @return URI of the file object.
+   */
+  private static URI toUri(String className, JavaFileObject.Kind kind) {
+    return URI.create("memory:///" + className.replace('.', '/') + kind.extension);
+  }
+}
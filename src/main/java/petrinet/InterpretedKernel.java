@@ -0,0 +1,49 @@
+package petrinet;
+
+/**
+ * Firing kernel that walks the incidence matrices on every call, for any net. It is the dense
+ * baseline the other kernels are measured against.
+ */
+public class InterpretedKernel implements FiringKernel {
+  private final int[][] incidenceMatrixOut;
+  private final int[][] incidenceMatrixIn;
+
+  /**
+   * Constructor for the InterpretedKernel.
+   *
+   * @param incidenceMatrixOut Output incidence matrix of the Petri net.
+   * @param incidenceMatrixIn Input incidence matrix of the Petri net.
+   */
+  public InterpretedKernel(int[][] incidenceMatrixOut, int[][] incidenceMatrixIn) {
+    this.incidenceMatrixOut = incidenceMatrixOut;
+    this.incidenceMatrixIn = incidenceMatrixIn;
+  }
+
+  @Override
+  public boolean isEnabled(int transitionIndex, int[] marking) {
+    for (int placeIndex = 0; placeIndex < incidenceMatrixIn.length; placeIndex++) {
+      if (marking[placeIndex] < incidenceMatrixIn[placeIndex][transitionIndex]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void fire(int transitionIndex, int[] marking) {
+    for (int placeIndex = 0; placeIndex < incidenceMatrixIn.length; placeIndex++) {
+      int delta =
+          incidenceMatrixOut[placeIndex][transitionIndex]
+              - incidenceMatrixIn[placeIndex][transitionIndex];
+      // Every place is visited, but untouched ones are not written
+      if (delta != 0) {
+        marking[placeIndex] += delta;
+      }
+    }
+  }
+
+  @Override
+  public String getName() {
+    return "interpreted";
+  }
+}
@@ -0,0 +1,430 @@
+package petrinet;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Optional firing engine that keeps the marking of a Petri net packed into atomic {@code long}
+ * words and fires transitions with compare-and-swap instead of a lock. Each place gets a bit field
+ * wide enough for the bound given by the place invariants (16 bits for places not covered by any
+ * invariant), and fields never straddle two words.
+ *
+ * <p>A transition whose places all live in one word fires with a single CAS, so the enabledness
+ * check and the marking update are atomic. Larger nets striped over several words consume their
+ * input tokens word by word in ascending order, rolling back if a later word is not enabled, and
+ * then produce their output tokens; other threads may observe the tokens in flight. A rollback is
+ * reported to a listener, so that threads which found the tokens missing can be woken.
+ */
+public class LockFreeFiringEngine {
+  private static final int WORD_BITS = Long.SIZE;
+  private static final int UNBOUNDED_PLACE_BITS = 16;
+
+  private final AtomicLongArray words;
+  private final int placesLength;
+  private final int[] wordOfPlace;
+  private final int[] shiftOfPlace;
+  private final long[] maskOfPlace;
+
+  /** Sorted, distinct words touched by each transition. */
+  private final int[][] wordsOfTransition;
+
+  private final int[][] inputPlaces;
+  private final int[][] inputWeights;
+  private final int[][] outputPlaces;
+  private final int[][] outputWeights;
+
+  /** Called with a transition whose input tokens were given back by an aborted firing. */
+  private final IntConsumer rollbackListener;
+
+  /**
+   * Builds the engine from the structure and current marking of a Petri net.
+   *
+   * @param petriNet The Petri net whose marking will be packed.
+   */
+  public LockFreeFiringEngine(PetriNet petriNet) {
+    this(petriNet, transitionIndex -> {});
+  }
+
+  /**
+   * Builds the engine from the structure and current marking of a Petri net, reporting the aborted
+   * multi-word firings.
+   *
+   * @param petriNet The Petri net whose marking will be packed.
+   * @param rollbackListener Called with the transition after its input tokens were given back.
+   */
+  public LockFreeFiringEngine(PetriNet petriNet, IntConsumer rollbackListener) {
+    this.rollbackListener = rollbackListener;
+    int[][] incidenceMatrixIn = petriNet.getIncidenceMatrixIn();
+    int[][] incidenceMatrixOut = petriNet.getIncidenceMatrixOut();
+    int[] marking = petriNet.getMarking();
+    this.placesLength = petriNet.getPlacesLength();
+    int transitionsLength = petriNet.getNumberOfTransitions();
+
+    // Lay out one bit field per place
+    long[] bounds = computePlaceBounds(petriNet.getPlacesInvariants(), placesLength);
+    this.wordOfPlace = new int[placesLength];
+    this.shiftOfPlace = new int[placesLength];
+    this.maskOfPlace = new long[placesLength];
+    int word = 0;
+    int usedBits = 0;
+    for (int p = 0; p < placesLength; p++) {
+      int bits =
+          bounds[p] < 0
+              ? UNBOUNDED_PLACE_BITS
+              : Math.max(1, WORD_BITS - Long.numberOfLeadingZeros(bounds[p]));
+      if (usedBits + bits > WORD_BITS - 1) {
+        word++;
+        usedBits = 0;
+      }
+      wordOfPlace[p] = word;
+      shiftOfPlace[p] = usedBits;
+      maskOfPlace[p] = (1L << bits) - 1;
+      usedBits += bits;
+    }
+
+    this.words = new AtomicLongArray(word + 1);
+    for (int p = 0; p < placesLength; p++) {
+      if (marking[p] > maskOfPlace[p]) {
+        throw new IllegalArgumentException("Marking of P" + p + " exceeds its bound");
+      }
+      words.getAndAdd(wordOfPlace[p], (long) marking[p] << shiftOfPlace[p]);
+    }
+
+    // Keep only the arcs of each transition
+    this.wordsOfTransition = new int[transitionsLength][];
+    this.inputPlaces = new int[transitionsLength][];
+    this.inputWeights = new int[transitionsLength][];
+    this.outputPlaces = new int[transitionsLength][];
+    this.outputWeights = new int[transitionsLength][];
+    for (int t = 0; t < transitionsLength; t++) {
+      TreeSet<Integer> touched = new TreeSet<>();
+      inputPlaces[t] = arcPlaces(incidenceMatrixIn, t);
+      inputWeights[t] = arcWeights(incidenceMatrixIn, inputPlaces[t], t);
+      outputPlaces[t] = arcPlaces(incidenceMatrixOut, t);
+      outputWeights[t] = arcWeights(incidenceMatrixOut, outputPlaces[t], t);
+      for (int p : inputPlaces[t]) {
+        touched.add(wordOfPlace[p]);
+      }
+      for (int p : outputPlaces[t]) {
+        touched.add(wordOfPlace[p]);
+      }
+      wordsOfTransition[t] = touched.stream().mapToInt(Integer::intValue).toArray();
+    }
+  }
+
+  /**
+   * Attempts to fire a transition, retrying on CAS conflicts until it either fires or is found
+   * disabled.
+   *
+   * @param transitionIndex Index of the transition to fire.
+   * @return true if the transition fired, false if it is not enabled.
+   * @throws IllegalStateException if an output place would exceed the capacity of its bit field.
+   *     The marking is left as it was.
+   */
+  public boolean tryFire(int transitionIndex) {
+    int[] touchedWords = wordsOfTransition[transitionIndex];
+
+    if (touchedWords.length == 1) {
+      int word = touchedWords[0];
+      while (true) {
+        long current = words.get(word);
+        if (!isEnabledInWord(transitionIndex, word, current)) {
+          return false;
+        }
+        long next = produce(transitionIndex, word, consume(transitionIndex, word, current));
+        if (words.compareAndSet(word, current, next)) {
+          return true;
+        }
+      }
+    }
+
+    // Check the output capacity first, so the firing does not fail after consuming its tokens
+    for (int word : touchedWords) {
+      long current = words.get(word);
+      if (isEnabledInWord(transitionIndex, word, current)) {
+        checkCapacity(transitionIndex, word, consume(transitionIndex, word, current));
+      }
+    }
+
+    // Consume phase, rolling back the words already consumed if one is not enabled
+    for (int i = 0; i < touchedWords.length; i++) {
+      int word = touchedWords[i];
+      while (true) {
+        long current = words.get(word);
+        if (!isEnabledInWord(transitionIndex, word, current)) {
+          if (i > 0) {
+            for (int j = i - 1; j >= 0; j--) {
+              rollback(transitionIndex, touchedWords[j]);
+            }
+            rollbackListener.accept(transitionIndex);
+          }
+          return false;
+        }
+        if (words.compareAndSet(word, current, consume(transitionIndex, word, current))) {
+          break;
+        }
+      }
+    }
+
+    // Produce phase, which only fails if another firing filled an output place since the check
+    for (int i = 0; i < touchedWords.length; i++) {
+      int word = touchedWords[i];
+      while (true) {
+        long current = words.get(word);
+        try {
+          if (words.compareAndSet(word, current, produce(transitionIndex, word, current))) {
+            break;
+          }
+        } catch (IllegalStateException e) {
+          abortProduce(transitionIndex, touchedWords, i);
+          throw e;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks if a transition is enabled in the current marking. The result is exact for transitions
+   * whose places live in a single word, and a hint otherwise.
+   *
+   * @param transitionIndex Index of the transition to check.
+   * @return true if every input place holds enough tokens, false otherwise.
+   */
+  public boolean isEnabled(int transitionIndex) {
+    for (int word : wordsOfTransition[transitionIndex]) {
+      if (!isEnabledInWord(transitionIndex, word, words.get(word))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Unpacks the current marking. Consistent as long as the net fits in a single word.
+   *
+   * @return A new array with the tokens of each place.
+   */
+  public int[] getMarking() {
+    int[] marking = new int[placesLength];
+    long[] snapshot = new long[words.length()];
+    for (int w = 0; w < snapshot.length; w++) {
+      snapshot[w] = words.get(w);
+    }
+    for (int p = 0; p < placesLength; p++) {
+      marking[p] = (int) ((snapshot[wordOfPlace[p]] >>> shiftOfPlace[p]) & maskOfPlace[p]);
+    }
+    return marking;
+  }
+
+  /**
+   * Returns the number of long words used by the packed marking.
+   *
+   * @return Number of words.
+   */
+  public int getWordCount() {
+    return words.length();
+  }
+
+  /**
+   * Checks the input places of a transition that live in the given word.
+   *
+   * @param transitionIndex Index of the transition.
+   * @param word Index of the word.
+   * @param value Value of the word.
+   * @return true if the transition's input places in this word hold enough tokens.
+   */
+  private boolean isEnabledInWord(int transitionIndex, int word, long value) {
+    int[] places = inputPlaces[transitionIndex];
+    int[] weights = inputWeights[transitionIndex];
+    for (int i = 0; i < places.length; i++) {
+      int p = places[i];
+      if (wordOfPlace[p] == word && ((value >>> shiftOfPlace[p]) & maskOfPlace[p]) < weights[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Removes the input tokens of a transition from a word. The caller must have checked the
+   * transition is enabled in that word, so no field borrows from its neighbour.
+   *
+   * @param transitionIndex Index of the transition.
+   * @param word Index of the word.
+   * @param value Value of the word.
+   * @return The value of the word after consuming the tokens.
+   */
+  private long consume(int transitionIndex, int word, long value) {
+    int[] places = inputPlaces[transitionIndex];
+    int[] weights = inputWeights[transitionIndex];
+    for (int i = 0; i < places.length; i++) {
+      if (wordOfPlace[places[i]] == word) {
+        value -= (long) weights[i] << shiftOfPlace[places[i]];
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Adds the output tokens of a transition to a word.
+   *
+   * @param transitionIndex Index of the transition.
+   * @param word Index of the word.
+   * @param value Value of the word.
+   * @return The value of the word after producing the tokens.
+   * @throws IllegalStateException if a place would exceed the capacity of its bit field.
+   */
+  private long produce(int transitionIndex, int word, long value) {
+    checkCapacity(transitionIndex, word, value);
+    int[] places = outputPlaces[transitionIndex];
+    int[] weights = outputWeights[transitionIndex];
+    for (int i = 0; i < places.length; i++) {
+      if (wordOfPlace[places[i]] == word) {
+        value += (long) weights[i] << shiftOfPlace[places[i]];
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Checks that the output places of a transition in a word can take its output tokens.
+   *
+   * @param transitionIndex Index of the transition.
+   * @param word Index of the word.
+   * @param value Value of the word.
+   * @throws IllegalStateException if a place would exceed the capacity of its bit field.
+   */
+  private void checkCapacity(int transitionIndex, int word, long value) {
+    int[] places = outputPlaces[transitionIndex];
+    int[] weights = outputWeights[transitionIndex];
+    for (int i = 0; i < places.length; i++) {
+      int p = places[i];
+      if (wordOfPlace[p] == word
+          && ((value >>> shiftOfPlace[p]) & maskOfPlace[p]) + weights[i] > maskOfPlace[p]) {
+        throw new IllegalStateException("Place P" + p + " exceeded its packed capacity");
+      }
+    }
+  }
+
+  /**
+   * Undoes a multi-word firing whose produce phase failed: gives back its input tokens and takes
+   * back the output tokens of the words already produced, unless another firing consumed them.
+   *
+   * @param transitionIndex Index of the transition.
+   * @param touchedWords Words touched by the transition, in ascending order.
+   * @param producedWords Number of words whose output tokens were already produced.
+   */
+  private void abortProduce(int transitionIndex, int[] touchedWords, int producedWords) {
+    for (int j = 0; j < producedWords; j++) {
+      int word = touchedWords[j];
+      while (true) {
+        long current = words.get(word);
+        long taken = takeOutputs(transitionIndex, word, current);
+        if (taken == current || words.compareAndSet(word, current, taken)) {
+          break;
+        }
+      }
+    }
+    for (int word : touchedWords) {
+      rollback(transitionIndex, word);
+    }
+    rollbackListener.accept(transitionIndex);
+  }
+
+  /**
+   * Removes the output tokens of a transition from a word, if all of them are still there.
+   *
+   * @param transitionIndex Index of the transition.
+   * @param word Index of the word.
+   * @param value Value of the word.
+   * @return The value of the word without the tokens, or the same value if one is missing.
+   */
+  private long takeOutputs(int transitionIndex, int word, long value) {
+    int[] places = outputPlaces[transitionIndex];
+    int[] weights = outputWeights[transitionIndex];
+    long next = value;
+    for (int i = 0; i < places.length; i++) {
+      int p = places[i];
+      if (wordOfPlace[p] == word) {
+        if (((value >>> shiftOfPlace[p]) & maskOfPlace[p]) < weights[i]) {
+          return value;
+        }
+        next -= (long) weights[i] << shiftOfPlace[p];
+      }
+    }
+    return next;
+  }
+
+  /**
+   * Gives back the input tokens consumed from a word by an aborted multi-word firing.
+   *
+   * @param transitionIndex Index of the transition.
+   * @param word Index of the word.
+   */
+  private void rollback(int transitionIndex, int word) {
+    long delta = 0;
+    int[] places = inputPlaces[transitionIndex];
+    int[] weights = inputWeights[transitionIndex];
+    for (int i = 0; i < places.length; i++) {
+      if (wordOfPlace[places[i]] == word) {
+        delta += (long) weights[i] << shiftOfPlace[places[i]];
+      }
+    }
+    words.getAndAdd(word, delta);
+  }
+
+  /**
+   * Computes an upper bound for the tokens of each place from the place invariants. Each invariant
+   * row {@code sum(w[p] * M(p)) = c} bounds every place with {@code w[p] > 0} by {@code c / w[p]}.
+   *
+   * @param placesInvariants Place invariants, with the expected sum in the last column.
+   * @param placesLength Number of places.
+   * @return Bound of each place, or -1 for places not covered by any invariant.
+   */
+  private static long[] computePlaceBounds(int[][] placesInvariants, int placesLength) {
+    long[] bounds = new long[placesLength];
+    Arrays.fill(bounds, -1);
+    for (int[] row : placesInvariants) {
+      for (int p = 0; p < placesLength; p++) {
+        if (row[p] > 0) {
+          long bound = row[placesLength] / row[p];
+          bounds[p] = bounds[p] < 0 ? bound : Math.min(bounds[p], bound);
+        }
+      }
+    }
+    return bounds;
+  }
+
+  /**
+   * Returns the places with an arc to or from a transition in the given matrix.
+   *
+   * @param matrix Incidence matrix (places x transitions).
+   * @param transitionIndex Index of the transition.
+   * @return Indices of the places with a positive entry.
+   */
+  private static int[] arcPlaces(int[][] matrix, int transitionIndex) {
+    return IntStream.range(0, matrix.length)
+        .filter(p -> matrix[p][transitionIndex] > 0)
+        .toArray();
+  }
+
+  /**
+   * Returns the arc weights of a transition for the given places.
+   *
+   * @param matrix Incidence matrix (places x transitions).
+   * @param places Places with an arc.
+   * @param transitionIndex Index of the transition.
+   * @return Weight of each arc, in the same order as the places.
+   */
+  private static int[] arcWeights(int[][] matrix, int[] places, int transitionIndex) {
+    int[] weights = new int[places.length];
+    for (int i = 0; i < places.length; i++) {
+      weights[i] = matrix[places[i]][transitionIndex];
+    }
+    return weights;
+  }
+}
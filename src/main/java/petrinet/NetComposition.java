@@ -0,0 +1,256 @@
+package petrinet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Composes a net out of copies of a base net, such as several agency offices, where some places
+ * are fused into a single place shared by every copy, such as a common pool of agents or the
+ * payment desk. The shared places come first, followed by the other places of each copy; the
+ * transitions of copy c are those of the base net shifted by c times its number of transitions.
+ *
+ * <p>Each copy starts with the marking of the base net unless another one is set, and each shared
+ * place with its tokens in the base net unless another number is set. Invariants of the base net
+ * that do not touch a shared place are repeated for every copy; those that do are merged into one
+ * invariant over all copies, which still holds since each transition only touches its own copy and
+ * the shared places. Threads and completion transitions are repeated for every copy.
+ */
+public class NetComposition {
+  private final NetDefinition base;
+  private final int copies;
+  private final int[] sharedPlaces;
+  private final boolean[] shared;
+  private final int localPlaces;
+  private final int placesLength;
+
+  /** Index of each base place: in the shared block if shared, or in the first copy otherwise. */
+  private final int[] placeIndex;
+
+  /** Marking of each copy, indexed [copy][base place]. Shared places are read from copy 0. */
+  private final int[][] copyMarkings;
+
+  /**
+   * Constructor for the NetComposition.
+   *
+   * @param base Net to copy.
+   * @param copies Number of copies.
+   * @param sharedPlaces Places of the base net fused across the copies.
+   * @throws IllegalArgumentException if there are no copies or a shared place is invalid.
+   */
+  public NetComposition(NetDefinition base, int copies, int... sharedPlaces) {
+    int basePlaces = base.getPlacesLength();
+    if (copies < 1) {
+      throw new IllegalArgumentException("Invalid number of copies: " + copies);
+    }
+    this.shared = new boolean[basePlaces];
+    for (int p : sharedPlaces) {
+      if (p < 0 || p >= basePlaces || shared[p]) {
+        throw new IllegalArgumentException("Invalid shared place: " + p);
+      }
+      shared[p] = true;
+    }
+    this.base = base;
+    this.copies = copies;
+    this.sharedPlaces = sharedPlaces.clone();
+
+    this.placeIndex = new int[basePlaces];
+    int sharedCount = 0;
+    for (int p = 0; p < basePlaces; p++) {
+      sharedCount += shared[p] ? 1 : 0;
+    }
+    int local = 0;
+    for (int p = 0, s = 0; p < basePlaces; p++) {
+      placeIndex[p] = shared[p] ? s++ : sharedCount + local++;
+    }
+    this.localPlaces = local;
+    this.placesLength = sharedCount + copies * localPlaces;
+
+    this.copyMarkings = new int[copies][];
+    for (int c = 0; c < copies; c++) {
+      copyMarkings[c] = base.getInitialMarking();
+    }
+  }
+
+  /**
+   * Sets the initial marking of the places of one copy that are not shared.
+   *
+   * @param copy Index of the copy.
+   * @param marking Marking over the places of the base net; shared places are ignored.
+   * @throws IllegalArgumentException if the copy or the size of the marking are invalid.
+   */
+  public void setCopyMarking(int copy, int[] marking) {
+    validateCopy(copy);
+    if (marking.length != shared.length) {
+      throw new IllegalArgumentException("Marking must have " + shared.length + " places");
+    }
+    for (int p = 0; p < shared.length; p++) {
+      if (!shared[p]) {
+        copyMarkings[copy][p] = marking[p];
+      }
+    }
+  }
+
+  /**
+   * Sets the initial tokens of a shared place.
+   *
+   * @param place Shared place of the base net.
+   * @param tokens Tokens of the fused place.
+   * @throws IllegalArgumentException if the place is not shared or the tokens are negative.
+   */
+  public void setSharedTokens(int place, int tokens) {
+    if (place < 0 || place >= shared.length || !shared[place] || tokens < 0) {
+      throw new IllegalArgumentException("Invalid " + tokens + " tokens for shared place " + place);
+    }
+    copyMarkings[0][place] = tokens;
+  }
+
+  /**
+   * Builds the composed net. The invariants target is the one of the base net times the copies.
+   *
+   * @return The definition of the composed net.
+   */
+  public NetDefinition createDefinition() {
+    int basePlaces = shared.length;
+    int baseTransitions = base.getTransitionsLength();
+    int transitionsLength = copies * baseTransitions;
+
+    int[][] baseOut = base.getIncidenceMatrixOut();
+    int[][] baseIn = base.getIncidenceMatrixIn();
+    long[] baseAlphas = base.getTimeTransitions();
+    int[][] out = new int[placesLength][transitionsLength];
+    int[][] in = new int[placesLength][transitionsLength];
+    int[] marking = new int[placesLength];
+    long[] alphas = new long[transitionsLength];
+    for (int c = 0; c < copies; c++) {
+      for (int p = 0; p < basePlaces; p++) {
+        int place = getPlace(c, p);
+        if (!shared[p] || c == 0) {
+          marking[place] = copyMarkings[c][p];
+        }
+        for (int t = 0; t < baseTransitions; t++) {
+          out[place][getTransition(c, t)] = baseOut[p][t];
+          in[place][getTransition(c, t)] = baseIn[p][t];
+        }
+      }
+      System.arraycopy(baseAlphas, 0, alphas, c * baseTransitions, baseTransitions);
+    }
+
+    List<int[]> invariants = new ArrayList<>();
+    for (int[] baseInvariant : base.getPlacesInvariants()) {
+      boolean touchesShared = false;
+      for (int p = 0; p < basePlaces; p++) {
+        touchesShared |= shared[p] && baseInvariant[p] != 0;
+      }
+      if (touchesShared) {
+        invariants.add(composeInvariant(baseInvariant, 0, copies, marking));
+      } else {
+        for (int c = 0; c < copies; c++) {
+          invariants.add(composeInvariant(baseInvariant, c, c + 1, marking));
+        }
+      }
+    }
+
+    int[][] baseSequences = base.getSequences();
+    int[] baseCompletion = base.getCompletionTransitions();
+    int[][] sequences = new int[copies * baseSequences.length][];
+    int[] completion = new int[copies * baseCompletion.length];
+    for (int c = 0; c < copies; c++) {
+      int copy = c;
+      for (int s = 0; s < baseSequences.length; s++) {
+        sequences[c * baseSequences.length + s] =
+            Arrays.stream(baseSequences[s]).map(t -> getTransition(copy, t)).toArray();
+      }
+      for (int k = 0; k < baseCompletion.length; k++) {
+        completion[c * baseCompletion.length + k] = getTransition(c, baseCompletion[k]);
+      }
+    }
+
+    int baseTarget = base.getTargetInvariants();
+    return new NetDefinition(
+        base.getName() + "x" + copies,
+        out,
+        in,
+        marking,
+        invariants.toArray(int[][]::new),
+        alphas,
+        sequences,
+        completion,
+        baseTarget > Integer.MAX_VALUE / copies ? Integer.MAX_VALUE : baseTarget * copies);
+  }
+
+  /**
+   * Returns the index in the composed net of a place of the base net.
+   *
+   * @param copy Copy the place belongs to; ignored for shared places.
+   * @param place Place of the base net.
+   * @return Index of the place in the composed net.
+   */
+  public int getPlace(int copy, int place) {
+    return shared[place] ? placeIndex[place] : placeIndex[place] + copy * localPlaces;
+  }
+
+  /**
+   * Returns the index in the composed net of a transition of the base net.
+   *
+   * @param copy Copy the transition belongs to.
+   * @param transition Transition of the base net.
+   * @return Index of the transition in the composed net.
+   */
+  public int getTransition(int copy, int transition) {
+    return copy * base.getTransitionsLength() + transition;
+  }
+
+  /**
+   * Returns the copy a transition of the composed net belongs to.
+   *
+   * @param transition Transition of the composed net.
+   * @return Index of its copy.
+   */
+  public int getCopyOfTransition(int transition) {
+    return transition / base.getTransitionsLength();
+  }
+
+  public int getCopies() {
+    return copies;
+  }
+
+  public int[] getSharedPlaces() {
+    return sharedPlaces.clone();
+  }
+
+  /**
+   * Builds an invariant of the composed net from one of the base net over a range of copies, with
+   * the sum it has on the initial marking.
+   *
+   * @param baseInvariant Invariant of the base net, with its sum in the last column.
+   * @param fromCopy First copy covered, inclusive.
+   * @param toCopy Last copy covered, exclusive.
+   * @param marking Initial marking of the composed net.
+   * @return The invariant, with its sum in the last column.
+   */
+  private int[] composeInvariant(int[] baseInvariant, int fromCopy, int toCopy, int[] marking) {
+    int[] invariant = new int[placesLength + 1];
+    for (int c = fromCopy; c < toCopy; c++) {
+      for (int p = 0; p < shared.length; p++) {
+        invariant[getPlace(c, p)] = baseInvariant[p];
+      }
+    }
+    for (int p = 0; p < placesLength; p++) {
+      invariant[placesLength] += invariant[p] * marking[p];
+    }
+    return invariant;
+  }
+
+  /**
+   * Validates the index of a copy.
+   *
+   * @param copy Index of the copy.
+   * @throws IllegalArgumentException if the index is invalid.
+   */
+  private void validateCopy(int copy) {
+    if (copy < 0 || copy >= copies) {
+      throw new IllegalArgumentException("Invalid copy: " + copy);
+    }
+  }
+}
@@ -0,0 +1,407 @@
+package petrinet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Complete description of a Petri net that can be run: its structure, initial marking, place
+ * invariants, alphas, thread layout and the transitions that complete an invariant. {@link
+ * PetriNetConf} holds the agency net; {@link NetGenerator} builds definitions of other sizes and
+ * shapes. Getters return copies, so a definition can create any number of independent nets.
+ */
+public class NetDefinition {
+  private static final int MAGIC = 0x504E4446; // "PNDF"
+  private static final byte VERSION = 1;
+
+  private final String name;
+  private final int[][] incidenceMatrixOut;
+  private final int[][] incidenceMatrixIn;
+  private final int[] initialMarking;
+  private final int[][] placesInvariants;
+  private final long[] alphas;
+  private final int[][] sequences;
+  private final int[] completionTransitions;
+  private final int targetInvariants;
+
+  /**
+   * Constructor for the NetDefinition.
+   *
+   * @param name Short description of the net, for reports.
+   * @param incidenceMatrixOut Output incidence matrix (places x transitions).
+   * @param incidenceMatrixIn Input incidence matrix (places x transitions).
+   * @param initialMarking Initial marking.
+   * @param placesInvariants Place invariants, one per row, with the sum in the last column.
+   * @param alphas Alpha of each transition, in milliseconds.
+   * @param sequences Transitions run by each thread, in firing order.
+   * @param completionTransitions Transitions whose firing completes an invariant.
+   * @param targetInvariants Number of invariants after which the net stops.
+   * @throws IllegalArgumentException if the sizes of the arrays do not match.
+   */
+  public NetDefinition(
+      String name,
+      int[][] incidenceMatrixOut,
+      int[][] incidenceMatrixIn,
+      int[] initialMarking,
+      int[][] placesInvariants,
+      long[] alphas,
+      int[][] sequences,
+      int[] completionTransitions,
+      int targetInvariants) {
+    int placesLength = incidenceMatrixIn.length;
+    int transitionsLength = placesLength == 0 ? 0 : incidenceMatrixIn[0].length;
+    if (incidenceMatrixOut.length != placesLength
+        || initialMarking.length != placesLength
+        || alphas.length != transitionsLength) {
+      throw new IllegalArgumentException("Sizes of net " + name + " do not match");
+    }
+    for (int[] invariant : placesInvariants) {
+      if (invariant.length != placesLength + 1) {
+        throw new IllegalArgumentException("Place invariant of net " + name + " has wrong size");
+      }
+    }
+    this.name = name;
+    this.incidenceMatrixOut = incidenceMatrixOut;
+    this.incidenceMatrixIn = incidenceMatrixIn;
+    this.initialMarking = initialMarking;
+    this.placesInvariants = placesInvariants;
+    this.alphas = alphas;
+    this.sequences = sequences;
+    this.completionTransitions = completionTransitions;
+    this.targetInvariants = targetInvariants;
+  }
+
+  /**
+   * Builds the definition of the agency net from its configuration.
+   *
+   * @param conf Configuration of the agency net.
+   * @return The definition, completing invariants at T11.
+   */
+  public static NetDefinition of(PetriNetConf conf) {
+    int[][] sequences =
+        IntStream.range(0, conf.getNumberOfSequences())
+            .mapToObj(i -> conf.getTransitionSequence(i))
+            .map(sequence -> sequence.stream().mapToInt(Transition::getNumber).toArray())
+            .toArray(int[][]::new);
+    return new NetDefinition(
+        "agency",
+        deepCopy(conf.getIncidenceMatrixOut()),
+        deepCopy(conf.getIncidenceMatrixIn()),
+        conf.getInitialMarking(),
+        deepCopy(conf.getPlacesInvariants()),
+        conf.getTimeTransitions().clone(),
+        sequences,
+        new int[] {conf.getTransitions().size() - 1},
+        conf.getTargetInvariants());
+  }
+
+  /**
+   * Creates a new Petri net in its initial marking.
+   *
+   * @return The Petri net, counting invariants at the completion transitions.
+   */
+  public PetriNet createPetriNet() {
+    PetriNet petriNet =
+        new PetriNet(
+            getTransitions(),
+            getPlaces(),
+            getIncidenceMatrixOut(),
+            getIncidenceMatrixIn(),
+            getPlacesInvariants(),
+            getInitialMarking(),
+            targetInvariants,
+            getTimeTransitions());
+    petriNet.setCompletionTransitions(completionTransitions);
+    return petriNet;
+  }
+
+  /**
+   * Returns a copy of this definition with another invariants target.
+   *
+   * @param targetInvariants Number of invariants after which the net stops.
+   * @return The new definition.
+   */
+  public NetDefinition withTargetInvariants(int targetInvariants) {
+    return new NetDefinition(
+        name,
+        incidenceMatrixOut,
+        incidenceMatrixIn,
+        initialMarking,
+        placesInvariants,
+        alphas,
+        sequences,
+        completionTransitions,
+        targetInvariants);
+  }
+
+  /**
+   * Returns a copy of this definition with all alphas set to 0, to measure firing cost alone.
+   *
+   * @return The new definition.
+   */
+  public NetDefinition withoutAlphas() {
+    return new NetDefinition(
+        name,
+        incidenceMatrixOut,
+        incidenceMatrixIn,
+        initialMarking,
+        placesInvariants,
+        new long[alphas.length],
+        sequences,
+        completionTransitions,
+        targetInvariants);
+  }
+
+  /**
+   * Returns the transitions run by a thread.
+   *
+   * @param sequenceNumber Index of the thread.
+   * @return The transitions, in firing order.
+   * @throws IllegalArgumentException if the index is invalid.
+   */
+  public List<Transition> getTransitionSequence(int sequenceNumber) {
+    if (sequenceNumber < 0 || sequenceNumber >= sequences.length) {
+      throw new IllegalArgumentException("Index for the sequences of " + name + " invalid");
+    }
+    List<Transition> sequence = new ArrayList<>();
+    for (int transitionIndex : sequences[sequenceNumber]) {
+      sequence.add(new Transition(transitionIndex, alphas[transitionIndex]));
+    }
+    return sequence;
+  }
+
+  /**
+   * Writes the definition in a compact binary format, so it can be sent to another process. Only
+   * the arcs of the incidence matrices are written.
+   *
+   * @param out Stream to write to. It is flushed but not closed.
+   * @throws IOException if the stream cannot be written.
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(MAGIC);
+    data.writeByte(VERSION);
+    data.writeUTF(name);
+    data.writeInt(getPlacesLength());
+    data.writeInt(getTransitionsLength());
+    writeArcs(data, incidenceMatrixOut);
+    writeArcs(data, incidenceMatrixIn);
+    writeArray(data, initialMarking);
+    data.writeInt(placesInvariants.length);
+    for (int[] invariant : placesInvariants) {
+      writeArray(data, invariant);
+    }
+    for (long alpha : alphas) {
+      data.writeLong(alpha);
+    }
+    data.writeInt(sequences.length);
+    for (int[] sequence : sequences) {
+      writeArray(data, sequence);
+    }
+    writeArray(data, completionTransitions);
+    data.writeInt(targetInvariants);
+    data.flush();
+  }
+
+  /**
+   * Reads a definition written by {@link #writeTo(OutputStream)}.
+   *
+   * @param in Stream to read from.
+   * @return The definition.
+   * @throws IOException if the stream cannot be read or does not hold a net definition.
+   */
+  public static NetDefinition readFrom(InputStream in) throws IOException {
+    DataInputStream data = new DataInputStream(in);
+    if (data.readInt() != MAGIC) {
+      throw new IOException("Not a Petri net definition");
+    }
+    byte version = data.readByte();
+    if (version != VERSION) {
+      throw new IOException("Unsupported net definition version: " + version);
+    }
+    String name = data.readUTF();
+    int placesLength = data.readInt();
+    int transitionsLength = data.readInt();
+    int[][] incidenceOut = readArcs(data, placesLength, transitionsLength);
+    int[][] incidenceIn = readArcs(data, placesLength, transitionsLength);
+    int[] marking = readArray(data);
+    int[][] invariants = new int[data.readInt()][];
+    for (int i = 0; i < invariants.length; i++) {
+      invariants[i] = readArray(data);
+    }
+    long[] alphas = new long[transitionsLength];
+    for (int t = 0; t < transitionsLength; t++) {
+      alphas[t] = data.readLong();
+    }
+    int[][] sequences = new int[data.readInt()][];
+    for (int i = 0; i < sequences.length; i++) {
+      sequences[i] = readArray(data);
+    }
+    int[] completion = readArray(data);
+    int target = data.readInt();
+    try {
+      return new NetDefinition(
+          name,
+          incidenceOut,
+          incidenceIn,
+          marking,
+          invariants,
+          alphas,
+          sequences,
+          completion,
+          target);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Corrupt net definition: " + e.getMessage(), e);
+    }
+  }
+
+  /* Getters */
+
+  public String getName() {
+    return name;
+  }
+
+  public int getPlacesLength() {
+    return incidenceMatrixIn.length;
+  }
+
+  public int getTransitionsLength() {
+    return alphas.length;
+  }
+
+  public int[][] getIncidenceMatrixOut() {
+    return deepCopy(incidenceMatrixOut);
+  }
+
+  public int[][] getIncidenceMatrixIn() {
+    return deepCopy(incidenceMatrixIn);
+  }
+
+  public int[] getInitialMarking() {
+    return initialMarking.clone();
+  }
+
+  public int[][] getPlacesInvariants() {
+    return deepCopy(placesInvariants);
+  }
+
+  public long[] getTimeTransitions() {
+    return alphas.clone();
+  }
+
+  public int[][] getSequences() {
+    return deepCopy(sequences);
+  }
+
+  public int getNumberOfSequences() {
+    return sequences.length;
+  }
+
+  public int[] getCompletionTransitions() {
+    return completionTransitions.clone();
+  }
+
+  public int getTargetInvariants() {
+    return targetInvariants;
+  }
+
+  public List<Place> getPlaces() {
+    List<Place> places = new ArrayList<>();
+    for (int p = 0; p < initialMarking.length; p++) {
+      places.add(new Place("P" + p, initialMarking[p]));
+    }
+    return places;
+  }
+
+  public List<Transition> getTransitions() {
+    List<Transition> transitions = new ArrayList<>();
+    for (int t = 0; t < alphas.length; t++) {
+      transitions.add(new Transition(t, alphas[t]));
+    }
+    return transitions;
+  }
+
+  /**
+   * Writes the non-zero entries of an incidence matrix as (place, transition, weight) triples.
+   *
+   * @param data Stream to write to.
+   * @param matrix Incidence matrix (places x transitions).
+   * @throws IOException if the stream cannot be written.
+   */
+  private static void writeArcs(DataOutputStream data, int[][] matrix) throws IOException {
+    int arcs = 0;
+    for (int[] row : matrix) {
+      for (int weight : row) {
+        arcs += weight != 0 ? 1 : 0;
+      }
+    }
+    data.writeInt(arcs);
+    for (int p = 0; p < matrix.length; p++) {
+      for (int t = 0; t < matrix[p].length; t++) {
+        if (matrix[p][t] != 0) {
+          data.writeInt(p);
+          data.writeInt(t);
+          data.writeInt(matrix[p][t]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads an incidence matrix written by {@link #writeArcs(DataOutputStream, int[][])}.
+   *
+   * @param data Stream to read from.
+   * @param placesLength Number of places.
+   * @param transitionsLength Number of transitions.
+   * @return The incidence matrix.
+   * @throws IOException if the stream cannot be read or an arc is out of bounds.
+   */
+  private static int[][] readArcs(DataInputStream data, int placesLength, int transitionsLength)
+      throws IOException {
+    int[][] matrix = new int[placesLength][transitionsLength];
+    int arcs = data.readInt();
+    for (int i = 0; i < arcs; i++) {
+      int p = data.readInt();
+      int t = data.readInt();
+      if (p < 0 || p >= placesLength || t < 0 || t >= transitionsLength) {
+        throw new IOException("Arc out of bounds: P" + p + ", T" + t);
+      }
+      matrix[p][t] = data.readInt();
+    }
+    return matrix;
+  }
+
+  private static void writeArray(DataOutputStream data, int[] array) throws IOException {
+    data.writeInt(array.length);
+    for (int value : array) {
+      data.writeInt(value);
+    }
+  }
+
+  private static int[] readArray(DataInputStream data) throws IOException {
+    int[] array = new int[data.readInt()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = data.readInt();
+    }
+    return array;
+  }
+
+  /**
+   * Copies a matrix row by row.
+   *
+   * @param matrix Matrix to copy.
+   * @return The copy.
+   */
+  static int[][] deepCopy(int[][] matrix) {
+    int[][] copy = new int[matrix.length][];
+    for (int i = 0; i < matrix.length; i++) {
+      copy[i] = matrix[i].clone();
+    }
+    return copy;
+  }
+}
@@ -0,0 +1,212 @@
+package petrinet;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Builds synthetic nets of any size to measure how firing cost, memory and lock contention scale
+ * beyond the agency net. Every net comes with place invariants that hold on every reachable
+ * marking, one thread sequence per segment and the transitions that complete an invariant.
+ * Generated transitions have no alpha; replicated nets keep the alphas of their base net.
+ */
+public final class NetGenerator {
+
+  private NetGenerator() {}
+
+  /**
+   * Builds a ring of stages where transition Ti moves a token from Pi to P(i+1), and the last one
+   * back to P0. The tokens start spread evenly along the ring. Each stage is run by its own thread
+   * and an invariant completes when a token leaves the last stage.
+   *
+   * @param stages Number of places and transitions of the ring.
+   * @param tokens Number of tokens in the ring, at most one per stage.
+   * @return The definition of the pipeline.
+   * @throws IllegalArgumentException if there are no stages, or the tokens do not fit.
+   */
+  public static NetDefinition pipeline(int stages, int tokens) {
+    if (stages < 1 || tokens < 1 || tokens > stages) {
+      throw new IllegalArgumentException(
+          "Invalid pipeline of " + stages + " stages and " + tokens + " tokens");
+    }
+    int[][] out = new int[stages][stages];
+    int[][] in = new int[stages][stages];
+    for (int t = 0; t < stages; t++) {
+      in[t][t] = 1;
+      out[(t + 1) % stages][t] = 1;
+    }
+    int[] marking = new int[stages];
+    for (int k = 0; k < tokens; k++) {
+      marking[(int) ((long) k * stages / tokens)] = 1;
+    }
+    int[][] sequences = new int[stages][];
+    for (int t = 0; t < stages; t++) {
+      sequences[t] = new int[] {t};
+    }
+    return new NetDefinition(
+        "pipeline-" + stages,
+        out,
+        in,
+        marking,
+        new int[][] {conservationInvariant(stages, tokens)},
+        new long[stages],
+        sequences,
+        new int[] {stages - 1},
+        Integer.MAX_VALUE);
+  }
+
+  /**
+   * Builds a conflict of the given width: P0 holds the tokens, transition Ti (i &lt; width) takes
+   * one into branch place P(i+1), and transition T(width+i) returns it to P0. All branch
+   * transitions compete for P0. Each branch is run by its own thread, and an invariant completes
+   * when a token returns.
+   *
+   * @param width Number of branches in conflict.
+   * @param tokens Number of tokens in P0.
+   * @return The definition of the conflict.
+   * @throws IllegalArgumentException if the width or the tokens are not positive.
+   */
+  public static NetDefinition wideConflict(int width, int tokens) {
+    if (width < 1 || tokens < 1) {
+      throw new IllegalArgumentException(
+          "Invalid conflict of width " + width + " and " + tokens + " tokens");
+    }
+    int places = width + 1;
+    int transitions = 2 * width;
+    int[][] out = new int[places][transitions];
+    int[][] in = new int[places][transitions];
+    int[][] sequences = new int[width][];
+    int[] completion = new int[width];
+    for (int i = 0; i < width; i++) {
+      in[0][i] = 1;
+      out[i + 1][i] = 1;
+      in[i + 1][width + i] = 1;
+      out[0][width + i] = 1;
+      sequences[i] = new int[] {i, width + i};
+      completion[i] = width + i;
+    }
+    int[] marking = new int[places];
+    marking[0] = tokens;
+    return new NetDefinition(
+        "conflict-" + width,
+        out,
+        in,
+        marking,
+        new int[][] {conservationInvariant(places, tokens)},
+        new long[transitions],
+        sequences,
+        completion,
+        Integer.MAX_VALUE);
+  }
+
+  /**
+   * Builds a random net that never runs out of enabled transitions. The first {@code places}
+   * transitions move a token from their own place to a random one, so a marking always enables
+   * some transition. The rest take a token from each place with probability {@code density}, at
+   * least one, and put the same number into random places. Every transition conserves the number of
+   * tokens, which starts at one per place, so the sum of the marking is the invariant. Each
+   * transition is run by its own thread and every firing completes an invariant.
+   *
+   * <p>Only the net as a whole is live: a transition with several inputs may never be enabled
+   * again, so its thread can wait forever once the others finish. Run these nets until a target of
+   * invariants, never until every thread is done.
+   *
+   * @param places Number of places.
+   * @param transitions Number of transitions, at least one per place.
+   * @param density Probability that a place is an input of each of the extra transitions.
+   * @param seed Seed of the random generator, so the same net can be built again.
+   * @return The definition of the random net.
+   * @throws IllegalArgumentException if the sizes or the density are out of range.
+   */
+  public static NetDefinition random(int places, int transitions, double density, long seed) {
+    if (places < 1 || transitions < places || density < 0 || density > 1) {
+      throw new IllegalArgumentException(
+          "Invalid random net of "
+              + places
+              + " places, "
+              + transitions
+              + " transitions and density "
+              + density);
+    }
+    Random random = new Random(seed);
+    int[][] out = new int[places][transitions];
+    int[][] in = new int[places][transitions];
+    for (int t = 0; t < transitions; t++) {
+      int arcs = 0;
+      if (t < places) {
+        in[t][t] = 1;
+        arcs = 1;
+      } else {
+        for (int p = 0; p < places; p++) {
+          if (random.nextDouble() < density) {
+            in[p][t] = 1;
+            arcs++;
+          }
+        }
+        if (arcs == 0) {
+          in[random.nextInt(places)][t] = 1;
+          arcs = 1;
+        }
+      }
+      for (int k = 0; k < arcs; k++) {
+        out[random.nextInt(places)][t]++;
+      }
+    }
+    int[] marking = new int[places];
+    Arrays.fill(marking, 1);
+    int[][] sequences = new int[transitions][];
+    int[] completion = new int[transitions];
+    for (int t = 0; t < transitions; t++) {
+      sequences[t] = new int[] {t};
+      completion[t] = t;
+    }
+    return new NetDefinition(
+        "random-" + places + "x" + transitions,
+        out,
+        in,
+        marking,
+        new int[][] {conservationInvariant(places, places)},
+        new long[transitions],
+        sequences,
+        completion,
+        Integer.MAX_VALUE);
+  }
+
+  /**
+   * Builds the given number of agency branches sharing the payment desk (P10), so the branches only
+   * contend on T6, T7, T8 and T10.
+   *
+   * @param branches Number of agency branches.
+   * @return The definition of the replicated agency.
+   */
+  public static NetDefinition replicatedAgency(int branches) {
+    return replicate(NetDefinition.of(new PetriNetConf()), branches, 10);
+  }
+
+  /**
+   * Builds a net made of copies of a base net where the given places are fused into one place
+   * shared by every copy, as described in {@link NetComposition}.
+   *
+   * @param base Net to replicate.
+   * @param copies Number of copies.
+   * @param sharedPlaces Places of the base net fused across the copies.
+   * @return The definition of the replicated net.
+   * @throws IllegalArgumentException if there are no copies or a shared place is invalid.
+   */
+  public static NetDefinition replicate(NetDefinition base, int copies, int... sharedPlaces) {
+    return new NetComposition(base, copies, sharedPlaces).createDefinition();
+  }
+
+  /**
+   * Returns the invariant stating that the places always hold the given number of tokens.
+   *
+   * @param places Number of places.
+   * @param tokens Number of tokens.
+   * @return The invariant, with the sum in the last column.
+   */
+  private static int[] conservationInvariant(int places, int tokens) {
+    int[] invariant = new int[places + 1];
+    Arrays.fill(invariant, 0, places, 1);
+    invariant[places] = tokens;
+    return invariant;
+  }
+}
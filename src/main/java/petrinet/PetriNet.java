@@ -1,10 +1,17 @@
 package petrinet;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import utils.Logger;
+import utils.MarkingTimelineWriter;
 
 /**
  * Represents a Petri Net structure with places, transitions. Manages the state of the Petri Net
@@ -14,17 +21,43 @@ public class PetriNet {
   private List<Transition> transitions;
   private List<Place> places;
   private List<Transition> enabledTransitions = new ArrayList<>();
-  private int invariantsCount = 0;
-  private boolean invariantsTargetAchieved = false;
+  private final AtomicInteger invariantsCount = new AtomicInteger();
+  private volatile boolean invariantsTargetAchieved = false;
   private final int invariantsCountTarget;
   private int[][] incidenceMatrixOut;
   private int[][] incidenceMatrixIn;
   private int[][] placesInvariants;
   private int[] marking;
   private final int placesLength;
-  private final int LAST_TRANSITION = 11;
+  private static final int LAST_TRANSITION = 11;
+
+  /**
+   * Transitions whose firing completes an invariant; T11 in the agency net. Read without a lock on
+   * every firing.
+   */
+  private volatile boolean[] completionTransitions;
   private static Logger logger = Logger.getLogger();
   private TimeTransitions timeTransitions;
+  private final LongSupplier clock;
+  private final FiringEventPublisher firingEvents;
+  private final FiringKernel kernel;
+
+  /**
+   * Kernel of the local firings and of the checks of single transitions: always the sparse one,
+   * which reads and writes only the arcs of the transition, whatever the size of the net.
+   */
+  private final FiringKernel localKernel;
+
+  private final boolean[] enabledBuffer;
+
+  /** Input and output places of each transition, for the checks of a local firing. */
+  private final int[][] touchedPlaces;
+
+  /** Transitions whose enabling may change when each transition fires, for their timers. */
+  private final int[][] dependentTransitions;
+
+  private TokenTracker tokenTracker = null;
+  private volatile MarkingTimelineWriter markingTimeline = null;
 
   /**
    * Constructor for the PetriNet class with the specified parameters.
@@ -46,6 +79,42 @@ public class PetriNet {
       int[] marking,
       int invariantsCountTarget,
       long[] alphas) {
+    this(
+        transitions,
+        places,
+        incidenceMatrixOut,
+        incidenceMatrixIn,
+        placesInvariants,
+        marking,
+        invariantsCountTarget,
+        alphas,
+        System::currentTimeMillis);
+  }
+
+  /**
+   * Constructor for the PetriNet class whose timed transitions read the time from the given clock,
+   * for example a virtual clock in simulations.
+   *
+   * @param transitions List of transitions in the Petri net.
+   * @param places List of places in the Petri net.
+   * @param incidenceMatrixOut Output incidence matrix ofthe Petri net.
+   * @param incidenceMatrixIn Input incidence matrix of the Petri net.
+   * @param placesInvariants Matrix representing the invariants of the petri net.
+   * @param marking Array representing the current marking of the petri net.
+   * @param invariantsCountTarget Target count of invariants to achieve.
+   * @param alphas Waiting time (alpha) of each transition.
+   * @param clock Source of the current time in milliseconds.
+   */
+  public PetriNet(
+      List<Transition> transitions,
+      List<Place> places,
+      int[][] incidenceMatrixOut,
+      int[][] incidenceMatrixIn,
+      int[][] placesInvariants,
+      int[] marking,
+      int invariantsCountTarget,
+      long[] alphas,
+      LongSupplier clock) {
     this.transitions = transitions;
     this.places = places;
     this.incidenceMatrixOut = incidenceMatrixOut;
@@ -54,8 +123,50 @@ public class PetriNet {
     this.marking = marking;
     this.placesLength = places.size();
     this.invariantsCountTarget = invariantsCountTarget;
+    this.kernel =
+        FiringKernel.create(
+            System.getProperty("petrinet.kernel"), incidenceMatrixOut, incidenceMatrixIn);
+    this.localKernel =
+        kernel instanceof SparseKernel
+            ? kernel
+            : new SparseKernel(incidenceMatrixOut, incidenceMatrixIn);
+    this.enabledBuffer = new boolean[transitions.size()];
+    this.touchedPlaces = new int[transitions.size()][];
+    for (int t = 0; t < touchedPlaces.length; t++) {
+      int transitionIndex = t;
+      touchedPlaces[t] =
+          IntStream.range(0, placesLength)
+              .filter(
+                  p ->
+                      incidenceMatrixIn[p][transitionIndex] > 0
+                          || incidenceMatrixOut[p][transitionIndex] > 0)
+              .toArray();
+    }
+    this.dependentTransitions = new int[transitions.size()][];
+    for (int t = 0; t < dependentTransitions.length; t++) {
+      int transitionIndex = t;
+      // Those with an input place whose marking the transition changes
+      dependentTransitions[t] =
+          IntStream.range(0, transitions.size())
+              .filter(
+                  u ->
+                      IntStream.range(0, placesLength)
+                          .anyMatch(
+                              p ->
+                                  incidenceMatrixIn[p][u] > 0
+                                      && incidenceMatrixOut[p][transitionIndex]
+                                          != incidenceMatrixIn[p][transitionIndex]))
+              .toArray();
+    }
+    this.completionTransitions = new boolean[transitions.size()];
+    if (LAST_TRANSITION < transitions.size()) {
+      completionTransitions[LAST_TRANSITION] = true;
+    }
     updateEnabledTransitions(); // Initialize the enabled transitions
-    this.timeTransitions = new TimeTransitions(alphas);
+    this.timeTransitions = new TimeTransitions(alphas, clock);
+    timeTransitions.updateEnabledTransitionsTimer(enabledBuffer);
+    this.clock = clock;
+    this.firingEvents = new FiringEventPublisher(incidenceMatrixOut, incidenceMatrixIn);
   }
 
   /**
@@ -84,9 +195,19 @@ public class PetriNet {
     // Verify the marking after firing the transition
     verifyMarking();
 
-    // Log the transition firing
-    logger.logTransition(transitionIndex);
-    logger.logCurrentMarking(transitionIndex, getStringMarking());
+    // Move the identified tokens, if they are tracked
+    if (tokenTracker != null) {
+      tokenTracker.fire(transitionIndex, clock.getAsLong());
+    }
+
+    // Log the transition firing, skipping the marking when logging is disabled
+    if (logger.isEnabled()) {
+      logger.logTransition(transitionIndex);
+      logMarking(transitionIndex);
+    }
+
+    // Publish the firing to the observers, if there are any
+    firingEvents.publish(transitionIndex, clock);
 
     // Check if the Petri net has finished using the invariants target
     checkAndHandleInvariantsTarget(transitionIndex);
@@ -94,12 +215,242 @@ public class PetriNet {
     // Update the enabled transitions after firing the transition
     updateEnabledTransitions();
 
-    // Update timeTransitions
-    timeTransitions.updateEnabledTransitionsTimer(getEnabledTransitionsInBits());
+    // Update the timers of the transitions whose enabling may have changed
+    timeTransitions.updateEnabledTransitionsTimer(
+        dependentTransitions[transitionIndex], enabledBuffer);
 
     return true;
   }
 
+  /**
+   * Fires a transition touching only the places of its input and output arcs. Unlike {@link
+   * #tryFireTransition(int)}, the shared enabled-transitions list, the timers and the global place
+   * invariants are not updated, so the caller only needs exclusive access to the places the
+   * transition touches rather than to the whole net. The check and the firing always use the sparse
+   * kernel, whichever kernel the net was built with, since it neither reads nor writes any other
+   * place.
+   *
+   * <p>The marking timeline keeps its own copy of the marking, so it stays consistent. A text
+   * marking, with {@code -Dlog.markings=text}, reads every place while other places may be firing,
+   * so it can show a marking the net never had.
+   *
+   * @param transitionIndex Index of the transition to fire.
+   * @return true if transition fired successfully, false otherwise.
+   */
+  public boolean tryFireTransitionLocally(int transitionIndex) {
+    validateTransitionIndex(transitionIndex);
+
+    if (petriNetHasFinished()) {
+      // Return true so that the waiting threads can finish executing
+      return true;
+    }
+
+    if (!isTransitionEnabledByMarking(transitionIndex)) {
+      return false;
+    }
+
+    localKernel.fire(transitionIndex, marking);
+
+    // Only the touched places can change, so only they need the negative tokens check
+    for (int placeIndex : touchedPlaces[transitionIndex]) {
+      if (marking[placeIndex] < 0) {
+        throw new RuntimeException("Negative tokens detected in place P" + placeIndex);
+      }
+    }
+
+    // Skip the marking when logging is disabled; the text form reads places outside the locks
+    if (logger.isEnabled()) {
+      logger.logTransition(transitionIndex);
+      logMarking(transitionIndex);
+    }
+    firingEvents.publish(transitionIndex, clock);
+
+    checkAndHandleInvariantsTarget(transitionIndex);
+
+    return true;
+  }
+
+  /**
+   * Records a firing performed outside of this class, for example by a {@link
+   * LockFreeFiringEngine} that owns the marking. Logs the firing and updates the invariants count.
+   *
+   * @param transitionIndex Index of the transition that fired.
+   * @param currentMarking Supplies the marking right after the firing; only called when markings
+   *     are logged as text.
+   */
+  public void recordFiring(int transitionIndex, Supplier<int[]> currentMarking) {
+    validateTransitionIndex(transitionIndex);
+    // Lock-free firings call this concurrently, so the logger is skipped when disabled
+    if (logger.isEnabled()) {
+      logger.logTransition(transitionIndex);
+      if (markingTimeline != null) {
+        markingTimeline.fire(transitionIndex);
+      } else if (logger.isTextMarkings()) {
+        logger.logCurrentMarking(
+            transitionIndex,
+            IntStream.of(currentMarking.get())
+                .mapToObj(String::valueOf)
+                .collect(Collectors.joining(", ")));
+      }
+    }
+    firingEvents.publish(transitionIndex, clock);
+    checkAndHandleInvariantsTarget(transitionIndex);
+  }
+
+  /**
+   * Adds tokens to a place from outside the net, for example customers arriving in an open-loop
+   * simulation, and refreshes the enabled transitions and their timers. Place invariants covering
+   * the place no longer hold afterwards, so open nets must be built without them. The caller must
+   * hold exclusive access to the net.
+   *
+   * @param placeIndex Index of the place.
+   * @param tokens Number of tokens to add.
+   * @throws IllegalArgumentException if the place does not exist or the tokens are negative.
+   */
+  public void addTokens(int placeIndex, int tokens) {
+    if (placeIndex < 0 || placeIndex >= placesLength || tokens < 0) {
+      throw new IllegalArgumentException("Invalid injection of " + tokens + " in P" + placeIndex);
+    }
+    marking[placeIndex] += tokens;
+    if (markingTimeline != null) {
+      markingTimeline.addTokens(placeIndex, tokens);
+    }
+    if (tokenTracker != null && tokenTracker.isTracked(placeIndex)) {
+      long now = clock.getAsLong();
+      for (int i = 0; i < tokens; i++) {
+        tokenTracker.addToken(placeIndex, now);
+      }
+    }
+    updateEnabledTransitions();
+    timeTransitions.updateEnabledTransitionsTimer(enabledBuffer);
+  }
+
+  /**
+   * Stops the net before its invariants target is reached, for example when another process
+   * decides that a distributed run is over. Threads then see the net as finished and the firing
+   * events are completed. The caller must hold exclusive access to the net, so no firing is lost
+   * between the last event and the completion.
+   */
+  public synchronized void finish() {
+    if (!invariantsTargetAchieved) {
+      invariantsTargetAchieved = true;
+      firingEvents.close();
+    }
+  }
+
+  /**
+   * Sets the transitions whose firing completes an invariant and counts towards the target, for
+   * nets other than the agency net, where it is T11. Must be called before the net runs.
+   *
+   * @param transitionIndexes Indexes of the completing transitions.
+   */
+  public void setCompletionTransitions(int... transitionIndexes) {
+    boolean[] completion = new boolean[transitions.size()];
+    for (int transitionIndex : transitionIndexes) {
+      validateTransitionIndex(transitionIndex);
+      completion[transitionIndex] = true;
+    }
+    completionTransitions = completion;
+  }
+
+  /**
+   * Starts giving an identity to the tokens of the given places from the current marking on. Only
+   * {@link #tryFireTransition(int)} and {@link #addTokens(int, int)} keep the tracker up to date.
+   * The caller must hold exclusive access to the net.
+   *
+   * @param trackedPlaces Places whose tokens get an id.
+   * @return The tracker, to attach an observer to.
+   */
+  public TokenTracker enableTokenTracking(boolean[] trackedPlaces) {
+    tokenTracker =
+        new TokenTracker(
+            incidenceMatrixOut, incidenceMatrixIn, trackedPlaces, marking, clock.getAsLong());
+    return tokenTracker;
+  }
+
+  /**
+   * Takes a checkpoint of the net. The caller must hold exclusive access to the net (e.g. the
+   * monitor's mutex); only a few small arrays are copied, serialization happens afterwards.
+   *
+   * @param policyCounts Transition counts of the policy to include.
+   * @return A checkpoint with the current state.
+   */
+  public Checkpoint createCheckpoint(Map<Integer, Integer> policyCounts) {
+    return new Checkpoint(
+        marking.clone(),
+        getEnabledTransitionsInBits(),
+        invariantsCount.get(),
+        timeTransitions.getRemainingTimes(),
+        policyCounts);
+  }
+
+  /**
+   * Restores the state saved in a checkpoint. Timers are restarted with their remaining time, so a
+   * run resumed later continues as if it had not been stopped. The caller must hold exclusive
+   * access to the net.
+   *
+   * @param checkpoint Checkpoint to restore.
+   * @throws IllegalArgumentException if the checkpoint does not match this net.
+   */
+  public void restore(Checkpoint checkpoint) {
+    int[] savedMarking = checkpoint.getMarking();
+    if (savedMarking.length != placesLength
+        || checkpoint.getRemainingTimes().length != transitions.size()) {
+      throw new IllegalArgumentException("Checkpoint does not match the Petri net structure");
+    }
+
+    System.arraycopy(savedMarking, 0, marking, 0, placesLength);
+    verifyMarking();
+    invariantsCount.set(checkpoint.getInvariantsCount());
+    invariantsTargetAchieved = invariantsCount.get() >= invariantsCountTarget;
+    updateEnabledTransitions();
+
+    boolean[] enabledInBits = getEnabledTransitionsInBits();
+    if (!Arrays.equals(enabledInBits, checkpoint.getEnabledTransitions())) {
+      throw new IllegalArgumentException("Checkpoint enabled transitions do not match its marking");
+    }
+    timeTransitions.restoreRemainingTimes(checkpoint.getRemainingTimes(), enabledInBits);
+    if (markingTimeline != null) {
+      markingTimeline.reset(marking);
+    }
+  }
+
+  /**
+   * Starts logging the marking after each firing as deltas in a marking timeline, from the current
+   * marking, instead of as text. Does nothing when logging is disabled or markings are logged as
+   * text. The caller must hold exclusive access to the net, usually before it starts firing.
+   *
+   * @throws IOException if the timeline file cannot be created.
+   */
+  public void openMarkingTimeline() throws IOException {
+    markingTimeline =
+        logger.openMarkingTimeline(marking.clone(), incidenceMatrixOut, incidenceMatrixIn);
+  }
+
+  /**
+   * Logs the marking after a firing, as a delta in the marking timeline or as a text line.
+   *
+   * @param transitionIndex Index of the transition that fired.
+   */
+  private void logMarking(int transitionIndex) {
+    if (markingTimeline != null) {
+      markingTimeline.fire(transitionIndex);
+    } else if (logger.isTextMarkings()) {
+      logger.logCurrentMarking(transitionIndex, getStringMarking());
+    }
+  }
+
+  /**
+   * Checks if a transition is enabled by reading the marking of its input places directly,
+   * without going through the cached enabled-transitions list.
+   *
+   * @param transitionIndex Index of the transition to check.
+   * @return true if every input place holds enough tokens, false otherwise.
+   */
+  public boolean isTransitionEnabledByMarking(int transitionIndex) {
+    return localKernel.isEnabled(transitionIndex, marking);
+  }
+
   /**
    * Checks if a transition has timing constraints (non-zero alpha).
    *
@@ -127,6 +478,28 @@ public class PetriNet {
     return Math.max(0, remainingTime);
   }
 
+  /**
+   * Gets the earliest time at which the alpha window of an enabled transition elapses, without
+   * checking every transition. The caller must hold exclusive access to the net.
+   *
+   * @return Time in milliseconds of the net's clock, possibly already past, or {@link
+   *     Long#MAX_VALUE} if no timed transition is enabled.
+   */
+  public long getNextTimerDeadline() {
+    return timeTransitions.getNextDeadline();
+  }
+
+  /**
+   * Takes out, in one batch, the timed transitions whose alpha window elapsed since the last call.
+   * The caller must hold exclusive access to the net.
+   *
+   * @param expired Receives the transitions; as long as the number of transitions.
+   * @return Number of transitions written to the array.
+   */
+  public int pollExpiredTimers(int[] expired) {
+    return timeTransitions.pollExpired(expired);
+  }
+
   /**
    * Checks if a transition is basically enabled (without considering timing constraints). This
    * method only checks if the transition has enough tokens in input places.
@@ -166,16 +539,13 @@ public class PetriNet {
     // Clear the enabledTransitions list to remove any previously stored transitions
     enabledTransitions.clear();
 
-    // Iterate over all transitions in the incidence matrix
-    IntStream.range(0, incidenceMatrixIn[0].length)
-        .filter(
-            transitionIndex ->
-                IntStream.range(0, placesLength)
-                    .allMatch(
-                        placeIndex ->
-                            marking[placeIndex] >= incidenceMatrixIn[placeIndex][transitionIndex]))
-        .mapToObj(transitions::get)
-        .forEach(enabledTransitions::add);
+    // Let the kernel check every transition against the marking
+    kernel.computeEnabled(marking, enabledBuffer);
+    for (int transitionIndex = 0; transitionIndex < enabledBuffer.length; transitionIndex++) {
+      if (enabledBuffer[transitionIndex]) {
+        enabledTransitions.add(transitions.get(transitionIndex));
+      }
+    }
   }
 
   /**
@@ -224,15 +594,18 @@ public class PetriNet {
   }
 
   /**
-   * Checks if the invariants target has been achieved and performs the necessary actions.
+   * Checks if the invariants target has been achieved and performs the necessary actions. Takes no
+   * lock, since local firings in different regions call it at the same time; only the firing that
+   * reaches the target acts on it.
    *
    * @param transitionIndex The index of the transition that was fired.
    */
   private void checkAndHandleInvariantsTarget(int transitionIndex) {
-    if (transitionIndex == LAST_TRANSITION) {
-      invariantsCount++;
-      if (invariantsCount == invariantsCountTarget) {
-        invariantsTargetAchieved = true;
+    if (completionTransitions[transitionIndex]
+        && invariantsCount.incrementAndGet() == invariantsCountTarget) {
+      invariantsTargetAchieved = true;
+      firingEvents.close();
+      if (logger.isEnabled()) {
         System.out.println("[SUCCESS] Invariants target achieved. Terminating program.");
       }
     }
@@ -244,18 +617,7 @@ public class PetriNet {
    * @param transitionIndex The index of the transition to fire.
    */
   private void updateMarking(int transitionIndex) {
-    IntStream.range(0, places.size())
-        .forEach(
-            placeIndex -> {
-              // If there is an input arc from the place to the transition
-              if (incidenceMatrixIn[placeIndex][transitionIndex] > 0) {
-                marking[placeIndex] -= incidenceMatrixIn[placeIndex][transitionIndex];
-              }
-              // If there is an output arc from the transition to the place
-              if (incidenceMatrixOut[placeIndex][transitionIndex] > 0) {
-                marking[placeIndex] += incidenceMatrixOut[placeIndex][transitionIndex];
-              }
-            });
+    kernel.fire(transitionIndex, marking);
   }
 
   /**
@@ -286,6 +648,10 @@ public class PetriNet {
     return enabledTransitions;
   }
 
+  public int getInvariantsCount() {
+    return invariantsCount.get();
+  }
+
   public boolean petriNetHasFinished() {
     return invariantsTargetAchieved;
   }
@@ -303,11 +669,32 @@ public class PetriNet {
     return placesLength;
   }
 
+  public long getAlpha(int transitionIndex) {
+    validateTransitionIndex(transitionIndex);
+    return timeTransitions.getAlpha(transitionIndex);
+  }
+
+  public int[][] getIncidenceMatrixIn() {
+    return incidenceMatrixIn;
+  }
+
+  public int[][] getIncidenceMatrixOut() {
+    return incidenceMatrixOut;
+  }
+
+  public int[][] getPlacesInvariants() {
+    return placesInvariants;
+  }
+
+  public String getKernelName() {
+    return kernel.getName();
+  }
+
+  public FiringEventPublisher getFiringEvents() {
+    return firingEvents;
+  }
+
   public boolean[] getEnabledTransitionsInBits() {
-    boolean[] enabledTransitionsInBits = new boolean[transitions.size()];
-    for (int i = 0; i < transitions.size(); i++) {
-      enabledTransitionsInBits[i] = enabledTransitions.contains(transitions.get(i));
-    }
-    return enabledTransitionsInBits;
+    return enabledBuffer.clone();
   }
 }
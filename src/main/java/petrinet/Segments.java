@@ -1,7 +1,7 @@
 package petrinet;
 
 import java.util.List;
-import monitor.Monitor;
+import monitor.MonitorInterface;
 
 /**
  * Represents a runnable segment of transitions in a Petri Net. Executes a sequence of transitions
@@ -9,7 +9,7 @@ import monitor.Monitor;
  */
 public class Segments implements Runnable {
   private final List<Transition> sequence;
-  private final Monitor monitor;
+  private final MonitorInterface monitor;
   private final PetriNet petriNet;
 
   /**
@@ -19,7 +19,7 @@ public class Segments implements Runnable {
    * @param monitor The monitor instance to control the Petri Net execution.
    * @param petriNet The Petri Net instance to be controlled.
    */
-  public Segments(List<Transition> sequence, Monitor monitor, PetriNet petriNet) {
+  public Segments(List<Transition> sequence, MonitorInterface monitor, PetriNet petriNet) {
     this.sequence = sequence;
     this.monitor = monitor;
     this.petriNet = petriNet;
@@ -27,21 +27,47 @@ public class Segments implements Runnable {
 
   /**
    * Executes the sequence of transitions repeatedly until the Petri Net reaches a final state.
-   * Checks for completion after each transition and exits inmediately if the Petri Net has
-   * finished.
+   * Each call to the monitor may fire several consecutive transitions of the sequence. Checks for
+   * completion after each call and exits inmediately if the Petri Net has finished.
    */
   @Override
   public void run() {
+    int[] transitionIndexes = sequence.stream().mapToInt(Transition::getNumber).toArray();
+    int position = getStartPosition(transitionIndexes, petriNet);
+
     while (!petriNet.petriNetHasFinished()) {
-      for (Transition t : sequence) {
-        monitor.fireTransition(t.getNumber());
+      while (position < transitionIndexes.length) {
+        int fired = monitor.fireSequence(transitionIndexes, position);
 
-        // Check if the Petri Net has finished after firing the transition
+        // Check if the Petri Net has finished after firing the transitions
         if (petriNet.petriNetHasFinished()) {
           System.out.println("Thread " + Thread.currentThread().getName() + " has finished.");
           return; // Exit the method immediately
         }
+
+        // Move on to the next transition even if the current one could not be fired
+        position += Math.max(1, fired);
+      }
+      position = 0;
+    }
+  }
+
+  /**
+   * Returns the position where the sequence starts: the first transition enabled by the current
+   * marking, or the beginning of the sequence if none is. A run restored from a checkpoint thus
+   * continues each segment where it was cut, since only the segment's own firings enable its later
+   * transitions.
+   *
+   * @param transitionIndexes Transitions of the sequence.
+   * @param petriNet The Petri net the sequence runs on.
+   * @return Position of the first transition to fire.
+   */
+  static int getStartPosition(int[] transitionIndexes, PetriNet petriNet) {
+    for (int i = 0; i < transitionIndexes.length; i++) {
+      if (petriNet.isTransitionEnabledByMarking(transitionIndexes[i])) {
+        return i;
       }
     }
+    return 0;
   }
 }
@@ -1,11 +1,18 @@
 package petrinet;
 
 import java.util.Arrays;
+import java.util.function.LongSupplier;
 
 /**
  * Manages timing constraints for time transitions in the Petri net. Keeps track of the activation
  * time of transitions and determines whether a transition's required waiting time (alpha) has
  * elapsed.
+ *
+ * <p>The timers of the transitions with an alpha also run in a {@link TimingWheel}: they start and
+ * stop in O(1) when the transition gets enabled or disabled, and the wheel gives the earliest
+ * deadline and the expired timers without looking at every transition. The net only reports the
+ * transitions whose enabling may have changed, so keeping the timers costs in proportion to the
+ * changes of the marking rather than to the size of the net.
  */
 public class TimeTransitions {
   /** Array storing the required waiting time (alpha) for each transition, in milliseconds. */
@@ -20,15 +27,33 @@ public class TimeTransitions {
    */
   boolean[] oldEnabledTransitions;
 
+  /** Source of the current time in milliseconds, the system clock unless a virtual one is given. */
+  private final LongSupplier clock;
+
+  /** Running timers of the transitions with an alpha, by deadline. */
+  private final TimingWheel wheel;
+
   /**
    * Constructs a new {TimeTransitions} instance with the specified waiting times per transition.
    *
    * @param timeTransitions Array representing the waiting time (alpha) for each transition.
    */
   public TimeTransitions(long[] timeTransitions) {
+    this(timeTransitions, System::currentTimeMillis);
+  }
+
+  /**
+   * Constructs a new {TimeTransitions} instance that reads the time from the given clock.
+   *
+   * @param timeTransitions Array representing the waiting time (alpha) for each transition.
+   * @param clock Source of the current time in milliseconds.
+   */
+  public TimeTransitions(long[] timeTransitions, LongSupplier clock) {
+    this.clock = clock;
     this.oldEnabledTransitions = new boolean[timeTransitions.length];
     this.systemTime = new long[timeTransitions.length];
     this.timeTransitions = timeTransitions;
+    this.wheel = new TimingWheel(timeTransitions.length, clock.getAsLong());
 
     Arrays.fill(systemTime, Long.MAX_VALUE);
     Arrays.fill(oldEnabledTransitions, false);
@@ -40,7 +65,11 @@ public class TimeTransitions {
    * @param transitionIndex Index of the transition to update.
    */
   public void setSystemTime(int transitionIndex) {
-    systemTime[transitionIndex] = System.currentTimeMillis();
+    long now = clock.getAsLong();
+    systemTime[transitionIndex] = now;
+    if (timeTransitions[transitionIndex] > 0) {
+      wheel.schedule(transitionIndex, now + timeTransitions[transitionIndex]);
+    }
   }
 
   /**
@@ -51,6 +80,7 @@ public class TimeTransitions {
    */
   public void setMaxTime(int transitionIndex) {
     systemTime[transitionIndex] = Long.MAX_VALUE;
+    wheel.cancel(transitionIndex);
   }
 
   /**
@@ -60,7 +90,7 @@ public class TimeTransitions {
    * @return true if the time has elapsed, false otherwise.
    */
   public boolean checkTime(int transitionIndex) {
-    return System.currentTimeMillis() - systemTime[transitionIndex]
+    return clock.getAsLong() - systemTime[transitionIndex]
         >= timeTransitions[transitionIndex];
   }
 
@@ -72,7 +102,7 @@ public class TimeTransitions {
    */
   public long getRemainingTime(int transitionIndex) {
     return timeTransitions[transitionIndex]
-        - (System.currentTimeMillis() - systemTime[transitionIndex]);
+        - (clock.getAsLong() - systemTime[transitionIndex]);
   }
 
   /**
@@ -82,14 +112,95 @@ public class TimeTransitions {
    * @param enabledTransitions Boolean array indicating currently enabled transitions.
    */
   public void updateEnabledTransitionsTimer(boolean[] enabledTransitions) {
+    for (int i = 0; i < timeTransitions.length; i++) {
+      updateTimer(i, enabledTransitions[i]);
+    }
+  }
+
+  /**
+   * Updates the timers of only some transitions, the ones whose enabling may have changed.
+   *
+   * @param transitionIndexes Transitions to check.
+   * @param enabledTransitions Boolean array indicating currently enabled transitions.
+   */
+  public void updateEnabledTransitionsTimer(int[] transitionIndexes, boolean[] enabledTransitions) {
+    for (int i : transitionIndexes) {
+      updateTimer(i, enabledTransitions[i]);
+    }
+  }
+
+  /**
+   * Starts the timer of a transition that just became enabled, or stops it if it just became
+   * disabled.
+   *
+   * @param transitionIndex Index of the transition.
+   * @param enabled Whether the transition is enabled now.
+   */
+  private void updateTimer(int transitionIndex, boolean enabled) {
+    if (!oldEnabledTransitions[transitionIndex] && enabled) {
+      // 0 1 -> 1 1 // Transition just became enabled — start timer
+      setSystemTime(transitionIndex);
+    } else if (oldEnabledTransitions[transitionIndex] && !enabled) {
+      // Transition just became disabled — reset timer
+      setMaxTime(transitionIndex);
+    }
+    oldEnabledTransitions[transitionIndex] = enabled;
+  }
+
+  /**
+   * Finds the earliest deadline among the timers of enabled transitions. Deadlines already past
+   * count until {@link #pollExpired(int[])} takes them out.
+   *
+   * @return Time at which the next alpha window elapses, in milliseconds, or {@link
+   *     Long#MAX_VALUE} if no timer is running.
+   */
+  public long getNextDeadline() {
+    return wheel.nextDeadline();
+  }
 
+  /**
+   * Takes out the timers whose alpha window elapsed up to now, in the order of their deadlines.
+   * Each one is returned once; the transition keeps reporting no remaining time until disabled.
+   *
+   * @param expired Receives the transitions; as long as the number of transitions.
+   * @return Number of transitions written to the array.
+   */
+  public int pollExpired(int[] expired) {
+    return wheel.advance(clock.getAsLong(), expired);
+  }
+
+  /**
+   * Returns the remaining time of every running timer, clamped at zero. Timers that are not
+   * running (transition not enabled) are reported as -1.
+   *
+   * @return Remaining time of each transition's timer in milliseconds, or -1.
+   */
+  public long[] getRemainingTimes() {
+    long now = clock.getAsLong();
+    long[] remainingTimes = new long[timeTransitions.length];
+    for (int i = 0; i < timeTransitions.length; i++) {
+      remainingTimes[i] =
+          systemTime[i] == Long.MAX_VALUE
+              ? -1
+              : Math.max(0, timeTransitions[i] - (now - systemTime[i]));
+    }
+    return remainingTimes;
+  }
+
+  /**
+   * Restarts the timers so that each one has the given remaining time from now.
+   *
+   * @param remainingTimes Remaining time of each timer in milliseconds, -1 if not running.
+   * @param enabledTransitions Transitions enabled when the remaining times were taken.
+   */
+  public void restoreRemainingTimes(long[] remainingTimes, boolean[] enabledTransitions) {
+    long now = clock.getAsLong();
+    wheel.reset(now);
     for (int i = 0; i < timeTransitions.length; i++) {
-      if (!oldEnabledTransitions[i] && enabledTransitions[i]) {
-        // 0 1 -> 1 1 // Transition just became enabled — start timer
-        setSystemTime(i);
-      } else if (oldEnabledTransitions[i] && !enabledTransitions[i]) {
-        // Transition just became disabled — reset timer
-        systemTime[i] = Long.MAX_VALUE;
+      systemTime[i] =
+          remainingTimes[i] < 0 ? Long.MAX_VALUE : now - (timeTransitions[i] - remainingTimes[i]);
+      if (remainingTimes[i] >= 0 && timeTransitions[i] > 0) {
+        wheel.schedule(i, now + remainingTimes[i]);
       }
     }
     oldEnabledTransitions = enabledTransitions.clone();
@@ -0,0 +1,268 @@
+package petrinet;
+
+import java.util.Arrays;
+
+/**
+ * Hierarchical hashed timing wheel for a fixed set of timers identified by index, with a tick of
+ * one millisecond. Level 0 has a slot per tick for the next 64 ticks, and each level above a slot
+ * per 64 slots of the level below, so four levels cover about four and a half hours; later
+ * deadlines wait in an overflow list until the wheel gets within range. Starting and cancelling a
+ * timer is O(1); advancing the wheel moves timers of a slot of a higher level down when their time
+ * gets near, and returns every timer of a due slot at once.
+ *
+ * <p>The lists of the slots are intrusive, kept in arrays indexed by timer, and each level keeps a
+ * bitmap of its non-empty slots, so the next due slot is found without visiting empty ones. Not
+ * thread safe.
+ */
+class TimingWheel {
+  private static final int SLOT_BITS = 6;
+  private static final int SLOTS = 1 << SLOT_BITS;
+  private static final int LEVELS = 4;
+  private static final int OVERFLOW = LEVELS * SLOTS;
+  private static final int NONE = -1;
+
+  private final long[] deadlines;
+  private final int[] next;
+  private final int[] previous;
+
+  /** List each timer is in, NONE if it is not running. */
+  private final int[] slotOf;
+
+  /** First timer of each slot, level by level, and of the overflow list. */
+  private final int[] heads = new int[OVERFLOW + 1];
+
+  /** Non-empty slots of each level. */
+  private final long[] occupied = new long[LEVELS];
+
+  /**
+   * Next tick to process; every earlier one has been processed, and the slots starting at this one
+   * have been cascaded.
+   */
+  private long current;
+
+  private int size = 0;
+
+  /**
+   * Constructor for the TimingWheel.
+   *
+   * @param timers Number of timers, indexed from 0.
+   * @param time Current time in milliseconds.
+   */
+  TimingWheel(int timers, long time) {
+    this.deadlines = new long[timers];
+    this.next = new int[timers];
+    this.previous = new int[timers];
+    this.slotOf = new int[timers];
+    Arrays.fill(slotOf, NONE);
+    Arrays.fill(heads, NONE);
+    this.current = time;
+  }
+
+  /**
+   * Starts a timer, or restarts it if it is running. A deadline already past is due at the first
+   * tick not yet processed, that is, on the next advance to a later time.
+   *
+   * @param timer Index of the timer.
+   * @param deadline Time at which it expires, in milliseconds.
+   */
+  void schedule(int timer, long deadline) {
+    cancel(timer);
+    deadlines[timer] = deadline;
+    place(timer);
+    size++;
+  }
+
+  /**
+   * Stops a timer if it is running.
+   *
+   * @param timer Index of the timer.
+   */
+  void cancel(int timer) {
+    int slot = slotOf[timer];
+    if (slot == NONE) {
+      return;
+    }
+    if (previous[timer] != NONE) {
+      next[previous[timer]] = next[timer];
+    } else {
+      heads[slot] = next[timer];
+      if (next[timer] == NONE && slot < OVERFLOW) {
+        occupied[slot >> SLOT_BITS] &= ~(1L << (slot & (SLOTS - 1)));
+      }
+    }
+    if (next[timer] != NONE) {
+      previous[next[timer]] = previous[timer];
+    }
+    slotOf[timer] = NONE;
+    size--;
+  }
+
+  /**
+   * Stops every timer and moves the wheel to the given time, which may be earlier than its own.
+   *
+   * @param time Current time in milliseconds.
+   */
+  void reset(long time) {
+    Arrays.fill(slotOf, NONE);
+    Arrays.fill(heads, NONE);
+    Arrays.fill(occupied, 0);
+    size = 0;
+    current = time;
+  }
+
+  /**
+   * Advances the wheel up to a time and takes out the timers that expired, tick by tick.
+   *
+   * @param time Current time in milliseconds.
+   * @param expired Receives the expired timers, in order of their ticks; as long as the number of
+   *     timers.
+   * @return Number of expired timers.
+   */
+  int advance(long time, int[] expired) {
+    int count = 0;
+    while (size > 0) {
+      long tick = nextEventTick();
+      if (tick > time) {
+        break;
+      }
+      moveTo(tick);
+      int slot = slotIndex(current, 0);
+      for (int timer = heads[slot]; timer != NONE; timer = next[timer]) {
+        slotOf[timer] = NONE;
+        expired[count++] = timer;
+        size--;
+      }
+      heads[slot] = NONE;
+      occupied[0] &= ~(1L << slot);
+      moveTo(current + 1);
+    }
+    if (current <= time) {
+      moveTo(time + 1);
+    }
+    return count;
+  }
+
+  /**
+   * Finds the earliest deadline among the running timers. Timers already due but not yet taken
+   * out by {@link #advance} count with their own deadline.
+   *
+   * @return The deadline in milliseconds, or {@link Long#MAX_VALUE} if no timer is running.
+   */
+  long nextDeadline() {
+    if (size == 0) {
+      return Long.MAX_VALUE;
+    }
+    // The first non-empty slot holds the earliest timers; the lower levels are empty
+    int slot = nextEventSlot();
+    long deadline = Long.MAX_VALUE;
+    for (int timer = heads[slot]; timer != NONE; timer = next[timer]) {
+      deadline = Math.min(deadline, deadlines[timer]);
+    }
+    return deadline;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Puts a running timer in the list of its deadline relative to the current tick: level 0 if it
+   * is due within the current block of 64 ticks, otherwise the level of the highest 6-bit group in
+   * which the deadline and the current tick differ.
+   *
+   * @param timer Index of the timer.
+   */
+  private void place(int timer) {
+    long deadline = Math.max(deadlines[timer], current);
+    long difference = deadline ^ current;
+    int level = difference == 0 ? 0 : (63 - Long.numberOfLeadingZeros(difference)) / SLOT_BITS;
+    int slot = level < LEVELS ? (level << SLOT_BITS) | slotIndex(deadline, level) : OVERFLOW;
+
+    int head = heads[slot];
+    next[timer] = head;
+    previous[timer] = NONE;
+    if (head != NONE) {
+      previous[head] = timer;
+    } else if (slot < OVERFLOW) {
+      occupied[level] |= 1L << (slot & (SLOTS - 1));
+    }
+    heads[slot] = timer;
+    slotOf[timer] = slot;
+  }
+
+  /**
+   * Moves the current tick forward, to a tick with no due slot before it, and brings down the
+   * timers of the slots that start at it, from the highest level.
+   *
+   * @param tick New current tick.
+   */
+  private void moveTo(long tick) {
+    current = tick;
+    if ((current & ((1L << (SLOT_BITS * LEVELS)) - 1)) == 0) {
+      cascade(OVERFLOW);
+    }
+    for (int level = LEVELS - 1; level >= 1; level--) {
+      if ((current & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+        cascade((level << SLOT_BITS) | slotIndex(current, level));
+      }
+    }
+  }
+
+  /**
+   * Empties a slot and places its timers again, which puts them in lower levels once the current
+   * tick reaches the start of the slot.
+   *
+   * @param slot Slot to empty.
+   */
+  private void cascade(int slot) {
+    int timer = heads[slot];
+    heads[slot] = NONE;
+    if (slot < OVERFLOW) {
+      occupied[slot >> SLOT_BITS] &= ~(1L << (slot & (SLOTS - 1)));
+    }
+    while (timer != NONE) {
+      int following = next[timer];
+      place(timer);
+      timer = following;
+    }
+  }
+
+  /**
+   * Finds the first tick, from the current one, at which a slot is due or must be cascaded.
+   *
+   * @return The tick, with at least one timer running.
+   */
+  private long nextEventTick() {
+    int slot = nextEventSlot();
+    if (slot == OVERFLOW) {
+      // The overflow list is placed again at the start of each block of the highest level
+      int span = SLOT_BITS * LEVELS;
+      return ((current >> span) + 1) << span;
+    }
+    int level = slot >> SLOT_BITS;
+    int shift = SLOT_BITS * level;
+    return ((current >> shift) & ~(SLOTS - 1L) | (slot & (SLOTS - 1))) << shift;
+  }
+
+  /**
+   * Finds the first non-empty slot in time order: from the current slot of level 0, or after the
+   * current slot in higher levels, whose current slot has already been cascaded.
+   *
+   * @return The slot, or the overflow list if every level is empty.
+   */
+  private int nextEventSlot() {
+    for (int level = 0; level < LEVELS; level++) {
+      int currentSlot = slotIndex(current, level);
+      long ahead = level == 0 ? -1L << currentSlot : -2L << currentSlot;
+      long slots = occupied[level] & ahead;
+      if (slots != 0) {
+        return (level << SLOT_BITS) | Long.numberOfTrailingZeros(slots);
+      }
+    }
+    return OVERFLOW;
+  }
+
+  private static int slotIndex(long time, int level) {
+    return (int) (time >>> (SLOT_BITS * level)) & (SLOTS - 1);
+  }
+}
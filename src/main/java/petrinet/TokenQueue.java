@@ -0,0 +1,92 @@
+package petrinet;
+
+/**
+ * FIFO of token ids and the time each token entered the place, stored in two parallel primitive
+ * ring buffers that double when full. Not thread safe.
+ */
+class TokenQueue {
+  private int[] ids = new int[8];
+  private long[] enteredAt = new long[8];
+  private int head = 0;
+  private int size = 0;
+
+  /**
+   * Appends a token.
+   *
+   * @param id Id of the token.
+   * @param time Time the token entered the place.
+   */
+  void add(int id, long time) {
+    if (size == ids.length) {
+      grow();
+    }
+    int tail = (head + size) & (ids.length - 1);
+    ids[tail] = id;
+    enteredAt[tail] = time;
+    size++;
+  }
+
+  /**
+   * Returns the id of the oldest token without removing it.
+   *
+   * @return Id of the oldest token.
+   * @throws IllegalStateException if the queue is empty.
+   */
+  int peekId() {
+    if (size == 0) {
+      throw new IllegalStateException("No tokens to take");
+    }
+    return ids[head];
+  }
+
+  /**
+   * Returns the entry time of the oldest token without removing it.
+   *
+   * @return Time the oldest token entered the place.
+   * @throws IllegalStateException if the queue is empty.
+   */
+  long peekEnteredAt() {
+    if (size == 0) {
+      throw new IllegalStateException("No tokens to take");
+    }
+    return enteredAt[head];
+  }
+
+  /** Removes the oldest token. Call after reading it with the peek methods. */
+  void remove() {
+    if (size == 0) {
+      throw new IllegalStateException("No tokens to take");
+    }
+    head = (head + 1) & (ids.length - 1);
+    size--;
+  }
+
+  /**
+   * Returns the ids of the tokens, oldest first.
+   *
+   * @return A new array with the ids.
+   */
+  int[] toArray() {
+    int[] copy = new int[size];
+    for (int i = 0; i < size; i++) {
+      copy[i] = ids[(head + i) & (ids.length - 1)];
+    }
+    return copy;
+  }
+
+  int size() {
+    return size;
+  }
+
+  private void grow() {
+    int[] newIds = new int[ids.length * 2];
+    long[] newEnteredAt = new long[ids.length * 2];
+    for (int i = 0; i < size; i++) {
+      newIds[i] = ids[(head + i) & (ids.length - 1)];
+      newEnteredAt[i] = enteredAt[(head + i) & (ids.length - 1)];
+    }
+    ids = newIds;
+    enteredAt = newEnteredAt;
+    head = 0;
+  }
+}
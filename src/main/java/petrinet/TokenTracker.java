@@ -0,0 +1,207 @@
+package petrinet;
+
+import java.util.stream.IntStream;
+
+/**
+ * Optional identity layer over the anonymous marking of a Petri net. Tokens of the tracked places
+ * (for the agency net, the customer places of its last place invariant) get a compact int id and
+ * are kept in a FIFO per place, together with the time they entered it. When a transition fires it
+ * takes the oldest tokens of its tracked input places and hands them, in place order, to its
+ * tracked output places; tokens left over leave the net, and missing ones are created.
+ *
+ * <p>Every move is reported to an {@link Observer}, which is how per-customer paths and waiting
+ * times are produced. The tracker is updated by {@link PetriNet#tryFireTransition(int)} and {@link
+ * PetriNet#addTokens(int, int)}, so it follows the mutex monitor and the virtual-time simulations;
+ * the partitioned and lock-free monitors do not update it.
+ */
+public class TokenTracker {
+  /** Place and transition index reported for tokens created or removed outside any place. */
+  public static final int OUTSIDE = -1;
+
+  /** Receives every move of a token. */
+  @FunctionalInterface
+  public interface Observer {
+    /**
+     * Called when a token moves.
+     *
+     * @param tokenId Id of the token.
+     * @param transitionIndex Transition that moved it, or {@link #OUTSIDE} for injected tokens.
+     * @param fromPlace Place it left, or {@link #OUTSIDE} if it was just created.
+     * @param toPlace Place it entered, or {@link #OUTSIDE} if it left the net.
+     * @param waited Time it spent in the place it left, 0 if it was just created.
+     * @param time Time of the move.
+     */
+    void tokenMoved(
+        int tokenId, int transitionIndex, int fromPlace, int toPlace, long waited, long time);
+  }
+
+  private final TokenQueue[] queues;
+
+  /** Tracked input places of each transition, one entry per consumed token. */
+  private final int[][] takesFrom;
+
+  /** Tracked output places of each transition, one entry per produced token. */
+  private final int[][] givesTo;
+
+  private final int[] movedIds;
+  private final long[] movedEnteredAt;
+  private Observer observer = (tokenId, transitionIndex, fromPlace, toPlace, waited, time) -> {};
+  private int nextId = 0;
+
+  /**
+   * Constructor for the TokenTracker. The tokens already in the tracked places get ids in place
+   * order, entering at the given time.
+   *
+   * @param incidenceMatrixOut Output incidence matrix of the Petri net.
+   * @param incidenceMatrixIn Input incidence matrix of the Petri net.
+   * @param trackedPlaces Places whose tokens have an identity.
+   * @param marking Current marking of the net.
+   * @param time Current time.
+   */
+  public TokenTracker(
+      int[][] incidenceMatrixOut,
+      int[][] incidenceMatrixIn,
+      boolean[] trackedPlaces,
+      int[] marking,
+      long time) {
+    int placesLength = incidenceMatrixIn.length;
+    int transitionsLength = placesLength == 0 ? 0 : incidenceMatrixIn[0].length;
+    this.queues = new TokenQueue[placesLength];
+    this.takesFrom = new int[transitionsLength][];
+    this.givesTo = new int[transitionsLength][];
+    int maxMoved = 0;
+    for (int t = 0; t < transitionsLength; t++) {
+      takesFrom[t] = expandArcs(incidenceMatrixIn, trackedPlaces, t);
+      givesTo[t] = expandArcs(incidenceMatrixOut, trackedPlaces, t);
+      maxMoved = Math.max(maxMoved, takesFrom[t].length);
+    }
+    this.movedIds = new int[maxMoved];
+    this.movedEnteredAt = new long[maxMoved];
+
+    for (int p = 0; p < placesLength; p++) {
+      if (trackedPlaces[p]) {
+        queues[p] = new TokenQueue();
+        for (int i = 0; i < marking[p]; i++) {
+          queues[p].add(nextId++, time);
+        }
+      }
+    }
+  }
+
+  /**
+   * Builds the tracked places of the agency-style net from one of its place invariants: the places
+   * with a positive weight in that row.
+   *
+   * @param placesInvariant Row of the place invariants matrix, with the sum in the last column.
+   * @return Tracked places.
+   */
+  public static boolean[] placesOfInvariant(int[] placesInvariant) {
+    boolean[] tracked = new boolean[placesInvariant.length - 1];
+    for (int p = 0; p < tracked.length; p++) {
+      tracked[p] = placesInvariant[p] > 0;
+    }
+    return tracked;
+  }
+
+  /**
+   * Moves the tokens of a transition that just fired.
+   *
+   * @param transitionIndex Index of the transition.
+   * @param time Time of the firing.
+   * @throws IllegalStateException if a tracked input place has no tokens, which means the tracker
+   *     is out of sync with the marking.
+   */
+  public void fire(int transitionIndex, long time) {
+    int[] inputs = takesFrom[transitionIndex];
+    int taken = inputs.length;
+    for (int i = 0; i < taken; i++) {
+      TokenQueue queue = queues[inputs[i]];
+      movedIds[i] = queue.peekId();
+      movedEnteredAt[i] = queue.peekEnteredAt();
+      queue.remove();
+    }
+
+    int[] outputs = givesTo[transitionIndex];
+    for (int i = 0; i < outputs.length; i++) {
+      if (i < taken) {
+        queues[outputs[i]].add(movedIds[i], time);
+        observer.tokenMoved(
+            movedIds[i], transitionIndex, inputs[i], outputs[i], time - movedEnteredAt[i], time);
+      } else {
+        int id = nextId++;
+        queues[outputs[i]].add(id, time);
+        observer.tokenMoved(id, transitionIndex, OUTSIDE, outputs[i], 0, time);
+      }
+    }
+    for (int i = outputs.length; i < taken; i++) {
+      observer.tokenMoved(
+          movedIds[i], transitionIndex, inputs[i], OUTSIDE, time - movedEnteredAt[i], time);
+    }
+  }
+
+  /**
+   * Creates a token in a tracked place, for tokens added from outside the net.
+   *
+   * @param placeIndex Index of the place.
+   * @param time Time the token arrives.
+   * @return Id of the new token.
+   * @throws IllegalArgumentException if the place is not tracked.
+   */
+  public int addToken(int placeIndex, long time) {
+    if (queues[placeIndex] == null) {
+      throw new IllegalArgumentException("P" + placeIndex + " is not tracked");
+    }
+    int id = nextId++;
+    queues[placeIndex].add(id, time);
+    observer.tokenMoved(id, OUTSIDE, OUTSIDE, placeIndex, 0, time);
+    return id;
+  }
+
+  /**
+   * Checks if a place is tracked.
+   *
+   * @param placeIndex Index of the place.
+   * @return true if its tokens have ids.
+   */
+  public boolean isTracked(int placeIndex) {
+    return queues[placeIndex] != null;
+  }
+
+  /**
+   * Returns the ids of the tokens in a tracked place, oldest first.
+   *
+   * @param placeIndex Index of the place.
+   * @return A new array with the ids, empty if the place is not tracked.
+   */
+  public int[] getTokens(int placeIndex) {
+    return queues[placeIndex] == null ? new int[0] : queues[placeIndex].toArray();
+  }
+
+  public void setObserver(Observer observer) {
+    this.observer = observer;
+  }
+
+  /**
+   * Returns the number of ids handed out so far; ids range from 0 to this value minus one.
+   *
+   * @return Number of tokens ever tracked.
+   */
+  public int getNumberOfIds() {
+    return nextId;
+  }
+
+  /**
+   * Lists the tracked places of an arc column once per unit of weight, in place order.
+   *
+   * @param matrix Incidence matrix (places x transitions).
+   * @param trackedPlaces Places whose tokens have an identity.
+   * @param transitionIndex Index of the transition.
+   * @return Place of each tracked token the arcs carry.
+   */
+  private static int[] expandArcs(int[][] matrix, boolean[] trackedPlaces, int transitionIndex) {
+    return IntStream.range(0, matrix.length)
+        .filter(p -> trackedPlaces[p])
+        .flatMap(p -> IntStream.generate(() -> p).limit(matrix[p][transitionIndex]))
+        .toArray();
+  }
+}
@@ -0,0 +1,119 @@
+package policy;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Policy for a net composed of several offices, each a copy of the agency net. Every office keeps
+ * its own policy and counters, applied to its own transitions as if it were alone, so T2/T3 and
+ * T6/T7 are balanced within each office. Offices are locked separately, so firings in different
+ * offices never wait on each other to consult the policy.
+ */
+public class OfficePolicy extends Policy {
+  private final Policy[] officePolicies;
+  private final int transitionsPerOffice;
+
+  /**
+   * Constructor for the OfficePolicy.
+   *
+   * @param offices Number of offices.
+   * @param transitionsPerOffice Number of transitions of each office.
+   * @param policyOfOffice Creates the policy of each office from its index.
+   */
+  public OfficePolicy(int offices, int transitionsPerOffice, IntFunction<Policy> policyOfOffice) {
+    this.transitionsPerOffice = transitionsPerOffice;
+    this.officePolicies = new Policy[offices];
+    Arrays.setAll(officePolicies, policyOfOffice);
+  }
+
+  /**
+   * Picks an enabled transition at random and lets the policy of its office decide between it and
+   * its pair, which always belongs to the same office.
+   *
+   * @param enabledTransitions Transitions that can fire, over the whole composed net.
+   * @return Index of the next transition to fire, or -1 if none can fire.
+   */
+  @Override
+  public int getNextTransition(boolean[] enabledTransitions) {
+    int randomTransition = getRandomEnabledIndex(enabledTransitions);
+    if (randomTransition == -1) {
+      return -1;
+    }
+    int office = randomTransition / transitionsPerOffice;
+    int offset = office * transitionsPerOffice;
+    boolean[] officeEnabled =
+        Arrays.copyOfRange(enabledTransitions, offset, offset + transitionsPerOffice);
+    Policy policy = officePolicies[office];
+    int next;
+    synchronized (policy) {
+      next = policy.getNextTransition(officeEnabled);
+    }
+    return next == -1 ? -1 : offset + next;
+  }
+
+  @Override
+  public void transitionFired(int transitionIndex) {
+    Policy policy = officePolicies[transitionIndex / transitionsPerOffice];
+    synchronized (policy) {
+      policy.transitionFired(transitionIndex % transitionsPerOffice);
+    }
+  }
+
+  /** Decisions are taken by the policy of each office, so this is never consulted. */
+  @Override
+  protected boolean canFireTransition(int transitionIndex) {
+    return true;
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return true;
+  }
+
+  /**
+   * Seeds the policy of each office with a different seed derived from the given one.
+   *
+   * @param seed Seed for the random sources.
+   */
+  @Override
+  public void setSeed(long seed) {
+    super.setSeed(seed);
+    for (int office = 0; office < officePolicies.length; office++) {
+      officePolicies[office].setSeed(seed + office + 1);
+    }
+  }
+
+  /**
+   * Returns the counters of every office, keyed by the transitions of the composed net.
+   *
+   * @return Map from tracked transition to the number of times it fired.
+   */
+  @Override
+  public Map<Integer, Integer> getTransitionCounts() {
+    Map<Integer, Integer> counts = new HashMap<>();
+    for (int office = 0; office < officePolicies.length; office++) {
+      int offset = office * transitionsPerOffice;
+      officePolicies[office]
+          .getTransitionCounts()
+          .forEach((transition, count) -> counts.put(offset + transition, count));
+    }
+    return counts;
+  }
+
+  @Override
+  public void restoreTransitionCounts(Map<Integer, Integer> counts) {
+    for (int office = 0; office < officePolicies.length; office++) {
+      Map<Integer, Integer> officeCounts = new HashMap<>();
+      int offset = office * transitionsPerOffice;
+      counts.forEach(
+          (transition, count) -> {
+            if (transition >= offset && transition < offset + transitionsPerOffice) {
+              officeCounts.put(transition - offset, count);
+            }
+          });
+      officePolicies[office].restoreTransitionCounts(officeCounts);
+    }
+  }
+}
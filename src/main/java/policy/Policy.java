@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 import utils.Logger;
 
 /**
@@ -12,8 +13,8 @@ import utils.Logger;
  * Petri Net.
  */
 public abstract class Policy {
-  /** Map to store transition pair counts. */
-  protected final Map<Integer, Integer> transitionCounts = new HashMap<>();
+  /** Map to store transition pair counts. Concurrent so lock-free monitors can update it. */
+  protected final Map<Integer, Integer> transitionCounts = new ConcurrentHashMap<>();
 
   /**
    * Transitions pairs requiring firing. Each sub-array contains two transition indices that should
@@ -24,6 +25,9 @@ public abstract class Policy {
     {6, 7} // Second pair to balance
   };
 
+  /** Random source used to pick among enabled transitions. Seeded for reproducible runs. */
+  protected final Random random = new Random();
+
   /** Shared logger instance for logging policy-related events. */
   protected static Logger logger = Logger.getLogger();
 
@@ -35,6 +39,25 @@ public abstract class Policy {
     }
   }
 
+  /**
+   * Seeds the random source of the policy so that its choices can be reproduced.
+   *
+   * @param seed Seed for the random source.
+   */
+  public void setSeed(long seed) {
+    random.setSeed(seed);
+  }
+
+  /**
+   * Tells whether the policy guards its own state, so monitors that fire in parallel may call it
+   * from several threads at once instead of locking it as a whole.
+   *
+   * @return true if the policy is safe to call concurrently, false otherwise.
+   */
+  public boolean isThreadSafe() {
+    return false;
+  }
+
   /**
    * Determines if a transition can fire based on the policy rules.
    *
@@ -53,6 +76,24 @@ public abstract class Policy {
     transitionCounts.computeIfPresent(transitionIndex, (key, value) -> value + 1);
   }
 
+  /**
+   * Returns a copy of the transition counts, for example to include them in a checkpoint.
+   *
+   * @return Map from tracked transition to the number of times it fired.
+   */
+  public Map<Integer, Integer> getTransitionCounts() {
+    return new HashMap<>(transitionCounts);
+  }
+
+  /**
+   * Restores the transition counts saved in a checkpoint. Only tracked transitions are restored.
+   *
+   * @param counts Map from tracked transition to the number of times it fired.
+   */
+  public void restoreTransitionCounts(Map<Integer, Integer> counts) {
+    counts.forEach((transition, count) -> transitionCounts.replace(transition, count));
+  }
+
   /**
    * Checks if a given transition is one of the tracked transitions.
    *
@@ -98,6 +139,26 @@ public abstract class Policy {
     return randomTransition; // If paired transition is not enabled, fire the random one
   }
 
+  /**
+   * Returns the next transition to fire among the ones whose alpha window has elapsed, so that a
+   * timed transition is not chosen only to wait again while a ready one stays queued. The caller
+   * is expected to come back to the timed ones when their windows elapse.
+   *
+   * @param enabledTransitions List of currently enabled transitions.
+   * @param remainingTimes Remaining time of the alpha window of each transition, in milliseconds;
+   *     0 or less if it can fire now.
+   * @return Index of the next transition to fire, or -1 if no enabled transition is ready.
+   */
+  public int getNextTransition(boolean[] enabledTransitions, long[] remainingTimes) {
+    boolean[] ready = new boolean[enabledTransitions.length];
+    boolean anyReady = false;
+    for (int i = 0; i < ready.length; i++) {
+      ready[i] = enabledTransitions[i] && remainingTimes[i] <= 0;
+      anyReady |= ready[i];
+    }
+    return anyReady ? getNextTransition(ready) : -1;
+  }
+
   /**
    * Selects a random index from the array where the value is true.
    *
@@ -120,10 +181,11 @@ public abstract class Policy {
     }
 
     // Print the array list with the enabled indices
-    logger.info("Enabled indices: " + enabledIndices);
+    if (logger.isEnabled()) {
+      logger.info("Enabled indices: " + enabledIndices);
+    }
 
     // Select a random index from the list of enabled indices
-    Random random = new Random();
     return enabledIndices.get(random.nextInt(enabledIndices.size()));
   }
 
@@ -1,6 +1,5 @@
 package policy;
 
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -10,15 +9,9 @@ import java.util.Map;
  */
 public class PrioritizedPolicy extends Policy {
 
-  private static final Map<Integer, Float> transitionPercentage = new HashMap<>();
-
-  /** Constructs a PrioritizedPolicy and initializes transitionPercentage map. */
-  public PrioritizedPolicy() {
-    transitionPercentage.put(2, 0.75f);
-    transitionPercentage.put(3, 0.25f);
-    transitionPercentage.put(6, 0.8f);
-    transitionPercentage.put(7, 0.2f);
-  }
+  /** Target percentage of each prioritized transition. Immutable, so instances can share it. */
+  private static final Map<Integer, Float> transitionPercentage =
+      Map.of(2, 0.75f, 3, 0.25f, 6, 0.8f, 7, 0.2f);
 
   /**
    * Determines whether the current transition is allowed to fire based on its current percentage.
@@ -0,0 +1,91 @@
+package simulation;
+
+import java.util.ArrayDeque;
+
+/**
+ * Classifies the firings of the agency net into its four transition invariants, the same way
+ * {@code scripts/regex.py} does: each firing continues the oldest customer waiting for it.
+ */
+public class InvariantClassifier {
+  /** Transition invariants of the agency net, in the same order as {@code scripts/regex.py}. */
+  public static final String[] INVARIANT_NAMES = {
+    "T0 T1 T2 T5 T6 T9 T10 T11",
+    "T0 T1 T2 T5 T7 T8 T11",
+    "T0 T1 T3 T4 T6 T9 T10 T11",
+    "T0 T1 T3 T4 T7 T8 T11"
+  };
+
+  /** Path flag set when a customer goes through T3 instead of T2. */
+  private static final int TOOK_T3 = 1;
+
+  /** Path flag set when a customer goes through T7 instead of T6. */
+  private static final int TOOK_T7 = 2;
+
+  /**
+   * Path flag of customers that were already in the net when the run was resumed from a
+   * checkpoint. Their path is unknown, so they are not classified.
+   */
+  private static final int UNKNOWN_PATH = 4;
+
+  /** Customers waiting for each transition, holding their path flags. */
+  private final ArrayDeque<Integer>[] waitingFor;
+
+  private final int[] invariantCounts = new int[INVARIANT_NAMES.length];
+
+  /** Constructor for the InvariantClassifier of the 12-transition agency net. */
+  @SuppressWarnings("unchecked")
+  public InvariantClassifier() {
+    waitingFor = new ArrayDeque[12];
+    for (int t = 0; t < waitingFor.length; t++) {
+      waitingFor[t] = new ArrayDeque<>();
+    }
+  }
+
+  /**
+   * Advances the oldest customer waiting for the fired transition to its next stage.
+   *
+   * @param transitionIndex Index of the transition that fired.
+   */
+  public void transitionFired(int transitionIndex) {
+    switch (transitionIndex) {
+      case 0 -> waitingFor[1].add(0);
+      case 1 -> {
+        // T2 and T3 compete for the same customer, so it waits in a shared stage
+        waitingFor[2].add(next(1));
+      }
+      case 2 -> waitingFor[5].add(next(2));
+      case 3 -> waitingFor[4].add(next(2) | TOOK_T3);
+      case 4 -> waitingFor[6].add(next(4));
+      case 5 -> waitingFor[6].add(next(5));
+      case 6 -> waitingFor[9].add(next(6));
+      case 7 -> waitingFor[8].add(next(6) | TOOK_T7);
+      case 8 -> waitingFor[11].add(next(8));
+      case 9 -> waitingFor[10].add(next(9));
+      case 10 -> waitingFor[11].add(next(10));
+      case 11 -> {
+        int path = next(11);
+        if ((path & UNKNOWN_PATH) == 0) {
+          invariantCounts[((path & TOOK_T7) != 0 ? 1 : 0) + ((path & TOOK_T3) != 0 ? 2 : 0)]++;
+        }
+      }
+      default -> throw new IllegalArgumentException("Invalid transition index: " + transitionIndex);
+    }
+  }
+
+  /**
+   * Takes the oldest customer of a stage.
+   *
+   * @param stage Index of the stage, named after the first transition that consumes from it.
+   * @return Path flags of the customer, or the unknown path flag if none was tracked.
+   */
+  private int next(int stage) {
+    Integer path = waitingFor[stage].poll();
+    return path == null ? UNKNOWN_PATH : path;
+  }
+
+  /* Getters */
+
+  public int[] getInvariantCounts() {
+    return invariantCounts;
+  }
+}
@@ -0,0 +1,338 @@
+package simulation;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import petrinet.PetriNet;
+import petrinet.PetriNetConf;
+import petrinet.TokenTracker;
+import policy.Policy;
+import utils.Logger;
+
+/**
+ * Open-loop, virtual-time load test of the agency net. T11 no longer returns customers to P0;
+ * instead customers arrive in P0 at a fixed rate or as a Poisson process, so the net is measured
+ * under an arrival rate rather than with a fixed population. Each customer is followed from its
+ * arrival to T11 and the distribution of its sojourn time is reported.
+ *
+ * <p>Customers are identified with a {@link TokenTracker} over the places of the customer place
+ * invariant, which also yields the path of every customer and how long it waited in each place.
+ * Per-customer records can be written as CSV.
+ */
+public class LoadGenerator {
+  private static final int ENTRY_PLACE = 0;
+  private static final int EXIT_TRANSITION = 11;
+
+  private static final int INITIAL_CUSTOMERS_CAPACITY = 1024;
+
+  /** How customers arrive. */
+  public enum Arrivals {
+    /** Exponentially distributed inter-arrival times. */
+    POISSON,
+    /** Evenly spaced arrivals. */
+    FIXED
+  }
+
+  private final PetriNet petriNet;
+  private final Policy policy;
+  private final Arrivals arrivals;
+  private final double ratePerMillisecond;
+  private final Random random;
+  private long virtualTime = 0;
+  private PrintWriter records = null;
+
+  /* State of the current run, updated by the token tracker */
+  private int warmup;
+  private int departures;
+  private long[] arrivalTimes;
+  private int[] paths;
+  private long[] sojournTimes;
+  private int measured;
+  private long[] waitSums;
+  private int[] waitCounts;
+  private int[] invariantCounts;
+
+  /**
+   * Constructor for the LoadGenerator. Customers are the tokens of the place invariant covering the
+   * entry place.
+   *
+   * @param conf Configuration of the closed agency net, opened at T11.
+   * @param policy Policy choosing among ready transitions. Must not be shared with other runs.
+   * @param arrivals Arrival process.
+   * @param rate Arrival rate, in customers per virtual second.
+   * @param seed Seed for the arrivals and the policy's random choices.
+   */
+  public LoadGenerator(
+      PetriNetConf conf, Policy policy, Arrivals arrivals, double rate, long seed) {
+    if (rate <= 0) {
+      throw new IllegalArgumentException("Arrival rate must be positive: " + rate);
+    }
+    this.policy = policy;
+    this.arrivals = arrivals;
+    this.ratePerMillisecond = rate / 1000;
+    this.random = new Random(seed);
+    policy.setSeed(seed);
+
+    int[][] incidenceMatrixOut = deepCopy(conf.getIncidenceMatrixOut());
+    incidenceMatrixOut[ENTRY_PLACE][EXIT_TRANSITION] = 0;
+    int[] marking = conf.getInitialMarking();
+    marking[ENTRY_PLACE] = 0;
+    int[] customerInvariant =
+        Arrays.stream(conf.getPlacesInvariants())
+            .filter(row -> row[ENTRY_PLACE] > 0)
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("No place invariant covers P0"));
+    // Invariants over the entry place no longer hold once customers come and go
+    int[][] placesInvariants =
+        Arrays.stream(conf.getPlacesInvariants())
+            .filter(row -> row[ENTRY_PLACE] == 0)
+            .toArray(int[][]::new);
+
+    this.petriNet =
+        new PetriNet(
+            conf.getTransitions(),
+            conf.getPlaces(),
+            incidenceMatrixOut,
+            conf.getIncidenceMatrixIn(),
+            placesInvariants,
+            marking,
+            Integer.MAX_VALUE,
+            conf.getTimeTransitions(),
+            this::getVirtualTime);
+    petriNet
+        .enableTokenTracking(TokenTracker.placesOfInvariant(customerInvariant))
+        .setObserver(this::customerMoved);
+  }
+
+  /**
+   * Writes one CSV line per measured customer when it leaves: id, arrival, departure, sojourn time
+   * and the transitions it went through.
+   *
+   * @param records Writer for the records, or null to stop writing them.
+   */
+  public void setRecords(PrintWriter records) {
+    this.records = records;
+    if (records != null) {
+      records.println("customer,arrival,departure,sojourn,path");
+    }
+  }
+
+  /**
+   * Runs the load test until the given number of customers have left the net, or the net
+   * deadlocks. The first customers to arrive only warm the net up and are not measured. Can be
+   * called once per generator.
+   *
+   * @param customers Number of customers to measure.
+   * @param warmup Number of customers to discard before measuring.
+   * @return The result of the test.
+   */
+  public LoadTestResult run(int customers, int warmup) {
+    int numberOfTransitions = petriNet.getNumberOfTransitions();
+    int placesLength = petriNet.getPlacesLength();
+    this.warmup = warmup;
+    this.departures = 0;
+    this.arrivalTimes = new long[INITIAL_CUSTOMERS_CAPACITY];
+    this.paths = new int[INITIAL_CUSTOMERS_CAPACITY];
+    this.sojournTimes = new long[customers];
+    this.measured = 0;
+    this.waitSums = new long[placesLength];
+    this.waitCounts = new int[placesLength];
+    this.invariantCounts = new int[InvariantClassifier.INVARIANT_NAMES.length];
+    int arrived = 0;
+    int maxCustomersInNet = 0;
+    double nextArrival = nextInterArrival();
+
+    while (measured < customers) {
+      // Inject every customer due by now
+      while (nextArrival <= virtualTime) {
+        petriNet.addTokens(ENTRY_PLACE, 1);
+        arrived++;
+        nextArrival += nextInterArrival();
+      }
+      maxCustomersInNet = Math.max(maxCustomersInNet, arrived - departures);
+
+      boolean[] enabled = petriNet.getEnabledTransitionsInBits();
+      boolean[] ready = new boolean[numberOfTransitions];
+      boolean anyReady = false;
+      for (int t = 0; t < numberOfTransitions; t++) {
+        if (enabled[t] && petriNet.getRemainingWaitTime(t) == 0) {
+          ready[t] = true;
+          anyReady = true;
+        }
+      }
+
+      if (!anyReady) {
+        // The next arrival or the earliest timer, which is in the future since none is ready
+        virtualTime = Math.min((long) Math.ceil(nextArrival), petriNet.getNextTimerDeadline());
+        continue;
+      }
+
+      int transitionIndex = policy.getNextTransition(ready);
+      if (transitionIndex == -1 || !petriNet.tryFireTransition(transitionIndex)) {
+        break;
+      }
+      policy.transitionFired(transitionIndex);
+    }
+
+    if (records != null) {
+      records.flush();
+    }
+    double[] meanWaits = new double[placesLength];
+    for (int p = 0; p < placesLength; p++) {
+      meanWaits[p] = waitCounts[p] == 0 ? 0 : (double) waitSums[p] / waitCounts[p];
+    }
+    return new LoadTestResult(
+        ratePerMillisecond * 1000,
+        arrived,
+        departures,
+        virtualTime,
+        Arrays.copyOf(sojournTimes, measured),
+        maxCustomersInNet,
+        meanWaits,
+        invariantCounts);
+  }
+
+  /**
+   * Follows a customer through the net. Called by the token tracker on every move.
+   *
+   * @param customer Id of the customer, in order of arrival.
+   * @param transitionIndex Transition that moved it.
+   * @param fromPlace Place it left, or {@link TokenTracker#OUTSIDE} when it arrives.
+   * @param toPlace Place it entered, or {@link TokenTracker#OUTSIDE} when it leaves.
+   * @param waited Time it spent in the place it left.
+   * @param time Time of the move.
+   */
+  private void customerMoved(
+      int customer, int transitionIndex, int fromPlace, int toPlace, long waited, long time) {
+    if (fromPlace == TokenTracker.OUTSIDE) {
+      if (customer >= arrivalTimes.length) {
+        arrivalTimes = Arrays.copyOf(arrivalTimes, arrivalTimes.length * 2);
+        paths = Arrays.copyOf(paths, paths.length * 2);
+      }
+      arrivalTimes[customer] = time;
+      return;
+    }
+
+    paths[customer] |= 1 << transitionIndex;
+    boolean isMeasured = customer >= warmup;
+    if (isMeasured) {
+      waitSums[fromPlace] += waited;
+      waitCounts[fromPlace]++;
+    }
+    if (toPlace != TokenTracker.OUTSIDE) {
+      return;
+    }
+
+    departures++;
+    if (!isMeasured || measured == sojournTimes.length) {
+      return;
+    }
+    long sojourn = time - arrivalTimes[customer];
+    sojournTimes[measured++] = sojourn;
+    boolean tookT3 = (paths[customer] & (1 << 3)) != 0;
+    boolean tookT7 = (paths[customer] & (1 << 7)) != 0;
+    invariantCounts[(tookT7 ? 1 : 0) + (tookT3 ? 2 : 0)]++;
+    if (records != null) {
+      records.printf(
+          "%d,%d,%d,%d,%s%n",
+          customer, arrivalTimes[customer], time, sojourn, pathToString(paths[customer]));
+    }
+  }
+
+  /**
+   * Formats the transitions a customer went through.
+   *
+   * @param path Bit set of the transitions.
+   * @return Transitions in index order, separated by spaces.
+   */
+  private static String pathToString(int path) {
+    StringBuilder text = new StringBuilder();
+    for (int t = 0; t < Integer.SIZE; t++) {
+      if ((path & (1 << t)) != 0) {
+        text.append(text.length() == 0 ? "" : " ").append('T').append(t);
+      }
+    }
+    return text.toString();
+  }
+
+  /**
+   * Draws the time until the next arrival.
+   *
+   * @return Inter-arrival time in milliseconds.
+   */
+  private double nextInterArrival() {
+    if (arrivals == Arrivals.FIXED) {
+      return 1 / ratePerMillisecond;
+    }
+    return -Math.log(1 - random.nextDouble()) / ratePerMillisecond;
+  }
+
+  private static int[][] deepCopy(int[][] matrix) {
+    return Arrays.stream(matrix).map(int[]::clone).toArray(int[][]::new);
+  }
+
+  /**
+   * Entry point of the load test.
+   *
+   * @param args Optional arguments: policy number (1 balanced, 2 prioritized, 3 FCFS), rate in
+   *     customers per virtual second, arrival process ("poisson" or "fixed"), customers to measure,
+   *     seed and a CSV file for the per-customer records.
+   * @throws IOException if the records file cannot be written.
+   */
+  public static void main(String[] args) throws IOException {
+    char policyChoice = args.length >= 1 ? args[0].charAt(0) : '1';
+    double rate = args.length >= 2 ? Double.parseDouble(args[1]) : 50;
+    Arrivals arrivals =
+        args.length >= 3 ? Arrivals.valueOf(args[2].toUpperCase()) : Arrivals.POISSON;
+    int customers = args.length >= 4 ? Integer.parseInt(args[3]) : 10_000;
+    long seed = args.length >= 5 ? Long.parseLong(args[4]) : 42;
+
+    Logger.getLogger().setEnabled(false);
+    Policy policy = MonteCarloRunner.policyFactory(policyChoice).get();
+    LoadGenerator generator = new LoadGenerator(new PetriNetConf(), policy, arrivals, rate, seed);
+    LoadTestResult result;
+    if (args.length >= 6) {
+      try (PrintWriter records = new PrintWriter(Files.newBufferedWriter(Path.of(args[5])))) {
+        generator.setRecords(records);
+        result = generator.run(customers, customers / 10);
+      }
+    } else {
+      result = generator.run(customers, customers / 10);
+    }
+
+    System.out.printf(
+        "[INFO] %s arrivals at %.2f customers/s: %d measured, throughput %.2f customers/s%n",
+        arrivals, result.getOfferedRate(), result.getMeasuredCustomers(), result.getThroughput());
+    System.out.printf(
+        "Sojourn (ms): mean %.2f  p50 %d  p90 %d  p95 %d  p99 %d  max %d%n",
+        result.getMeanSojourn(),
+        result.getSojournPercentile(50),
+        result.getSojournPercentile(90),
+        result.getSojournPercentile(95),
+        result.getSojournPercentile(99),
+        result.getSojournPercentile(100));
+    System.out.printf("Most customers in the net at once: %d%n", result.getMaxCustomersInNet());
+
+    System.out.println("Mean wait per place (ms):");
+    double[] meanWaits = result.getMeanWaits();
+    for (int p = 0; p < meanWaits.length; p++) {
+      if (meanWaits[p] > 0) {
+        System.out.printf("  P%-3d %10.2f%n", p, meanWaits[p]);
+      }
+    }
+    System.out.println("Paths (customers):");
+    for (int i = 0; i < InvariantClassifier.INVARIANT_NAMES.length; i++) {
+      System.out.printf(
+          "  %-28s %8d%n", InvariantClassifier.INVARIANT_NAMES[i], result.getInvariantCounts()[i]);
+    }
+  }
+
+  /* Getters */
+
+  public long getVirtualTime() {
+    return virtualTime;
+  }
+}
@@ -0,0 +1,114 @@
+package simulation;
+
+import java.util.Arrays;
+
+/** Outcome of an open-loop load test: the sojourn time of every measured customer. */
+public class LoadTestResult {
+  private final double offeredRate;
+  private final int arrivals;
+  private final int departures;
+  private final long virtualTime;
+  private final long[] sojournTimes;
+  private final int maxCustomersInNet;
+  private final double[] meanWaits;
+  private final int[] invariantCounts;
+
+  /**
+   * Constructor for the LoadTestResult.
+   *
+   * @param offeredRate Arrival rate, in customers per virtual second.
+   * @param arrivals Number of customers that arrived.
+   * @param departures Number of customers that left through T11, including the warm-up ones.
+   * @param virtualTime Virtual time, in milliseconds, when the test stopped.
+   * @param sojournTimes Time from arrival to T11 of each measured customer, in milliseconds.
+   * @param maxCustomersInNet Largest number of customers inside the net at the same time.
+   * @param meanWaits Mean time measured customers spent in each place, in milliseconds.
+   * @param invariantCounts Number of measured customers per transition invariant, in the order of
+   *     {@link InvariantClassifier#INVARIANT_NAMES}.
+   */
+  public LoadTestResult(
+      double offeredRate,
+      int arrivals,
+      int departures,
+      long virtualTime,
+      long[] sojournTimes,
+      int maxCustomersInNet,
+      double[] meanWaits,
+      int[] invariantCounts) {
+    this.offeredRate = offeredRate;
+    this.arrivals = arrivals;
+    this.departures = departures;
+    this.virtualTime = virtualTime;
+    this.sojournTimes = sojournTimes.clone();
+    Arrays.sort(this.sojournTimes);
+    this.maxCustomersInNet = maxCustomersInNet;
+    this.meanWaits = meanWaits;
+    this.invariantCounts = invariantCounts;
+  }
+
+  /**
+   * Returns a percentile of the sojourn times using the nearest-rank method.
+   *
+   * @param percentile Percentile between 0 and 100.
+   * @return Sojourn time at the given percentile in milliseconds, 0 if nothing was measured.
+   */
+  public long getSojournPercentile(double percentile) {
+    if (sojournTimes.length == 0) {
+      return 0;
+    }
+    int rank = (int) Math.ceil(percentile / 100 * sojournTimes.length);
+    return sojournTimes[Math.max(0, Math.min(sojournTimes.length - 1, rank - 1))];
+  }
+
+  /**
+   * Returns the mean sojourn time.
+   *
+   * @return Mean sojourn time in milliseconds, 0 if nothing was measured.
+   */
+  public double getMeanSojourn() {
+    return Arrays.stream(sojournTimes).average().orElse(0);
+  }
+
+  /**
+   * Returns the departures per virtual second. Below saturation it matches the offered rate.
+   *
+   * @return Throughput of the test, 0 if no virtual time elapsed.
+   */
+  public double getThroughput() {
+    return virtualTime == 0 ? 0 : departures * 1000.0 / virtualTime;
+  }
+
+  /* Getters */
+
+  public double getOfferedRate() {
+    return offeredRate;
+  }
+
+  public int getArrivals() {
+    return arrivals;
+  }
+
+  public int getDepartures() {
+    return departures;
+  }
+
+  public long getVirtualTime() {
+    return virtualTime;
+  }
+
+  public int getMeasuredCustomers() {
+    return sojournTimes.length;
+  }
+
+  public int getMaxCustomersInNet() {
+    return maxCustomersInNet;
+  }
+
+  public double[] getMeanWaits() {
+    return meanWaits;
+  }
+
+  public int[] getInvariantCounts() {
+    return invariantCounts;
+  }
+}
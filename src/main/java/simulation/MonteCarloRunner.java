@@ -0,0 +1,219 @@
+package simulation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import petrinet.Checkpoint;
+import petrinet.PetriNetConf;
+import policy.BalancedPolicy;
+import policy.FCFSPolicy;
+import policy.Policy;
+import policy.PrioritizedPolicy;
+import utils.Logger;
+
+/**
+ * Runs many independent virtual-time simulations of the agency net per policy in parallel, inside
+ * a single JVM, and prints the distribution of their throughput, invariant mix and T2/T3 and T6/T7
+ * ratios. Replaces launching the application once per run from {@code scripts/automated-runs.sh}.
+ */
+public class MonteCarloRunner {
+  private static final int DEFAULT_RUNS = 1000;
+  private static final String DEFAULT_POLICIES = "123";
+  private static final long DEFAULT_SEED = 42;
+
+  /**
+   * Entry point of the batch runner.
+   *
+   * @param args Optional arguments: number of runs per policy, policies to run (e.g. "13"), base
+   *     seed and a checkpoint file every run is forked from.
+   * @throws Exception if a run fails.
+   */
+  public static void main(String[] args) throws Exception {
+    int runs = args.length >= 1 ? Integer.parseInt(args[0]) : DEFAULT_RUNS;
+    String policies = args.length >= 2 ? args[1] : DEFAULT_POLICIES;
+    long seed = args.length >= 3 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+    Checkpoint checkpoint = args.length >= 4 ? readCheckpoint(Path.of(args[3])) : null;
+
+    // Thousands of nets must not write to the shared log files
+    Logger.getLogger().setEnabled(false);
+
+    int threads = Runtime.getRuntime().availableProcessors();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      for (char policyChoice : policies.toCharArray()) {
+        long start = System.nanoTime();
+        List<SimulationResult> results =
+            runPolicy(executor, policyFactory(policyChoice), runs, seed, checkpoint);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        printReport(policyName(policyChoice), results, elapsedMillis, threads);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Runs the given number of simulations of one policy in parallel, each with its own seed.
+   *
+   * @param executor Executor running the simulations.
+   * @param policyFactory Creates a fresh policy for every run.
+   * @param runs Number of runs.
+   * @param seed Base seed; run i uses seed + i.
+   * @param checkpoint State every run starts from, or null to start from the initial marking.
+   * @return The results of all runs, ordered by seed.
+   * @throws Exception if a run fails.
+   */
+  public static List<SimulationResult> runPolicy(
+      ExecutorService executor,
+      Supplier<Policy> policyFactory,
+      int runs,
+      long seed,
+      Checkpoint checkpoint)
+      throws Exception {
+    PetriNetConf conf = new PetriNetConf();
+    List<Future<SimulationResult>> futures = new ArrayList<>(runs);
+    for (int i = 0; i < runs; i++) {
+      long runSeed = seed + i;
+      futures.add(
+          executor.submit(
+              () -> {
+                Simulation simulation = new Simulation(conf, policyFactory.get(), runSeed);
+                if (checkpoint != null) {
+                  simulation.restore(checkpoint);
+                }
+                return simulation.run();
+              }));
+    }
+
+    List<SimulationResult> results = new ArrayList<>(runs);
+    for (Future<SimulationResult> future : futures) {
+      results.add(future.get());
+    }
+    return results;
+  }
+
+  /**
+   * Reads the checkpoint every run is forked from.
+   *
+   * @param path Path of the checkpoint file.
+   * @return The checkpoint read.
+   * @throws IOException if the file cannot be read or is not a checkpoint.
+   */
+  private static Checkpoint readCheckpoint(Path path) throws IOException {
+    try (InputStream in = Files.newInputStream(path)) {
+      return Checkpoint.readFrom(in);
+    }
+  }
+
+  /**
+   * Prints the distributions of a batch of runs.
+   *
+   * @param policyName Name of the policy used.
+   * @param results Results of the runs.
+   * @param elapsedMillis Wall-clock time taken by the batch.
+   * @param threads Number of worker threads used.
+   */
+  private static void printReport(
+      String policyName, List<SimulationResult> results, long elapsedMillis, int threads) {
+    long completed = results.stream().filter(SimulationResult::isCompleted).count();
+    System.out.printf(
+        "%n[INFO] %s: %d runs (%d completed) in %d ms on %d threads%n",
+        policyName, results.size(), completed, elapsedMillis, threads);
+
+    printDistribution("Throughput (inv/s)", results, SimulationResult::getThroughput, 1);
+    printDistribution("T2 share (%)", results, r -> r.getShare(2, 3), 100);
+    printDistribution("T6 share (%)", results, r -> r.getShare(6, 7), 100);
+
+    System.out.println("Invariant mix (%):");
+    for (int i = 0; i < InvariantClassifier.INVARIANT_NAMES.length; i++) {
+      int invariant = i;
+      printDistribution(
+          "  " + InvariantClassifier.INVARIANT_NAMES[i],
+          results,
+          r -> {
+            int total = Arrays.stream(r.getInvariantCounts()).sum();
+            return total == 0 ? 0 : (double) r.getInvariantCounts()[invariant] / total;
+          },
+          100);
+    }
+  }
+
+  /**
+   * Prints the mean, standard deviation and 5th, 50th and 95th percentiles of a metric.
+   *
+   * @param label Name of the metric.
+   * @param results Results of the runs.
+   * @param metric Extracts the metric from a result.
+   * @param scale Factor applied to the metric before printing.
+   */
+  private static void printDistribution(
+      String label,
+      List<SimulationResult> results,
+      ToDoubleFunction<SimulationResult> metric,
+      double scale) {
+    double[] values = results.stream().mapToDouble(metric).map(v -> v * scale).sorted().toArray();
+    if (values.length == 0) {
+      return;
+    }
+    double mean = Arrays.stream(values).average().orElse(0);
+    double variance = Arrays.stream(values).map(v -> (v - mean) * (v - mean)).sum() / values.length;
+    System.out.printf(
+        "%-30s mean %8.3f  sd %7.3f  p5 %8.3f  p50 %8.3f  p95 %8.3f%n",
+        label,
+        mean,
+        Math.sqrt(variance),
+        percentile(values, 5),
+        percentile(values, 50),
+        percentile(values, 95));
+  }
+
+  /**
+   * Returns a percentile of sorted values using the nearest-rank method.
+   *
+   * @param sortedValues Values in ascending order.
+   * @param percentile Percentile between 0 and 100.
+   * @return The value at the given percentile.
+   */
+  private static double percentile(double[] sortedValues, double percentile) {
+    int rank = (int) Math.ceil(percentile / 100 * sortedValues.length);
+    return sortedValues[Math.max(0, Math.min(sortedValues.length - 1, rank - 1))];
+  }
+
+  /**
+   * Returns a factory of the policy matching the application's policy numbers.
+   *
+   * @param policyChoice Policy number: 1 balanced, 2 prioritized, 3 FCFS.
+   * @return A supplier creating new instances of the policy.
+   */
+  static Supplier<Policy> policyFactory(char policyChoice) {
+    return switch (policyChoice) {
+      case '1' -> BalancedPolicy::new;
+      case '2' -> PrioritizedPolicy::new;
+      case '3' -> FCFSPolicy::new;
+      default -> throw new IllegalArgumentException("Invalid policy selection: " + policyChoice);
+    };
+  }
+
+  /**
+   * Returns the display name of a policy.
+   *
+   * @param policyChoice Policy number: 1 balanced, 2 prioritized, 3 FCFS.
+   * @return Name of the policy.
+   */
+  private static String policyName(char policyChoice) {
+    return switch (policyChoice) {
+      case '1' -> "Balanced Policy";
+      case '2' -> "Prioritized Policy";
+      default -> "FCFS Policy";
+    };
+  }
+}
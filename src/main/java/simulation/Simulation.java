@@ -0,0 +1,112 @@
+package simulation;
+
+import petrinet.Checkpoint;
+import petrinet.PetriNet;
+import petrinet.PetriNetConf;
+import policy.Policy;
+
+/**
+ * Single-threaded, virtual-time run of the agency Petri net. Instead of parking segment threads,
+ * the simulation fires at each instant one of the transitions that are enabled and whose alpha
+ * window has elapsed, chosen by the policy as if every segment were waiting on its transition. When
+ * none is ready, the virtual clock jumps straight to the earliest pending deadline.
+ */
+public class Simulation {
+  private final PetriNet petriNet;
+  private final Policy policy;
+  private final long seed;
+  private final InvariantClassifier classifier = new InvariantClassifier();
+  private long virtualTime = 0;
+
+  /**
+   * Constructor for the Simulation.
+   *
+   * @param conf Configuration of the Petri net to simulate.
+   * @param policy Policy choosing among ready transitions. Must not be shared with other runs.
+   * @param seed Seed for the policy's random choices.
+   */
+  public Simulation(PetriNetConf conf, Policy policy, long seed) {
+    this.policy = policy;
+    this.seed = seed;
+    policy.setSeed(seed);
+    this.petriNet =
+        new PetriNet(
+            conf.getTransitions(),
+            conf.getPlaces(),
+            conf.getIncidenceMatrixOut(),
+            conf.getIncidenceMatrixIn(),
+            conf.getPlacesInvariants(),
+            conf.getInitialMarking(),
+            conf.getTargetInvariants(),
+            conf.getTimeTransitions(),
+            this::getVirtualTime);
+  }
+
+  /**
+   * Restores the net and the policy from a checkpoint, so several what-if runs can be forked from
+   * the same warmed-up state. Customers already in the net are not classified into invariants.
+   *
+   * @param checkpoint Checkpoint to start from.
+   */
+  public void restore(Checkpoint checkpoint) {
+    petriNet.restore(checkpoint);
+    policy.restoreTransitionCounts(checkpoint.getPolicyCounts());
+  }
+
+  /**
+   * Runs the net until the invariants target is reached or no transition can ever fire again.
+   *
+   * @return The result of the run.
+   */
+  public SimulationResult run() {
+    int numberOfTransitions = petriNet.getNumberOfTransitions();
+    int[] transitionCounts = new int[numberOfTransitions];
+    int firings = 0;
+
+    while (!petriNet.petriNetHasFinished()) {
+      boolean[] enabled = petriNet.getEnabledTransitionsInBits();
+      boolean[] ready = new boolean[numberOfTransitions];
+      boolean anyReady = false;
+
+      for (int t = 0; t < numberOfTransitions; t++) {
+        if (enabled[t] && petriNet.getRemainingWaitTime(t) == 0) {
+          ready[t] = true;
+          anyReady = true;
+        }
+      }
+
+      if (!anyReady) {
+        // Every enabled timed transition is still waiting, so the earliest timer is in the future
+        long nextDeadline = petriNet.getNextTimerDeadline();
+        if (nextDeadline == Long.MAX_VALUE) {
+          break; // Deadlock: nothing enabled and no timer pending
+        }
+        virtualTime = nextDeadline;
+        continue;
+      }
+
+      int transitionIndex = policy.getNextTransition(ready);
+      if (transitionIndex == -1 || !petriNet.tryFireTransition(transitionIndex)) {
+        break;
+      }
+      policy.transitionFired(transitionIndex);
+      classifier.transitionFired(transitionIndex);
+      transitionCounts[transitionIndex]++;
+      firings++;
+    }
+
+    return new SimulationResult(
+        seed,
+        petriNet.petriNetHasFinished(),
+        virtualTime,
+        firings,
+        transitionCounts,
+        classifier.getInvariantCounts());
+  }
+
+  /* Getters */
+
+  public long getVirtualTime() {
+    return virtualTime;
+  }
+}
@@ -0,0 +1,88 @@
+package simulation;
+
+/** Outcome of a single virtual-time run of the agency Petri net. */
+public class SimulationResult {
+  private final long seed;
+  private final boolean completed;
+  private final long virtualTime;
+  private final int firings;
+  private final int[] transitionCounts;
+  private final int[] invariantCounts;
+
+  /**
+   * Constructor for the SimulationResult.
+   *
+   * @param seed Seed used by the policy in this run.
+   * @param completed true if the invariants target was reached, false if the net deadlocked.
+   * @param virtualTime Virtual time, in milliseconds, when the run stopped.
+   * @param firings Total number of firings.
+   * @param transitionCounts Number of firings of each transition.
+   * @param invariantCounts Number of completed customers per transition invariant, in the order of
+   *     {@link InvariantClassifier#INVARIANT_NAMES}.
+   */
+  public SimulationResult(
+      long seed,
+      boolean completed,
+      long virtualTime,
+      int firings,
+      int[] transitionCounts,
+      int[] invariantCounts) {
+    this.seed = seed;
+    this.completed = completed;
+    this.virtualTime = virtualTime;
+    this.firings = firings;
+    this.transitionCounts = transitionCounts;
+    this.invariantCounts = invariantCounts;
+  }
+
+  /**
+   * Returns the completed invariants per virtual second.
+   *
+   * @return Throughput of the run, 0 if no virtual time elapsed.
+   */
+  public double getThroughput() {
+    int invariants = 0;
+    for (int count : invariantCounts) {
+      invariants += count;
+    }
+    return virtualTime == 0 ? 0 : invariants * 1000.0 / virtualTime;
+  }
+
+  /**
+   * Returns the share of the first transition of a pair over the firings of both.
+   *
+   * @param first Transition whose share is computed.
+   * @param second The other transition of the pair.
+   * @return Share of the first transition between 0 and 1, 0 if neither fired.
+   */
+  public double getShare(int first, int second) {
+    int total = transitionCounts[first] + transitionCounts[second];
+    return total == 0 ? 0 : (double) transitionCounts[first] / total;
+  }
+
+  /* Getters */
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public boolean isCompleted() {
+    return completed;
+  }
+
+  public long getVirtualTime() {
+    return virtualTime;
+  }
+
+  public int getFirings() {
+    return firings;
+  }
+
+  public int[] getTransitionCounts() {
+    return transitionCounts;
+  }
+
+  public int[] getInvariantCounts() {
+    return invariantCounts;
+  }
+}
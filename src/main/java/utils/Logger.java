@@ -2,19 +2,70 @@ package utils;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.List;
 
-/** Utility class for logging application messages and errors. */
+/**
+ * Utility class for logging application messages and errors. By default both logs are appended to
+ * fixed files in /tmp. With {@code -Dlog.dir} set, each run writes its own {@link SegmentedLog}s in
+ * that directory instead, rotated after {@code -Dlog.segmentBytes} bytes or {@code
+ * -Dlog.segmentSeconds} seconds; {@code -Dlog.keepRuns=N} deletes all but the last N runs,
+ * including the new one, at startup.
+ *
+ * <p>The markings after each firing go to a binary {@link MarkingTimelineWriter} opened by the net,
+ * next to the logs, instead of a text line per firing. {@code -Dlog.markings=text} restores the
+ * text lines in the results log.
+ */
 public class Logger {
+  public static final String LOG_NAME = "petriNetResults";
+  public static final String TRANSITIONS_LOG_NAME = "transitionsSequence";
+  public static final String MARKING_TIMELINE_NAME = "markingTimeline";
+  public static final String MARKING_TIMELINE_SUFFIX = ".bin";
   private static Logger logger = null;
-  private static final String LOG_PATH = "/tmp/petriNetResults.txt";
-  private static final String TRANSITIONS_LOG_PATH = "/tmp/transitionsSequence.txt";
-  private final FileWriter writer;
-  private final FileWriter transitionsWriter;
+  private static final String LOG_PATH = "/tmp/" + LOG_NAME + ".txt";
+  private static final String TRANSITIONS_LOG_PATH = "/tmp/" + TRANSITIONS_LOG_NAME + ".txt";
+  private static final Path MARKING_TIMELINE_PATH =
+      Path.of("/tmp/" + MARKING_TIMELINE_NAME + MARKING_TIMELINE_SUFFIX);
+  private final Writer writer;
+  private final Writer transitionsWriter;
+  private final Path markingTimelinePath;
+  private final boolean textMarkings = "text".equals(System.getProperty("log.markings"));
+  private MarkingTimelineWriter markingTimeline = null;
+
+  /** Whether the logs are segmented, so transitions are written in batches. */
+  private final boolean segmented;
+
+  private volatile boolean enabled = true;
 
   private Logger() throws IOException {
-    this.writer = new FileWriter(LOG_PATH, true);
-    this.transitionsWriter = new FileWriter(TRANSITIONS_LOG_PATH, true);
+    String directory = System.getProperty("log.dir");
+    this.segmented = directory != null;
+    if (!segmented) {
+      this.writer = new FileWriter(LOG_PATH, true);
+      this.transitionsWriter = new FileWriter(TRANSITIONS_LOG_PATH, true);
+      this.markingTimelinePath = MARKING_TIMELINE_PATH;
+      return;
+    }
+
+    Path logDirectory = Path.of(directory);
+    String runId = System.getProperty("log.runId", SegmentedLog.newRunId());
+    long segmentBytes = Long.getLong("log.segmentBytes", SegmentedLog.DEFAULT_SEGMENT_BYTES);
+    long segmentMillis =
+        Long.getLong("log.segmentSeconds", SegmentedLog.DEFAULT_SEGMENT_MILLIS / 1000) * 1000;
+    int keepRuns = Integer.getInteger("log.keepRuns", 0);
+    if (keepRuns > 0) {
+      SegmentedLog.deleteOldRuns(logDirectory, LOG_NAME, keepRuns - 1);
+      SegmentedLog.deleteOldRuns(logDirectory, TRANSITIONS_LOG_NAME, keepRuns - 1);
+      deleteOldMarkingTimelines(logDirectory);
+    }
+    this.markingTimelinePath = getMarkingTimelinePath(logDirectory, runId);
+    this.writer = new SegmentedLog(logDirectory, LOG_NAME, runId, segmentBytes, segmentMillis);
+    this.transitionsWriter =
+        new SegmentedLog(logDirectory, TRANSITIONS_LOG_NAME, runId, segmentBytes, segmentMillis);
   }
 
   public static Logger getLogger() {
@@ -45,6 +96,9 @@ public class Logger {
    * @param message The info message to log
    */
   public void info(String message) {
+    if (!enabled) {
+      return;
+    }
     String formattedMessage = LocalDateTime.now() + " INFO: " + message;
     System.out.println(formattedMessage);
     writeToFile(formattedMessage);
@@ -56,14 +110,74 @@ public class Logger {
    * @param transitionIndex Index of transition to log
    */
   public void logTransition(int transitionIndex) {
-    try {
-      transitionsWriter.write("T" + transitionIndex);
-      transitionsWriter.flush();
-    } catch (IOException e) {
-      error("Failed to write transition to log: " + e.getMessage());
+    // Checked before taking the lock, so firings in parallel do not queue up on a disabled logger
+    if (!enabled) {
+      return;
+    }
+    synchronized (this) {
+      try {
+        transitionsWriter.write("T" + transitionIndex);
+        // The file in /tmp is flushed on every firing so it can be followed live
+        if (!segmented) {
+          transitionsWriter.flush();
+        }
+      } catch (IOException e) {
+        error("Failed to write transition to log: " + e.getMessage());
+      }
     }
   }
 
+  /**
+   * Opens the marking timeline of a net, replacing the timeline of any net opened before in this
+   * process. It is written to /tmp, or next to the segmented logs of the run, and closed with the
+   * logs.
+   *
+   * @param marking Current marking of the net.
+   * @param incidenceMatrixOut Output incidence matrix of the net.
+   * @param incidenceMatrixIn Input incidence matrix of the net.
+   * @return The timeline, or null if markings are logged as text or logging is disabled.
+   * @throws IOException if the timeline file cannot be created.
+   */
+  public synchronized MarkingTimelineWriter openMarkingTimeline(
+      int[] marking, int[][] incidenceMatrixOut, int[][] incidenceMatrixIn) throws IOException {
+    if (textMarkings || !enabled) {
+      return null;
+    }
+    if (markingTimeline != null) {
+      markingTimeline.close();
+    }
+    markingTimeline =
+        new MarkingTimelineWriter(
+            Files.newOutputStream(markingTimelinePath),
+            marking,
+            incidenceMatrixOut,
+            incidenceMatrixIn,
+            MarkingTimelineWriter.DEFAULT_KEYFRAME_INTERVAL);
+    return markingTimeline;
+  }
+
+  /**
+   * Whether the markings after each firing are logged as text lines in the results log. Text
+   * markings are read from the whole net, so under the partitioned monitor, which locks only the
+   * regions of each firing, they are not consistent snapshots.
+   *
+   * @return true if the marking timeline is disabled with {@code -Dlog.markings=text}.
+   */
+  public boolean isTextMarkings() {
+    return textMarkings;
+  }
+
+  /**
+   * Gets the file of the marking timeline of a run of segmented logs.
+   *
+   * @param directory Directory of the segmented logs.
+   * @param runId Id of the run.
+   * @return Path of the timeline.
+   */
+  public static Path getMarkingTimelinePath(Path directory, String runId) {
+    return directory.resolve(MARKING_TIMELINE_NAME + "-" + runId + MARKING_TIMELINE_SUFFIX);
+  }
+
   /**
    * Logs the firing of a transition and the current marking of the Petri net.
    *
@@ -76,15 +190,53 @@ public class Logger {
     logger.info(message);
   }
 
+  /**
+   * Enables or disables info and transition logging. Errors are always logged. Batch runs disable
+   * logging so thousands of nets do not write to the same files.
+   *
+   * @param enabled true to log, false to discard info and transition messages.
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
   private synchronized void writeToFile(String message) {
     try {
-      writer.write(message);
-      writer.write(System.lineSeparator());
+      // A single write, so a segment never ends in the middle of a line
+      writer.write(message + System.lineSeparator());
     } catch (IOException e) {
       System.err.println("Failed to write to log file: " + e.getMessage());
     }
   }
 
+  /**
+   * Deletes the marking timelines of the runs whose segmented logs were deleted.
+   *
+   * @param directory Directory of the segmented logs.
+   * @throws IOException if the directory cannot be read.
+   */
+  private static void deleteOldMarkingTimelines(Path directory) throws IOException {
+    List<String> runs = SegmentedLog.listRuns(directory, TRANSITIONS_LOG_NAME);
+    try (DirectoryStream<Path> timelines =
+        Files.newDirectoryStream(
+            directory, MARKING_TIMELINE_NAME + "-*" + MARKING_TIMELINE_SUFFIX)) {
+      for (Path timeline : timelines) {
+        String fileName = timeline.getFileName().toString();
+        String runId =
+            fileName.substring(
+                MARKING_TIMELINE_NAME.length() + 1,
+                fileName.length() - MARKING_TIMELINE_SUFFIX.length());
+        if (!runs.contains(runId)) {
+          Files.delete(timeline);
+        }
+      }
+    }
+  }
+
   public void close() {
     try {
       if (writer != null) {
@@ -93,6 +245,11 @@ public class Logger {
       if (transitionsWriter != null) {
         transitionsWriter.close();
       }
+      synchronized (this) {
+        if (markingTimeline != null) {
+          markingTimeline.close();
+        }
+      }
     } catch (IOException e) {
       System.err.println("Failed to close logger: " + e.getMessage());
     }
@@ -0,0 +1,210 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the markings of a run as a timeline of deltas: each firing is stored as the index of the
+ * fired transition, since the net's structure, written once in the header, tells how it changed
+ * the marking. Every {@code keyframeInterval} firings the whole marking is written as a keyframe,
+ * so a reader can materialize any marking from the nearest keyframe instead of from the start.
+ * Tokens added from outside the net are stored as injections.
+ *
+ * <p>All numbers are varints (seven bits per byte, least significant first, high bit set on every
+ * byte but the last), and signed ones are zigzag-encoded first. A firing of the agency net takes
+ * one byte, against over a hundred for a line of the text log, and appending it costs no string
+ * building in the firing's critical section.
+ *
+ * <p>File layout: magic, version, places, transitions, keyframe interval, the marking change of
+ * each transition as a count and (place, change) pairs, then the records. A record starts with a
+ * tag: {@link #KEYFRAME} followed by the number of firings so far and the marking, {@link
+ * #INJECTION} followed by a place and its added tokens, or the index of a fired transition plus
+ * {@link #FIRST_TRANSITION}. The first record is the keyframe of the initial marking.
+ */
+public class MarkingTimelineWriter implements Closeable {
+  public static final int MAGIC = 0x504E4D54; // "PNMT"
+  public static final byte VERSION = 1;
+  public static final int KEYFRAME = 0;
+  public static final int INJECTION = 1;
+  public static final int FIRST_TRANSITION = 2;
+  public static final int DEFAULT_KEYFRAME_INTERVAL = 1024;
+
+  private final OutputStream out;
+  private final int keyframeInterval;
+  private final int[] marking;
+
+  /** Places whose marking changes with each transition, and by how much. */
+  private final int[][] changedPlaces;
+
+  private final int[][] changeDeltas;
+  private final byte[] buffer;
+  private int position = 0;
+  private long firings = 0;
+  private boolean closed = false;
+
+  /**
+   * Constructor for the MarkingTimelineWriter. Buffers the header and the keyframe of the initial
+   * marking.
+   *
+   * @param out Stream to write to; closed with the writer.
+   * @param marking Initial marking.
+   * @param incidenceMatrixOut Output incidence matrix of the net.
+   * @param incidenceMatrixIn Input incidence matrix of the net.
+   * @param keyframeInterval Firings between two keyframes.
+   * @throws IllegalArgumentException if the keyframe interval is not positive.
+   */
+  public MarkingTimelineWriter(
+      OutputStream out,
+      int[] marking,
+      int[][] incidenceMatrixOut,
+      int[][] incidenceMatrixIn,
+      int keyframeInterval) {
+    if (keyframeInterval < 1) {
+      throw new IllegalArgumentException("Invalid keyframe interval: " + keyframeInterval);
+    }
+    this.out = out;
+    this.keyframeInterval = keyframeInterval;
+    this.marking = marking.clone();
+    int placesLength = marking.length;
+    int transitionsLength = placesLength > 0 ? incidenceMatrixOut[0].length : 0;
+    this.changedPlaces = new int[transitionsLength][];
+    this.changeDeltas = new int[transitionsLength][];
+    // Batches of 64 KiB, with room for one more varint
+    this.buffer = new byte[(1 << 16) + 10];
+
+    for (int shift = 24; shift >= 0; shift -= 8) {
+      buffer[position++] = (byte) (MAGIC >>> shift);
+    }
+    buffer[position++] = VERSION;
+    writeVarint(placesLength);
+    writeVarint(transitionsLength);
+    writeVarint(keyframeInterval);
+    for (int t = 0; t < transitionsLength; t++) {
+      int changes = 0;
+      for (int p = 0; p < placesLength; p++) {
+        changes += incidenceMatrixOut[p][t] != incidenceMatrixIn[p][t] ? 1 : 0;
+      }
+      changedPlaces[t] = new int[changes];
+      changeDeltas[t] = new int[changes];
+      writeVarint(changes);
+      for (int p = 0, i = 0; p < placesLength; p++) {
+        if (incidenceMatrixOut[p][t] != incidenceMatrixIn[p][t]) {
+          changedPlaces[t][i] = p;
+          changeDeltas[t][i] = incidenceMatrixOut[p][t] - incidenceMatrixIn[p][t];
+          writeVarint(p);
+          writeSignedVarint(changeDeltas[t][i++]);
+        }
+      }
+    }
+    writeKeyframe();
+  }
+
+  /**
+   * Appends the firing of a transition, and a keyframe if it is due.
+   *
+   * @param transitionIndex Index of the transition that fired.
+   */
+  public synchronized void fire(int transitionIndex) {
+    if (closed) {
+      return;
+    }
+    for (int i = 0; i < changedPlaces[transitionIndex].length; i++) {
+      marking[changedPlaces[transitionIndex][i]] += changeDeltas[transitionIndex][i];
+    }
+    writeVarint(transitionIndex + FIRST_TRANSITION);
+    if (++firings % keyframeInterval == 0) {
+      writeKeyframe();
+    }
+  }
+
+  /**
+   * Appends tokens added to a place from outside the net.
+   *
+   * @param placeIndex Index of the place.
+   * @param tokens Number of tokens added.
+   */
+  public synchronized void addTokens(int placeIndex, int tokens) {
+    if (closed) {
+      return;
+    }
+    marking[placeIndex] += tokens;
+    writeVarint(INJECTION);
+    writeVarint(placeIndex);
+    writeSignedVarint(tokens);
+  }
+
+  /**
+   * Replaces the marking, for example after restoring a checkpoint, with a new keyframe.
+   *
+   * @param newMarking Marking from now on.
+   */
+  public synchronized void reset(int[] newMarking) {
+    if (closed) {
+      return;
+    }
+    System.arraycopy(newMarking, 0, marking, 0, marking.length);
+    writeKeyframe();
+  }
+
+  /** Writes the buffered records and closes the stream. Later records are ignored. */
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      out.write(buffer, 0, position);
+    } finally {
+      out.close();
+    }
+  }
+
+  public synchronized long getFirings() {
+    return firings;
+  }
+
+  /** Writes the current marking as a keyframe. */
+  private void writeKeyframe() {
+    writeVarint(KEYFRAME);
+    writeVarint(firings);
+    for (int tokens : marking) {
+      writeSignedVarint(tokens);
+    }
+  }
+
+  private void writeSignedVarint(int value) {
+    writeVarint(Integer.toUnsignedLong((value << 1) ^ (value >> 31)));
+  }
+
+  private void writeVarint(long value) {
+    while ((value & ~0x7FL) != 0) {
+      buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buffer[position++] = (byte) value;
+    if (position >= 1 << 16) {
+      drain();
+    }
+  }
+
+  /**
+   * Writes the full batch. A failure stops the timeline rather than the firing thread, as a log
+   * that cannot be written does.
+   */
+  private void drain() {
+    try {
+      out.write(buffer, 0, position);
+    } catch (IOException e) {
+      closed = true;
+      System.err.println("Failed to write marking timeline: " + e.getMessage());
+      try {
+        out.close();
+      } catch (IOException ignored) {
+        // Already failed
+      }
+    }
+    position = 0;
+  }
+}
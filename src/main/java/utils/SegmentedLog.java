@@ -0,0 +1,414 @@
+package utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Log of a single run split into segments, {@code <name>-<run>-<segment>.log}, that are rotated by
+ * size or age and compressed in the background once closed. Every segment starts with a header
+ * line naming its run, so the runs in a directory can be listed, read back and discarded without
+ * reading whole segments.
+ *
+ * <p>Writes are appended to an in-memory batch that goes to the current segment in one sequential
+ * write when it fills, when it gets older than a second or on {@link #flush()}. A segment is only
+ * rotated between batches, and a batch is made of whole {@code write} calls, so a message written
+ * in a single call is never split across segments; with a size limit below the batch size, each
+ * segment holds a single batch.
+ */
+public class SegmentedLog extends Writer {
+  public static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+  public static final long DEFAULT_SEGMENT_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  /** Longest time written text waits in memory before it reaches the segment. */
+  private static final long FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private static final int BATCH_SIZE = 64 * 1024;
+  private static final String HEADER_PREFIX = "# run ";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final String COMPRESSED_SUFFIX = ".log.gz";
+  private static final DateTimeFormatter RUN_ID_FORMAT =
+      DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+  private final Path directory;
+  private final String name;
+  private final String runId;
+  private final long maxSegmentBytes;
+  private final long maxSegmentMillis;
+
+  /** Compresses closed segments, one at a time, on a daemon thread. */
+  private final ExecutorService compressor;
+
+  private final StringBuilder batch = new StringBuilder(BATCH_SIZE);
+  private FileChannel segment;
+  private Path segmentPath;
+  private int segmentNumber = -1;
+  private long segmentBytes;
+  private long segmentStart;
+  private long lastFlush;
+  private boolean closed = false;
+
+  /**
+   * Constructor for the SegmentedLog. Opens the first segment of the run.
+   *
+   * @param directory Directory of the segments, created if missing.
+   * @param name Name of the log, the prefix of its segments.
+   * @param runId Identifier of the run, see {@link #newRunId()}.
+   * @param maxSegmentBytes Size after which a segment is rotated.
+   * @param maxSegmentMillis Age after which a segment is rotated, or 0 to rotate only by size.
+   * @throws IOException if the directory or the first segment cannot be created.
+   * @throws IllegalArgumentException if the name or run contain a dash, or the limits are invalid.
+   */
+  public SegmentedLog(
+      Path directory, String name, String runId, long maxSegmentBytes, long maxSegmentMillis)
+      throws IOException {
+    if (name.isEmpty() || name.contains("-") || runId.isEmpty() || runId.contains(" ")) {
+      throw new IllegalArgumentException("Invalid log name " + name + " or run " + runId);
+    }
+    if (maxSegmentBytes < 1 || maxSegmentMillis < 0) {
+      throw new IllegalArgumentException(
+          "Invalid segment limits: " + maxSegmentBytes + " bytes, " + maxSegmentMillis + " ms");
+    }
+    this.directory = Files.createDirectories(directory);
+    this.name = name;
+    this.runId = runId;
+    this.maxSegmentBytes = maxSegmentBytes;
+    this.maxSegmentMillis = maxSegmentMillis;
+    this.compressor =
+        Executors.newSingleThreadExecutor(
+            task -> {
+              Thread thread = new Thread(task, "log-compressor-" + name);
+              thread.setDaemon(true);
+              return thread;
+            });
+    openNextSegment();
+    this.lastFlush = System.nanoTime();
+  }
+
+  /**
+   * Returns an identifier for a new run: its start time and the process id, so runs sort by start
+   * time and concurrent processes do not collide.
+   *
+   * @return The run identifier.
+   */
+  public static String newRunId() {
+    return LocalDateTime.now().format(RUN_ID_FORMAT) + "-" + ProcessHandle.current().pid();
+  }
+
+  @Override
+  public synchronized void write(char[] buffer, int offset, int length) throws IOException {
+    ensureOpen();
+    batch.append(buffer, offset, length);
+    if (batch.length() >= BATCH_SIZE || System.nanoTime() - lastFlush > FLUSH_INTERVAL_NANOS) {
+      writeBatch();
+    }
+  }
+
+  @Override
+  public synchronized void write(String text) throws IOException {
+    ensureOpen();
+    batch.append(text);
+    if (batch.length() >= BATCH_SIZE || System.nanoTime() - lastFlush > FLUSH_INTERVAL_NANOS) {
+      writeBatch();
+    }
+  }
+
+  @Override
+  public synchronized void flush() throws IOException {
+    ensureOpen();
+    writeBatch();
+  }
+
+  /**
+   * Writes what is left, closes the last segment and waits for every segment of the run to be
+   * compressed.
+   *
+   * @throws IOException if the last batch cannot be written.
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      try {
+        writeBatch();
+      } finally {
+        closed = true;
+        closeSegment();
+      }
+    }
+    compressor.shutdown();
+    try {
+      compressor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  public String getRunId() {
+    return runId;
+  }
+
+  public int getSegmentNumber() {
+    return segmentNumber;
+  }
+
+  /**
+   * Lists the runs with segments of a log in a directory, from the oldest to the newest.
+   *
+   * @param directory Directory of the segments.
+   * @param name Name of the log.
+   * @return Run identifiers, in the order the runs started.
+   * @throws IOException if the directory or a segment header cannot be read.
+   */
+  public static List<String> listRuns(Path directory, String name) throws IOException {
+    Map<String, Long> starts = new LinkedHashMap<>();
+    for (Path segment : findSegments(directory, name)) {
+      Header header = readHeader(segment);
+      starts.merge(header.runId, header.started, Math::min);
+    }
+    List<String> runs = new ArrayList<>(starts.keySet());
+    runs.sort(Comparator.comparing((String run) -> starts.get(run)).thenComparing(run -> run));
+    return runs;
+  }
+
+  /**
+   * Opens the whole log of a run as a single stream: its segments in order, decompressed and
+   * without their headers.
+   *
+   * @param directory Directory of the segments.
+   * @param name Name of the log.
+   * @param runId Run to read.
+   * @return Stream with the text written during the run.
+   * @throws IOException if the run has no segments or they cannot be read.
+   */
+  public static InputStream openRun(Path directory, String name, String runId)
+      throws IOException {
+    // A segment compressed while the process died may be left in both forms
+    TreeMap<Integer, Path> segments = new TreeMap<>();
+    for (Path segment : findSegments(directory, name)) {
+      Header header = readHeader(segment);
+      if (header.runId.equals(runId)) {
+        segments.merge(header.segment, segment, (a, b) -> isCompressed(a) ? a : b);
+      }
+    }
+    if (segments.isEmpty()) {
+      throw new IOException("No segments of run " + runId + " in " + directory);
+    }
+    List<InputStream> streams = new ArrayList<>();
+    for (Path segment : segments.values()) {
+      InputStream in = open(segment);
+      skipHeader(in);
+      streams.add(in);
+    }
+    return new SequenceInputStream(Collections.enumeration(streams));
+  }
+
+  /**
+   * Deletes every segment of a log except those of the newest runs.
+   *
+   * @param directory Directory of the segments.
+   * @param name Name of the log.
+   * @param keepRuns Number of newest runs to keep.
+   * @return Number of runs deleted.
+   * @throws IOException if the directory cannot be read or a segment cannot be deleted.
+   */
+  public static int deleteOldRuns(Path directory, String name, int keepRuns) throws IOException {
+    List<String> runs = listRuns(directory, name);
+    List<String> discarded = runs.subList(0, Math.max(0, runs.size() - keepRuns));
+    for (Path segment : findSegments(directory, name)) {
+      if (discarded.contains(readHeader(segment).runId)) {
+        Files.delete(segment);
+      }
+    }
+    return discarded.size();
+  }
+
+  /**
+   * Writes the batch to the current segment, rotating it first if the batch would make it too
+   * large or it is too old.
+   *
+   * @throws IOException if the segment cannot be written or the next one created.
+   */
+  private void writeBatch() throws IOException {
+    lastFlush = System.nanoTime();
+    if (batch.length() == 0) {
+      return;
+    }
+    byte[] bytes = batch.toString().getBytes(StandardCharsets.UTF_8);
+    batch.setLength(0);
+    boolean tooLarge = segmentBytes + bytes.length > maxSegmentBytes;
+    boolean tooOld =
+        maxSegmentMillis > 0 && System.currentTimeMillis() - segmentStart >= maxSegmentMillis;
+    if ((tooLarge || tooOld) && segmentBytes > 0) {
+      closeSegment();
+      openNextSegment();
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    while (buffer.hasRemaining()) {
+      segment.write(buffer);
+    }
+    segmentBytes += bytes.length;
+  }
+
+  /**
+   * Creates the next segment and writes its header, which does not count towards its size.
+   *
+   * @throws IOException if the segment cannot be created.
+   */
+  private void openNextSegment() throws IOException {
+    segmentNumber++;
+    segmentStart = System.currentTimeMillis();
+    segmentPath =
+        directory.resolve(
+            String.format("%s-%s-%05d%s", name, runId, segmentNumber, SEGMENT_SUFFIX));
+    segment =
+        FileChannel.open(segmentPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    String header =
+        HEADER_PREFIX + runId + " segment " + segmentNumber + " started " + segmentStart + "\n";
+    segment.write(ByteBuffer.wrap(header.getBytes(StandardCharsets.UTF_8)));
+    segmentBytes = 0;
+  }
+
+  /** Closes the current segment and queues it for compression. */
+  private void closeSegment() {
+    Path closedPath = segmentPath;
+    try {
+      segment.close();
+    } catch (IOException e) {
+      System.err.println("Failed to close log segment " + closedPath + ": " + e.getMessage());
+    }
+    compressor.execute(() -> compress(closedPath));
+  }
+
+  /**
+   * Compresses a closed segment next to it and deletes the original. The compressed file only
+   * appears once complete, so readers never see a partial one.
+   *
+   * @param path Segment to compress.
+   */
+  private static void compress(Path path) {
+    Path compressed = path.resolveSibling(path.getFileName() + ".gz");
+    Path partial = path.resolveSibling(path.getFileName() + ".gz.tmp");
+    try {
+      try (InputStream in = Files.newInputStream(path);
+          OutputStream out = new GZIPOutputStream(Files.newOutputStream(partial), BATCH_SIZE)) {
+        in.transferTo(out);
+      }
+      Files.move(partial, compressed, StandardCopyOption.ATOMIC_MOVE);
+      Files.delete(path);
+    } catch (IOException e) {
+      System.err.println("Failed to compress log segment " + path + ": " + e.getMessage());
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Log " + name + " is closed");
+    }
+  }
+
+  /**
+   * Finds the segments of a log, compressed or not.
+   *
+   * @param directory Directory of the segments.
+   * @param name Name of the log.
+   * @return Paths of the segments.
+   * @throws IOException if the directory cannot be read.
+   */
+  private static List<Path> findSegments(Path directory, String name) throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return List.of();
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .filter(
+              file -> {
+                String fileName = file.getFileName().toString();
+                return fileName.startsWith(name + "-")
+                    && (fileName.endsWith(SEGMENT_SUFFIX) || fileName.endsWith(COMPRESSED_SUFFIX));
+              })
+          .sorted()
+          .toList();
+    }
+  }
+
+  private static boolean isCompressed(Path segment) {
+    return segment.getFileName().toString().endsWith(COMPRESSED_SUFFIX);
+  }
+
+  private static InputStream open(Path segment) throws IOException {
+    InputStream in = Files.newInputStream(segment);
+    return isCompressed(segment) ? new GZIPInputStream(in) : in;
+  }
+
+  private static void skipHeader(InputStream in) throws IOException {
+    int b;
+    do {
+      b = in.read();
+    } while (b != -1 && b != '\n');
+  }
+
+  /**
+   * Reads the header line of a segment.
+   *
+   * @param segment Segment to read.
+   * @return The header.
+   * @throws IOException if the segment cannot be read or has no valid header.
+   */
+  private static Header readHeader(Path segment) throws IOException {
+    try (BufferedReader reader =
+        new BufferedReader(new InputStreamReader(open(segment), StandardCharsets.UTF_8))) {
+      String line = reader.readLine();
+      String[] fields = line == null ? new String[0] : line.split(" ");
+      if (fields.length != 7 || !line.startsWith(HEADER_PREFIX)) {
+        throw new IOException("Log segment without header: " + segment);
+      }
+      try {
+        return new Header(fields[2], Integer.parseInt(fields[4]), Long.parseLong(fields[6]));
+      } catch (NumberFormatException e) {
+        throw new IOException("Invalid log segment header in " + segment, e);
+      }
+    }
+  }
+
+  /** Run, number and start time of a segment, from its header. */
+  private static class Header {
+    private final String runId;
+    private final int segment;
+    private final long started;
+
+    Header(String runId, int segment, long started) {
+      this.runId = runId;
+      this.segment = segment;
+      this.started = started;
+    }
+  }
+}
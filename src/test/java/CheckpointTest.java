@@ -0,0 +1,70 @@
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import petrinet.Checkpoint;
+import petrinet.PetriNet;
+import petrinet.PetriNetConf;
+
+class CheckpointTest {
+  private PetriNetConf conf;
+  private PetriNet petriNet;
+
+  @BeforeEach
+  void setUp() {
+    conf = new PetriNetConf();
+    petriNet = newPetriNet();
+  }
+
+  private PetriNet newPetriNet() {
+    return new PetriNet(
+        conf.getTransitions(),
+        conf.getPlaces(),
+        conf.getIncidenceMatrixOut(),
+        conf.getIncidenceMatrixIn(),
+        conf.getPlacesInvariants(),
+        conf.getInitialMarking(),
+        10,
+        conf.getTimeTransitions());
+  }
+
+  @Test
+  void testBinaryRoundTrip() throws IOException {
+    petriNet.tryFireTransition(0);
+    Checkpoint checkpoint = petriNet.createCheckpoint(Map.of(2, 3, 3, 4));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    checkpoint.writeTo(out);
+    Checkpoint read = Checkpoint.readFrom(new ByteArrayInputStream(out.toByteArray()));
+
+    assertThat(read.getMarking()).containsExactly(checkpoint.getMarking());
+    assertThat(read.getEnabledTransitions()).containsExactly(checkpoint.getEnabledTransitions());
+    assertThat(read.getRemainingTimes()).containsExactly(checkpoint.getRemainingTimes());
+    assertThat(read.getPolicyCounts()).containsExactlyInAnyOrderEntriesOf(Map.of(2, 3, 3, 4));
+  }
+
+  @Test
+  void testRestoreIntoFreshNet() {
+    petriNet.tryFireTransition(0);
+    Checkpoint checkpoint = petriNet.createCheckpoint(Map.of());
+
+    PetriNet resumed = newPetriNet();
+    resumed.restore(checkpoint);
+
+    assertThat(resumed.getMarking()).containsExactly(petriNet.getMarking());
+    assertThat(resumed.isTransitionEnabledByTokens(1)).isTrue();
+    assertThat(resumed.getRemainingWaitTime(1)).isBetween(0L, 2L);
+  }
+
+  @Test
+  void testRejectsInvalidData() {
+    byte[] garbage = {1, 2, 3, 4, 5};
+    assertThatThrownBy(() -> Checkpoint.readFrom(new ByteArrayInputStream(garbage)))
+        .isInstanceOf(IOException.class);
+  }
+}
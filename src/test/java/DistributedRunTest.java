@@ -0,0 +1,94 @@
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import analysis.TraceReplayer;
+import distributed.Coordinator;
+import distributed.DistributedResult;
+import distributed.NetPartition;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+import petrinet.NetComposition;
+import petrinet.NetDefinition;
+import petrinet.NetGenerator;
+import petrinet.PetriNetConf;
+import utils.Logger;
+
+class DistributedRunTest {
+
+  @Test
+  void testPipelineIsSplitAtTheBoundaryPlaces() {
+    NetPartition partition = NetPartition.contiguous(NetGenerator.pipeline(12, 6), 3);
+
+    // T3 moves tokens from P3, in partition 0, to P4, in partition 1
+    assertThat(partition.getPartitionOfPlace(3)).isEqualTo(0);
+    assertThat(partition.getPartitionOfPlace(4)).isEqualTo(1);
+    assertThat(partition.getRemotePlaces(3)).containsExactly(4);
+    assertThat(partition.getRemotePlaces(2)).isEmpty();
+    NetDefinition subnet = partition.getSubnet(1);
+    assertThat(subnet.getPlacesLength()).isEqualTo(4);
+    assertThat(subnet.getPlacesInvariants()).isEmpty();
+    assertThat(partition.getTransition(1, 0)).isEqualTo(4);
+    // The last stage completes the invariants of the pipeline
+    assertThat(partition.getSubnet(2).getCompletionTransitions()).containsExactly(3);
+  }
+
+  @Test
+  void testPlacesConsumedByTwoPartitionsAreRejected() {
+    NetDefinition conflict = NetGenerator.wideConflict(4, 2);
+    int[] assignment = {0, 0, 1, 1, 0, 0, 1, 1};
+
+    assertThatThrownBy(() -> new NetPartition(conflict, assignment))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("P0");
+  }
+
+  @Test
+  void testDefinitionSurvivesSerialization() throws IOException {
+    NetDefinition agency = NetDefinition.of(new PetriNetConf());
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    agency.writeTo(bytes);
+    NetDefinition copy = NetDefinition.readFrom(new ByteArrayInputStream(bytes.toByteArray()));
+
+    assertThat(copy.getIncidenceMatrixIn()).isDeepEqualTo(agency.getIncidenceMatrixIn());
+    assertThat(copy.getIncidenceMatrixOut()).isDeepEqualTo(agency.getIncidenceMatrixOut());
+    assertThat(copy.getPlacesInvariants()).isDeepEqualTo(agency.getPlacesInvariants());
+    assertThat(copy.getSequences()).isDeepEqualTo(agency.getSequences());
+    assertThat(copy.getTargetInvariants()).isEqualTo(186);
+  }
+
+  @Test
+  void testMergedTraceReplaysOnTheWholeNet() throws Exception {
+    Logger.getLogger().setEnabled(false);
+    NetDefinition pipeline = NetGenerator.pipeline(12, 6);
+    Coordinator coordinator = new Coordinator(NetPartition.contiguous(pipeline, 3), 200);
+    coordinator.setTimeout(60_000);
+
+    DistributedResult result = coordinator.run(Coordinator.Launcher.THREADS);
+
+    assertThat(result.getCompletions()).isGreaterThanOrEqualTo(200);
+    assertThat(result.getTokenRecords()).isPositive();
+    assertThat(new TraceReplayer(pipeline.createPetriNet()).verify(result.getTrace()).isValid())
+        .isTrue();
+  }
+
+  @Test
+  void testOfficesRunOnSeparateNodes() throws Exception {
+    Logger.getLogger().setEnabled(false);
+    NetDefinition offices =
+        new NetComposition(NetDefinition.of(new PetriNetConf()), 2)
+            .createDefinition()
+            .withoutAlphas();
+    Coordinator coordinator = new Coordinator(NetPartition.contiguous(offices, 2), 2 * 186);
+    coordinator.setTimeout(60_000);
+
+    DistributedResult result = coordinator.run(Coordinator.Launcher.THREADS);
+
+    // Offices share no place, so no token crosses nodes
+    assertThat(result.getTokenRecords()).isZero();
+    assertThat(result.getCompletions()).isGreaterThanOrEqualTo(2 * 186);
+    assertThat(new TraceReplayer(offices.createPetriNet()).verify(result.getTrace()).isValid())
+        .isTrue();
+  }
+}
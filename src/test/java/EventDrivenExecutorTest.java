@@ -0,0 +1,62 @@
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import monitor.Monitor;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import petrinet.EventDrivenExecutor;
+import petrinet.NetDefinition;
+import petrinet.PetriNet;
+import petrinet.Transition;
+import policy.FCFSPolicy;
+import utils.Logger;
+
+class EventDrivenExecutorTest {
+  private static final int INVARIANTS = 50;
+
+  // A single token cycles through T0 to T3; each firing of T3 completes an invariant
+  private static final NetDefinition NET =
+      new NetDefinition(
+          "cycle",
+          new int[][] {{0, 0, 0, 1}, {1, 0, 0, 0}, {0, 1, 0, 0}, {0, 0, 1, 0}},
+          new int[][] {{1, 0, 0, 0}, {0, 1, 0, 0}, {0, 0, 1, 0}, {0, 0, 0, 1}},
+          new int[] {1, 0, 0, 0},
+          new int[][] {{1, 1, 1, 1, 1}},
+          new long[4],
+          new int[][] {{0, 1, 2, 3}},
+          new int[] {3},
+          INVARIANTS);
+
+  @BeforeAll
+  static void disableLogging() {
+    Logger.getLogger().setEnabled(false);
+  }
+
+  @Test
+  void testSequenceCompletesItsInvariantsInOrder() throws Exception {
+    List<Integer> fired = new CopyOnWriteArrayList<>();
+    PetriNet petriNet = NET.createPetriNet();
+    Monitor monitor =
+        Monitor.newMonitor(
+            petriNet,
+            new FCFSPolicy() {
+              @Override
+              public void transitionFired(int transitionIndex) {
+                fired.add(transitionIndex);
+                super.transitionFired(transitionIndex);
+              }
+            });
+    List<List<Transition>> sequences = List.of(NET.getTransitionSequence(0));
+
+    new EventDrivenExecutor(monitor, petriNet, sequences).start().get(10, TimeUnit.SECONDS);
+
+    assertThat(petriNet.petriNetHasFinished()).isTrue();
+    assertThat(fired).hasSize(4 * INVARIANTS);
+    for (int i = 0; i < fired.size(); i++) {
+      assertThat(fired.get(i)).as("firing " + i).isEqualTo(i % 4);
+    }
+    assertThat(petriNet.getMarking()).containsExactly(1, 0, 0, 0);
+  }
+}
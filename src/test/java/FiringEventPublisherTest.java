@@ -0,0 +1,124 @@
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import petrinet.FiringEvent;
+import petrinet.FiringEventPublisher;
+import petrinet.FiringEventPublisher.Backpressure;
+
+class FiringEventPublisherTest {
+  // P0 -> T0 -> P1 -> T1 -> P0
+  private static final int[][] INCIDENCE_OUT = {{0, 1}, {1, 0}};
+  private static final int[][] INCIDENCE_IN = {{1, 0}, {0, 1}};
+
+  private FiringEventPublisher publisher;
+  private CollectingSubscriber subscriber;
+
+  @BeforeEach
+  void setUp() {
+    // Deliver on the publishing thread so the tests are deterministic
+    publisher = new FiringEventPublisher(INCIDENCE_OUT, INCIDENCE_IN, Runnable::run);
+    subscriber = new CollectingSubscriber();
+  }
+
+  @Test
+  void testDeliversOnlyRequestedEvents() {
+    publisher.subscribe(subscriber, 8, Backpressure.DROP);
+    subscriber.subscription.request(2);
+    publisher.publish(0, 10);
+    publisher.publish(1, 20);
+    publisher.publish(0, 30);
+
+    assertThat(subscriber.events).hasSize(2);
+    assertThat(subscriber.events.get(0).getMarkingDelta()).containsExactly(-1, 1);
+    assertThat(subscriber.events.get(1).getTimestamp()).isEqualTo(20);
+
+    subscriber.subscription.request(1);
+    assertThat(subscriber.events).extracting(FiringEvent::getSequence).containsExactly(0L, 1L, 2L);
+  }
+
+  @Test
+  void testDropDiscardsEventsWhenBufferIsFull() {
+    publisher.subscribe(subscriber, 2, Backpressure.DROP);
+    for (int i = 0; i < 5; i++) {
+      publisher.publish(i % 2, i);
+    }
+    subscriber.subscription.request(10);
+
+    assertThat(subscriber.events).extracting(FiringEvent::getSequence).containsExactly(0L, 1L);
+  }
+
+  @Test
+  void testConflateKeepsMarkingDeltasExact() {
+    publisher.subscribe(subscriber, 2, Backpressure.CONFLATE);
+    publisher.publish(0, 1);
+    publisher.publish(1, 2);
+    publisher.publish(0, 3);
+    publisher.publish(0, 4);
+    subscriber.subscription.request(10);
+
+    assertThat(subscriber.events).hasSize(2);
+    FiringEvent conflated = subscriber.events.get(1);
+    assertThat(conflated.getFirings()).isEqualTo(3);
+    assertThat(conflated.getSequence()).isEqualTo(3);
+    assertThat(conflated.getMarkingDelta()).containsExactly(-1, 1);
+
+    int[] marking = {2, 0};
+    subscriber.events.forEach(event -> event.applyTo(marking));
+    assertThat(marking).containsExactly(0, 2);
+  }
+
+  @Test
+  void testCloseCompletesAfterBufferedEvents() {
+    publisher.subscribe(subscriber, 4, Backpressure.BLOCK);
+    publisher.publish(0, 1);
+    publisher.close();
+    assertThat(subscriber.completed).isFalse();
+
+    subscriber.subscription.request(1);
+    assertThat(subscriber.events).hasSize(1);
+    assertThat(subscriber.completed).isTrue();
+    assertThat(publisher.hasSubscribers()).isFalse();
+  }
+
+  @Test
+  void testCancelStopsDelivery() {
+    publisher.subscribe(subscriber);
+    subscriber.subscription.request(10);
+    publisher.publish(0, 1);
+    subscriber.subscription.cancel();
+    publisher.publish(1, 2);
+
+    assertThat(subscriber.events).hasSize(1);
+    assertThat(publisher.getNumberOfSubscribers()).isZero();
+  }
+
+  private static class CollectingSubscriber implements Flow.Subscriber<FiringEvent> {
+    private final List<FiringEvent> events = new ArrayList<>();
+    private Flow.Subscription subscription;
+    private boolean completed = false;
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(FiringEvent event) {
+      events.add(event);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      throw new AssertionError(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+    }
+  }
+}
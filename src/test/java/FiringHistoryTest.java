@@ -0,0 +1,86 @@
+import static org.assertj.core.api.Assertions.assertThat;
+
+import analysis.FiringHistory;
+import analysis.FiringHistoryWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import petrinet.FiringEventPublisher.Backpressure;
+import petrinet.NetDefinition;
+import petrinet.NetGenerator;
+import petrinet.PetriNet;
+
+class FiringHistoryTest {
+  @TempDir Path directory;
+
+  private Path path;
+
+  /** Records 300 firings of a ring of three stages, one every 10 ms. */
+  @BeforeEach
+  void setUp() throws Exception {
+    path = directory.resolve("history.bin");
+    NetDefinition ring = NetGenerator.pipeline(3, 1);
+    AtomicLong clock = new AtomicLong();
+    PetriNet petriNet =
+        new PetriNet(
+            ring.getTransitions(),
+            ring.getPlaces(),
+            ring.getIncidenceMatrixOut(),
+            ring.getIncidenceMatrixIn(),
+            ring.getPlacesInvariants(),
+            ring.getInitialMarking(),
+            Integer.MAX_VALUE,
+            ring.getTimeTransitions(),
+            clock::get);
+    FiringHistoryWriter writer = new FiringHistoryWriter(path, petriNet, 16);
+    petriNet.getFiringEvents().subscribe(writer, 64, Backpressure.BLOCK);
+    for (int i = 0; i < 300; i++) {
+      clock.set(10L * i);
+      assertThat(petriNet.tryFireTransition(i % 3)).isTrue();
+    }
+    petriNet.finish();
+    writer.awaitCompletion();
+  }
+
+  @Test
+  void testQueriesByTransitionAndTime() throws Exception {
+    try (FiringHistory history = FiringHistory.open(path)) {
+      assertThat(history.size()).isEqualTo(300);
+      assertThat(history.isIndexRebuilt()).isFalse();
+
+      // T1 fires at records 1, 4, 7..., and record n is at 10n ms
+      int[] firings = history.findFirings(1, 1000, 2000);
+      assertThat(firings).hasSize(34);
+      assertThat(firings[0]).isEqualTo(100);
+      assertThat(firings[33]).isEqualTo(199);
+      assertThat(history.getTimestamp(firings[33])).isEqualTo(1990);
+      assertThat(history.getTransition(firings[33])).isEqualTo(1);
+
+      // 101 firings up to 1005 ms leave the token in P2
+      assertThat(history.markingAt(1005)).containsExactly(0, 0, 1);
+      assertThat(history.markingAt(-1)).containsExactly(1, 0, 0);
+      assertThat(history.markingAt(Long.MAX_VALUE)).containsExactly(1, 0, 0);
+    }
+  }
+
+  @Test
+  void testIndexIsRebuiltWhenTheRunDidNotFinish() throws Exception {
+    // Drop the index and half of the last record, as a killed run would leave the file
+    byte[] bytes = Files.readAllBytes(path);
+    long indexOffset = ByteBuffer.wrap(bytes, bytes.length - 12, 8).getLong();
+    Files.write(path, Arrays.copyOf(bytes, (int) indexOffset - 6));
+
+    try (FiringHistory history = FiringHistory.open(path)) {
+      assertThat(history.isIndexRebuilt()).isTrue();
+      assertThat(history.size()).isEqualTo(299);
+      assertThat(history.getFiringCount(2)).isEqualTo(99);
+      assertThat(history.findFirings(0, 0, 100)).containsExactly(0, 3, 6, 9);
+      assertThat(history.markingAfter(299)).containsExactly(0, 0, 1);
+    }
+  }
+}
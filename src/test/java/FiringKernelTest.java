@@ -0,0 +1,65 @@
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import petrinet.FiringKernel;
+import petrinet.FiringKernelCompiler;
+import petrinet.PetriNetConf;
+
+class FiringKernelTest {
+  private final PetriNetConf conf = new PetriNetConf();
+
+  @ParameterizedTest
+  @ValueSource(strings = {"sparse", "generated", "vector"})
+  void testKernelMatchesInterpreted(String kind) {
+    FiringKernel interpreted =
+        FiringKernel.create(
+            "interpreted", conf.getIncidenceMatrixOut(), conf.getIncidenceMatrixIn());
+    FiringKernel kernel =
+        FiringKernel.create(kind, conf.getIncidenceMatrixOut(), conf.getIncidenceMatrixIn());
+    assertThat(kernel.getName()).isEqualTo(kind);
+
+    int[] interpretedMarking = conf.getInitialMarking();
+    int[] kernelMarking = conf.getInitialMarking();
+    boolean[] interpretedEnabled = new boolean[conf.getTransitions().size()];
+    boolean[] kernelEnabled = new boolean[conf.getTransitions().size()];
+    Random random = new Random(7);
+
+    // Random walk over the reachable markings
+    for (int step = 0; step < 10_000; step++) {
+      interpreted.computeEnabled(interpretedMarking, interpretedEnabled);
+      kernel.computeEnabled(kernelMarking, kernelEnabled);
+      assertThat(kernelEnabled).isEqualTo(interpretedEnabled);
+
+      int transition;
+      do {
+        transition = random.nextInt(interpretedEnabled.length);
+      } while (!interpretedEnabled[transition]);
+      assertThat(kernel.isEnabled(transition, kernelMarking)).isTrue();
+
+      interpreted.fire(transition, interpretedMarking);
+      kernel.fire(transition, kernelMarking);
+      assertThat(kernelMarking).isEqualTo(interpretedMarking);
+    }
+  }
+
+  @Test
+  void testGeneratedSourceInlinesArcWeights() {
+    String source =
+        FiringKernelCompiler.generateSource(
+            conf.getIncidenceMatrixOut(), conf.getIncidenceMatrixIn());
+    assertThat(source).contains("case 0: return m[0] >= 1 && m[1] >= 1 && m[4] >= 1;");
+  }
+
+  @Test
+  void testUnknownKernelIsRejected() {
+    assertThatThrownBy(
+            () ->
+                FiringKernel.create(
+                    "jit", conf.getIncidenceMatrixOut(), conf.getIncidenceMatrixIn()))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,50 @@
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import petrinet.PetriNetConf;
+import policy.BalancedPolicy;
+import simulation.LoadGenerator;
+import simulation.LoadGenerator.Arrivals;
+import simulation.LoadTestResult;
+import utils.Logger;
+
+class LoadGeneratorTest {
+
+  @BeforeAll
+  static void disableLogging() {
+    Logger.getLogger().setEnabled(false);
+  }
+
+  @Test
+  void testSojournWithoutQueueingIsTheServiceTime() {
+    // One customer every 100 ms never meets another one
+    LoadTestResult result =
+        new LoadGenerator(new PetriNetConf(), new BalancedPolicy(), Arrivals.FIXED, 10, 1)
+            .run(200, 20);
+
+    assertThat(result.getMeasuredCustomers()).isEqualTo(200);
+    assertThat(result.getMaxCustomersInNet()).isEqualTo(1);
+    // T1 + T4/T5 + T8 = 22 ms, or T1 + T4/T5 + T9 + T10 = 37 ms
+    assertThat(result.getSojournPercentile(0)).isEqualTo(22);
+    assertThat(result.getSojournPercentile(100)).isEqualTo(37);
+    assertThat(result.getThroughput()).isCloseTo(10, within(0.5));
+    assertThat(result.getInvariantCounts()).containsExactly(44, 56, 56, 44);
+    // T4 and T5 take 15 ms, so customers wait that long in P5 and P8
+    assertThat(result.getMeanWaits()[5]).isEqualTo(15);
+    assertThat(result.getMeanWaits()[8]).isEqualTo(15);
+    assertThat(result.getMeanWaits()[9]).isZero();
+  }
+
+  @Test
+  void testOverloadSaturatesThroughput() {
+    LoadTestResult result =
+        new LoadGenerator(new PetriNetConf(), new BalancedPolicy(), Arrivals.POISSON, 200, 1)
+            .run(2000, 200);
+
+    assertThat(result.getThroughput()).isLessThan(result.getOfferedRate() / 2);
+    assertThat(result.getSojournPercentile(99)).isGreaterThan(result.getSojournPercentile(1));
+    assertThat(result.getArrivals()).isGreaterThan(result.getDepartures());
+  }
+}
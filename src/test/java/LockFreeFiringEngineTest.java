@@ -0,0 +1,147 @@
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import petrinet.LockFreeFiringEngine;
+import petrinet.NetDefinition;
+import petrinet.PetriNet;
+import petrinet.PetriNetConf;
+
+class LockFreeFiringEngineTest {
+  private LockFreeFiringEngine engine;
+
+  @BeforeEach
+  void setUp() {
+    PetriNetConf conf = new PetriNetConf();
+    PetriNet petriNet =
+        new PetriNet(
+            conf.getTransitions(),
+            conf.getPlaces(),
+            conf.getIncidenceMatrixOut(),
+            conf.getIncidenceMatrixIn(),
+            conf.getPlacesInvariants(),
+            conf.getInitialMarking(),
+            10,
+            conf.getTimeTransitions());
+    engine = new LockFreeFiringEngine(petriNet);
+  }
+
+  @Test
+  void testAgencyFitsInOneWord() {
+    assertThat(engine.getWordCount()).isEqualTo(1);
+    assertThat(engine.getMarking()).containsExactly(5, 1, 0, 0, 5, 0, 1, 1, 0, 0, 1, 0, 0, 0, 0);
+  }
+
+  @Test
+  void testFireTransition() {
+    assertThat(engine.tryFire(0)).isTrue();
+    assertThat(engine.getMarking()).containsExactly(4, 0, 1, 0, 4, 0, 1, 1, 0, 0, 1, 0, 0, 0, 0);
+  }
+
+  @Test
+  void testDisabledTransitionDoesNotFire() {
+    assertThat(engine.isEnabled(10)).isFalse();
+    assertThat(engine.tryFire(10)).isFalse();
+    assertThat(engine.getMarking()).containsExactly(5, 1, 0, 0, 5, 0, 1, 1, 0, 0, 1, 0, 0, 0, 0);
+  }
+
+  @Test
+  void testWideNetSpansSeveralWords() {
+    LockFreeFiringEngine wide = new LockFreeFiringEngine(wideNet(2, 2, 0));
+    assertThat(wide.getWordCount()).isEqualTo(3);
+    // T2 moves a token from the first word to the second
+    assertThat(wide.tryFire(2)).isTrue();
+    assertThat(wide.getMarking()).containsExactly(2, 2, 1, 3, 2, 2, 0, 2, 2);
+  }
+
+  @Test
+  void testAbortedFiringGivesTokensBackAndIsReported() {
+    List<Integer> rolledBack = new CopyOnWriteArrayList<>();
+    LockFreeFiringEngine wide = new LockFreeFiringEngine(wideNet(2, 0, 0), rolledBack::add);
+
+    // T9 takes the token of P0 and then finds P3 empty
+    assertThat(wide.tryFire(9)).isFalse();
+    assertThat(wide.getMarking()).containsExactly(2, 2, 2, 0, 2, 2, 0, 2, 2);
+    assertThat(rolledBack).containsExactly(9);
+  }
+
+  @Test
+  void testOverflowLeavesTheMarkingUnchanged() {
+    LockFreeFiringEngine wide = new LockFreeFiringEngine(wideNet(2, 2, 65535));
+
+    // P6 is not covered by any invariant, so it holds up to 16 bits
+    assertThatThrownBy(() -> wide.tryFire(9)).isInstanceOf(IllegalStateException.class);
+    assertThat(wide.getMarking()).containsExactly(2, 2, 2, 2, 2, 2, 65535, 2, 2);
+  }
+
+  @Test
+  void testConcurrentFiringsOverSeveralWordsFollowTheStateEquation() throws Exception {
+    PetriNet petriNet = wideNet(3, 3, 3);
+    LockFreeFiringEngine wide = new LockFreeFiringEngine(petriNet);
+    int[] initial = petriNet.getMarking().clone();
+    int transitions = petriNet.getNumberOfTransitions();
+
+    Thread[] threads = new Thread[4];
+    int[][] fired = new int[threads.length][transitions];
+    for (int i = 0; i < threads.length; i++) {
+      int[] counts = fired[i];
+      threads[i] =
+          new Thread(
+              () -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int n = 0; n < 50_000; n++) {
+                  int t = random.nextInt(transitions);
+                  if (wide.tryFire(t)) {
+                    counts[t]++;
+                  }
+                }
+              });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    // Every firing happened as a whole, so the marking is the initial one plus their changes
+    int[][] in = petriNet.getIncidenceMatrixIn();
+    int[][] out = petriNet.getIncidenceMatrixOut();
+    int[] expected = initial.clone();
+    for (int[] counts : fired) {
+      for (int t = 0; t < transitions; t++) {
+        for (int p = 0; p < expected.length; p++) {
+          expected[p] += counts[t] * (out[p][t] - in[p][t]);
+        }
+      }
+    }
+    assertThat(wide.getMarking()).containsExactly(expected);
+  }
+
+  /**
+   * Builds a ring of 9 places without invariants, so each place takes 16 bits and the marking
+   * spans 3 words. T0 to T8 move a token around the ring; T9 joins a token of P0 (first word) and
+   * one of P3 (second word) into P6 (third word), and T10 splits it again.
+   */
+  private static PetriNet wideNet(int tokensInP0, int tokensInP3, int tokensInP6) {
+    int places = 9;
+    int[][] in = new int[places][11];
+    int[][] out = new int[places][11];
+    for (int t = 0; t < places; t++) {
+      in[t][t] = 1;
+      out[(t + 1) % places][t] = 1;
+    }
+    in[0][9] = 1;
+    in[3][9] = 1;
+    out[6][9] = 1;
+    in[6][10] = 1;
+    out[0][10] = 1;
+    out[3][10] = 1;
+    int[] marking = {tokensInP0, 2, 2, tokensInP3, 2, 2, tokensInP6, 2, 2};
+    return new NetDefinition(
+            "wide", out, in, marking, new int[0][], new long[11], new int[0][], new int[0], 1000)
+        .createPetriNet();
+  }
+}
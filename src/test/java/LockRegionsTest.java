@@ -0,0 +1,39 @@
+import static org.assertj.core.api.Assertions.assertThat;
+
+import monitor.LockRegions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import petrinet.PetriNetConf;
+
+class LockRegionsTest {
+  private LockRegions regions;
+
+  @BeforeEach
+  void setUp() {
+    PetriNetConf conf = new PetriNetConf();
+    regions = new LockRegions(conf.getIncidenceMatrixIn(), conf.getIncidenceMatrixOut());
+  }
+
+  @Test
+  void testInputPlacesShareRegion() {
+    // T0 consumes from P0, P1 and P4
+    assertThat(regions.getRegionOfPlace(1)).isEqualTo(regions.getRegionOfPlace(0));
+    assertThat(regions.getRegionOfPlace(4)).isEqualTo(regions.getRegionOfPlace(0));
+    // T2 and T3 are in conflict over P3
+    assertThat(regions.getInputRegionOfTransition(2))
+        .isEqualTo(regions.getInputRegionOfTransition(3));
+  }
+
+  @Test
+  void testIndependentTransitionsAreDisjoint() {
+    assertThat(regions.getRegionsOfTransition(0))
+        .doesNotContain(regions.getRegionsOfTransition(10));
+  }
+
+  @Test
+  void testRegionsAreSorted() {
+    for (int t = 0; t < 12; t++) {
+      assertThat(regions.getRegionsOfTransition(t)).isSorted();
+    }
+  }
+}
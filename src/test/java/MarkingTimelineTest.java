@@ -0,0 +1,79 @@
+import static org.assertj.core.api.Assertions.assertThat;
+
+import analysis.MarkingTimeline;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import petrinet.NetDefinition;
+import petrinet.NetGenerator;
+import utils.MarkingTimelineWriter;
+
+class MarkingTimelineTest {
+  // Ring of three stages with one token, starting in P0
+  private static final NetDefinition RING = NetGenerator.pipeline(3, 1);
+
+  @TempDir Path directory;
+
+  @Test
+  void testMarkingsAreMaterializedFromKeyframes() throws IOException {
+    Path path = directory.resolve("timeline.bin");
+    try (MarkingTimelineWriter writer = newWriter(path)) {
+      for (int i = 0; i < 10; i++) {
+        writer.fire(i % 3);
+      }
+      writer.addTokens(1, 2);
+      writer.fire(1);
+      writer.reset(new int[] {0, 0, 7});
+      writer.fire(2);
+    }
+
+    MarkingTimeline timeline = MarkingTimeline.read(path);
+    assertThat(timeline.getFirings()).isEqualTo(12);
+    // Initial marking, one every 4 firings and the reset
+    assertThat(timeline.getKeyframes()).isEqualTo(5);
+    assertThat(timeline.markingAfter(0)).containsExactly(1, 0, 0);
+    assertThat(timeline.markingAfter(5)).containsExactly(0, 0, 1);
+    assertThat(timeline.markingAfter(10)).containsExactly(0, 1, 0);
+    // The injection happened before the 11th firing, the reset after it
+    assertThat(timeline.markingAfter(11)).containsExactly(0, 0, 7);
+    assertThat(timeline.markingAfter(12)).containsExactly(1, 0, 6);
+
+    List<String> markings = new ArrayList<>();
+    timeline.forEachFiring(
+        (marking, transition) -> markings.add("T" + transition + Arrays.toString(marking)));
+    assertThat(markings).hasSize(12);
+    assertThat(markings.get(0)).isEqualTo("T0[0, 1, 0]");
+    assertThat(markings.get(10)).isEqualTo("T1[0, 2, 1]");
+  }
+
+  @Test
+  void testTruncatedTimelineIsReadUpToTheLastCompleteRecord() throws IOException {
+    Path path = directory.resolve("timeline.bin");
+    try (MarkingTimelineWriter writer = newWriter(path)) {
+      for (int i = 0; i < 300; i++) {
+        writer.fire(i % 3);
+      }
+    }
+    byte[] bytes = Files.readAllBytes(path);
+    // The last record is a keyframe of four bytes or more, after the 300th firing
+    Files.write(path, Arrays.copyOf(bytes, bytes.length - 2));
+
+    MarkingTimeline timeline = MarkingTimeline.read(path);
+    assertThat(timeline.getFirings()).isEqualTo(300);
+    assertThat(timeline.markingAfter(299)).containsExactly(0, 0, 1);
+  }
+
+  private static MarkingTimelineWriter newWriter(Path path) throws IOException {
+    return new MarkingTimelineWriter(
+        Files.newOutputStream(path),
+        RING.getInitialMarking(),
+        RING.getIncidenceMatrixOut(),
+        RING.getIncidenceMatrixIn(),
+        4);
+  }
+}
@@ -0,0 +1,85 @@
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import monitor.Monitor;
+import org.junit.jupiter.api.Test;
+import petrinet.NetDefinition;
+import petrinet.PetriNet;
+import petrinet.PetriNetConf;
+import policy.FCFSPolicy;
+import utils.Logger;
+
+class MonitorAsyncTest {
+  @Test
+  void testRequestsFireWhenEnabledAndCanBeWithdrawn() throws Exception {
+    Logger.getLogger().setEnabled(false);
+    PetriNetConf conf = new PetriNetConf();
+    PetriNet petriNet =
+        new PetriNet(
+            conf.getTransitions(),
+            conf.getPlaces(),
+            conf.getIncidenceMatrixOut(),
+            conf.getIncidenceMatrixIn(),
+            conf.getPlacesInvariants(),
+            conf.getInitialMarking(),
+            conf.getTargetInvariants(),
+            conf.getTimeTransitions());
+    Monitor monitor = Monitor.newMonitor(petriNet, new FCFSPolicy());
+
+    // T1 needs the customer T0 lets in, and then its 2 ms alpha window
+    CompletableFuture<Boolean> entering = monitor.fireAsync(1);
+    assertThat(entering).isNotDone();
+    assertThat(monitor.tryFire(1)).isFalse();
+    assertThat(monitor.tryFire(0)).isTrue();
+    assertThat(entering.get(1, TimeUnit.SECONDS)).isTrue();
+    assertThat(petriNet.getMarking()[3]).isEqualTo(1);
+
+    // A request that times out is withdrawn and never fires
+    assertThat(monitor.tryFire(1, 20, TimeUnit.MILLISECONDS)).isFalse();
+    CompletableFuture<Boolean> cancelled = monitor.fireAsync(1);
+    cancelled.cancel(false);
+    assertThat(monitor.tryFire(0)).isTrue();
+    Thread.sleep(50);
+    assertThat(petriNet.getMarking()[2]).isEqualTo(1);
+    assertThat(monitor.getWaiterCounts()[1]).isZero();
+  }
+
+  @Test
+  void testRetryThreadEndsWhenTheNetFinishes() throws Exception {
+    Logger.getLogger().setEnabled(false);
+    // T0 moves the token of P0 to P1 once its 10 s alpha window elapses
+    NetDefinition definition =
+        new NetDefinition(
+            "timed",
+            new int[][] {{0}, {1}},
+            new int[][] {{1}, {0}},
+            new int[] {1, 0},
+            new int[0][],
+            new long[] {10_000},
+            new int[][] {{0}},
+            new int[0],
+            1000);
+    Monitor monitor = Monitor.newMonitor(definition.createPetriNet(), new FCFSPolicy());
+
+    Set<Thread> before = retryThreads();
+    CompletableFuture<Boolean> request = monitor.fireAsync(0);
+    Set<Thread> started = retryThreads();
+    started.removeAll(before);
+    assertThat(started).hasSize(1);
+
+    // Finishing releases the request unfired and stops the retry pending for the end of the window
+    monitor.finish();
+    assertThat(request.get(1, TimeUnit.SECONDS)).isFalse();
+    Thread retryThread = started.iterator().next();
+    retryThread.join(1000);
+    assertThat(retryThread.isAlive()).isFalse();
+  }
+
+  private static Set<Thread> retryThreads() {
+    Set<Thread> threads = Thread.getAllStackTraces().keySet();
+    threads.removeIf(thread -> !thread.getName().equals("monitor-retry"));
+    return threads;
+  }
+}
@@ -0,0 +1,125 @@
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import monitor.Monitor;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import petrinet.NetDefinition;
+import petrinet.PetriNet;
+import policy.FCFSPolicy;
+import utils.Logger;
+
+class MonitorStepTest {
+  // T0 moves P0 to P3 and T1 moves P1 to P4; T2 and T3 compete for the token of P2
+  private static final NetDefinition NET =
+      new NetDefinition(
+          "step",
+          new int[][] {
+            {0, 0, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}, {1, 0, 0, 0}, {0, 1, 0, 0}, {0, 0, 1, 1}
+          },
+          new int[][] {
+            {1, 0, 0, 0}, {0, 1, 0, 0}, {0, 0, 1, 1}, {0, 0, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}
+          },
+          new int[6],
+          new int[0][],
+          new long[4],
+          new int[][] {{0}, {1}, {2}, {3}},
+          new int[0],
+          1000);
+
+  /** Threads that notified the policy of each firing, in order. */
+  private final List<String> notifiers = new CopyOnWriteArrayList<>();
+
+  private final PetriNet petriNet = NET.createPetriNet();
+  private final Monitor monitor =
+      Monitor.newMonitor(
+          petriNet,
+          new FCFSPolicy() {
+            @Override
+            public void transitionFired(int transitionIndex) {
+              notifiers.add(Thread.currentThread().getName());
+              super.transitionFired(transitionIndex);
+            }
+          });
+
+  @BeforeAll
+  static void disableLogging() {
+    Logger.getLogger().setEnabled(false);
+  }
+
+  @Test
+  void testNonConflictingWaitersFireInOneHandOff() throws Exception {
+    Thread[] waiters = startWaiters(0, 1);
+
+    // A single entry enables both: one gets the mutex, the other fires in its step
+    monitor.addTokens(new int[] {0, 1}, new int[] {1, 1});
+    joinAll(waiters);
+
+    assertThat(petriNet.getMarking()).containsExactly(0, 0, 0, 1, 1, 0);
+    // The step firing is notified by the thread that entered, the other one by its own thread
+    assertThat(notifiers).hasSize(2);
+    assertThat(notifiers.stream().filter(Thread.currentThread().getName()::equals).count())
+        .isEqualTo(1);
+    assertCountersBalanced();
+  }
+
+  @Test
+  void testConflictingWaitersAreDroppedFromTheStep() throws Exception {
+    Thread[] waiters = startWaiters(0, 2, 3);
+
+    // T2 and T3 are both enabled, but only one of them can take the token of P2
+    monitor.addTokens(new int[] {0, 2}, new int[] {1, 1});
+    while (waiters[1].isAlive() && waiters[2].isAlive()) {
+      Thread.sleep(1);
+    }
+    waiters[0].join();
+
+    assertThat(petriNet.getMarking()).containsExactly(0, 0, 0, 1, 0, 1);
+    assertThat(notifiers).hasSize(2);
+    int[] waiting = monitor.getWaiterCounts();
+    assertThat(waiting[2] + waiting[3]).isEqualTo(1);
+
+    // The other one is still waiting for a token, and fires with the next one
+    monitor.addTokens(new int[] {2}, new int[] {1});
+    joinAll(waiters);
+    assertThat(petriNet.getMarking()).containsExactly(0, 0, 0, 1, 0, 2);
+    assertCountersBalanced();
+  }
+
+  /** Starts a thread per transition and waits until each one is queued in the monitor. */
+  private Thread[] startWaiters(int... transitions) throws InterruptedException {
+    Thread[] waiters = new Thread[transitions.length];
+    for (int i = 0; i < transitions.length; i++) {
+      int transition = transitions[i];
+      waiters[i] = new Thread(() -> monitor.fireTransition(transition), "T" + transition);
+      waiters[i].start();
+      while (monitor.getWaiterCounts()[transition] == 0) {
+        Thread.sleep(1);
+      }
+    }
+    return waiters;
+  }
+
+  private static void joinAll(Thread[] threads) throws InterruptedException {
+    for (Thread thread : threads) {
+      thread.join(5000);
+      assertThat(thread.isAlive()).isFalse();
+    }
+  }
+
+  /** Every queued thread was woken once, and every wakeup was claimed by its thread. */
+  private void assertCountersBalanced() throws ReflectiveOperationException {
+    assertThat(monitor.getWaiterCounts()).containsExactly(0, 0, 0, 0);
+    for (String name : new String[] {"handOffs", "stepFirings"}) {
+      Field field = Monitor.class.getDeclaredField(name);
+      field.setAccessible(true);
+      AtomicIntegerArray counters = (AtomicIntegerArray) field.get(monitor);
+      for (int t = 0; t < counters.length(); t++) {
+        assertThat(counters.get(t)).as(name + "[" + t + "]").isZero();
+      }
+    }
+  }
+}
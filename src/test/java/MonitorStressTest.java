@@ -0,0 +1,278 @@
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import monitor.LockFreeMonitor;
+import monitor.Monitor;
+import monitor.MonitorInterface;
+import monitor.PartitionedMonitor;
+import monitor.RingBufferMonitor;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import petrinet.PetriNet;
+import petrinet.PetriNetConf;
+import petrinet.Transition;
+import policy.BalancedPolicy;
+import policy.FCFSPolicy;
+import policy.Policy;
+import policy.PrioritizedPolicy;
+import utils.Logger;
+
+/**
+ * Runs the agency net under contention with every policy and several threads per segment, with
+ * random alphas and random pauses between monitor calls. Every firing is checked for mutual
+ * exclusion and against the place invariants while it happens, and each configuration reports its
+ * firings per second and how evenly the threads of a segment shared the work. The partitioned and
+ * lock-free monitors fire in parallel, so for them exclusion is checked per place and the
+ * invariants on the marking each firing leaves, or at the end of the run.
+ *
+ * <p>Tagged "stress" and run with {@code ./gradlew stressTest}, or with {@code ./gradlew
+ * soakTest} for millions of firings per configuration; {@code -Dstress.invariants} sets the length
+ * of each run and {@code -Dstress.timeoutSeconds} how long it may take.
+ */
+@Tag("stress")
+class MonitorStressTest {
+  private static final int INVARIANTS = Integer.getInteger("stress.invariants", 5000);
+  private static final long TIMEOUT_SECONDS = Long.getLong("stress.timeoutSeconds", 300);
+
+  @BeforeAll
+  static void disableLogging() {
+    Logger.getLogger().setEnabled(false);
+  }
+
+  static Stream<Arguments> configurations() {
+    List<Arguments> configurations = new ArrayList<>();
+    for (String monitorName : List.of("mutex", "ringbuffer", "partitioned", "lockfree")) {
+      for (int policyNumber = 1; policyNumber <= 3; policyNumber++) {
+        for (int threadsPerSegment : new int[] {1, 4}) {
+          configurations.add(Arguments.of(monitorName, policyNumber, threadsPerSegment));
+        }
+      }
+    }
+    return configurations.stream();
+  }
+
+  @ParameterizedTest(name = "{0} monitor, policy {1}, {2} thread(s) per segment")
+  @MethodSource("configurations")
+  void testFiringsKeepInvariantsAndExclusion(
+      String monitorName, int policyNumber, int threadsPerSegment) throws InterruptedException {
+    PetriNetConf conf = new PetriNetConf();
+    Random random = new Random(31L * policyNumber + threadsPerSegment);
+    // The configuration hands out its shared array, so randomize a copy
+    long[] alphas = conf.getTimeTransitions().clone();
+    for (int i = 0; i < alphas.length; i++) {
+      alphas[i] = alphas[i] > 0 ? random.nextInt(2) : 0;
+    }
+    CheckedPetriNet petriNet = new CheckedPetriNet(conf, alphas);
+    Policy policy =
+        switch (policyNumber) {
+          case 1 -> new BalancedPolicy();
+          case 2 -> new PrioritizedPolicy();
+          default -> new FCFSPolicy();
+        };
+    policy.setSeed(random.nextLong());
+    MonitorInterface monitor =
+        switch (monitorName) {
+          case "mutex" -> Monitor.newMonitor(petriNet, policy);
+          case "ringbuffer" -> new RingBufferMonitor(petriNet, policy);
+          case "partitioned" -> new PartitionedMonitor(petriNet, policy);
+          default -> new LockFreeMonitor(petriNet, policy);
+        };
+
+    int segments = conf.getNumberOfSequences();
+    Thread[] threads = new Thread[segments * threadsPerSegment];
+    long[] firings = new long[threads.length];
+    for (int i = 0; i < threads.length; i++) {
+      int thread = i;
+      int[] sequence =
+          conf.getTransitionSequence(i % segments).stream()
+              .mapToInt(Transition::getNumber)
+              .toArray();
+      threads[i] = new Thread(() -> firings[thread] = runSegment(sequence, monitor, petriNet));
+      threads[i].setDaemon(true);
+    }
+
+    long start = System.nanoTime();
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    long deadline = start + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+    for (Thread thread : threads) {
+      thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    if (monitor instanceof RingBufferMonitor ringBufferMonitor) {
+      ringBufferMonitor.close();
+    }
+
+    petriNet.checkInvariants(petriNet.getMarking(), "the run");
+    assertThat(petriNet.violations).isEmpty();
+    assertThat(petriNet.petriNetHasFinished()).as("net stalled before its target").isTrue();
+    assertThat(petriNet.getInvariantsCount()).isEqualTo(INVARIANTS);
+
+    long totalFirings = 0;
+    for (long threadFirings : firings) {
+      totalFirings += threadFirings;
+    }
+    Map<Integer, Integer> counts = policy.getTransitionCounts();
+    System.out.printf(
+        "%s policy %d x%d: %d firings in %.2f s, %.0f firings/s, fairness %.3f,"
+            + " T2/T3 %d/%d, T6/T7 %d/%d%n",
+        monitorName,
+        policyNumber,
+        threadsPerSegment,
+        totalFirings,
+        seconds,
+        totalFirings / seconds,
+        fairness(firings, segments),
+        counts.get(2),
+        counts.get(3),
+        counts.get(6),
+        counts.get(7));
+  }
+
+  /**
+   * Runs a segment like {@code Segments}, with a random pause before some monitor calls.
+   *
+   * @return Number of transitions the thread fired.
+   */
+  private static long runSegment(int[] sequence, MonitorInterface monitor, PetriNet petriNet) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long fired = 0;
+    int position = 0;
+    while (!petriNet.petriNetHasFinished()) {
+      if (random.nextInt(8) == 0) {
+        LockSupport.parkNanos(random.nextLong(50_000));
+      }
+      int firedNow = monitor.fireSequence(sequence, position);
+      fired += firedNow;
+      position = (position + Math.max(1, firedNow)) % sequence.length;
+    }
+    return fired;
+  }
+
+  /**
+   * Computes Jain's fairness index of the firings of the threads that share a segment, averaged
+   * over the segments. 1 means the threads of each segment fired equally often.
+   *
+   * @param firings Firings of each thread; thread i runs segment i modulo the segments.
+   * @param segments Number of segments.
+   * @return The fairness index, 1 if every segment has a single thread.
+   */
+  private static double fairness(long[] firings, int segments) {
+    double total = 0;
+    for (int segment = 0; segment < segments; segment++) {
+      double sum = 0;
+      double sumOfSquares = 0;
+      int threads = 0;
+      for (int i = segment; i < firings.length; i += segments) {
+        sum += firings[i];
+        sumOfSquares += (double) firings[i] * firings[i];
+        threads++;
+      }
+      total += sumOfSquares == 0 ? 1 : sum * sum / (threads * sumOfSquares);
+    }
+    return total / segments;
+  }
+
+  /**
+   * Petri net that checks every firing: no other firing may be in progress at the same time, and
+   * the place invariants must hold right after it. Local firings may overlap, but never on the same
+   * place, and the marking they leave is only checked at the end. Firings recorded for a lock-free
+   * engine come with the marking they left, which is checked instead.
+   */
+  private static class CheckedPetriNet extends PetriNet {
+    private final AtomicInteger firingsInProgress = new AtomicInteger();
+    private final AtomicIntegerArray firingsInPlace;
+    private final int[][] touchedPlaces;
+    private final Queue<String> violations = new ConcurrentLinkedQueue<>();
+
+    CheckedPetriNet(PetriNetConf conf, long[] alphas) {
+      super(
+          conf.getTransitions(),
+          conf.getPlaces(),
+          conf.getIncidenceMatrixOut(),
+          conf.getIncidenceMatrixIn(),
+          conf.getPlacesInvariants(),
+          conf.getInitialMarking(),
+          INVARIANTS,
+          alphas);
+      int[][] in = conf.getIncidenceMatrixIn();
+      int[][] out = conf.getIncidenceMatrixOut();
+      firingsInPlace = new AtomicIntegerArray(in.length);
+      touchedPlaces = new int[in[0].length][];
+      for (int t = 0; t < touchedPlaces.length; t++) {
+        int transition = t;
+        touchedPlaces[t] =
+            IntStream.range(0, in.length)
+                .filter(p -> in[p][transition] > 0 || out[p][transition] > 0)
+                .toArray();
+      }
+    }
+
+    @Override
+    public boolean tryFireTransition(int transitionIndex) {
+      if (firingsInProgress.incrementAndGet() != 1) {
+        violations.add("T" + transitionIndex + " fired while another firing was in progress");
+      }
+      try {
+        boolean fired = super.tryFireTransition(transitionIndex);
+        if (fired) {
+          checkInvariants(getMarking(), "T" + transitionIndex);
+        }
+        return fired;
+      } finally {
+        firingsInProgress.decrementAndGet();
+      }
+    }
+
+    @Override
+    public boolean tryFireTransitionLocally(int transitionIndex) {
+      for (int place : touchedPlaces[transitionIndex]) {
+        if (firingsInPlace.incrementAndGet(place) != 1) {
+          violations.add("T" + transitionIndex + " fired while another firing used P" + place);
+        }
+      }
+      try {
+        return super.tryFireTransitionLocally(transitionIndex);
+      } finally {
+        for (int place : touchedPlaces[transitionIndex]) {
+          firingsInPlace.decrementAndGet(place);
+        }
+      }
+    }
+
+    @Override
+    public void recordFiring(int transitionIndex, Supplier<int[]> currentMarking) {
+      checkInvariants(currentMarking.get(), "T" + transitionIndex);
+      super.recordFiring(transitionIndex, currentMarking);
+    }
+
+    private void checkInvariants(int[] marking, String after) {
+      for (int[] invariant : getPlacesInvariants()) {
+        int sum = 0;
+        for (int p = 0; p < marking.length; p++) {
+          sum += invariant[p] * marking[p];
+        }
+        if (sum != invariant[marking.length]) {
+          violations.add("Place invariant broken after " + after);
+        }
+      }
+    }
+  }
+}
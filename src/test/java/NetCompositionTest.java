@@ -0,0 +1,77 @@
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import monitor.PartitionedMonitor;
+import org.junit.jupiter.api.Test;
+import petrinet.NetComposition;
+import petrinet.NetDefinition;
+import petrinet.PetriNet;
+import petrinet.PetriNetConf;
+import petrinet.Segments;
+import policy.BalancedPolicy;
+import policy.OfficePolicy;
+import utils.Logger;
+
+class NetCompositionTest {
+  private final NetDefinition agency = NetDefinition.of(new PetriNetConf());
+
+  @Test
+  void testSharedPlacesAreFused() {
+    NetComposition composition = new NetComposition(agency, 4, 6, 7);
+    composition.setSharedTokens(6, 3);
+    int[] officeMarking = agency.getInitialMarking();
+    officeMarking[0] = 8; // Office 2 has more customers
+    composition.setCopyMarking(2, officeMarking);
+    NetDefinition offices = composition.createDefinition();
+
+    // Both agents are shared, the other 13 places are repeated
+    assertThat(offices.getPlacesLength()).isEqualTo(2 + 4 * 13);
+    assertThat(composition.getPlace(0, 6)).isEqualTo(composition.getPlace(3, 6));
+    assertThat(composition.getPlace(1, 0)).isNotEqualTo(composition.getPlace(2, 0));
+    assertThat(offices.getInitialMarking()[composition.getPlace(0, 6)]).isEqualTo(3);
+    assertThat(offices.getInitialMarking()[composition.getPlace(2, 0)]).isEqualTo(8);
+    assertThat(composition.getCopyOfTransition(composition.getTransition(3, 11))).isEqualTo(3);
+    assertThat(offices.getTargetInvariants()).isEqualTo(4 * 186);
+
+    PetriNet petriNet = offices.withoutAlphas().createPetriNet();
+    for (int i = 0; i < 5000; i++) {
+      boolean[] enabled = petriNet.getEnabledTransitionsInBits();
+      int t = (i * 7) % enabled.length;
+      while (!enabled[t]) {
+        t = (t + 1) % enabled.length;
+      }
+      assertThat(petriNet.tryFireTransition(t)).isTrue();
+    }
+  }
+
+  @Test
+  void testOfficesRunWithTheirOwnPolicy() throws InterruptedException {
+    Logger.getLogger().setEnabled(false);
+    int offices = 3;
+    NetDefinition definition =
+        new NetComposition(agency, offices, 10).createDefinition().withoutAlphas();
+    PetriNet petriNet = definition.createPetriNet();
+    OfficePolicy policy = new OfficePolicy(offices, 12, office -> new BalancedPolicy());
+    PartitionedMonitor monitor = new PartitionedMonitor(petriNet, policy);
+
+    Thread[] threads = new Thread[definition.getNumberOfSequences()];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(new Segments(definition.getTransitionSequence(i), monitor, petriNet));
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join(30_000);
+      assertThat(thread.isAlive()).isFalse();
+    }
+
+    assertThat(petriNet.getInvariantsCount()).isEqualTo(offices * 186);
+    // Each office counts its own agents, under the transitions of the composed net
+    Map<Integer, Integer> counts = policy.getTransitionCounts();
+    int served = 0;
+    for (int office = 0; office < offices; office++) {
+      assertThat(counts.get(office * 12 + 2)).isPositive();
+      served += counts.get(office * 12 + 2) + counts.get(office * 12 + 3);
+    }
+    assertThat(served).isGreaterThanOrEqualTo(offices * 186);
+  }
+}
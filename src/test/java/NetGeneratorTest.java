@@ -0,0 +1,72 @@
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import petrinet.NetDefinition;
+import petrinet.NetGenerator;
+import petrinet.PetriNet;
+
+class NetGeneratorTest {
+
+  /**
+   * Fires random enabled transitions, checking the invariants of the definition after each one.
+   *
+   * @param definition Net to run.
+   * @param firings Number of firings.
+   * @return The net after the firings.
+   */
+  private static PetriNet fireRandomly(NetDefinition definition, int firings) {
+    PetriNet petriNet = definition.withoutAlphas().createPetriNet();
+    Random random = new Random(42);
+    for (int i = 0; i < firings; i++) {
+      boolean[] enabled = petriNet.getEnabledTransitionsInBits();
+      int start = random.nextInt(enabled.length);
+      boolean fired = false;
+      for (int k = 0; k < enabled.length && !fired; k++) {
+        int t = (start + k) % enabled.length;
+        fired = enabled[t] && petriNet.tryFireTransition(t);
+      }
+      assertThat(fired).isTrue();
+      assertThatCode(petriNet::checkPlacesInvariants).doesNotThrowAnyException();
+    }
+    return petriNet;
+  }
+
+  @Test
+  void testPipelineKeepsItsTokens() {
+    NetDefinition pipeline = NetGenerator.pipeline(50, 10);
+    assertThat(pipeline.getPlacesLength()).isEqualTo(50);
+    assertThat(pipeline.getNumberOfSequences()).isEqualTo(50);
+    assertThat(fireRandomly(pipeline, 500).getInvariantsCount()).isPositive();
+  }
+
+  @Test
+  void testWideConflictKeepsItsTokens() {
+    NetDefinition conflict = NetGenerator.wideConflict(20, 3);
+    assertThat(conflict.getTransitionsLength()).isEqualTo(40);
+    assertThat(fireRandomly(conflict, 500).getInvariantsCount()).isPositive();
+  }
+
+  @Test
+  void testRandomNetNeverDeadlocks() {
+    NetDefinition random = NetGenerator.random(30, 60, 0.1, 7);
+    assertThat(NetGenerator.random(30, 60, 0.1, 7).getIncidenceMatrixIn())
+        .isDeepEqualTo(random.getIncidenceMatrixIn());
+    // Every firing completes an invariant, and some transition is always enabled
+    assertThat(fireRandomly(random, 1000).getInvariantsCount()).isEqualTo(1000);
+  }
+
+  @Test
+  void testReplicatedAgencySharesThePaymentDesk() {
+    NetDefinition agency = NetGenerator.replicatedAgency(3);
+    // P10 is shared, the other 14 places are repeated
+    assertThat(agency.getPlacesLength()).isEqualTo(1 + 3 * 14);
+    assertThat(agency.getTransitionsLength()).isEqualTo(36);
+    assertThat(agency.getNumberOfSequences()).isEqualTo(30);
+    // Five invariants per office, plus the merged one of the payment desk
+    assertThat(agency.getPlacesInvariants()).hasNumberOfRows(16);
+    assertThat(agency.getCompletionTransitions()).containsExactly(11, 23, 35);
+    fireRandomly(agency, 2000);
+  }
+}
@@ -0,0 +1,29 @@
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import policy.BalancedPolicy;
+import policy.Policy;
+
+class PolicyTest {
+  @Test
+  void testTransitionsInsideTheirAlphaWindowAreNotChosen() {
+    Policy policy = new BalancedPolicy();
+    policy.setSeed(42);
+    // T4 and T5 are still inside their alpha window, T9 is ready
+    boolean[] enabled = new boolean[12];
+    enabled[4] = true;
+    enabled[5] = true;
+    enabled[9] = true;
+    long[] remainingTimes = new long[12];
+    remainingTimes[4] = 10;
+    remainingTimes[5] = 3;
+    for (int i = 0; i < 20; i++) {
+      assertThat(policy.getNextTransition(enabled, remainingTimes)).isEqualTo(9);
+    }
+
+    enabled[9] = false;
+    assertThat(policy.getNextTransition(enabled, remainingTimes)).isEqualTo(-1);
+    remainingTimes[5] = 0;
+    assertThat(policy.getNextTransition(enabled, remainingTimes)).isEqualTo(5);
+  }
+}
@@ -0,0 +1,89 @@
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import monitor.RingBufferMonitor;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import petrinet.NetDefinition;
+import petrinet.PetriNet;
+import policy.FCFSPolicy;
+import utils.Logger;
+
+class RingBufferMonitorTest {
+  private static final int THREADS = 16;
+  private static final int ROUNDS = 20;
+
+  // T0 and T1 move a token between P0 and P1, but there is no token, so neither can ever fire
+  private static final NetDefinition NET =
+      new NetDefinition(
+          "empty-ping-pong",
+          new int[][] {{0, 1}, {1, 0}},
+          new int[][] {{1, 0}, {0, 1}},
+          new int[] {0, 0},
+          new int[][] {{1, 1, 1}},
+          new long[2],
+          new int[0][],
+          new int[0],
+          Integer.MAX_VALUE);
+
+  @BeforeAll
+  static void disableLogging() {
+    Logger.getLogger().setEnabled(false);
+  }
+
+  @Test
+  void testCloseCompletesPendingRequests() throws InterruptedException {
+    PetriNet petriNet = NET.createPetriNet();
+    RingBufferMonitor monitor = new RingBufferMonitor(petriNet, new FCFSPolicy());
+    AtomicIntegerArray results = new AtomicIntegerArray(THREADS);
+    Thread[] threads = startRequesters(monitor, results);
+
+    // Wait until the owner holds every request, then close under them
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (monitor.getWaiterCounts()[0] < THREADS && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+    assertThat(monitor.getWaiterCounts()[0]).isEqualTo(THREADS);
+    monitor.close();
+
+    assertAllReturnedFalse(threads, results);
+    assertThat(monitor.getWaiterCounts()).containsExactly(0, 0);
+    assertThat(monitor.fireTransition(0)).isFalse();
+  }
+
+  @Test
+  void testCloseCompletesRequestsPublishedWhileClosing() throws InterruptedException {
+    // Closing right after the requesters start catches some of them between claiming a slot and
+    // the owner draining it; a small buffer also leaves some waiting for a free slot
+    for (int round = 0; round < ROUNDS; round++) {
+      PetriNet petriNet = NET.createPetriNet();
+      RingBufferMonitor monitor = new RingBufferMonitor(petriNet, new FCFSPolicy(), 4);
+      AtomicIntegerArray results = new AtomicIntegerArray(THREADS);
+      Thread[] threads = startRequesters(monitor, results);
+      monitor.close();
+
+      assertAllReturnedFalse(threads, results);
+    }
+  }
+
+  private static Thread[] startRequesters(RingBufferMonitor monitor, AtomicIntegerArray results) {
+    Thread[] threads = new Thread[THREADS];
+    for (int i = 0; i < THREADS; i++) {
+      int index = i;
+      results.set(index, -1);
+      threads[i] = new Thread(() -> results.set(index, monitor.fireTransition(0) ? 1 : 0));
+      threads[i].setDaemon(true);
+      threads[i].start();
+    }
+    return threads;
+  }
+
+  private static void assertAllReturnedFalse(Thread[] threads, AtomicIntegerArray results)
+      throws InterruptedException {
+    for (int i = 0; i < threads.length; i++) {
+      threads[i].join(10_000);
+      assertThat(threads[i].isAlive()).as("requester blocked after close").isFalse();
+      assertThat(results.get(i)).as("requester reported a firing").isEqualTo(0);
+    }
+  }
+}
@@ -0,0 +1,59 @@
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utils.SegmentedLog;
+
+class SegmentedLogTest {
+  @TempDir Path directory;
+
+  @Test
+  void testSegmentsAreRotatedAndCompressed() throws IOException {
+    StringBuilder expected = new StringBuilder();
+    try (SegmentedLog log = new SegmentedLog(directory, "trace", "run1", 1000, 0)) {
+      for (int i = 0; i < 20_000; i++) {
+        String firing = "T" + (i % 12);
+        log.write(firing);
+        expected.append(firing);
+        if (i % 5000 == 4999) {
+          log.flush();
+        }
+      }
+      assertThat(log.getSegmentNumber()).isEqualTo(3);
+    }
+
+    // Every closed segment is compressed once the log is closed
+    try (Stream<Path> files = Files.list(directory)) {
+      assertThat(files.allMatch(file -> file.toString().endsWith(".log.gz"))).isTrue();
+    }
+    try (InputStream in = SegmentedLog.openRun(directory, "trace", "run1")) {
+      assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8))
+          .isEqualTo(expected.toString());
+    }
+  }
+
+  @Test
+  void testOldRunsAreDiscarded() throws IOException {
+    for (String run : List.of("first", "second", "third")) {
+      try (SegmentedLog log = new SegmentedLog(directory, "trace", run, 1 << 20, 0)) {
+        log.write("T0T1" + run);
+      }
+    }
+    assertThat(SegmentedLog.listRuns(directory, "trace"))
+        .containsExactly("first", "second", "third");
+
+    assertThat(SegmentedLog.deleteOldRuns(directory, "trace", 1)).isEqualTo(2);
+
+    assertThat(SegmentedLog.listRuns(directory, "trace")).containsExactly("third");
+    try (InputStream in = SegmentedLog.openRun(directory, "trace", "third")) {
+      assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("T0T1third");
+    }
+  }
+}
@@ -0,0 +1,40 @@
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import petrinet.PetriNetConf;
+import policy.BalancedPolicy;
+import policy.FCFSPolicy;
+import simulation.Simulation;
+import simulation.SimulationResult;
+import utils.Logger;
+
+class SimulationTest {
+
+  @BeforeAll
+  static void disableLogging() {
+    Logger.getLogger().setEnabled(false);
+  }
+
+  @Test
+  void testRunReachesInvariantsTarget() {
+    PetriNetConf conf = new PetriNetConf();
+    SimulationResult result = new Simulation(conf, new BalancedPolicy(), 1).run();
+
+    assertThat(result.isCompleted()).isTrue();
+    assertThat(Arrays.stream(result.getInvariantCounts()).sum())
+        .isEqualTo(conf.getTargetInvariants());
+    assertThat(result.getVirtualTime()).isPositive();
+  }
+
+  @Test
+  void testSameSeedIsReproducible() {
+    PetriNetConf conf = new PetriNetConf();
+    SimulationResult first = new Simulation(conf, new FCFSPolicy(), 7).run();
+    SimulationResult second = new Simulation(conf, new FCFSPolicy(), 7).run();
+
+    assertThat(second.getTransitionCounts()).containsExactly(first.getTransitionCounts());
+    assertThat(second.getVirtualTime()).isEqualTo(first.getVirtualTime());
+  }
+}
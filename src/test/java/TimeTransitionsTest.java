@@ -0,0 +1,53 @@
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import petrinet.TimeTransitions;
+
+class TimeTransitionsTest {
+  private final AtomicLong clock = new AtomicLong(1000);
+
+  @Test
+  void testExpiredTimersArePolledInBatchesPerTick() {
+    // T0 has no alpha, so it never gets a timer
+    TimeTransitions timers = new TimeTransitions(new long[] {0, 5, 5, 70, 5000}, clock::get);
+    int[] expired = new int[5];
+    timers.updateEnabledTransitionsTimer(new boolean[] {true, true, true, true, true});
+    assertThat(timers.getNextDeadline()).isEqualTo(1005);
+
+    // T2 is disabled before its window elapses
+    clock.set(1003);
+    boolean[] enabled = {true, true, false, true, true};
+    timers.updateEnabledTransitionsTimer(new int[] {2}, enabled);
+    clock.set(1010);
+    assertThat(timers.pollExpired(expired)).isEqualTo(1);
+    assertThat(expired[0]).isEqualTo(1);
+    assertThat(timers.getNextDeadline()).isEqualTo(1070);
+
+    // Timers in higher levels of the wheel are brought down and expire on their tick
+    clock.set(1069);
+    assertThat(timers.pollExpired(expired)).isZero();
+    clock.set(6000);
+    assertThat(timers.pollExpired(expired)).isEqualTo(2);
+    assertThat(Arrays.copyOf(expired, 2)).containsExactly(3, 4);
+    assertThat(timers.getNextDeadline()).isEqualTo(Long.MAX_VALUE);
+  }
+
+  @Test
+  void testDeadlinesBeyondTheWheelAreKept() {
+    long day = 24 * 3600 * 1000L;
+    TimeTransitions timers = new TimeTransitions(new long[] {day, 3 * day}, clock::get);
+    int[] expired = new int[2];
+    timers.updateEnabledTransitionsTimer(new boolean[] {true, true});
+    assertThat(timers.getNextDeadline()).isEqualTo(1000 + day);
+
+    clock.set(1000 + day - 1);
+    assertThat(timers.pollExpired(expired)).isZero();
+    clock.set(1000 + 2 * day);
+    assertThat(timers.pollExpired(expired)).isEqualTo(1);
+    assertThat(expired[0]).isZero();
+    assertThat(timers.getNextDeadline()).isEqualTo(1000 + 3 * day);
+    assertThat(timers.getRemainingTime(1)).isEqualTo(day);
+  }
+}
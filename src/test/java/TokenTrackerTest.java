@@ -0,0 +1,63 @@
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import petrinet.TokenTracker;
+
+class TokenTrackerTest {
+  // T0 moves a customer from P0 to P1 taking the resource in P2, T1 moves it out returning P2
+  private static final int[][] INCIDENCE_OUT = {{0, 0}, {1, 0}, {0, 1}};
+  private static final int[][] INCIDENCE_IN = {{1, 0}, {0, 1}, {1, 0}};
+  private static final boolean[] CUSTOMER_PLACES = {true, true, false};
+
+  private TokenTracker tracker;
+  private List<long[]> moves;
+
+  @BeforeEach
+  void setUp() {
+    tracker =
+        new TokenTracker(INCIDENCE_OUT, INCIDENCE_IN, CUSTOMER_PLACES, new int[] {2, 0, 1}, 0);
+    moves = new ArrayList<>();
+    tracker.setObserver(
+        (token, transition, from, to, waited, time) ->
+            moves.add(new long[] {token, transition, from, to, waited, time}));
+  }
+
+  @Test
+  void testTokensMoveInFifoOrder() {
+    tracker.fire(0, 10);
+    assertThat(tracker.getTokens(0)).containsExactly(1);
+    assertThat(tracker.getTokens(1)).containsExactly(0);
+    assertThat(tracker.getTokens(2)).isEmpty();
+
+    tracker.fire(1, 25);
+    assertThat(moves.get(0)).containsExactly(0, 0, 0, 1, 10, 10);
+    assertThat(moves.get(1)).containsExactly(0, 1, 1, TokenTracker.OUTSIDE, 15, 25);
+  }
+
+  @Test
+  void testInjectedTokensGetNewIds() {
+    int id = tracker.addToken(0, 5);
+    assertThat(id).isEqualTo(2);
+    assertThat(tracker.getTokens(0)).containsExactly(0, 1, 2);
+    assertThat(moves.get(0))
+        .containsExactly(2, TokenTracker.OUTSIDE, TokenTracker.OUTSIDE, 0, 0, 5);
+    assertThatThrownBy(() -> tracker.addToken(2, 5)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void testQueuesGrowPastTheirInitialCapacity() {
+    for (int i = 0; i < 1000; i++) {
+      tracker.addToken(0, i);
+    }
+    for (int i = 0; i < 500; i++) {
+      tracker.fire(0, 1000 + i);
+      tracker.fire(1, 1000 + i);
+    }
+    assertThat(tracker.getTokens(0)).hasSize(502).startsWith(500, 501, 502);
+    assertThat(tracker.getNumberOfIds()).isEqualTo(1002);
+  }
+}
@@ -0,0 +1,82 @@
+import static org.assertj.core.api.Assertions.assertThat;
+
+import analysis.ReplayResult;
+import analysis.TraceReplayer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import petrinet.PetriNet;
+import petrinet.PetriNetConf;
+
+class TraceReplayerTest {
+  // One customer through T0 T1 T2 T5 T6 T9 T10 T11
+  private static final int[] ONE_INVARIANT = {0, 1, 2, 5, 6, 9, 10, 11};
+
+  private TraceReplayer replayer;
+
+  @BeforeEach
+  void setUp() {
+    PetriNetConf conf = new PetriNetConf();
+    replayer =
+        new TraceReplayer(
+            new PetriNet(
+                conf.getTransitions(),
+                conf.getPlaces(),
+                conf.getIncidenceMatrixOut(),
+                conf.getIncidenceMatrixIn(),
+                conf.getPlacesInvariants(),
+                conf.getInitialMarking(),
+                10,
+                conf.getTimeTransitions()));
+  }
+
+  @Test
+  void testValidTrace() {
+    ReplayResult result = replayer.verify(ONE_INVARIANT);
+    assertThat(result.isValid()).isTrue();
+    assertThat(result.getFirings()).isEqualTo(ONE_INVARIANT.length);
+  }
+
+  @Test
+  void testDisabledFiringIsReported() {
+    ReplayResult result = replayer.verify(new int[] {0, 1, 10});
+    assertThat(result.isValid()).isFalse();
+    assertThat(result.getFailedIndex()).isEqualTo(2);
+  }
+
+  @Test
+  void testParallelMatchesSequential() {
+    int[] trace = new int[ONE_INVARIANT.length * 50];
+    for (int i = 0; i < trace.length; i++) {
+      trace[i] = ONE_INVARIANT[i % ONE_INVARIANT.length];
+    }
+    assertThat(replayer.verifyParallel(trace, 7).isValid()).isTrue();
+
+    trace[123] = 4;
+    assertThat(replayer.verifyParallel(trace, 7).getFailedIndex())
+        .isEqualTo(replayer.verify(trace).getFailedIndex());
+  }
+
+  @Test
+  void testMarkingAt() {
+    assertThat(replayer.markingAt(ONE_INVARIANT, 1))
+        .containsExactly(4, 0, 1, 0, 4, 0, 1, 1, 0, 0, 1, 0, 0, 0, 0);
+    assertThat(replayer.markingAt(ONE_INVARIANT, ONE_INVARIANT.length))
+        .containsExactly(5, 1, 0, 0, 5, 0, 1, 1, 0, 0, 1, 0, 0, 0, 0);
+  }
+
+  @Test
+  void testTraceFormats() throws IOException {
+    byte[] text = "T0T1T2T5\nT6T9T10T11".getBytes(StandardCharsets.UTF_8);
+    assertThat(TraceReplayer.readTextTrace(new ByteArrayInputStream(text)))
+        .containsExactly(ONE_INVARIANT);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    TraceReplayer.writeBinaryTrace(ONE_INVARIANT, out);
+    assertThat(TraceReplayer.readBinaryTrace(new ByteArrayInputStream(out.toByteArray())))
+        .containsExactly(ONE_INVARIANT);
+  }
+}
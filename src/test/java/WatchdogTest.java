@@ -0,0 +1,154 @@
+import static org.assertj.core.api.Assertions.assertThat;
+
+import monitor.LockFreeMonitor;
+import monitor.MonitorInterface;
+import monitor.PartitionedMonitor;
+import monitor.Watchdog;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import petrinet.FiringEventPublisher;
+import petrinet.PetriNet;
+import petrinet.PetriNetConf;
+import policy.BalancedPolicy;
+import utils.Logger;
+
+class WatchdogTest {
+  private long now = 0;
+  private int aborts = 0;
+
+  @BeforeAll
+  static void disableLogging() {
+    Logger.getLogger().setEnabled(false);
+  }
+
+  @Test
+  void testProgressKeepsTheWatchdogQuiet() throws InterruptedException {
+    PetriNet petriNet = createNet(new PetriNetConf().getInitialMarking());
+    Watchdog watchdog = createWatchdog(petriNet, new int[12]);
+
+    assertThat(watchdog.check()).isFalse();
+    now = 100;
+    petriNet.tryFireTransition(0);
+    assertThat(watchdog.check()).isFalse();
+    now = 199;
+    assertThat(watchdog.check()).isFalse();
+    assertThat(watchdog.getStalls()).isZero();
+  }
+
+  @Test
+  void testStallWithNothingEnabledIsReportedAsDeadlock() throws InterruptedException {
+    PetriNet petriNet = createNet(new int[15]);
+    int[] waiters = new int[12];
+    waiters[0] = 2;
+    Watchdog watchdog = createWatchdog(petriNet, waiters);
+
+    assertThat(watchdog.check()).isFalse();
+    now = 100;
+    assertThat(watchdog.check()).isTrue();
+    assertThat(aborts).isEqualTo(1);
+    assertThat(watchdog.dumpState()).startsWith("deadlock").contains("waiters=[T0=2]");
+
+    // A lasting stall is handled again once per window
+    now = 150;
+    assertThat(watchdog.check()).isFalse();
+    now = 200;
+    assertThat(watchdog.check()).isTrue();
+    assertThat(watchdog.getStalls()).isEqualTo(2);
+  }
+
+  @Test
+  void testEnabledWaiterIsReportedAsLostWakeup() {
+    PetriNet petriNet = createNet(new PetriNetConf().getInitialMarking());
+    int[] waiters = new int[12];
+    waiters[0] = 1;
+
+    assertThat(createWatchdog(petriNet, waiters).dumpState())
+        .startsWith("lost wakeup")
+        .contains("enabledAndWaiting=[T0]");
+  }
+
+  @Test
+  void testLockFreeStateComesFromTheMonitor() {
+    PetriNet petriNet = createNet(new PetriNetConf().getInitialMarking());
+    MonitorInterface monitor = new LockFreeMonitor(petriNet, new BalancedPolicy());
+    monitor.fireTransition(0);
+
+    // The firing only reached the engine's marking, not the net's
+    assertThat(createWatchdog(petriNet, monitor).dumpState())
+        .contains("marking=[4, 0, 1, 0, 4, 0, 1, 1, 0, 0, 1, 0, 0, 0, 0]")
+        .contains("enabled=[T1]");
+  }
+
+  @Test
+  void testPartitionedEnabledTransitionsFollowTheMarking() {
+    PetriNet petriNet = createNet(new PetriNetConf().getInitialMarking());
+    MonitorInterface monitor = new PartitionedMonitor(petriNet, new BalancedPolicy());
+    monitor.fireTransition(0);
+
+    // Local firings leave the net's enabled transitions as they were before T0 fired
+    assertThat(createWatchdog(petriNet, monitor).dumpState())
+        .contains("marking=[4, 0, 1, 0, 4, 0, 1, 1, 0, 0, 1, 0, 0, 0, 0]")
+        .contains("enabled=[T1]");
+  }
+
+  private PetriNet createNet(int[] marking) {
+    PetriNetConf conf = new PetriNetConf();
+    return new PetriNet(
+        conf.getTransitions(),
+        conf.getPlaces(),
+        conf.getIncidenceMatrixOut(),
+        conf.getIncidenceMatrixIn(),
+        conf.getPlacesInvariants(),
+        marking,
+        conf.getTargetInvariants(),
+        conf.getTimeTransitions(),
+        () -> now);
+  }
+
+  private Watchdog createWatchdog(PetriNet petriNet, int[] waiters) {
+    MonitorInterface monitor =
+        new MonitorInterface() {
+          @Override
+          public boolean fireTransition(int transition) {
+            return false;
+          }
+
+          @Override
+          public FiringEventPublisher getFiringEvents() {
+            return petriNet.getFiringEvents();
+          }
+
+          @Override
+          public int[] getWaiterCounts() {
+            return waiters;
+          }
+
+          @Override
+          public int[] getMarking() {
+            return petriNet.getMarking().clone();
+          }
+
+          @Override
+          public boolean[] getEnabledTransitions() {
+            return petriNet.getEnabledTransitionsInBits();
+          }
+
+          @Override
+          public long getRemainingWaitTime(int transition) {
+            return petriNet.getRemainingWaitTime(transition);
+          }
+        };
+    return createWatchdog(petriNet, monitor);
+  }
+
+  private Watchdog createWatchdog(PetriNet petriNet, MonitorInterface monitor) {
+    return new Watchdog(
+        petriNet,
+        monitor,
+        new BalancedPolicy(),
+        100,
+        Watchdog.Action.ABORT,
+        () -> aborts++,
+        () -> now);
+  }
+}